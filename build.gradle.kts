@@ -52,12 +52,30 @@ sourceSets {
         java.srcDir("test")
         resources.srcDir("testres")
     }
+    create("jmh") {
+        java.srcDir("jmh")
+
+        // The benchmarks use the test trees and the test resources.
+        compileClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+        runtimeClasspath += sourceSets.main.get().output + sourceSets.test.get().output
+    }
+}
+
+configurations {
+    "jmhImplementation" {
+        extendsFrom(testImplementation.get())
+    }
+    "jmhRuntimeOnly" {
+        extendsFrom(testRuntimeOnly.get())
+    }
 }
 
 val JNM_MAVEN_PROP = "JNM_MAVEN"
 val USE_JNM_MAVEN = !project.ext.has(JNM_MAVEN_PROP) || (project.ext.get(JNM_MAVEN_PROP) as String).toBoolean()
 
 val DIST_DIR_PROP = "distDir"
+val JMH_ARGS_PROP = "jmhArgs"
+val BENCHMARK_ARGS_PROP = "benchmarkArgs"
 
 repositories {
     mavenCentral()
@@ -88,6 +106,9 @@ dependencies {
 
     implementation(files("lib/extendj.jar"))
     testImplementation("junit:junit:4.13.2")
+
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 java {
@@ -168,3 +189,40 @@ tasks.test {
     maxHeapSize = "2048m"
     enableAssertions = true
 }
+
+tasks.register<JavaExec>("jmh") {
+    description = "Runs the JMH benchmarks. Further JMH arguments may be given using -P$JMH_ARGS_PROP=\"...\"."
+    group = "verification"
+
+    val resultsFile = layout.buildDirectory.file("reports/jmh/results.json").get().asFile
+
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+    systemProperty("java.util.logging.config.file", loggingConfigFile.getAbsolutePath())
+
+    args("-prof", "gc", "-rf", "json", "-rff", resultsFile.absolutePath)
+
+    if (project.ext.has(JMH_ARGS_PROP)) {
+        args((project.ext[JMH_ARGS_PROP] as String).split(" ").filter { it.isNotBlank() })
+    }
+
+    doFirst {
+        resultsFile.parentFile.mkdirs()
+    }
+}
+
+tasks.register<JavaExec>("benchmark") {
+    description = "Benchmarks the merge strategies on the scenarios in testres. Further arguments may be given using " +
+            "-P$BENCHMARK_ARGS_PROP=\"...\"."
+    group = "verification"
+
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("de.fosd.jdime.strategy.StrategyBenchmark")
+    systemProperty("java.util.logging.config.file", loggingConfigFile.getAbsolutePath())
+    maxHeapSize = "2048m"
+    jvmArgs("-Xss8m")
+
+    if (project.ext.has(BENCHMARK_ARGS_PROP)) {
+        args((project.ext[BENCHMARK_ARGS_PROP] as String).split(" ").filter { it.isNotBlank() })
+    }
+}
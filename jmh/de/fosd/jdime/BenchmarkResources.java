@@ -0,0 +1,78 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+
+/**
+ * Locates the files in <code>testres</code> used by the benchmarks. <code>testres</code> is expected to be on the
+ * classpath (as it is for the <code>jmh</code> source set).
+ */
+public final class BenchmarkResources {
+
+    /**
+     * Utility class.
+     */
+    private BenchmarkResources() {}
+
+    /**
+     * Returns the file or directory with the given absolute (in the classpath) path.
+     *
+     * @param path
+     *         the path, e.g. <code>/left/SimpleTests</code>
+     * @return the <code>File</code>
+     * @throws IllegalStateException
+     *         if there is no such file
+     */
+    public static File file(String path) {
+        URL res = BenchmarkResources.class.getResource(path);
+
+        if (res == null) {
+            throw new IllegalStateException("The file " + path + " was not found on the classpath.");
+        }
+
+        try {
+            return new File(res.toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the file with the given path relative to the given directory in <code>testres</code>.
+     *
+     * @param dir
+     *         the name of the directory, e.g. <code>left</code>
+     * @param path
+     *         the path relative to the directory
+     * @return the <code>File</code>
+     * @throws IllegalStateException
+     *         if there is no such file
+     */
+    public static File file(String dir, String path) {
+        return file("/" + dir + "/" + path);
+    }
+}
@@ -0,0 +1,354 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.artifact.ScenarioGenerator;
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.artifact.TestTrees;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.matcher.cost_model.CMMode;
+import de.fosd.jdime.matcher.matching.Color;
+import de.fosd.jdime.matcher.matching.Matchings;
+import de.fosd.jdime.matcher.ordered.mceSubtree.MCESubtreeMatcher;
+import de.fosd.jdime.matcher.ordered.simpleTree.SimpleTreeMatcher;
+import de.fosd.jdime.matcher.unordered.IdenticalSubtreeMatcher;
+import de.fosd.jdime.matcher.unordered.UniqueLabelMatcher;
+import de.fosd.jdime.matcher.unordered.assignmentProblem.HungarianMatcher;
+import de.fosd.jdime.util.Tuple;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static de.fosd.jdime.BenchmarkResources.file;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+
+/**
+ * Benchmarks the matching algorithms on trees parsed from the <code>RealScenarios</code> in <code>testres</code>, on
+ * the trees from <code>TestTrees</code> and on trees of increasing size generated by the
+ * <code>ScenarioGenerator</code>. Run it using <code>gradle jmh</code>, which also attaches the GC profiler to report
+ * allocation rates.
+ * <br><br>
+ * Except for the <code>IdenticalSubtreeMatcher</code>, a single algorithm is used to match all pairs of nodes of the
+ * trees (returning early for nodes that do not match, as the <code>Matcher</code> does). The
+ * <code>UniqueLabelMatcher</code> falls back to the <code>HungarianMatcher</code> for nodes whose children are not
+ * uniquely labeled. The <code>CostModelMatcher</code> is benchmarked as part of the <code>Matcher</code> in every
+ * {@link CMMode} other than {@link CMMode#OFF}. As its runtime grows steeply with the size of the trees (a single
+ * match of two synthetic trees with a hundred nodes takes about a minute in {@link CMMode#REPLACEMENT} mode), it is
+ * only benchmarked on the <code>TestTrees</code> and small synthetic trees.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xss8m", "-Xmx2048m"})
+public class MatcherBenchmark {
+
+    /**
+     * The number of statements of the methods in the synthetic trees the <code>CostModelMatcher</code> is benchmarked
+     * on. A class with eight members then has about thirty-five nodes.
+     */
+    private static final int COST_MODEL_METHOD_LENGTH = 5;
+
+    /**
+     * The benchmarked algorithms. {@link #MATCHER} is the <code>Matcher</code> choosing between the others as in a
+     * merge.
+     */
+    public enum Algorithm {
+        SIMPLE_TREE,
+        HUNGARIAN,
+        UNIQUE_LABEL,
+        MCE_SUBTREE,
+        IDENTICAL_SUBTREE,
+        MATCHER
+    }
+
+    /**
+     * The recorded trees. Paths are relative to the <code>left</code> and <code>right</code> directories in
+     * <code>testres</code>.
+     */
+    @State(Scope.Benchmark)
+    public static class Recorded {
+
+        @Param({"RealScenarios/JDime/0138017/Main.java", "RealScenarios/JDime/93a3d27/StructuredStrategy.java",
+                "TestTrees.simpleTree", "TestTrees.tryTree"})
+        public String trees;
+
+        @Param
+        public Algorithm algorithm;
+
+        private Trees<?> pair;
+        private MergeContext context;
+
+        @Setup
+        public void setup() {
+            pair = trees(trees);
+            context = context(CMMode.OFF);
+        }
+    }
+
+    /**
+     * Synthetic trees generated by the <code>ScenarioGenerator</code> for a class with a given number of members.
+     */
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+
+        @Param({"10", "100", "500"})
+        public int members;
+
+        @Param({"10"})
+        public int methodLength;
+
+        @Param({"42"})
+        public long seed;
+
+        @Param
+        public Algorithm algorithm;
+
+        private Trees<?> pair;
+        private MergeContext context;
+
+        @Setup
+        public void setup() {
+            pair = new Trees<>(synthetic(members, methodLength, seed));
+            context = context(CMMode.OFF);
+        }
+    }
+
+    /**
+     * The trees the <code>CostModelMatcher</code> is benchmarked on. Synthetic trees are given as
+     * <code>synthetic-[members]</code>.
+     */
+    @State(Scope.Benchmark)
+    public static class CostModel {
+
+        @Param({"TestTrees.simpleTree", "TestTrees.tryTree", "synthetic-2", "synthetic-4", "synthetic-8"})
+        public String trees;
+
+        @Param({"REPLACEMENT", "POST_PROCESSOR", "INTEGRATED"})
+        public CMMode mode;
+
+        private Trees<?> pair;
+        private MergeContext context;
+
+        @Setup
+        public void setup() {
+            pair = trees(trees);
+            context = context(mode);
+        }
+    }
+
+    @Benchmark
+    public Object recorded(Recorded state) {
+        return state.pair.match(state.algorithm, state.context);
+    }
+
+    @Benchmark
+    public Object synthetic(Synthetic state) {
+        return state.pair.match(state.algorithm, state.context);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 5)
+    public Object costModel(CostModel state) {
+        return state.pair.match(Algorithm.MATCHER, state.context);
+    }
+
+    /**
+     * Returns the trees with the given name. Paths are read from the <code>left</code> and <code>right</code>
+     * directories in <code>testres</code>.
+     *
+     * @param name
+     *         the name of one of the <code>TestTrees</code>, <code>synthetic-[members]</code> or a path
+     * @return the trees
+     */
+    private static Trees<?> trees(String name) {
+        String synthetic = "synthetic-";
+
+        switch (name) {
+            case "TestTrees.simpleTree":
+                return new Trees<>(TestTrees.simpleTree());
+            case "TestTrees.tryTree":
+                return new Trees<>(TestTrees.tryTree());
+            default:
+                if (name.startsWith(synthetic)) {
+                    int members = Integer.parseInt(name.substring(synthetic.length()));
+                    return new Trees<>(synthetic(members, COST_MODEL_METHOD_LENGTH, 42));
+                }
+
+                ASTNodeArtifact left = new ASTNodeArtifact(new FileArtifact(LEFT, file("left", name)));
+                ASTNodeArtifact right = new ASTNodeArtifact(new FileArtifact(RIGHT, file("right", name)));
+
+                return new Trees<>(Tuple.of(left, right));
+        }
+    }
+
+    /**
+     * Returns a <code>MergeContext</code> using the <code>CostModelMatcher</code> in the given <code>mode</code>.
+     *
+     * @param mode
+     *         the mode of the <code>CostModelMatcher</code>
+     * @return the <code>MergeContext</code>
+     */
+    private static MergeContext context(CMMode mode) {
+        MergeContext context = new MergeContext();
+
+        context.setSeed(Optional.of(42L));
+        context.setCmMatcherMode(mode);
+
+        return context;
+    }
+
+    /**
+     * Generates a scenario using a class with the given number of <code>members</code> and returns its left and right
+     * tree. A tenth of the members is edited and a twentieth renamed and moved in each revision.
+     *
+     * @param members
+     *         the number of members of the class
+     * @param methodLength
+     *         the number of statements of every method
+     * @param seed
+     *         the seed for the random decisions
+     * @return the left and right tree
+     */
+    private static Tuple<TestArtifact, TestArtifact> synthetic(int members, int methodLength, long seed) {
+        ScenarioGenerator generator = new ScenarioGenerator(seed).members(members).methodLength(methodLength);
+
+        generator.edited(members / 10).renamed(members / 20).moved(members / 20);
+
+        return generator.generate().trees();
+    }
+
+    /**
+     * A left and right tree to be matched.
+     *
+     * @param <T>
+     *         the type of the <code>Artifact</code>s
+     */
+    private static final class Trees<T extends Artifact<T>> {
+
+        private final T left;
+        private final T right;
+
+        private Trees(Tuple<T, T> trees) {
+            this.left = trees.getX();
+            this.right = trees.getY();
+        }
+
+        /**
+         * Matches the trees using the given <code>algorithm</code>.
+         *
+         * @param algorithm
+         *         the algorithm to use
+         * @param context
+         *         the <code>MergeContext</code> to use
+         * @return the resulting <code>Matchings</code>
+         */
+        private Matchings<T> match(Algorithm algorithm, MergeContext context) {
+
+            if (algorithm == Algorithm.MATCHER) {
+                return new Matcher<>(left, right).match(context, Color.DEFAULT);
+            }
+
+            if (algorithm == Algorithm.IDENTICAL_SUBTREE) {
+                IdenticalSubtreeMatcher<T> matcher = new IdenticalSubtreeMatcher<>();
+
+                matcher.matchTrees(left, right);
+                return matcher.match(context, left, right);
+            }
+
+            return new Recursive<T>(algorithm).match(context, left, right);
+        }
+    }
+
+    /**
+     * Uses one algorithm to match all pairs of nodes.
+     *
+     * @param <T>
+     *         the type of the <code>Artifact</code>s
+     */
+    private static final class Recursive<T extends Artifact<T>> implements MatcherInterface<T> {
+
+        private final MatcherInterface<T> matcher;
+        private final MatcherInterface<T> fallback;
+        private final boolean uniqueLabels;
+
+        private Recursive(Algorithm algorithm) {
+            this.fallback = new HungarianMatcher<>(this);
+            this.uniqueLabels = algorithm == Algorithm.UNIQUE_LABEL;
+
+            switch (algorithm) {
+                case SIMPLE_TREE:
+                    matcher = new SimpleTreeMatcher<>(this);
+                    break;
+                case HUNGARIAN:
+                    matcher = fallback;
+                    break;
+                case UNIQUE_LABEL:
+                    matcher = new UniqueLabelMatcher<>(this);
+                    break;
+                case MCE_SUBTREE:
+                    matcher = new MCESubtreeMatcher<>(this);
+                    break;
+                default:
+                    throw new IllegalArgumentException(algorithm + " does not match recursively.");
+            }
+        }
+
+        @Override
+        public Matchings<T> match(MergeContext context, T left, T right) {
+
+            if (!left.matches(right)) {
+                return Matchings.of(left, right, 0);
+            }
+
+            if (uniqueLabels && !(uniquelyLabeled(left) && uniquelyLabeled(right))) {
+                return fallback.match(context, left, right);
+            }
+
+            return matcher.match(context, left, right);
+        }
+
+        private static boolean uniquelyLabeled(Artifact<?> artifact) {
+            return artifact.getChildren().stream().allMatch(c -> c.getUniqueLabel().isPresent());
+        }
+    }
+}
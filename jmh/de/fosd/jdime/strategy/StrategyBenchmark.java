@@ -0,0 +1,735 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import de.fosd.jdime.Main;
+import de.fosd.jdime.MergeTestCase;
+import de.fosd.jdime.artifact.ScenarioGenerator;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.MergeType;
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.stats.Profiler;
+import de.fosd.jdime.stats.Runtime;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+
+import static de.fosd.jdime.BenchmarkResources.file;
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Benchmarks merge strategies end-to-end on the scenarios in <code>testres</code>. Every scenario is merged with
+ * every requested strategy it has expected results for (and the n-way scenarios in <code>testres/nway</code> with
+ * the {@value MergeStrategy#NWAY} strategy) in a number of warm-up and measured iterations in one JVM. Statistics are
+ * collected during the merges so that the runtimes of the phases recorded by the strategies (parsing, matching,
+ * pretty printing, ...) are available. For every scenario, strategy and phase (and the {@value #TOTAL} time of the
+ * merge) the mean, median, 90th and 99th percentile and maximum latency are reported as CSV or JSON.
+ * <br><br>
+ * If a baseline (a previous result in either format) is given, phases whose median latency grew by more than the
+ * threshold are reported as regressions and the runner exits with {@value #EXIT_REGRESSION}.
+ * <br><br>
+ * Synthetic scenarios of classes with a given number of members may be added using <code>--generate</code> to
+ * measure how the strategies scale with the size of the input. Run it using
+ * <code>gradle benchmark</code>.
+ */
+public final class StrategyBenchmark {
+
+    /**
+     * The phase measuring the whole merge.
+     */
+    public static final String TOTAL = "total";
+
+    /**
+     * The exit code if regressions were found.
+     */
+    public static final int EXIT_REGRESSION = 1;
+
+    /**
+     * The exit code if the command line is invalid.
+     */
+    public static final int EXIT_USAGE = 2;
+
+    private static final String TEST_CASES_FILE = "/de/fosd/jdime/JDimeMergeTests.json";
+    private static final String NWAY_DIR = "/nway";
+    private static final String SYNTHETIC = "synthetic-";
+    private static final long SYNTHETIC_SEED = 42;
+
+    /**
+     * The label of the matching phase nested in the merge phase.
+     */
+    private static final String MATCH_LABEL = "match";
+
+    /**
+     * Increases of the median latency below this number of nanoseconds are never reported as regressions.
+     */
+    private static final long MIN_REGRESSION_NS = 100_000;
+
+    private static final List<String> DEFAULT_STRATEGIES = Collections.unmodifiableList(Arrays.asList(
+            MergeStrategy.LINEBASED, MergeStrategy.SEMISTRUCTURED, MergeStrategy.STRUCTURED,
+            MergeStrategy.LINEBASED + "," + MergeStrategy.STRUCTURED, MergeStrategy.NWAY));
+
+    private static final String CLI_HELP = "h";
+    private static final String CLI_STRATEGY = "s";
+    private static final String CLI_WARMUP = "w";
+    private static final String CLI_ITERATIONS = "i";
+    private static final String CLI_NESTED = "n";
+    private static final String CLI_FORMAT = "f";
+    private static final String CLI_OUTPUT = "o";
+    private static final String CLI_BASELINE = "b";
+    private static final String CLI_THRESHOLD = "t";
+    private static final String CLI_GENERATE = "g";
+    private static final String CLI_GENERATED_ONLY = "generated-only";
+
+    private static final String CSV = "csv";
+    private static final String JSON = "json";
+
+    private static final String[] CSV_HEADER = {
+            "scenario", "strategy", "phase", "samples", "meanNS", "p50NS", "p90NS", "p99NS", "maxNS"
+    };
+
+    /**
+     * A scenario to be merged with one strategy.
+     */
+    private static final class Scenario {
+
+        private final String name;
+        private final String strategy;
+        private final List<File> files;
+        private final Supplier<Supplier<Revision>> revisions;
+
+        private final Map<String, List<Long>> samples;
+        private boolean failed;
+
+        private Scenario(String name, String strategy, List<File> files, Supplier<Supplier<Revision>> revisions) {
+            this.name = name;
+            this.strategy = strategy;
+            this.files = files;
+            this.revisions = revisions;
+            this.samples = new TreeMap<>();
+        }
+    }
+
+    /**
+     * The latencies of one phase of a scenario merged using one strategy.
+     */
+    private static final class Result {
+
+        private String scenario;
+        private String strategy;
+        private String phase;
+        private int samples;
+        private long meanNS;
+        private long p50NS;
+        private long p90NS;
+        private long p99NS;
+        private long maxNS;
+
+        private String key() {
+            return scenario + '\0' + strategy + '\0' + phase;
+        }
+    }
+
+    /**
+     * Utility class.
+     */
+    private StrategyBenchmark() {}
+
+    public static void main(String[] args) throws IOException {
+        Options options = options();
+        CommandLine cmd;
+
+        try {
+            cmd = new DefaultParser().parse(options, args);
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            help(options);
+            System.exit(EXIT_USAGE);
+            return;
+        }
+
+        if (cmd.hasOption(CLI_HELP)) {
+            help(options);
+            return;
+        }
+
+        String format = cmd.getOptionValue(CLI_FORMAT, CSV);
+
+        if (!CSV.equals(format) && !JSON.equals(format)) {
+            System.err.println("Unknown format " + format);
+            System.exit(EXIT_USAGE);
+        }
+
+        List<String> strategies = cmd.hasOption(CLI_STRATEGY) ? Arrays.asList(cmd.getOptionValues(CLI_STRATEGY))
+                                                               : DEFAULT_STRATEGIES;
+
+        for (String strategy : strategies) {
+
+            if (!MergeStrategy.parse(strategy).isPresent()) {
+                System.err.println("Unknown strategy " + strategy);
+                System.exit(EXIT_USAGE);
+            }
+        }
+
+        int warmup = Integer.parseInt(cmd.getOptionValue(CLI_WARMUP, "5"));
+        int iterations = Integer.parseInt(cmd.getOptionValue(CLI_ITERATIONS, "20"));
+        double threshold = Double.parseDouble(cmd.getOptionValue(CLI_THRESHOLD, "10"));
+
+        JDimeConfig.setLogLevel("WARNING");
+
+        List<Scenario> scenarios = cmd.hasOption(CLI_GENERATED_ONLY) ? new ArrayList<>() : scenarios(strategies);
+        File syntheticDir = Files.createTempDirectory(StrategyBenchmark.class.getSimpleName()).toFile();
+
+        try {
+            if (cmd.hasOption(CLI_GENERATE)) {
+                for (String members : cmd.getOptionValues(CLI_GENERATE)) {
+                    scenarios.addAll(syntheticScenarios(strategies, Integer.parseInt(members), syntheticDir));
+                }
+            }
+
+            run(scenarios, warmup, iterations, cmd.hasOption(CLI_NESTED));
+        } finally {
+            FileUtils.deleteDirectory(syntheticDir);
+        }
+
+        List<Result> results = results(scenarios);
+
+        try (Writer out = cmd.hasOption(CLI_OUTPUT)
+                          ? Files.newBufferedWriter(new File(cmd.getOptionValue(CLI_OUTPUT)).toPath(), UTF_8)
+                          : new OutputStreamWriter(System.out, UTF_8)) {
+
+            if (JSON.equals(format)) {
+                writeJSON(results, out);
+            } else {
+                writeCSV(results, out);
+            }
+        }
+
+        if (cmd.hasOption(CLI_BASELINE)) {
+            List<String> regressions = compare(read(new File(cmd.getOptionValue(CLI_BASELINE))), results, threshold);
+
+            regressions.forEach(System.err::println);
+
+            if (!regressions.isEmpty()) {
+                System.exit(EXIT_REGRESSION);
+            }
+        }
+    }
+
+    /**
+     * Returns the command line options of the runner.
+     *
+     * @return the <code>Options</code>
+     */
+    private static Options options() {
+        Options options = new Options();
+
+        options.addOption(Option.builder(CLI_HELP).longOpt("help").desc("Print this message.").build());
+        options.addOption(Option.builder(CLI_STRATEGY).longOpt("strategy").hasArg().argName("strategy")
+                                .desc("A strategy (or comma separated combination of strategies) to benchmark. " +
+                                      "May be given multiple times. Defaults to " + DEFAULT_STRATEGIES + ".").build());
+        options.addOption(Option.builder(CLI_WARMUP).longOpt("warmup").hasArg().argName("n")
+                                .desc("The number of warm-up iterations. Defaults to 5.").build());
+        options.addOption(Option.builder(CLI_ITERATIONS).longOpt("iterations").hasArg().argName("n")
+                                .desc("The number of measured iterations. Defaults to 20.").build());
+        options.addOption(Option.builder(CLI_NESTED).longOpt("nested")
+                                .desc("Report all nested spans instead of only the top-level phases and matching.")
+                                .build());
+        options.addOption(Option.builder(CLI_FORMAT).longOpt("format").hasArg().argName(CSV + "|" + JSON)
+                                .desc("The output format. Defaults to " + CSV + ".").build());
+        options.addOption(Option.builder(CLI_OUTPUT).longOpt("output").hasArg().argName("file")
+                                .desc("The file to write the results to. Defaults to standard out.").build());
+        options.addOption(Option.builder(CLI_BASELINE).longOpt("baseline").hasArg().argName("file")
+                                .desc("A previous result (CSV or JSON, by file extension) to compare with.").build());
+        options.addOption(Option.builder(CLI_THRESHOLD).longOpt("threshold").hasArg().argName("percent")
+                                .desc("The increase of the median latency reported as a regression. Defaults to 10.")
+                                .build());
+        options.addOption(Option.builder(CLI_GENERATE).longOpt("generate").hasArg().argName("members")
+                                .desc("Also merges a synthetic scenario of a class with the given number of members. " +
+                                      "May be given multiple times.").build());
+        options.addOption(Option.builder().longOpt(CLI_GENERATED_ONLY)
+                                .desc("Merge only the synthetic scenarios.").build());
+
+        return options;
+    }
+
+    private static void help(Options options) {
+        new HelpFormatter().printHelp(120, StrategyBenchmark.class.getSimpleName(), null, options, null, true);
+    }
+
+    /**
+     * Returns the scenarios to merge with the given <code>strategies</code>.
+     *
+     * @param strategies
+     *         the names of the strategies
+     * @return the scenarios
+     * @throws IOException
+     *         if the test cases can not be read
+     */
+    private static List<Scenario> scenarios(List<String> strategies) throws IOException {
+        List<Scenario> scenarios = new ArrayList<>();
+        MergeTestCase[] testCases;
+
+        try (Reader reader = new FileReader(file(TEST_CASES_FILE))) {
+            testCases = new Gson().fromJson(reader, MergeTestCase[].class);
+        }
+
+        for (String strategy : strategies) {
+
+            if (strategy.equals(MergeStrategy.NWAY)) {
+                scenarios.addAll(nwayScenarios());
+                continue;
+            }
+
+            for (MergeTestCase testCase : testCases) {
+
+                if (!testCase.strategies.contains(strategy)) {
+                    continue;
+                }
+
+                List<File> files = new ArrayList<>();
+                files.add(file("left", testCase.path));
+
+                if (testCase.type == MergeType.THREEWAY) {
+                    files.add(file("base", testCase.path));
+                }
+
+                files.add(file("right", testCase.path));
+
+                List<Revision> revisions = files.size() == MergeType.THREEWAY_FILES ? Arrays.asList(LEFT, BASE, RIGHT)
+                                                                                     : Arrays.asList(LEFT, RIGHT);
+
+                scenarios.add(new Scenario(testCase.path, strategy, files, () -> revisions.iterator()::next));
+            }
+        }
+
+        return scenarios;
+    }
+
+    /**
+     * Generates a three-way scenario of a class with the given number of <code>members</code> using the
+     * <code>ScenarioGenerator</code> and returns it once for every strategy except {@value MergeStrategy#NWAY}. A
+     * tenth of the members is edited, a twentieth renamed and moved in each revision and one in fifty members is
+     * changed in conflicting ways.
+     *
+     * @param strategies
+     *         the names of the strategies
+     * @param members
+     *         the number of members of the generated class
+     * @param dir
+     *         the directory to write the revisions to
+     * @return the synthetic scenarios
+     * @throws IOException
+     *         if the scenario can not be written
+     */
+    private static List<Scenario> syntheticScenarios(List<String> strategies, int members, File dir)
+            throws IOException {
+
+        ScenarioGenerator generator = new ScenarioGenerator(SYNTHETIC_SEED).members(members).conflictDensity(0.02);
+
+        generator.edited(Math.max(1, members / 10)).renamed(Math.max(1, members / 20)).moved(Math.max(1, members / 20));
+
+        List<File> files = generator.generate().write(new File(dir, SYNTHETIC + members));
+        List<Scenario> scenarios = new ArrayList<>();
+
+        for (String strategy : strategies) {
+
+            if (!strategy.equals(MergeStrategy.NWAY)) {
+                List<Revision> revisions = Arrays.asList(LEFT, BASE, RIGHT);
+                scenarios.add(new Scenario(SYNTHETIC + members, strategy, files, () -> revisions.iterator()::next));
+            }
+        }
+
+        return scenarios;
+    }
+
+    /**
+     * Returns the scenarios in <code>testres/nway</code>. Every directory in it contains one directory per revision.
+     * Every file present in all revisions is a scenario.
+     *
+     * @return the n-way scenarios
+     */
+    private static List<Scenario> nwayScenarios() {
+        List<Scenario> scenarios = new ArrayList<>();
+        File[] dirs = file(NWAY_DIR).listFiles(File::isDirectory);
+
+        if (dirs == null) {
+            return scenarios;
+        }
+
+        Arrays.sort(dirs);
+
+        for (File dir : dirs) {
+            File[] revisions = dir.listFiles(File::isDirectory);
+
+            if (revisions == null || revisions.length < 2) {
+                continue;
+            }
+
+            Arrays.sort(revisions);
+            String[] names = revisions[0].list();
+
+            if (names == null) {
+                continue;
+            }
+
+            Arrays.sort(names);
+
+            for (String name : names) {
+                List<File> files = new ArrayList<>();
+
+                for (File revision : revisions) {
+                    files.add(new File(revision, name));
+                }
+
+                if (files.stream().allMatch(File::isFile)) {
+                    String scenario = NWAY_DIR.substring(1) + "/" + dir.getName() + "/" + name;
+                    scenarios.add(new Scenario(scenario, MergeStrategy.NWAY, files, Revision.SuccessiveRevSupplier::new));
+                }
+            }
+        }
+
+        return scenarios;
+    }
+
+    /**
+     * Merges all <code>scenarios</code> in <code>warmup</code> and <code>iterations</code> iterations and records the
+     * runtimes of the measured iterations. Scenarios that fail are skipped in later iterations.
+     *
+     * @param scenarios
+     *         the scenarios to merge
+     * @param warmup
+     *         the number of warm-up iterations
+     * @param iterations
+     *         the number of measured iterations
+     * @param nested
+     *         whether to record all nested spans
+     */
+    private static void run(List<Scenario> scenarios, int warmup, int iterations, boolean nested) {
+
+        for (int i = 0; i < warmup + iterations; i++) {
+            boolean measured = i >= warmup;
+
+            for (Scenario scenario : scenarios) {
+
+                if (scenario.failed) {
+                    continue;
+                }
+
+                Map<String, Long> phases;
+
+                try {
+                    phases = merge(scenario, nested);
+                } catch (RuntimeException | Error e) {
+                    System.err.printf("Merging %s using %s failed, skipping it: %s%n", scenario.name, scenario.strategy, e);
+                    scenario.failed = true;
+                    continue;
+                }
+
+                if (measured) {
+                    phases.forEach((phase, ns) -> scenario.samples.computeIfAbsent(phase, p -> new ArrayList<>()).add(ns));
+                }
+            }
+
+            System.err.printf("%s iteration %d of %d done.%n", measured ? "Measured" : "Warm-up",
+                              measured ? i - warmup + 1 : i + 1, measured ? iterations : warmup);
+        }
+    }
+
+    /**
+     * Merges the given <code>scenario</code> once.
+     *
+     * @param scenario
+     *         the scenario to merge
+     * @param nested
+     *         whether to return all nested spans
+     * @return the nanosecond runtimes of the phases of the merge
+     */
+    private static Map<String, Long> merge(Scenario scenario, boolean nested) {
+        MergeContext context = new MergeContext();
+
+        context.setMergeStrategy(MergeStrategy.parse(scenario.strategy).get());
+        context.collectStatistics(true);
+
+        List<FileArtifact> inputs = new ArtifactList<>();
+        Supplier<Revision> revisions = scenario.revisions.get();
+
+        for (File file : scenario.files) {
+            inputs.add(new FileArtifact(revisions.get(), file));
+        }
+
+        context.setInputFiles(inputs);
+        context.setOutputFile(new FileArtifact(MERGE, FileArtifact.FileType.FILE));
+
+        long start = System.nanoTime();
+        Main.merge(context);
+        long total = System.nanoTime() - start;
+
+        if (!context.getCrashes().isEmpty()) {
+            throw new IllegalStateException("The merge crashed.", context.getCrashes().values().iterator().next());
+        }
+
+        Map<String, Long> phases = new HashMap<>();
+
+        for (MergeScenarioStatistics statistics : context.getStatistics().getScenarioStatistics()) {
+            for (Runtime runtime : statistics.getRuntimes()) {
+                String label = runtime.getLabel();
+
+                if (nested || !label.contains(Profiler.SEPARATOR) || label.endsWith(Profiler.SEPARATOR + MATCH_LABEL)) {
+                    phases.merge(label, runtime.getTimeNS(), Long::sum);
+                }
+            }
+        }
+
+        phases.put(TOTAL, total);
+
+        return phases;
+    }
+
+    /**
+     * Computes the latency percentiles of all recorded phases.
+     *
+     * @param scenarios
+     *         the merged scenarios
+     * @return the <code>Result</code>s
+     */
+    private static List<Result> results(List<Scenario> scenarios) {
+        List<Result> results = new ArrayList<>();
+
+        for (Scenario scenario : scenarios) {
+            for (Map.Entry<String, List<Long>> phase : scenario.samples.entrySet()) {
+                long[] samples = phase.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+                Result result = new Result();
+
+                result.scenario = scenario.name;
+                result.strategy = scenario.strategy;
+                result.phase = phase.getKey();
+                result.samples = samples.length;
+                result.meanNS = (long) Arrays.stream(samples).average().orElse(0);
+                result.p50NS = percentile(samples, 50);
+                result.p90NS = percentile(samples, 90);
+                result.p99NS = percentile(samples, 99);
+                result.maxNS = samples[samples.length - 1];
+
+                results.add(result);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Returns the <code>p</code>-th percentile (using the nearest rank method) of the given non-empty, sorted
+     * <code>samples</code>.
+     *
+     * @param samples
+     *         the sorted samples
+     * @param p
+     *         the percentile to return
+     * @return the percentile
+     */
+    static long percentile(long[] samples, double p) {
+        int rank = (int) Math.ceil(p / 100 * samples.length);
+        return samples[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Returns descriptions of the results whose median latency exceeds that of the corresponding
+     * <code>baseline</code> result by more than <code>threshold</code> percent.
+     *
+     * @param baseline
+     *         the baseline results
+     * @param results
+     *         the current results
+     * @param threshold
+     *         the tolerated increase in percent
+     * @return the regressions
+     */
+    private static List<String> compare(List<Result> baseline, List<Result> results, double threshold) {
+        Map<String, Result> base = new HashMap<>();
+        baseline.forEach(r -> base.put(r.key(), r));
+
+        List<String> regressions = new ArrayList<>();
+
+        for (Result result : results) {
+            Result old = base.get(result.key());
+
+            if (old == null) {
+                continue;
+            }
+
+            long increase = result.p50NS - old.p50NS;
+
+            if (increase > MIN_REGRESSION_NS && increase > old.p50NS * threshold / 100) {
+                String format = "REGRESSION %s [%s] %s: median %.3f ms -> %.3f ms (+%.1f%%)";
+                double percent = old.p50NS == 0 ? Double.POSITIVE_INFINITY : 100.0 * increase / old.p50NS;
+
+                regressions.add(String.format(format, result.scenario, result.strategy, result.phase,
+                                              old.p50NS / 1e6, result.p50NS / 1e6, percent));
+            }
+        }
+
+        return regressions;
+    }
+
+    private static void writeJSON(List<Result> results, Writer out) {
+        Gson gson = new GsonBuilder().setPrettyPrinting().create();
+        gson.toJson(results, out);
+    }
+
+    private static void writeCSV(List<Result> results, Writer out) {
+        PrintWriter writer = new PrintWriter(out);
+        writer.println(String.join(",", CSV_HEADER));
+
+        for (Result r : results) {
+            String[] values = {
+                    r.scenario, r.strategy, r.phase, String.valueOf(r.samples), String.valueOf(r.meanNS),
+                    String.valueOf(r.p50NS), String.valueOf(r.p90NS), String.valueOf(r.p99NS), String.valueOf(r.maxNS)
+            };
+
+            for (int i = 0; i < values.length; i++) {
+                String v = values[i];
+                values[i] = v.contains(",") || v.contains("\"") ? '"' + v.replace("\"", "\"\"") + '"' : v;
+            }
+
+            writer.println(String.join(",", values));
+        }
+
+        writer.flush();
+    }
+
+    /**
+     * Reads results previously written in the format indicated by the extension of the given <code>file</code>.
+     *
+     * @param file
+     *         the file to read
+     * @return the results
+     * @throws IOException
+     *         if the file can not be read
+     */
+    private static List<Result> read(File file) throws IOException {
+
+        if (file.getName().endsWith("." + JSON)) {
+            try (Reader reader = Files.newBufferedReader(file.toPath(), UTF_8)) {
+                return Arrays.asList(new Gson().fromJson(reader, Result[].class));
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        List<String> lines = Files.readAllLines(file.toPath(), UTF_8);
+
+        for (String line : lines.subList(Math.min(1, lines.size()), lines.size())) {
+            List<String> values = splitCSV(line);
+
+            if (values.size() != CSV_HEADER.length) {
+                continue;
+            }
+
+            Result r = new Result();
+
+            r.scenario = values.get(0);
+            r.strategy = values.get(1);
+            r.phase = values.get(2);
+            r.samples = Integer.parseInt(values.get(3));
+            r.meanNS = Long.parseLong(values.get(4));
+            r.p50NS = Long.parseLong(values.get(5));
+            r.p90NS = Long.parseLong(values.get(6));
+            r.p99NS = Long.parseLong(values.get(7));
+            r.maxNS = Long.parseLong(values.get(8));
+
+            results.add(r);
+        }
+
+        return results;
+    }
+
+    /**
+     * Splits a line of CSV as written by {@link #writeCSV(List, Writer)}.
+     *
+     * @param line
+     *         the line to split
+     * @return the values
+     */
+    private static List<String> splitCSV(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append(c);
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+
+        values.add(value.toString());
+        return values;
+    }
+}
@@ -25,6 +25,7 @@
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.LabelTable;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.JDimeConfig;
 import de.fosd.jdime.config.merge.MergeContext;
@@ -42,11 +43,13 @@
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
 import java.security.Permission;
 import java.util.*;
 import java.util.logging.Level;
@@ -217,6 +220,7 @@ public static int run(String[] args) {
         }
 
         try {
+            streamStatistics(context);
             merge(context);
             output(context);
         } finally {
@@ -282,9 +286,54 @@ private static void output(MergeContext context) {
         }
     }
 
+    /**
+     * Starts streaming the {@link Statistics} in the given {@link MergeContext} to the configured outputs if
+     * {@link JDimeConfig#STATISTICS_STREAM} is enabled. Does nothing if the {@link MergeContext} does not contain
+     * {@link Statistics}.
+     *
+     * @param context
+     *         the {@link MergeContext} containing the {@link Statistics} to stream
+     */
+    private static void streamStatistics(MergeContext context) {
+
+        if (!context.hasStatistics() || !config.getBoolean(STATISTICS_STREAM).orElse(false)) {
+            return;
+        }
+
+        Statistics statistics = context.getStatistics();
+
+        String hrOut = config.get(STATISTICS_HR_OUTPUT).orElse(STATISTICS_OUTPUT_STDOUT);
+        String xmlOut = config.get(STATISTICS_XML_OUTPUT).orElse(STATISTICS_OUTPUT_OFF);
+
+        try {
+            switch (hrOut) {
+                case STATISTICS_OUTPUT_OFF:
+                    break;
+                case STATISTICS_OUTPUT_STDOUT:
+                    statistics.stream(new PrintStream(CloseShieldOutputStream.wrap(System.out)));
+                    break;
+                default:
+                    statistics.stream(statisticsFile(hrOut, STATISTICS_HR_NAME, STATISTICS_HR_DEFAULT_NAME));
+            }
+
+            switch (xmlOut) {
+                case STATISTICS_OUTPUT_OFF:
+                    break;
+                case STATISTICS_OUTPUT_STDOUT:
+                    statistics.streamXML(CloseShieldOutputStream.wrap(System.out), context);
+                    break;
+                default:
+                    statistics.streamXML(statisticsFile(xmlOut, STATISTICS_XML_NAME, STATISTICS_XML_DEFAULT_NAME), context);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Statistics output failed.");
+        }
+    }
+
     /**
      * Outputs the {@link Statistics} in the given {@link MergeContext}. Does nothing if the {@link MergeContext} does
-     * not contain {@link Statistics}.
+     * not contain {@link Statistics}. If the {@link Statistics} are streamed, the remaining statistics are written
+     * and the streams are closed.
      *
      * @param context
      *         the {@link MergeContext} containing the {@link Statistics} to output
@@ -300,6 +349,16 @@ private static void outputStatistics(MergeContext context) {
         String hrOut = config.get(STATISTICS_HR_OUTPUT).orElse(STATISTICS_OUTPUT_STDOUT);
         String xmlOut = config.get(STATISTICS_XML_OUTPUT).orElse(STATISTICS_OUTPUT_OFF);
 
+        if (statistics.isStreaming()) {
+            statistics.closeStreams();
+
+            if (STATISTICS_OUTPUT_STDOUT.equals(xmlOut)) {
+                System.out.println();
+            }
+
+            return;
+        }
+
         switch (hrOut) {
             case STATISTICS_OUTPUT_OFF:
                 LOG.fine("Human readable statistics output is disabled.");
@@ -308,19 +367,8 @@ private static void outputStatistics(MergeContext context) {
                 statistics.print(System.out);
                 break;
             default: {
-                File f = new File(hrOut);
-
-                if (f.isDirectory()) {
-                    String name = config.get(STATISTICS_HR_NAME).orElse(STATISTICS_HR_DEFAULT_NAME);
-                    f = new File(f, String.format(name, new Date()));
-                }
-
-                if (config.getBoolean(STATISTICS_OUTPUT_USE_UNIQUE_FILES).orElse(true)) {
-                    f = findNonExistent(f);
-                }
-
                 try {
-                    statistics.print(f);
+                    statistics.print(statisticsFile(hrOut, STATISTICS_HR_NAME, STATISTICS_HR_DEFAULT_NAME));
                 } catch (FileNotFoundException e) {
                     LOG.log(Level.WARNING, e, () -> "Statistics output failed.");
                 }
@@ -336,19 +384,8 @@ private static void outputStatistics(MergeContext context) {
                 System.out.println();
                 break;
             default: {
-                File f = new File(xmlOut);
-
-                if (f.isDirectory()) {
-                    String name = config.get(STATISTICS_XML_NAME).orElse(STATISTICS_XML_DEFAULT_NAME);
-                    f = new File(f, String.format(name, new Date()));
-                }
-
-                if (config.getBoolean(STATISTICS_OUTPUT_USE_UNIQUE_FILES).orElse(true)) {
-                    f = findNonExistent(f);
-                }
-
                 try {
-                    statistics.printXML(f, context);
+                    statistics.printXML(statisticsFile(xmlOut, STATISTICS_XML_NAME, STATISTICS_XML_DEFAULT_NAME), context);
                 } catch (FileNotFoundException e) {
                     LOG.log(Level.WARNING, e, () -> "Statistics output failed.");
                 }
@@ -356,6 +393,34 @@ private static void outputStatistics(MergeContext context) {
         }
     }
 
+    /**
+     * Returns the <code>File</code> to write statistics to. If <code>out</code> denotes a directory, a file named
+     * using the pattern configured for <code>nameKey</code> (or <code>defaultName</code>) is created there. If
+     * {@link JDimeConfig#STATISTICS_OUTPUT_USE_UNIQUE_FILES} is enabled, existing files are not overwritten.
+     *
+     * @param out
+     *         the configured output path
+     * @param nameKey
+     *         the configuration key of the file name pattern
+     * @param defaultName
+     *         the default file name pattern
+     * @return the <code>File</code> to write to
+     */
+    private static File statisticsFile(String out, String nameKey, String defaultName) {
+        File f = new File(out);
+
+        if (f.isDirectory()) {
+            String name = config.get(nameKey).orElse(defaultName);
+            f = new File(f, String.format(name, new Date()));
+        }
+
+        if (config.getBoolean(STATISTICS_OUTPUT_USE_UNIQUE_FILES).orElse(true)) {
+            f = findNonExistent(f);
+        }
+
+        return f;
+    }
+
     /**
      * Returns a <code>File</code> (possibly <code>f</code>) that does not exist in the parent directory of
      * <code>f</code>. If <code>f</code> exists an increasing number is appended to the name of <code>f</code> until
@@ -543,8 +608,9 @@ private static int compare(MergeContext context) {
         FileArtifact left = inputFiles.get(0);
         FileArtifact right = inputFiles.get(1);
 
-        ASTNodeArtifact leftAST = new ASTNodeArtifact(left);
-        ASTNodeArtifact rightAST = new ASTNodeArtifact(right);
+        LabelTable labels = new LabelTable();
+        ASTNodeArtifact leftAST = new ASTNodeArtifact(left, labels);
+        ASTNodeArtifact rightAST = new ASTNodeArtifact(right, labels);
 
         Matcher<ASTNodeArtifact> matcher = new Matcher<>(leftAST, rightAST);
         Matchings<ASTNodeArtifact> matches = matcher.match(context, Color.DEFAULT);
@@ -23,6 +23,7 @@
  */
 package de.fosd.jdime.artifact;
 
+import java.io.IOException;
 import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -270,6 +271,20 @@ public void clearAllMatches() {
      */
     public abstract String prettyPrint();
 
+    /**
+     * Pretty-prints the <code>Artifact</code> to source code and appends it to <code>out</code>. Implementations may
+     * produce the output piecewise instead of constructing the whole <code>String</code> first.
+     *
+     * @param out
+     *         the <code>Appendable</code> to append the source code to
+     * @throws IOException
+     *         if <code>out</code> throws an <code>IOException</code>
+     * @see #prettyPrint()
+     */
+    public void prettyPrint(Appendable out) throws IOException {
+        out.append(prettyPrint());
+    }
+
     /**
      * Dumps this <code>Artifact</code> to a <code>String</code> using the given <code>DumpMode</code>. Uses the
      * {@link Artifact#toString()} method for producing labels for nodes.
@@ -787,6 +802,24 @@ public boolean isRoot() {
      */
     public abstract boolean categoryMatches(T other);
 
+    /**
+     * Returns a key representing the label of this <code>Artifact</code> as it is compared by
+     * {@link #matches(Artifact)}. Two <code>Artifact</code>s match iff their matching keys are equal. The key is used
+     * to intern the labels of the nodes in a {@link FlatTree}.
+     *
+     * @return the matching key
+     */
+    public abstract Object getMatchingKey();
+
+    /**
+     * Returns a key representing the category of this <code>Artifact</code> as it is compared by
+     * {@link #categoryMatches(Artifact)}. Two <code>Artifact</code>s' categories match iff their category keys are
+     * equal.
+     *
+     * @return the category key
+     */
+    public abstract Object getCategoryKey();
+
     /**
      * Performs a merge on the provided merge triple.
      * This method selects the <code>MergeStrategy</code> and triggers the merge.
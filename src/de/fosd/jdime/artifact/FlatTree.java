@@ -0,0 +1,454 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the tree rooted in an <code>Artifact</code> stored as flat arrays. Every node is
+ * identified by its preorder number, which is used as the index into the arrays describing its parent, first child,
+ * next sibling, depth, subtree size, and interned label and category. Two nodes (of the same or of different
+ * <code>FlatTree</code>s sharing the same {@link Labels}) match as per {@link Artifact#matches(Artifact)} iff their
+ * label ids are equal and their categories match iff their category ids are equal.
+ * <p>
+ * The snapshot is not updated if the tree is modified after its construction.
+ *
+ * @param <T>
+ *         the type of the <code>Artifact</code>s
+ */
+public final class FlatTree<T extends Artifact<T>> {
+
+    /**
+     * Interns the matching and category keys of <code>Artifact</code>s as integer ids. <code>FlatTree</code>s whose
+     * ids are to be compared must be constructed using the same <code>Labels</code>.
+     */
+    public static final class Labels {
+
+        private final Map<Object, Integer> labels;
+        private final Map<Object, Integer> categories;
+
+        /**
+         * Constructs a new empty <code>Labels</code> table.
+         */
+        public Labels() {
+            this.labels = new HashMap<>();
+            this.categories = new HashMap<>();
+        }
+
+        /**
+         * Returns the id of the given matching key.
+         *
+         * @param key
+         *         the key as returned by {@link Artifact#getMatchingKey()}
+         * @return the interned id
+         */
+        int label(Object key) {
+            return labels.computeIfAbsent(key, k -> labels.size());
+        }
+
+        /**
+         * Returns the id of the given category key.
+         *
+         * @param key
+         *         the key as returned by {@link Artifact#getCategoryKey()}
+         * @return the interned id
+         */
+        int category(Object key) {
+            return categories.computeIfAbsent(key, k -> categories.size());
+        }
+    }
+
+    /**
+     * The id used for non-existent nodes.
+     */
+    public static final int NONE = -1;
+
+    private final Labels labels;
+
+    /**
+     * The nodes in preorder.
+     */
+    private final List<T> nodes;
+    private final Map<T, Integer> ids;
+
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] depth;
+    private final int[] size;
+    private final int[] label;
+    private final int[] category;
+    private final boolean[] ordered;
+
+    /**
+     * The ids of all nodes grouped by label and sorted by id within each group. The nodes with label <code>l</code>
+     * are stored from index <code>labelStart[l]</code> to <code>labelStart[l + 1] - 1</code>.
+     */
+    private final int[] byLabel;
+    private final int[] labelStart;
+
+    /**
+     * Constructs a new <code>FlatTree</code> for the tree rooted in <code>root</code> using its own
+     * <code>Labels</code>.
+     *
+     * @param root
+     *         the root of the tree
+     */
+    public FlatTree(T root) {
+        this(root, new Labels());
+    }
+
+    /**
+     * Constructs a new <code>FlatTree</code> for the tree rooted in <code>root</code>.
+     *
+     * @param root
+     *         the root of the tree
+     * @param labels
+     *         the <code>Labels</code> used to intern the labels and categories of the nodes
+     */
+    public FlatTree(T root, Labels labels) {
+        this.labels = labels;
+        this.nodes = new ArrayList<>(root.getTreeSize());
+        this.ids = new IdentityHashMap<>();
+
+        Deque<T> wait = new ArrayDeque<>();
+        wait.push(root);
+
+        while (!wait.isEmpty()) {
+            T node = wait.pop();
+
+            ids.put(node, nodes.size());
+            nodes.add(node);
+
+            List<T> children = node.getChildren();
+
+            for (int i = children.size() - 1; i >= 0; i--) {
+                wait.push(children.get(i));
+            }
+        }
+
+        int n = nodes.size();
+
+        this.parent = new int[n];
+        this.depth = new int[n];
+        this.firstChild = new int[n];
+        this.nextSibling = new int[n];
+        this.size = new int[n];
+        this.label = new int[n];
+        this.category = new int[n];
+        this.ordered = new boolean[n];
+
+        parent[0] = NONE;
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(nextSibling, NONE);
+        Arrays.fill(size, 1);
+
+        for (int v = 0; v < n; v++) {
+            for (T child : nodes.get(v).getChildren()) {
+                int c = ids.get(child);
+
+                parent[c] = v;
+                depth[c] = depth[v] + 1;
+            }
+        }
+
+        // in reverse preorder the children of a node are visited from last to first and before the node itself
+        for (int v = n - 1; v > 0; v--) {
+            int p = parent[v];
+
+            nextSibling[v] = firstChild[p];
+            firstChild[p] = v;
+            size[p] += size[v];
+        }
+
+        for (int v = 0; v < n; v++) {
+            T node = nodes.get(v);
+
+            label[v] = labels.label(node.getMatchingKey());
+            category[v] = labels.category(node.getCategoryKey());
+            ordered[v] = node.isOrdered();
+        }
+
+        int maxLabel = -1;
+
+        for (int v = 0; v < n; v++) {
+            maxLabel = Math.max(maxLabel, label[v]);
+        }
+
+        this.byLabel = new int[n];
+        this.labelStart = new int[maxLabel + 2];
+
+        for (int v = 0; v < n; v++) {
+            labelStart[label[v] + 1]++;
+        }
+
+        for (int l = 0; l <= maxLabel; l++) {
+            labelStart[l + 1] += labelStart[l];
+        }
+
+        int[] next = Arrays.copyOf(labelStart, maxLabel + 1);
+
+        for (int v = 0; v < n; v++) {
+            byLabel[next[label[v]]++] = v;
+        }
+    }
+
+    /**
+     * Returns the <code>Labels</code> used by this <code>FlatTree</code>.
+     *
+     * @return the <code>Labels</code>
+     */
+    public Labels getLabels() {
+        return labels;
+    }
+
+    /**
+     * Returns the number of nodes in this <code>FlatTree</code>.
+     *
+     * @return the number of nodes
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the id of the given <code>artifact</code> or {@link #NONE} if it is not part of this
+     * <code>FlatTree</code>.
+     *
+     * @param artifact
+     *         the <code>Artifact</code> whose id is to be returned
+     * @return the id (preorder number) of the <code>artifact</code>
+     */
+    public int id(T artifact) {
+        Integer id = ids.get(artifact);
+        return id == null ? NONE : id;
+    }
+
+    /**
+     * Returns the <code>Artifact</code> with the given id.
+     *
+     * @param v
+     *         the id of the node
+     * @return the <code>Artifact</code>
+     */
+    public T artifact(int v) {
+        return nodes.get(v);
+    }
+
+    /**
+     * Returns the id of the parent of <code>v</code> or {@link #NONE} for the root.
+     *
+     * @param v
+     *         the id of the node
+     * @return the id of the parent
+     */
+    public int parent(int v) {
+        return parent[v];
+    }
+
+    /**
+     * Returns the id of the first child of <code>v</code> or {@link #NONE} for leaves.
+     *
+     * @param v
+     *         the id of the node
+     * @return the id of the first child
+     */
+    public int firstChild(int v) {
+        return firstChild[v];
+    }
+
+    /**
+     * Returns the id of the next sibling of <code>v</code> or {@link #NONE} if <code>v</code> is the last child of
+     * its parent.
+     *
+     * @param v
+     *         the id of the node
+     * @return the id of the next sibling
+     */
+    public int nextSibling(int v) {
+        return nextSibling[v];
+    }
+
+    /**
+     * Returns the depth of <code>v</code>. The root has depth 0.
+     *
+     * @param v
+     *         the id of the node
+     * @return the depth
+     */
+    public int depth(int v) {
+        return depth[v];
+    }
+
+    /**
+     * Returns the size of the subtree rooted in <code>v</code>. The subtree consists of the nodes with ids
+     * <code>v</code> to <code>v + subtreeSize(v) - 1</code>.
+     *
+     * @param v
+     *         the id of the node
+     * @return the number of nodes in the subtree
+     */
+    public int subtreeSize(int v) {
+        return size[v];
+    }
+
+    /**
+     * Returns the interned id of the matching key of <code>v</code>.
+     *
+     * @param v
+     *         the id of the node
+     * @return the label id
+     * @see Artifact#getMatchingKey()
+     */
+    public int label(int v) {
+        return label[v];
+    }
+
+    /**
+     * Returns the interned id of the category key of <code>v</code>.
+     *
+     * @param v
+     *         the id of the node
+     * @return the category id
+     * @see Artifact#getCategoryKey()
+     */
+    public int category(int v) {
+        return category[v];
+    }
+
+    /**
+     * Returns whether <code>v</code> is ordered.
+     *
+     * @param v
+     *         the id of the node
+     * @return whether the node is ordered
+     * @see Artifact#isOrdered()
+     */
+    public boolean isOrdered(int v) {
+        return ordered[v];
+    }
+
+    /**
+     * Returns the first node (in preorder) of the subtree rooted in <code>v</code> that matches the node
+     * <code>w</code> of <code>other</code> and is at most <code>maxDepth</code> levels below <code>v</code>. The
+     * nodes carrying the label of <code>w</code> are looked up in an index, the subtree is not traversed.
+     *
+     * @param v
+     *         the id of the root of the subtree to search in
+     * @param other
+     *         the other <code>FlatTree</code>, it must use the same <code>Labels</code> as this one
+     * @param w
+     *         the id of the node in <code>other</code> to find a match for
+     * @param maxDepth
+     *         the maximum depth of nodes to consider relative to <code>v</code> (<code>v</code> is at depth 0)
+     * @return the id of the matching node or {@link #NONE}
+     * @throws IllegalArgumentException
+     *         if <code>other</code> does not use the same <code>Labels</code>
+     */
+    public int findMatch(int v, FlatTree<T> other, int w, int maxDepth) {
+
+        if (labels != other.labels) {
+            throw new IllegalArgumentException("The FlatTrees do not share their Labels.");
+        }
+
+        int l = other.label[w];
+
+        if (maxDepth < 0 || l + 1 >= labelStart.length) {
+            return NONE;
+        }
+
+        int from = labelStart[l];
+        int to = labelStart[l + 1];
+        int end = v + size[v];
+
+        int i = Arrays.binarySearch(byLabel, from, to, v);
+
+        if (i < 0) {
+            i = -(i + 1);
+        }
+
+        for (; i < to && byLabel[i] < end; i++) {
+            int u = byLabel[i];
+
+            if (depth[u] - depth[v] <= maxDepth) {
+                return u;
+            }
+        }
+
+        return NONE;
+    }
+
+    /**
+     * Returns whether the node <code>v</code> of this <code>FlatTree</code> matches the node <code>w</code> of
+     * <code>other</code>.
+     *
+     * @param v
+     *         the id of the node in this tree
+     * @param other
+     *         the other <code>FlatTree</code>, it must use the same <code>Labels</code> as this one
+     * @param w
+     *         the id of the node in <code>other</code>
+     * @return true iff the nodes match
+     * @throws IllegalArgumentException
+     *         if <code>other</code> does not use the same <code>Labels</code>
+     */
+    public boolean matches(int v, FlatTree<T> other, int w) {
+
+        if (labels != other.labels) {
+            throw new IllegalArgumentException("The FlatTrees do not share their Labels.");
+        }
+
+        return label[v] == other.label[w];
+    }
+
+    /**
+     * Returns whether the category of the node <code>v</code> of this <code>FlatTree</code> matches the category of
+     * the node <code>w</code> of <code>other</code>.
+     *
+     * @param v
+     *         the id of the node in this tree
+     * @param other
+     *         the other <code>FlatTree</code>, it must use the same <code>Labels</code> as this one
+     * @param w
+     *         the id of the node in <code>other</code>
+     * @return true iff the categories of the nodes match
+     * @throws IllegalArgumentException
+     *         if <code>other</code> does not use the same <code>Labels</code>
+     */
+    public boolean categoryMatches(int v, FlatTree<T> other, int w) {
+
+        if (labels != other.labels) {
+            throw new IllegalArgumentException("The FlatTrees do not share their Labels.");
+        }
+
+        return category[v] == other.category[w];
+    }
+}
@@ -24,6 +24,7 @@
 package de.fosd.jdime.artifact.ast;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
@@ -44,11 +45,13 @@
 import de.fosd.jdime.operations.Operation;
 import de.fosd.jdime.stats.KeyEnums;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.util.Tuple;
 import org.extendj.ast.ASTNode;
 import org.extendj.ast.Block;
 import org.extendj.ast.ClassDecl;
 import org.extendj.ast.CompilationUnit;
 import org.extendj.ast.ConstructorDecl;
+import org.extendj.ast.FileClassSource;
 import org.extendj.ast.ImportDecl;
 import org.extendj.ast.InterfaceDecl;
 import org.extendj.ast.Literal;
@@ -58,6 +61,7 @@
 import org.extendj.ast.TryStmt;
 
 import static de.fosd.jdime.strdump.DumpMode.PLAINTEXT_TREE;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * @author Olaf Lessenich
@@ -112,15 +116,49 @@ private static ASTNode<?> parse(FileArtifact artifact) {
      */
     protected ASTNode<?> astnode;
 
+    /**
+     * The code the <code>ASTNodeArtifact</code> this one was copied from was parsed from. <code>null</code> unless
+     * it was recorded using {@link #setOriginalSource(FileArtifact)}.
+     */
+    private OriginalSource source;
+
+    /**
+     * The <code>LabelTable</code> the label of the {@link #astnode} is interned in.
+     */
+    private final LabelTable labels;
+
+    /**
+     * The id of the label of the {@link #astnode} in {@link #labels} and the corresponding canonical key. The label of
+     * some <code>ASTNode</code>s (e.g. <code>ImportDecl</code>) depends on their children. It is therefore re-interned
+     * whenever the {@link #astnode} is replaced or relinked with its children by {@link #rebuildAST()}.
+     */
+    private int label;
+    private Tuple<Class<?>, String> labelKey;
+
     /**
      * Constructs a new <code>ASTNodeArtifact</code> (tree) representing the AST of the code in <code>artifact</code>.
-     * All members of the tree will be in the same <code>Revision</code> as <code>artifact</code>.
+     * All members of the tree will be in the same <code>Revision</code> as <code>artifact</code>. The tree uses a
+     * new <code>LabelTable</code>.
      *
      * @param artifact
      *         the <code>FileArtifact</code> containing the code to be parsed
      */
     public ASTNodeArtifact(FileArtifact artifact) {
-        this(artifact.getRevision(), new AtomicInteger()::getAndIncrement, parse(artifact));
+        this(artifact, new LabelTable());
+    }
+
+    /**
+     * Constructs a new <code>ASTNodeArtifact</code> (tree) representing the AST of the code in <code>artifact</code>.
+     * All members of the tree will be in the same <code>Revision</code> as <code>artifact</code>. Trees that are to
+     * be matched against each other should share their <code>LabelTable</code>.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> containing the code to be parsed
+     * @param labels
+     *         the <code>LabelTable</code> to intern the labels of the tree in
+     */
+    public ASTNodeArtifact(FileArtifact artifact, LabelTable labels) {
+        this(artifact.getRevision(), new AtomicInteger()::getAndIncrement, parse(artifact), labels);
     }
 
     /**
@@ -129,9 +167,11 @@ public ASTNodeArtifact(FileArtifact artifact) {
      *
      * @param revision
      *         the <code>Revision</code> for this <code>ASTNodeArtifact</code>
+     * @param labels
+     *         the <code>LabelTable</code> to intern the label in
      */
-    protected ASTNodeArtifact(Revision revision) {
-        this(revision, new AtomicInteger()::getAndIncrement, new ASTNode<>());
+    protected ASTNodeArtifact(Revision revision, LabelTable labels) {
+        this(revision, new AtomicInteger()::getAndIncrement, new ASTNode<>(), labels);
     }
 
     /**
@@ -142,9 +182,11 @@ protected ASTNodeArtifact(Revision revision) {
      *         the <code>Revision</code> for this <code>ASTNodeArtifact</code>
      * @param astNode
      *         the <code>ASTNode</code> to encapsulate
+     * @param labels
+     *         the <code>LabelTable</code> to intern the labels in
      */
-    private ASTNodeArtifact(Revision revision, ASTNode<?> astNode) {
-        this(revision, new AtomicInteger()::getAndIncrement, astNode);
+    private ASTNodeArtifact(Revision revision, ASTNode<?> astNode, LabelTable labels) {
+        this(revision, new AtomicInteger()::getAndIncrement, astNode, labels);
     }
 
     /**
@@ -157,11 +199,15 @@ private ASTNodeArtifact(Revision revision, ASTNode<?> astNode) {
      *         supplies first the number for this artifact and then in DFS order the number for its children
      * @param astNode
      *         the <code>ASTNode</code> to encapsulate
+     * @param labels
+     *         the <code>LabelTable</code> to intern the labels in
      */
-    private ASTNodeArtifact(Revision revision, Supplier<Integer> number, ASTNode<?> astNode) {
+    private ASTNodeArtifact(Revision revision, Supplier<Integer> number, ASTNode<?> astNode, LabelTable labels) {
         super(revision, number.get());
 
         this.astnode = astNode;
+        this.labels = labels;
+        internLabel();
         initializeChildren(number);
     }
 
@@ -180,6 +226,67 @@ protected ASTNodeArtifact(ASTNodeArtifact toCopy) {
         } catch (CloneNotSupportedException e) {
             throw new RuntimeException(e);
         }
+
+        this.source = toCopy.source;
+        this.labels = toCopy.labels;
+        this.label = toCopy.label;
+        this.labelKey = toCopy.labelKey;
+    }
+
+    /**
+     * Copies the tree under the given <code>ASTNodeArtifact</code>. All copies encapsulate a copy of the
+     * {@link #astnode} of the <code>ASTNodeArtifact</code> they were copied from that is detached from its parent
+     * and children. The copied <code>ASTNode</code>s must be linked by {@link #rebuildAST()}. The copies are in
+     * the given <code>Revision</code> and have their labels interned in the given <code>LabelTable</code>.
+     *
+     * @param toCopy
+     *         the root of the tree to copy
+     * @param revision
+     *         the <code>Revision</code> for the copies
+     * @param labels
+     *         the <code>LabelTable</code> to intern the labels of the copies in
+     * @see #copyTree(FileArtifact, LabelTable)
+     */
+    private ASTNodeArtifact(ASTNodeArtifact toCopy, Revision revision, LabelTable labels) {
+        super(toCopy);
+
+        this.astnode = toCopy.astnode.copy();
+
+        this.source = toCopy.source;
+        this.labels = labels;
+        this.labelKey = toCopy.labelKey;
+        this.label = labels.intern(labelKey);
+
+        setRevision(revision);
+
+        List<ASTNodeArtifact> children = new ArtifactList<>();
+
+        for (ASTNodeArtifact child : toCopy.getChildren()) {
+            ASTNodeArtifact copy = new ASTNodeArtifact(child, revision, labels);
+
+            copy.setParent(this);
+            children.add(copy);
+        }
+
+        setChildren(children);
+    }
+
+    /**
+     * (Re-)Interns the label of the {@link #astnode}. Must be called whenever the {@link #astnode} is replaced or its
+     * children change.
+     */
+    final void internLabel() {
+        label = labels.intern(astnode);
+        labelKey = labels.key(label);
+    }
+
+    /**
+     * Returns the <code>LabelTable</code> the labels of this <code>ASTNodeArtifact</code> are interned in.
+     *
+     * @return the <code>LabelTable</code>
+     */
+    public final LabelTable getLabelTable() {
+        return labels;
     }
 
     /**
@@ -192,7 +299,7 @@ private void initializeChildren(Supplier<Integer> number) {
         List<ASTNodeArtifact> children = new ArtifactList<>();
 
         for (int i = 0; i < astnode.getNumChild(); i++) {
-            ASTNodeArtifact child = new ASTNodeArtifact(getRevision(), number, astnode.getChild(i));
+            ASTNodeArtifact child = new ASTNodeArtifact(getRevision(), number, astnode.getChild(i), labels);
 
             child.setParent(this);
             children.add(child);
@@ -201,6 +308,43 @@ private void initializeChildren(Supplier<Integer> number) {
         setChildren(children);
     }
 
+    /**
+     * Records the code in <code>artifact</code> as the code the tree under this <code>ASTNodeArtifact</code> was
+     * parsed from so that {@link #prettyPrint(Appendable, boolean)} may copy unchanged <code>Block</code>s from it.
+     * The tree must have been parsed from <code>artifact</code> (or be an unmodified copy of such a tree) and must not
+     * have been merged yet.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> the tree was parsed from
+     */
+    public void setOriginalSource(FileArtifact artifact) {
+
+        if (!artifact.isEmpty()) {
+            setOriginalSource(new OriginalSource(artifact.getContent(), getTreeSize()));
+        }
+    }
+
+    /**
+     * Sets the {@link #source} of all <code>ASTNodeArtifact</code>s in the tree under this one and records their tree
+     * sizes in it.
+     *
+     * @param source
+     *         the code the tree was parsed from
+     * @return the size of the tree under this <code>ASTNodeArtifact</code>
+     */
+    private int setOriginalSource(OriginalSource source) {
+        int size = 1;
+
+        for (ASTNodeArtifact child : getChildren()) {
+            size += child.setOriginalSource(source);
+        }
+
+        this.source = source;
+        source.setTreeSize(getNumber(), size);
+
+        return size;
+    }
+
     /**
      * Returns whether the {@link ASTNode} contained in this {@link ASTNodeArtifact}
      * requires a fixed number of children.
@@ -230,13 +374,106 @@ public ASTNodeArtifact copy() {
         return new ASTNodeArtifact(this);
     }
 
+    /**
+     * Copies the tree under this <code>ASTNodeArtifact</code> as if it had been parsed from <code>artifact</code>.
+     * The copies are in the <code>Revision</code> of <code>artifact</code> and have their labels interned in the
+     * given <code>LabelTable</code>. They encapsulate a new ExtendJ AST that shares no <code>ASTNode</code> with this
+     * tree, so neither tree is affected by rebuilding the other one. The <code>CompilationUnit</code>s of the new
+     * AST refer to the file of <code>artifact</code>.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> whose code this tree was parsed from
+     * @param labels
+     *         the <code>LabelTable</code> to intern the labels of the copies in
+     * @return the root of the copied tree
+     */
+    ASTNodeArtifact copyTree(FileArtifact artifact, LabelTable labels) {
+        ASTNodeArtifact copy = new ASTNodeArtifact(this, artifact.getRevision(), labels);
+        String path = artifact.getFile().getPath();
+
+        copy.rebuildAST();
+
+        Artifacts.dfsStream(copy).map(ASTNodeArtifact::getASTNode)
+                 .filter(CompilationUnit.class::isInstance).map(CompilationUnit.class::cast)
+                 .forEach(cu -> cu.setClassSource(new FileClassSource(cu.getClassSource().getSourcePath(), path)));
+
+        return copy;
+    }
+
     @Override
     public ASTNodeArtifact createEmptyArtifact(Revision revision) {
-        return new ASTNodeArtifact(revision);
+        return new ASTNodeArtifact(revision, labels);
     }
 
     @Override
     public String prettyPrint() {
+        prepareForPrinting();
+        return astnode.prettyPrint();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The output of the ExtendJ pretty printer is decoded and appended to <code>out</code> while it is produced.
+     */
+    @Override
+    public void prettyPrint(Appendable out) throws IOException {
+        prettyPrint(out, false);
+    }
+
+    /**
+     * Pretty prints this <code>ASTNodeArtifact</code> to <code>out</code>. If <code>preserveSource</code> is set,
+     * every {@link Block} in the tree that is unchanged compared to the code it was parsed from is not pretty printed
+     * but copied from that code. Such <code>Block</code>s retain their original formatting and comments.
+     *
+     * @param out
+     *         the <code>Appendable</code> to print to
+     * @param preserveSource
+     *         whether to copy unchanged <code>Block</code>s from the code they were parsed from
+     * @throws IOException
+     *         if <code>out</code> throws an <code>IOException</code>
+     * @throws AbortException
+     *         if printing fails while <code>preserveSource</code> is set
+     * @see #prettyPrint(Appendable)
+     */
+    public void prettyPrint(Appendable out, boolean preserveSource) throws IOException {
+        prepareForPrinting();
+
+        AppendableOutputStream bytes = new AppendableOutputStream(out, UTF_8);
+        PrintStream printStream = new PrintStream(bytes, false, UTF_8.name());
+        Deque<Runnable> restore = new ArrayDeque<>();
+
+        try {
+            if (preserveSource) {
+                substituteOriginalSource(restore);
+            }
+
+            astnode.prettyPrint(printStream);
+        } catch (RuntimeException e) {
+
+            if (preserveSource) {
+                // falling back to another strategy would silently produce worse output than not preserving the source
+                throw new AbortException("Failed to pretty print " + getId() + " preserving the original source.", e);
+            }
+
+            throw e;
+        } finally {
+            restore.forEach(Runnable::run);
+        }
+
+        printStream.flush();
+
+        if (printStream.checkError()) {
+            throw new IOException("Could not append the pretty printed " + getId() + " to the Appendable.");
+        }
+
+        bytes.close();
+    }
+
+    /**
+     * Rebuilds the ExtendJ AST from this <code>ASTNodeArtifact</code> tree so that it may be pretty printed.
+     */
+    private void prepareForPrinting() {
         assert (astnode != null);
 
         try {
@@ -250,8 +487,74 @@ public String prettyPrint() {
         }
 
         LOG.finest(() -> Artifacts.root(this).dump(PLAINTEXT_TREE));
+    }
 
-        return astnode.prettyPrint();
+    /**
+     * Replaces the {@link Block}s in the ExtendJ AST under this <code>ASTNodeArtifact</code> that are unchanged
+     * compared to the code they were parsed from with {@link OriginalSourceBlock}s printing that code. Only
+     * {@link Block}s whose parents print them as a child are replaced (see
+     * {@link OriginalSourceBlock#canReplace(ASTNode)}). Actions undoing the replacements are pushed onto
+     * <code>restore</code>.
+     *
+     * @param restore
+     *         the <code>Deque</code> to push the actions restoring the ExtendJ AST onto
+     */
+    private void substituteOriginalSource(Deque<Runnable> restore) {
+        ASTNodeArtifact parent = getParent();
+
+        if (source != null && parent != null && astnode instanceof Block && unchangedTreeSize(source, getNumber()) > 0) {
+            String text = source.text(astnode);
+            ASTNode<?> parentNode = parent.astnode;
+            int index = parentNode.getIndexOfChild(astnode);
+
+            // The region ExtendJ records for a Block must span exactly its braces.
+            if (text != null && text.startsWith("{") && text.endsWith("}") && index >= 0
+                    && OriginalSourceBlock.canReplace(parentNode)) {
+                ASTNode<?> block = astnode;
+
+                parentNode.setChild(new OriginalSourceBlock(text), index);
+                restore.push(() -> parentNode.setChild(block, index));
+                return;
+            }
+        }
+
+        for (ASTNodeArtifact child : getChildren()) {
+            child.substituteOriginalSource(restore);
+        }
+    }
+
+    /**
+     * Returns the size of the tree under this <code>ASTNodeArtifact</code> if it is equal to the tree under the
+     * <code>ASTNodeArtifact</code> with the given <code>number</code> parsed from <code>source</code>. Both trees are
+     * equal if they consist of (copies of) the same parsed <code>ASTNodeArtifact</code>s in the same DFS order and
+     * structure.
+     *
+     * @param source
+     *         the code the tree was parsed from
+     * @param number
+     *         the number of the <code>ASTNodeArtifact</code> this one is expected to be a copy of
+     * @return the size of the tree or -1 if it is not unchanged
+     */
+    private int unchangedTreeSize(OriginalSource source, int number) {
+
+        if (this.source != source || getNumber() != number || isConflict() || isChoice()
+                || astnode instanceof SemiStructuredASTNode) {
+            return -1;
+        }
+
+        int size = 1;
+
+        for (ASTNodeArtifact child : getChildren()) {
+            int childSize = child.unchangedTreeSize(source, number + size);
+
+            if (childSize < 0) {
+                return -1;
+            }
+
+            size += childSize;
+        }
+
+        return size == source.getTreeSize(number) ? size : -1;
     }
 
     @Override
@@ -266,7 +569,7 @@ public final String getId() {
 
     @Override
     protected String hashId() {
-        return astnode.getMatchingRepresentation();
+        return labelKey.y;
     }
 
     @Override
@@ -384,7 +687,7 @@ public Optional<Supplier<String>> getUniqueLabel() {
         boolean hasLabel = ImportDecl.class.isAssignableFrom(astnode.getClass())
                             || Literal.class.isAssignableFrom(astnode.getClass());
 
-        return hasLabel ? Optional.of(() -> astnode.getMatchingRepresentation()) : Optional.empty();
+        return hasLabel ? Optional.of(() -> labelKey.y) : Optional.empty();
     }
 
     @Override
@@ -417,13 +720,13 @@ public final boolean matches(final ASTNodeArtifact other) {
 
         LOG.finest(() -> "match(" + getId() + ", " + other.getId() + ")");
 
-        LOG.finest(() -> {
-            String matchingRep = astnode.getMatchingRepresentation();
-            String otherMatchingRep = other.astnode.getMatchingRepresentation();
-            return String.format("Try Matching: {%s} and {%s}", matchingRep, otherMatchingRep);
-        });
+        LOG.finest(() -> String.format("Try Matching: {%s} and {%s}", labelKey.y, other.labelKey.y));
 
-        return astnode.matches(other.astnode);
+        if (labels == other.labels) {
+            return label == other.label;
+        }
+
+        return labelKey.equals(other.labelKey);
     }
 
     @Override
@@ -431,6 +734,16 @@ public final boolean categoryMatches(ASTNodeArtifact other) {
         return astnode.getClass().equals(other.astnode.getClass());
     }
 
+    @Override
+    public final Object getMatchingKey() {
+        return labelKey;
+    }
+
+    @Override
+    public final Object getCategoryKey() {
+        return astnode.getClass();
+    }
+
     @Override
     public void merge(MergeOperation<ASTNodeArtifact> operation, MergeContext context) {
         Objects.requireNonNull(operation, "operation must not be null!");
@@ -566,6 +879,7 @@ private void rebuildAST() {
 
         astnode.jdimeId = getId();
         astnode.setChildren(newChildren);
+        internLabel();
 
         if (!isVirtual() && hasFixedNumberOfChildren() && getNumChildren() != astnode.getNumChildNoTransform()) {
             String msg = String.format("The %s requires a fixed number of children. JDime children: %d ExtendJ " +
@@ -578,7 +892,7 @@ private void rebuildAST() {
 
     @Override
     public final String toString() {
-        return astnode.getMatchingRepresentation();
+        return labelKey.y;
     }
 
     @Override
@@ -604,7 +918,7 @@ public ASTNodeArtifact createConflictArtifact(ASTNodeArtifact left, ASTNodeArtif
             throw new RuntimeException("Failed to clone an ASTNode for a conflict artifact.", e);
         }
 
-        ASTNodeArtifact conflict = new ASTNodeArtifact(MergeScenario.CONFLICT, typeNode);
+        ASTNodeArtifact conflict = new ASTNodeArtifact(MergeScenario.CONFLICT, typeNode, labels);
         conflict.setConflict(left, right);
 
         return conflict;
@@ -625,7 +939,7 @@ public ASTNodeArtifact createChoiceArtifact(String condition, ASTNodeArtifact ar
             throw new RuntimeException("Failed to clone an ASTNode for a choice artifact.", e);
         }
 
-        ASTNodeArtifact choice = new ASTNodeArtifact(MergeScenario.CHOICE, typeNode);
+        ASTNodeArtifact choice = new ASTNodeArtifact(MergeScenario.CHOICE, typeNode, labels);
         choice.setChoice(condition, artifact);
 
         return choice;
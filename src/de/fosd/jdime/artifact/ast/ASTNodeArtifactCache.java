@@ -0,0 +1,176 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import de.fosd.jdime.artifact.file.FileArtifact;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * A bounded cache of parsed <code>ASTNodeArtifact</code> trees keyed by the hash of the code they were parsed from.
+ * Files with equal content that are merged repeatedly (in batch runs, by the <code>NWayStrategy</code> or the
+ * <code>CombinedStrategy</code>) are only parsed once. Every request returns a new tree copied from the cached one
+ * including its ExtendJ <code>ASTNode</code>s. The cached trees themselves are never handed out, merging or printing
+ * a returned tree therefore does not affect the trees returned for other requests.
+ * <p>
+ * The cache holds at most {@link #capacity} <code>ASTNodeArtifact</code>s and evicts the least recently used trees
+ * first. The trees are only softly reachable from the cache and are therefore also evicted if memory runs low.
+ */
+public final class ASTNodeArtifactCache {
+
+    private static final Logger LOG = Logger.getLogger(ASTNodeArtifactCache.class.getCanonicalName());
+
+    /**
+     * A cached tree and its size.
+     */
+    private static final class Entry {
+
+        private final SoftReference<ASTNodeArtifact> tree;
+        private final int size;
+
+        private Entry(ASTNodeArtifact tree) {
+            this.tree = new SoftReference<>(tree);
+            this.size = tree.getTreeSize();
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Entry> trees;
+    private long size;
+
+    /**
+     * Constructs a new <code>ASTNodeArtifactCache</code> holding at most <code>capacity</code>
+     * <code>ASTNodeArtifact</code>s. A capacity of zero or less disables the cache.
+     *
+     * @param capacity
+     *         the maximum number of <code>ASTNodeArtifact</code>s in all cached trees
+     */
+    public ASTNodeArtifactCache(int capacity) {
+        this.capacity = capacity;
+        this.trees = new LinkedHashMap<>(16, 0.75f, true);
+        this.size = 0;
+    }
+
+    /**
+     * Returns whether this cache stores any trees.
+     *
+     * @return true iff the capacity of this cache is positive
+     */
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    /**
+     * Returns an <code>ASTNodeArtifact</code> tree representing the AST of the code in <code>artifact</code> as
+     * constructed by {@link ASTNodeArtifact#ASTNodeArtifact(FileArtifact, LabelTable)}. If a tree for equal code is
+     * cached, it is copied instead of parsing the code again.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code> containing the code to be parsed
+     * @param labels
+     *         the <code>LabelTable</code> to intern the labels of the tree in
+     * @return the <code>ASTNodeArtifact</code> tree
+     */
+    public ASTNodeArtifact parse(FileArtifact artifact, LabelTable labels) {
+
+        if (!isEnabled() || artifact.isEmpty()) {
+            return new ASTNodeArtifact(artifact, labels);
+        }
+
+        String key = DigestUtils.sha256Hex(artifact.getContent());
+        ASTNodeArtifact tree = get(key);
+
+        if (tree == null) {
+            LOG.finest(() -> "Parsing " + artifact.getId() + " for the AST cache.");
+
+            tree = new ASTNodeArtifact(artifact, new LabelTable());
+            put(key, tree);
+        } else {
+            LOG.finest(() -> "Copying the cached AST for " + artifact.getId() + ".");
+        }
+
+        return tree.copyTree(artifact, labels);
+    }
+
+    /**
+     * Returns the cached tree for the given key or <code>null</code> if there is none.
+     *
+     * @param key
+     *         the hash of the code
+     * @return the cached tree or <code>null</code>
+     */
+    private synchronized ASTNodeArtifact get(String key) {
+        Entry entry = trees.get(key);
+
+        if (entry == null) {
+            return null;
+        }
+
+        ASTNodeArtifact tree = entry.tree.get();
+
+        if (tree == null) {
+            trees.remove(key);
+            size -= entry.size;
+        }
+
+        return tree;
+    }
+
+    /**
+     * Caches the given tree and evicts the least recently used trees until the cache holds at most
+     * {@link #capacity} <code>ASTNodeArtifact</code>s.
+     *
+     * @param key
+     *         the hash of the code
+     * @param tree
+     *         the tree parsed from the code
+     */
+    private synchronized void put(String key, ASTNodeArtifact tree) {
+        Entry entry = new Entry(tree);
+
+        if (entry.size > capacity) {
+            return;
+        }
+
+        Entry old = trees.put(key, entry);
+
+        if (old != null) {
+            size -= old.size;
+        }
+
+        size += entry.size;
+
+        for (Iterator<Entry> it = trees.values().iterator(); size > capacity && it.hasNext(); ) {
+            Entry eldest = it.next();
+
+            it.remove();
+            size -= eldest.size;
+        }
+    }
+}
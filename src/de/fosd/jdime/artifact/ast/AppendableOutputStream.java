@@ -0,0 +1,134 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * An <code>OutputStream</code> decoding the bytes written to it and appending the resulting characters to an
+ * <code>Appendable</code>. Used to direct the output of the ExtendJ pretty printer (which requires a
+ * <code>PrintStream</code>) to an <code>Appendable</code> without buffering all of it.
+ */
+final class AppendableOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Appendable out;
+    private final CharsetDecoder decoder;
+
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+
+    /**
+     * Constructs a new <code>AppendableOutputStream</code>.
+     *
+     * @param out
+     *         the <code>Appendable</code> to append the decoded characters to
+     * @param charset
+     *         the <code>Charset</code> to decode the bytes with
+     */
+    AppendableOutputStream(Appendable out, Charset charset) {
+        this.out = out;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                                           .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        this.chars = CharBuffer.allocate(BUFFER_SIZE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+
+        while (len > 0) {
+            int n = Math.min(len, bytes.remaining());
+
+            bytes.put(b, off, n);
+            off += n;
+            len -= n;
+
+            decode(false);
+        }
+    }
+
+    /**
+     * Decodes the buffered bytes and appends the resulting characters to {@link #out}. Bytes of incomplete
+     * characters remain in the buffer unless <code>endOfInput</code> is true.
+     *
+     * @param endOfInput
+     *         whether no more bytes will follow
+     * @throws IOException
+     *         if the <code>Appendable</code> throws an <code>IOException</code>
+     */
+    private void decode(boolean endOfInput) throws IOException {
+        CoderResult result;
+
+        bytes.flip();
+
+        do {
+            result = decoder.decode(bytes, chars, endOfInput);
+            drain();
+        } while (result.isOverflow());
+
+        bytes.compact();
+    }
+
+    /**
+     * Appends the decoded characters to {@link #out}.
+     *
+     * @throws IOException
+     *         if the <code>Appendable</code> throws an <code>IOException</code>
+     */
+    private void drain() throws IOException {
+        chars.flip();
+        out.append(chars);
+        chars.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Decodes the remaining bytes. The <code>Appendable</code> is not closed.
+     */
+    @Override
+    public void close() throws IOException {
+        decode(true);
+
+        while (decoder.flush(chars).isOverflow()) {
+            drain();
+        }
+
+        drain();
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.fosd.jdime.util.Tuple;
+import org.extendj.ast.ASTNode;
+
+/**
+ * Interns the matching representations of the <code>ASTNode</code>s encapsulated by <code>ASTNodeArtifact</code>s.
+ * Every distinct pair of <code>ASTNode</code> class and matching representation is assigned an integer id so that
+ * two <code>ASTNodeArtifact</code>s sharing a <code>LabelTable</code> match iff their ids are equal. One table is
+ * intended to be shared by all <code>ASTNodeArtifact</code> trees taking part in one merge.
+ *
+ * @see ASTNode#matches(ASTNode)
+ */
+public final class LabelTable {
+
+    private final Map<Tuple<Class<?>, String>, Integer> ids;
+    private final List<Tuple<Class<?>, String>> keys;
+
+    /**
+     * Constructs a new empty <code>LabelTable</code>.
+     */
+    public LabelTable() {
+        this.ids = new HashMap<>();
+        this.keys = new ArrayList<>();
+    }
+
+    /**
+     * Returns the id of the label of the given <code>ASTNode</code>, assigning a new one if the label has not been
+     * seen before.
+     *
+     * @param node
+     *         the <code>ASTNode</code> whose label is to be interned
+     * @return the id of the label
+     */
+    int intern(ASTNode<?> node) {
+        return intern(Tuple.of(node.getClass(), node.getMatchingRepresentation()));
+    }
+
+    /**
+     * Returns the id of the label with the given canonical key (obtained from another <code>LabelTable</code>),
+     * assigning a new one if the label has not been seen before.
+     *
+     * @param key
+     *         the key of the label
+     * @return the id of the label
+     */
+    synchronized int intern(Tuple<Class<?>, String> key) {
+        return ids.computeIfAbsent(key, k -> {
+            keys.add(k);
+            return keys.size() - 1;
+        });
+    }
+
+    /**
+     * Returns the canonical key (the <code>ASTNode</code> class and matching representation) of the label with the
+     * given id.
+     *
+     * @param id
+     *         the id of the label
+     * @return the key of the label
+     */
+    synchronized Tuple<Class<?>, String> key(int id) {
+        return keys.get(id);
+    }
+
+    /**
+     * Returns the number of distinct labels in this table.
+     *
+     * @return the number of labels
+     */
+    public synchronized int size() {
+        return keys.size();
+    }
+}
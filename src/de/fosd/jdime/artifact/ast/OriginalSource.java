@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.util.Arrays;
+
+import beaver.Symbol;
+import org.extendj.ast.ASTNode;
+
+/**
+ * The code an <code>ASTNodeArtifact</code> tree was parsed from. Every <code>ASTNodeArtifact</code> of the tree
+ * (and every copy of one) refers to it so that subtrees which are unchanged compared to that code may be printed as
+ * they were written.
+ */
+final class OriginalSource {
+
+    private final String content;
+
+    /**
+     * The offsets of the first characters of the lines of the {@link #content}.
+     */
+    private final int[] lineStarts;
+
+    /**
+     * The tree sizes of the parsed <code>ASTNodeArtifact</code>s indexed by their numbers.
+     */
+    private final int[] treeSizes;
+
+    /**
+     * Constructs a new <code>OriginalSource</code> for a tree of <code>size</code> <code>ASTNodeArtifact</code>s
+     * parsed from the given <code>content</code>.
+     *
+     * @param content
+     *         the parsed code
+     * @param size
+     *         the size of the parsed tree
+     */
+    OriginalSource(String content, int size) {
+        this.content = content;
+        this.lineStarts = lineStarts(content);
+        this.treeSizes = new int[size];
+
+        Arrays.fill(treeSizes, -1);
+    }
+
+    /**
+     * Returns the offsets of the first characters of the lines in <code>content</code>. Lines are terminated by the
+     * same characters as those matched by the <code>\R</code> regular expression.
+     *
+     * @param content
+     *         the content to split into lines
+     * @return the offsets of the lines
+     */
+    private static int[] lineStarts(String content) {
+        int[] starts = new int[16];
+        int lines = 1;
+
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+
+            if (c == '\r' && i + 1 < content.length() && content.charAt(i + 1) == '\n') {
+                continue; // the '\n' terminates the line
+            }
+
+            switch (c) {
+                case '\r':
+                case '\n':
+                case '\u000B':
+                case '\f':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    if (lines == starts.length) {
+                        starts = Arrays.copyOf(starts, lines * 2);
+                    }
+
+                    starts[lines++] = i + 1;
+                    break;
+            }
+        }
+
+        return Arrays.copyOf(starts, lines);
+    }
+
+    /**
+     * Records the size the tree under the parsed <code>ASTNodeArtifact</code> with the given <code>number</code> had.
+     *
+     * @param number
+     *         the number of the <code>ASTNodeArtifact</code>
+     * @param size
+     *         the size of its tree
+     */
+    void setTreeSize(int number, int size) {
+        treeSizes[number] = size;
+    }
+
+    /**
+     * Returns the size the tree under the parsed <code>ASTNodeArtifact</code> with the given <code>number</code> had
+     * or -1 if no such <code>ASTNodeArtifact</code> was parsed.
+     *
+     * @param number
+     *         the number of the <code>ASTNodeArtifact</code>
+     * @return the size of its tree
+     */
+    int getTreeSize(int number) {
+        return number >= 0 && number < treeSizes.length ? treeSizes[number] : -1;
+    }
+
+    /**
+     * Returns the code ExtendJ parsed the given <code>node</code> from.
+     *
+     * @param node
+     *         the <code>ASTNode</code> whose code is to be returned
+     * @return the code or <code>null</code> if ExtendJ did not record a valid region of the code for the node
+     */
+    String text(ASTNode<?> node) {
+        int start = offset(node.getStart());
+        int end = offset(node.getEnd());
+
+        if (start < 0 || end < start) {
+            return null;
+        }
+
+        return content.substring(start, end + 1);
+    }
+
+    /**
+     * Converts a position as encoded by {@link Symbol#makePosition(int, int)} to an offset in the {@link #content}.
+     *
+     * @param position
+     *         the position to convert
+     * @return the offset or -1 if the position lies outside of the {@link #content}
+     */
+    private int offset(int position) {
+        // OF COURSE lines and columns are 1 indexed in ExtendJ
+        int line = Symbol.getLine(position) - 1;
+        int column = Symbol.getColumn(position) - 1;
+
+        if (line < 0 || line >= lineStarts.length || column < 0) {
+            return -1;
+        }
+
+        int offset = lineStarts[line] + column;
+        int lineEnd = (line + 1 < lineStarts.length) ? lineStarts[line + 1] : content.length();
+
+        return offset < lineEnd ? offset : -1;
+    }
+}
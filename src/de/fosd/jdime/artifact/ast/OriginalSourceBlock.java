@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact.ast;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.extendj.ast.ASTNode;
+import org.extendj.ast.BasicCatch;
+import org.extendj.ast.Block;
+import org.extendj.ast.BlockLambdaBody;
+import org.extendj.ast.DoStmt;
+import org.extendj.ast.EnhancedForStmt;
+import org.extendj.ast.ForStmt;
+import org.extendj.ast.GenericMethodDecl;
+import org.extendj.ast.IfStmt;
+import org.extendj.ast.InstanceInitializer;
+import org.extendj.ast.LabeledStmt;
+import org.extendj.ast.List;
+import org.extendj.ast.MethodDecl;
+import org.extendj.ast.MultiCatch;
+import org.extendj.ast.Opt;
+import org.extendj.ast.StaticInitializer;
+import org.extendj.ast.SwitchStmt;
+import org.extendj.ast.SynchronizedStmt;
+import org.extendj.ast.TryStmt;
+import org.extendj.ast.TryWithResources;
+import org.extendj.ast.WhileStmt;
+import org.jastadd.util.PrettyPrinter;
+
+/**
+ * A {@link Block} that prints the code an unchanged {@link Block} was parsed from. It temporarily replaces that
+ * {@link Block} while an {@link ASTNodeArtifact} tree is pretty printed preserving the original source.
+ */
+class OriginalSourceBlock extends Block {
+
+    /**
+     * The types of <code>ASTNode</code>s whose <code>prettyPrint</code> prints their {@link Block} children by
+     * printing the {@link Block} itself. Other types (such as <code>ConstructorDecl</code>) read the statements of
+     * their {@link Block} directly and can not print an {@link OriginalSourceBlock}.
+     */
+    private static final Set<Class<?>> PRINTS_BLOCKS = new HashSet<>(Arrays.asList(
+            Block.class, MethodDecl.class, GenericMethodDecl.class, InstanceInitializer.class,
+            StaticInitializer.class, BlockLambdaBody.class, TryStmt.class, TryWithResources.class, BasicCatch.class,
+            MultiCatch.class, SynchronizedStmt.class, SwitchStmt.class, IfStmt.class, WhileStmt.class, DoStmt.class,
+            ForStmt.class, EnhancedForStmt.class, LabeledStmt.class
+    ));
+
+    private final String text;
+
+    /**
+     * Constructs a new {@link OriginalSourceBlock} printing the given <code>text</code>.
+     *
+     * @param text
+     *         the original code of the replaced {@link Block} including its braces
+     */
+    OriginalSourceBlock(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Returns whether a {@link Block} with the given parent may be replaced by an {@link OriginalSourceBlock}.
+     * That is the case if the first ancestor of the {@link Block} that is neither a {@link List} nor an {@link Opt}
+     * prints the {@link Block} by printing it as a child.
+     *
+     * @param parent
+     *         the parent of the {@link Block}
+     * @return true iff the {@link Block} may be replaced
+     */
+    static boolean canReplace(ASTNode<?> parent) {
+        ASTNode<?> owner = parent;
+
+        while (owner instanceof List || owner instanceof Opt) {
+            owner = owner.getParent();
+        }
+
+        return owner != null && PRINTS_BLOCKS.contains(owner.getClass());
+    }
+
+    @Override
+    public void init$Children() {
+        // Block adds an empty List as the first child. An OriginalSourceBlock does not have children.
+    }
+
+    @Override
+    protected int numChildren() {
+        return 0;
+    }
+
+    @Override
+    public void prettyPrint(PrettyPrinter out) {
+        out.print(text);
+    }
+}
@@ -103,6 +103,7 @@ public SemiStructuredArtifact(ASTNodeArtifact toEncapsulate, String[] originalLi
         this.content.setContent(extractOriginalContent(originalLines));
 
         this.astnode = new SemiStructuredASTNode(this);
+        internLabel();
 
         ASTNodeArtifact parent = toEncapsulate.getParent();
 
@@ -133,10 +134,12 @@ public SemiStructuredArtifact(ASTNodeArtifact toEncapsulate, String[] originalLi
      *
      * @param revision
      *         the {@link Revision} for this {@link SemiStructuredArtifact}
-     * @see ASTNodeArtifact#ASTNodeArtifact(Revision)
+     * @param labels
+     *         the {@link LabelTable} to intern the label in
+     * @see ASTNodeArtifact#ASTNodeArtifact(Revision, LabelTable)
      */
-    private SemiStructuredArtifact(Revision revision) {
-        super(revision);
+    private SemiStructuredArtifact(Revision revision, LabelTable labels) {
+        super(revision, labels);
         this.content = new FileArtifact(revision, FILE);
     }
 
@@ -257,7 +260,7 @@ public ASTNodeArtifact copy() {
 
     @Override
     public ASTNodeArtifact createEmptyArtifact(Revision revision) {
-        return new SemiStructuredArtifact(revision);
+        return new SemiStructuredArtifact(revision, getLabelTable());
     }
 
     @Override
@@ -23,10 +23,13 @@
  */
 package de.fosd.jdime.artifact.file;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,6 +50,8 @@
 import de.fosd.jdime.artifact.ArtifactList;
 import de.fosd.jdime.artifact.Artifacts;
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifactCache;
+import de.fosd.jdime.artifact.ast.LabelTable;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.config.merge.Revision;
@@ -56,18 +61,22 @@
 import de.fosd.jdime.merge.Merge;
 import de.fosd.jdime.operations.MergeOperation;
 import de.fosd.jdime.stats.ElementStatistics;
+import de.fosd.jdime.stats.FlightRecorderEvents;
 import de.fosd.jdime.stats.KeyEnums;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
 import de.fosd.jdime.stats.StatisticsInterface;
 import de.fosd.jdime.strategy.LinebasedStrategy;
+import de.fosd.jdime.strategy.MergeResultCache;
 import de.fosd.jdime.strategy.MergeStrategy;
 import de.fosd.jdime.util.parser.ConflictContent;
+import de.fosd.jdime.util.parser.Parser;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.comparator.CompositeFileComparator;
 
 import static de.fosd.jdime.stats.MergeScenarioStatus.FAILED;
+import static de.fosd.jdime.stats.MergeScenarioStatus.OK;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.logging.Level.SEVERE;
 import static org.apache.commons.io.comparator.DirectoryFileComparator.DIRECTORY_COMPARATOR;
@@ -89,6 +98,11 @@ public class FileArtifact extends Artifact<FileArtifact> {
 
     private static final String JAVA_SOURCE_CODE_EXTENSION = "java";
 
+    /**
+     * The matching key shared by all toplevel directories.
+     */
+    private static final Object ROOT_DIRECTORY_KEY = new Object();
+
     /**
      * A <code>Comparator</code> to compare <code>FileArtifact</code>s by their <code>File</code>s. It considers
      * all directories smaller than files and otherwise compares by the file name.
@@ -112,6 +126,25 @@ public enum FileType {
         DIR
     }
 
+    /**
+     * Prints the merged content of a {@link FileArtifact}.
+     *
+     * @see #setContent(ContentPrinter, MergeContext)
+     */
+    @FunctionalInterface
+    public interface ContentPrinter {
+
+        /**
+         * Prints the content to the given <code>Writer</code>. The <code>Writer</code> may be closed afterwards.
+         *
+         * @param out
+         *         the <code>Writer</code> to print to
+         * @throws IOException
+         *         if <code>out</code> throws an <code>IOException</code>
+         */
+        void print(Writer out) throws IOException;
+    }
+
     /**
      * A {@link Supplier} used for generating names for virtual {@link FileArtifact FileArtifacts}.
      */
@@ -139,6 +172,13 @@ public enum FileType {
      */
     private String content;
 
+    /**
+     * Whether the content of this {@link FileArtifact} was already written to its {@link #file} by
+     * {@link #setContent(ContentPrinter, MergeContext)}. The {@link #content} is then read back from the {@link #file}
+     * if it is needed.
+     */
+    private boolean written;
+
     /**
      * Constructs a new <code>FileArtifact</code> representing the given <code>File</code>. If <code>file</code> is a
      * directory then <code>FileArtifact</code>s representing its contents will be added as children to this
@@ -246,7 +286,7 @@ public FileArtifact(Revision revision, File virtualFile, FileType type) {
             throw new IllegalArgumentException("File '" + virtualFile + "' does exist.");
         }
 
-        this.type = type;
+        this.type = Objects.requireNonNull(type, "type must not be null!");
         this.original = null;
         this.file = virtualFile;
     }
@@ -298,6 +338,7 @@ private FileArtifact(FileArtifact toCopy) {
         this.original = toCopy.original;
         this.file = toCopy.file;
         this.content = toCopy.content;
+        this.written = toCopy.written;
     }
 
     @Override
@@ -493,8 +534,8 @@ public KeyEnums.Level getLevel() {
     public void addOpStatistics(MergeScenarioStatistics mScenarioStatistics, MergeContext mergeContext) {
         mScenarioStatistics.getTypeStatistics(null, getType()).incrementNumAdded();
 
-        if (!(mergeContext.getMergeStrategy() instanceof LinebasedStrategy)) {
-            forAllJavaFiles(astNodeArtifact ->
+        if (collectASTStatistics(mergeContext)) {
+            forAllJavaFiles(mergeContext, astNodeArtifact ->
                     mScenarioStatistics.add(StatisticsInterface.getASTStatistics(astNodeArtifact, null))
             );
         }
@@ -504,8 +545,8 @@ public void addOpStatistics(MergeScenarioStatistics mScenarioStatistics, MergeCo
     public void deleteOpStatistics(MergeScenarioStatistics mScenarioStatistics, MergeContext mergeContext) {
         mScenarioStatistics.getTypeStatistics(null, getType()).incrementNumDeleted();
 
-        if (!(mergeContext.getMergeStrategy() instanceof LinebasedStrategy)) {
-            forAllJavaFiles(astNodeArtifact -> {
+        if (collectASTStatistics(mergeContext)) {
+            forAllJavaFiles(mergeContext, astNodeArtifact -> {
                 MergeScenarioStatistics delStats = StatisticsInterface.getASTStatistics(astNodeArtifact, null);
                 Map<Revision, Map<KeyEnums.Level, ElementStatistics>> lStats = delStats.getLevelStatistics();
                 Map<Revision, Map<KeyEnums.Type, ElementStatistics>> tStats = delStats.getTypeStatistics();
@@ -538,23 +579,41 @@ public void mergeOpStatistics(MergeScenarioStatistics mScenarioStatistics, Merge
         mScenarioStatistics.getTypeStatistics(null, getType()).incrementNumMerged();
     }
 
+    /**
+     * Returns whether AST statistics are to be collected about the Java files of this added or deleted
+     * <code>FileArtifact</code>.
+     *
+     * @param context
+     *         the <code>MergeContext</code> of the merge
+     * @return true iff the Java files are to be parsed to collect AST statistics
+     */
+    private static boolean collectASTStatistics(MergeContext context) {
+        return context.isFileOperationASTStatistics() && !(context.getMergeStrategy() instanceof LinebasedStrategy);
+    }
+
     /**
      * Uses {@link #getJavaFiles()} and applies the given <code>Consumer</code> to every resulting
-     * <code>FileArtifact</code> after it being parsed to an <code>ASTNodeArtifact</code>. If an
+     * <code>FileArtifact</code> after it being parsed to an <code>ASTNodeArtifact</code>. Files are parsed using the
+     * {@link MergeContext#getASTCache() AST cache}. If it is enabled, files with equal content are parsed only once,
+     * otherwise (as by default) every file is parsed. If an
      * <code>IOException</code> occurs getting the files the method will immediately return. If an
      * <code>IOException</code> occurs parsing a file to an <code>ASTNodeArtifact</code> it will be skipped.
      *
+     * @param context
+     *         the <code>MergeContext</code> of the merge
      * @param cons
      *         the <code>Consumer</code> to apply
      */
-    private void forAllJavaFiles(Consumer<ASTNodeArtifact> cons) {
+    private void forAllJavaFiles(MergeContext context, Consumer<ASTNodeArtifact> cons) {
         //TODO What if --accept-non-java is enabled?
 
+        ASTNodeArtifactCache cache = context.getASTCache();
+
         for (FileArtifact child : getJavaFiles()) {
             ASTNodeArtifact childAST;
 
             try {
-                childAST = new ASTNodeArtifact(child);
+                childAST = cache.parse(child, new LabelTable());
             } catch (RuntimeException e) {
                 LOG.log(Level.WARNING, e, () -> {
                     String format = "Could not construct an ASTNodeArtifact from %s. No statistics will be collected for it.";
@@ -610,21 +669,52 @@ public boolean isOrdered() {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Toplevel directories are assumed to match each other and no other <code>FileArtifact</code>. All other
+     * <code>FileArtifact</code>s match if their names are equal.
+     */
     @Override
     public boolean matches(final FileArtifact other) {
+        boolean rootDir = isRootDirectory();
 
-        if (isDirectory() && isRoot() && other.isDirectory() && other.isRoot()) {
+        if (rootDir && other.isRootDirectory()) {
             LOG.fine(() -> String.format("%s and %s are toplevel directories.", this, other));
             LOG.fine("We assume a match here and continue to merge the contained files and directories.");
             return true;
         }
 
-        return this.toString().equals(other.toString());
+        return rootDir == other.isRootDirectory() && this.toString().equals(other.toString());
     }
 
     @Override
     public boolean categoryMatches(FileArtifact other) {
-        return isDirectory() && other.isDirectory() || isFile() && other.isFile();
+        return type == other.type;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All toplevel directories share the same key as they are assumed to match each other.
+     */
+    @Override
+    public Object getMatchingKey() {
+        return isRootDirectory() ? ROOT_DIRECTORY_KEY : toString();
+    }
+
+    @Override
+    public Object getCategoryKey() {
+        return type;
+    }
+
+    /**
+     * Returns whether this <code>FileArtifact</code> is a toplevel directory.
+     *
+     * @return true iff this is a directory without a parent
+     */
+    private boolean isRootDirectory() {
+        return isDirectory() && isRoot();
     }
 
     @Override
@@ -657,15 +747,23 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
                 context.getStatistics().setCurrentFileMergeScenario(scenario);
             }
 
-            try {
+            try (FlightRecorderEvents.Event event = FlightRecorderEvents.scenario(scenario, strategy)) {
                 try {
-                    strategy.merge(operation, context);
+                    merge(strategy, operation, context);
+
+                    if (event.shouldCommit()) {
+                        String content = operation.getTarget().getContent();
+                        int conflicts = content == null ? 0 : Parser.calcStats(content).getConflicts();
+
+                        event.set(FlightRecorderEvents.CONFLICTS, conflicts).set(FlightRecorderEvents.OUTCOME, OK.name());
+                    }
                 } catch (Throwable e) {
 
                     if (context.hasStatistics()) {
                         context.getStatistics().getScenarioStatistics(scenario).setStatus(FAILED);
                     }
 
+                    event.set(FlightRecorderEvents.OUTCOME, FAILED.name());
                     throw e;
                 }
             } catch (AbortException e) {
@@ -696,6 +794,32 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
         }
     }
 
+    /**
+     * Applies the given <code>strategy</code> to the <code>operation</code> or takes its result from the
+     * {@link MergeContext#getMergeResultCache() cache} if possible.
+     *
+     * @param strategy
+     *         the <code>MergeStrategy</code> to apply
+     * @param operation
+     *         the <code>MergeOperation</code> to perform
+     * @param context
+     *         the <code>MergeContext</code>
+     */
+    private static void merge(MergeStrategy<FileArtifact> strategy, MergeOperation<FileArtifact> operation,
+                              MergeContext context) {
+
+        Optional<MergeResultCache> cache = context.getMergeResultCache().filter(c -> c.isApplicable(operation, context));
+        Optional<String> cached = cache.flatMap(c -> c.get(operation, context));
+
+        if (cached.isPresent()) {
+            operation.getTarget().setContent(cached.get());
+            return;
+        }
+
+        strategy.merge(operation, context);
+        cache.ifPresent(c -> c.put(operation, context, operation.getTarget().getContent()));
+    }
+
     @Override
     public final String toString() {
         return getFile().getName();
@@ -786,7 +910,9 @@ public void writeContent() throws IOException {
 
         if (isFile()) {
 
-            if (content != null) {
+            if (written) {
+                LOG.finest(() -> "The content of " + this + " was already written to " + file);
+            } else if (content != null) {
                 writeToFile();
             } else if (original != null) {
                 copyFile();
@@ -808,8 +934,20 @@ public void writeContent() throws IOException {
      *         see {@link FileUtils#openOutputStream(File)}
      */
     private void writeToFile() throws IOException {
-        try (OutputStreamWriter out = new OutputStreamWriter(FileUtils.openOutputStream(file), UTF_8)) {
-            out.write(content);
+        writeToFile(out -> out.write(content));
+    }
+
+    /**
+     * Writes the output of the given <code>printer</code> to the {@link #file} of this {@link FileArtifact}.
+     *
+     * @param printer
+     *         the <code>ContentPrinter</code> printing the content
+     * @throws IOException
+     *         see {@link FileUtils#openOutputStream(File)} and {@link ContentPrinter#print(Writer)}
+     */
+    private void writeToFile(ContentPrinter printer) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(FileUtils.openOutputStream(file), UTF_8))) {
+            printer.print(out);
         }
     }
 
@@ -851,13 +989,14 @@ public String getContent() {
         }
 
         if (content == null) {
+            File source = written ? file : original;
             String content;
 
-            if (original == null) {
+            if (source == null) {
                 content = "";
             } else {
                 try {
-                    content = FileUtils.readFileToString(original, UTF_8);
+                    content = FileUtils.readFileToString(source, UTF_8);
                 } catch (IOException e) {
                     LOG.log(Level.WARNING, e, () -> "Could not read the contents of " + this);
                     return "";
@@ -881,8 +1020,42 @@ public void setContent(String content) {
 
         if (isFile()) {
             this.content = content;
+            this.written = false;
         } else {
             LOG.warning("Ignoring a call to setContent(String) on a FileArtifact representing a directory.");
         }
     }
+
+    /**
+     * Sets the content this {@link FileArtifact} represents to the output of the given <code>printer</code>. If this
+     * {@link FileArtifact} is the output file of a merge that writes its result to the filesystem and collects no
+     * statistics, the output is printed straight into its {@link #file} instead of being kept as a {@link String}. If
+     * this {@link FileArtifact} represents a directory, the call is ignored.
+     *
+     * @param printer
+     *         the <code>ContentPrinter</code> printing the new content
+     * @param context
+     *         the <code>MergeContext</code> of the merge
+     * @throws IOException
+     *         if the content can not be written to the {@link #file}
+     */
+    public void setContent(ContentPrinter printer, MergeContext context) throws IOException {
+
+        if (!isFile()) {
+            LOG.warning("Ignoring a call to setContent(ContentPrinter) on a FileArtifact representing a directory.");
+            return;
+        }
+
+        if (this == context.getOutputFile() && !context.isPretend() && !context.hasStatistics()) {
+            writeToFile(printer);
+
+            this.content = null;
+            this.written = true;
+        } else {
+            StringWriter out = new StringWriter();
+
+            printer.print(out);
+            setContent(out.toString());
+        }
+    }
 }
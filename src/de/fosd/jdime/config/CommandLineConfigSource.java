@@ -65,6 +65,8 @@ public class CommandLineConfigSource extends ConfigSource {
     public static final String CLI_CMP = "cmp";
     public static final String CLI_OUTPUT = "o";
     public static final String CLI_OPTIMIZE_MULTI_CONFLICTS = "omc";
+    public static final String CLI_PRESERVE_SOURCE = "ps";
+    public static final String CLI_MERGE_CACHE = "mc";
     public static final String CLI_RECURSIVE = "r";
     public static final String CLI_STATS = "s";
     public static final String CLI_PRETEND = "p";
@@ -256,6 +258,24 @@ private Options buildCliOptions() {
 
         options.addOption(o);
 
+        o = Option.builder(CLI_PRESERVE_SOURCE)
+                .longOpt("preserve-source")
+                .desc("Copy blocks that are unchanged by structured strategy from the input files instead of " +
+                        "pretty printing them.")
+                .hasArg(false)
+                .build();
+
+        options.addOption(o);
+
+        o = Option.builder(CLI_MERGE_CACHE)
+                .longOpt("merge-cache")
+                .desc("Cache merge results in the given directory and reuse them when merging the same files again.")
+                .hasArg()
+                .argName("directory")
+                .build();
+
+        options.addOption(o);
+
         o = Option.builder(CLI_RECURSIVE)
                 .longOpt("recursive")
                 .desc("Merge directories recursively.")
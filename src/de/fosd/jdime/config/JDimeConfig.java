@@ -113,11 +113,33 @@ public final class JDimeConfig extends Config {
      */
     public static final String USE_MCESUBTREE_MATCHER = "USE_MCESUBTREE_MATCHER";
 
+    /**
+     * The maximum number of AST nodes in the parsed trees that are cached to avoid parsing files with equal content
+     * again. Must be an integer, 0 (the default) disables the cache.
+     */
+    public static final String AST_CACHE_SIZE = "AST_CACHE_SIZE";
+
+    /**
+     * The directory to cache merge results in. If it is not set (and not given on the command line), no results are
+     * cached.
+     */
+    public static final String MERGE_CACHE_DIRECTORY = "MERGE_CACHE_DIRECTORY";
+
+    /**
+     * The maximum size in bytes of the merge results cached in the {@link #MERGE_CACHE_DIRECTORY}. Defaults to 64 MiB.
+     */
+    public static final String MERGE_CACHE_SIZE = "MERGE_CACHE_SIZE";
+
     /**
      * Whether to merge successive conflicts after running structured strategy.
      */
     public static final String OPTIMIZE_MULTI_CONFLICTS = "OPTIMIZE_MULTI_CONFLICTS";
 
+    /**
+     * Whether to copy code that is unchanged by structured merge from the input files instead of pretty printing it.
+     */
+    public static final String PRESERVE_SOURCE = "PRESERVE_SOURCE";
+
     /**
      * Whether to append a number to the file name to ensure that no file of the same name is overwritten when
      * writing the statistics. Must be either 'true' or 'false'. Defaults to true.
@@ -177,6 +199,43 @@ public final class JDimeConfig extends Config {
      */
     public static final String STATISTICS_XML_EXCLUDE_MSS_FIELDS = "STATISTICS_XML_EXCLUDE_MSS_FIELDS";
 
+    /**
+     * Whether to write the statistics of every merged file to the {@link #STATISTICS_HR_OUTPUT} and
+     * {@link #STATISTICS_XML_OUTPUT} as soon as the file is merged and release them afterwards. Must be either 'true'
+     * or 'false'. Defaults to false. Enabling this keeps the memory used for statistics constant in runs merging many
+     * files.
+     */
+    public static final String STATISTICS_STREAM = "STATISTICS_STREAM";
+
+    /**
+     * Whether to parse the Java files of added and deleted files and directories to collect AST statistics about
+     * them. Must be either 'true' or 'false'. Defaults to false, so by default only the numbers of added and deleted
+     * files and directories are collected for them. Set this to 'true' to parse every added or deleted Java file
+     * although it is not merged. The {@link #AST_CACHE_SIZE AST cache} only avoids parsing files whose content was
+     * parsed before.
+     */
+    public static final String STATISTICS_FILE_OPERATION_AST = "STATISTICS_FILE_OPERATION_AST";
+
+    /**
+     * Which <code>Matching</code>s to retain in the statistics. Must be either 'all', 'aggregate' or a non-negative
+     * number. Defaults to 'all', which keeps every <code>Matching</code> and with it the ASTs of the merged files.
+     * 'aggregate' keeps only the number of <code>Matching</code>s and a histogram of their scores per matching
+     * algorithm, a number additionally keeps a random sample of at most that many <code>Matching</code>s in their
+     * textual representation.
+     */
+    public static final String STATISTICS_MATCHINGS = "STATISTICS_MATCHINGS";
+
+    /**
+     * The value of {@link #STATISTICS_MATCHINGS} that retains every <code>Matching</code>.
+     */
+    public static final String STATISTICS_MATCHINGS_ALL = "all";
+
+    /**
+     * The value of {@link #STATISTICS_MATCHINGS} that retains only aggregated statistics about the
+     * <code>Matching</code>s.
+     */
+    public static final String STATISTICS_MATCHINGS_AGGREGATE = "aggregate";
+
     /**
      * A {@link String#format(Locale, String, Object...)} pattern to be used when creating a new file to write
      * the XML statistics output to. The current {@link Date} will be passed to the format method as its
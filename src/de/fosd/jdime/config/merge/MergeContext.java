@@ -26,6 +26,7 @@
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.ArtifactList;
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifactCache;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.CommandLineConfigSource;
 import de.fosd.jdime.config.JDimeConfig;
@@ -33,9 +34,12 @@
 import de.fosd.jdime.matcher.cost_model.CMMode;
 import de.fosd.jdime.matcher.cost_model.CostModelMatcher;
 import de.fosd.jdime.stats.KeyEnums;
+import de.fosd.jdime.stats.MatcherStatistics;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.stats.Profiler;
 import de.fosd.jdime.stats.Statistics;
 import de.fosd.jdime.strategy.LinebasedStrategy;
+import de.fosd.jdime.strategy.MergeResultCache;
 import de.fosd.jdime.strategy.MergeStrategy;
 import de.fosd.jdime.strategy.NWayStrategy;
 import de.fosd.jdime.strategy.StructuredStrategy;
@@ -78,6 +82,11 @@ public class MergeContext implements Cloneable {
      */
     public static final String DEFAULT_GIT_CMD = "git";
 
+    /**
+     * The default maximum size in bytes of the cached merge results.
+     */
+    public static final long DEFAULT_MERGE_CACHE_SIZE = 64L * 1024 * 1024;
+
     /**
      * Whether merge inserts choice nodes instead of direct merging.
      */
@@ -191,16 +200,52 @@ public class MergeContext implements Cloneable {
 
     private List<Field> excludeStatisticsMSSFields;
 
+    /**
+     * Records the runtimes of the phases of merging a scenario if statistics are collected.
+     */
+    private Profiler profiler;
+
+    /**
+     * Records counters about the matching phase of a merge if statistics are collected.
+     */
+    private MatcherStatistics matcherStatistics;
+
+    /**
+     * Whether to collect AST statistics about the Java files in added and deleted files and directories.
+     */
+    private boolean fileOperationASTStatistics;
+
     /**
      * Whether to use the <code>MCESubtreeMatcher</code> in the matching phase of the merge.
      */
     private boolean useMCESubtreeMatcher;
 
+    /**
+     * Whether to match the variants of choice nodes concurrently in the matching phase of the merge.
+     */
+    private boolean parallelVariants;
+
+    /**
+     * The cache of parsed <code>ASTNodeArtifact</code> trees shared by all copies of this <code>MergeContext</code>.
+     */
+    private ASTNodeArtifactCache astCache;
+
+    /**
+     * The cache of merge results shared by all copies of this <code>MergeContext</code>. <code>null</code> if merge
+     * results are not cached.
+     */
+    private MergeResultCache mergeResultCache;
+
     /**
      * Whether to merge successive conflicts in structured merge.
      */
     private boolean optimizeMultiConflicts;
 
+    /**
+     * Whether to copy code that is unchanged by structured merge from the input files instead of pretty printing it.
+     */
+    private boolean preserveSource;
+
     /**
      * Whether {@link StructuredStrategy} act semi-structured, that is whether it should perform line based merging
      * on the configured {@link #semiStructuredLevel}.
@@ -257,7 +302,12 @@ public MergeContext() {
         this.collectStatistics = false;
         this.statistics = new Statistics();
         this.excludeStatisticsMSSFields = new ArrayList<>();
+        this.profiler = new Profiler();
+        this.matcherStatistics = new MatcherStatistics();
+        this.fileOperationASTStatistics = false;
         this.useMCESubtreeMatcher = false;
+        this.parallelVariants = true;
+        this.astCache = new ASTNodeArtifactCache(0);
         this.semiStructured = false;
         this.semiStructuredLevel = KeyEnums.Level.METHOD;
         this.lookAhead = MergeContext.LOOKAHEAD_OFF;
@@ -312,8 +362,15 @@ public MergeContext(MergeContext toCopy) {
         this.collectStatistics = toCopy.collectStatistics;
         this.statistics = new Statistics(toCopy.statistics);
         this.excludeStatisticsMSSFields = new ArrayList<>(toCopy.excludeStatisticsMSSFields);
+        this.profiler = new Profiler();
+        this.matcherStatistics = new MatcherStatistics();
+        this.fileOperationASTStatistics = toCopy.fileOperationASTStatistics;
         this.useMCESubtreeMatcher = toCopy.useMCESubtreeMatcher;
+        this.parallelVariants = toCopy.parallelVariants;
+        this.astCache = toCopy.astCache;
+        this.mergeResultCache = toCopy.mergeResultCache;
         this.optimizeMultiConflicts = toCopy.optimizeMultiConflicts;
+        this.preserveSource = toCopy.preserveSource;
         this.semiStructured = toCopy.semiStructured;
         this.semiStructuredLevel = toCopy.semiStructuredLevel;
 
@@ -428,6 +485,36 @@ private void configStatistics(JDimeConfig config) {
                 return Optional.empty();
             }
         }).ifPresent(list -> this.excludeStatisticsMSSFields = list);
+
+        config.getBoolean(STATISTICS_FILE_OPERATION_AST).ifPresent(this::setFileOperationASTStatistics);
+
+        config.get(STATISTICS_MATCHINGS, val -> {
+            String msg = "Invalid matchings retention '" + val + "'. Must be one of '" + STATISTICS_MATCHINGS_ALL +
+                    "', '" + STATISTICS_MATCHINGS_AGGREGATE + "' or a non-negative integer.";
+            RuntimeException abort = new AbortException(msg);
+
+            int sampleSize;
+
+            try {
+                sampleSize = Integer.parseInt(val);
+
+                if (sampleSize < 0) {
+                    throw abort;
+                }
+            } catch (NumberFormatException e) {
+                String lcVal = val.trim().toLowerCase();
+
+                if (STATISTICS_MATCHINGS_ALL.equals(lcVal)) {
+                    sampleSize = MergeScenarioStatistics.ALL_MATCHINGS;
+                } else if (STATISTICS_MATCHINGS_AGGREGATE.equals(lcVal)) {
+                    sampleSize = 0;
+                } else {
+                    throw abort;
+                }
+            }
+
+            return Optional.of(sampleSize);
+        }).ifPresent(statistics::setMatchingSampleSize);
     }
 
     /**
@@ -457,8 +544,12 @@ private void configMerge(JDimeConfig config) {
 
         config.getBoolean(USE_MCESUBTREE_MATCHER).ifPresent(this::setUseMCESubtreeMatcher);
 
+        config.getInteger(AST_CACHE_SIZE).ifPresent(size -> setASTCache(new ASTNodeArtifactCache(size)));
+
         config.getBoolean(OPTIMIZE_MULTI_CONFLICTS).ifPresent(this::setOptimizeMultiConflicts);
 
+        config.getBoolean(PRESERVE_SOURCE).ifPresent(this::setPreserveSource);
+
         config.get(CLI_LOOKAHEAD, val -> {
             String msg = "Invalid lookahead level '" + val + "'. Must be one of 'off', 'full' or a non-negative integer.";
             RuntimeException abort = new AbortException(msg);
@@ -607,6 +698,18 @@ private void configInputOutput(JDimeConfig config) {
         config.getBoolean(CLI_FORCE_OVERWRITE).ifPresent(this::setForceOverwriting);
         config.getBoolean(CLI_RECURSIVE).ifPresent(this::setRecursive);
         config.getBoolean(CLI_OPTIMIZE_MULTI_CONFLICTS).ifPresent(this::setOptimizeMultiConflicts);
+        config.getBoolean(CLI_PRESERVE_SOURCE).ifPresent(this::setPreserveSource);
+
+        Optional<String> mergeCache = config.get(CLI_MERGE_CACHE);
+
+        if (!mergeCache.isPresent()) {
+            mergeCache = config.get(MERGE_CACHE_DIRECTORY);
+        }
+
+        mergeCache.map(String::trim).map(File::new).ifPresent(dir -> {
+            long size = config.getLong(MERGE_CACHE_SIZE).orElse(DEFAULT_MERGE_CACHE_SIZE);
+            setMergeResultCache(new MergeResultCache(dir, size));
+        });
 
         config.getBoolean(CLI_PRETEND).ifPresent(this::setPretend);
         config.getBoolean(CLI_QUIET).ifPresent(this::setQuiet);
@@ -810,6 +913,26 @@ public boolean hasStatistics() {
         return collectStatistics;
     }
 
+    /**
+     * Returns the <code>Profiler</code> recording the runtimes of the phases of a merge. If no statistics are
+     * collected, {@link Profiler#DISABLED} is returned.
+     *
+     * @return the <code>Profiler</code> to use
+     */
+    public Profiler getProfiler() {
+        return collectStatistics ? profiler : Profiler.DISABLED;
+    }
+
+    /**
+     * Returns the <code>MatcherStatistics</code> recording counters about the matching phase of a merge. If no
+     * statistics are collected, {@link MatcherStatistics#DISABLED} is returned.
+     *
+     * @return the <code>MatcherStatistics</code> to use
+     */
+    public MatcherStatistics getMatcherStatistics() {
+        return collectStatistics ? matcherStatistics : MatcherStatistics.DISABLED;
+    }
+
     /**
      * Returns the list of {@link Field Fields} of the {@link MergeScenarioStatistics} class that are to be excluded
      * when serializing the {@link Statistics}.
@@ -820,6 +943,26 @@ public List<Field> getExcludeStatisticsMSSFields() {
         return excludeStatisticsMSSFields;
     }
 
+    /**
+     * Returns whether AST statistics are collected about the Java files in added and deleted files and directories.
+     * This requires parsing the files and is therefore off by default.
+     *
+     * @return true iff added and deleted Java files are parsed to collect statistics about them
+     */
+    public boolean isFileOperationASTStatistics() {
+        return fileOperationASTStatistics;
+    }
+
+    /**
+     * Sets whether AST statistics are collected about the Java files in added and deleted files and directories.
+     *
+     * @param fileOperationASTStatistics
+     *         whether to parse added and deleted Java files to collect statistics about them
+     */
+    public void setFileOperationASTStatistics(boolean fileOperationASTStatistics) {
+        this.fileOperationASTStatistics = fileOperationASTStatistics;
+    }
+
     /**
      * Returns whether to only perform the diff stage of the merge.
      *
@@ -1237,6 +1380,98 @@ public void setUseMCESubtreeMatcher(boolean useMCESubtreeMatcher) {
         this.useMCESubtreeMatcher = useMCESubtreeMatcher;
     }
 
+    /**
+     * Returns whether to match the variants of choice nodes concurrently during the matching phase of the merge.
+     *
+     * @return true iff the variants should be matched concurrently
+     */
+    public boolean isParallelVariants() {
+        return parallelVariants;
+    }
+
+    /**
+     * Sets whether to match the variants of choice nodes concurrently.
+     *
+     * @param parallelVariants
+     *         the new value
+     */
+    public void setParallelVariants(boolean parallelVariants) {
+        this.parallelVariants = parallelVariants;
+    }
+
+    /**
+     * Returns the cache of parsed <code>ASTNodeArtifact</code> trees. The structured strategies obtain their trees
+     * from it.
+     *
+     * @return the <code>ASTNodeArtifactCache</code>
+     */
+    public ASTNodeArtifactCache getASTCache() {
+        return astCache;
+    }
+
+    /**
+     * Sets the cache of parsed <code>ASTNodeArtifact</code> trees.
+     *
+     * @param astCache
+     *         the new <code>ASTNodeArtifactCache</code>
+     */
+    public void setASTCache(ASTNodeArtifactCache astCache) {
+        this.astCache = astCache;
+    }
+
+    /**
+     * Returns the cache of merge results.
+     *
+     * @return optionally the <code>MergeResultCache</code>
+     */
+    public Optional<MergeResultCache> getMergeResultCache() {
+        return Optional.ofNullable(mergeResultCache);
+    }
+
+    /**
+     * Sets the cache of merge results.
+     *
+     * @param mergeResultCache
+     *         the new <code>MergeResultCache</code> or <code>null</code> to disable caching merge results
+     */
+    public void setMergeResultCache(MergeResultCache mergeResultCache) {
+        this.mergeResultCache = mergeResultCache;
+    }
+
+    /**
+     * Returns a description of all options that influence the result of merging files. Contexts with equal
+     * signatures produce equal results using the same strategy.
+     *
+     * @return the signature of the merge options
+     */
+    public String getOptionsSignature() {
+        StringJoiner signature = new StringJoiner(",");
+
+        signature.add("conditionalMerge=" + conditionalMerge);
+        signature.add("conditionalOutsideMethods=" + conditionalOutsideMethods);
+        signature.add("lookAhead=" + lookAhead);
+        signature.add("lookAheads=" + new TreeMap<>(lookAheads));
+        signature.add("useMCESubtreeMatcher=" + useMCESubtreeMatcher);
+        signature.add("optimizeMultiConflicts=" + optimizeMultiConflicts);
+        signature.add("preserveSource=" + preserveSource);
+        signature.add("semiStructured=" + semiStructured);
+        signature.add("semiStructuredLevel=" + semiStructuredLevel);
+        signature.add("cmMatcherMode=" + cmMatcherMode);
+
+        if (cmMatcherMode != CMMode.OFF) {
+            signature.add("cmReMatchBound=" + cmReMatchBound);
+            signature.add("weights=" + Arrays.asList(wr, wn, wa, ws, wo));
+            signature.add("pAssign=" + pAssign);
+            signature.add("fix=" + fixLower + "-" + fixUpper);
+            signature.add("seed=" + seed.map(String::valueOf).orElse("random"));
+            signature.add("costModelIterations=" + costModelIterations);
+            signature.add("cmMatcherParallel=" + cmMatcherParallel);
+            signature.add("cmMatcherFixRandomPercentage=" + cmMatcherFixRandomPercentage);
+        }
+
+        return signature.toString();
+    }
+
     /**
      * Returns whether successive conflicts are merged in structured merge.
      *
@@ -1255,6 +1490,26 @@ public void setOptimizeMultiConflicts(boolean optimizeMultiConflicts) {
         this.optimizeMultiConflicts = optimizeMultiConflicts;
     }
 
+    /**
+     * Returns whether code that is unchanged by structured merge is copied from the input files instead of being
+     * pretty printed.
+     *
+     * @return true iff unchanged code is copied from the input files
+     */
+    public boolean isPreserveSource() {
+        return preserveSource;
+    }
+
+    /**
+     * Set whether code that is unchanged by structured merge is copied from the input files instead of being pretty
+     * printed.
+     *
+     * @param preserveSource copy unchanged code from the input files
+     */
+    public void setPreserveSource(boolean preserveSource) {
+        this.preserveSource = preserveSource;
+    }
+
     /**
      * Returns whether the {@link StructuredStrategy} should act semi-structured, that is whether it should perform line
      * based merging on the configured {@link #semiStructuredLevel}.
@@ -23,14 +23,18 @@
  */
 package de.fosd.jdime.matcher;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.artifact.FlatTree;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.Revision;
 import de.fosd.jdime.matcher.cost_model.CMMode;
@@ -39,7 +43,6 @@
 import de.fosd.jdime.matcher.matching.LookAheadMatching;
 import de.fosd.jdime.matcher.matching.Matching;
 import de.fosd.jdime.matcher.matching.Matchings;
-import de.fosd.jdime.matcher.ordered.EqualityMatcher;
 import de.fosd.jdime.matcher.ordered.OrderedMatcher;
 import de.fosd.jdime.matcher.ordered.mceSubtree.MCESubtreeMatcher;
 import de.fosd.jdime.matcher.ordered.simpleTree.SimpleTreeMatcher;
@@ -47,8 +50,12 @@
 import de.fosd.jdime.matcher.unordered.UniqueLabelMatcher;
 import de.fosd.jdime.matcher.unordered.UnorderedMatcher;
 import de.fosd.jdime.matcher.unordered.assignmentProblem.HungarianMatcher;
+import de.fosd.jdime.stats.FlightRecorderEvents;
 import de.fosd.jdime.stats.KeyEnums;
+import de.fosd.jdime.stats.MatcherStatistics;
+import de.fosd.jdime.stats.Profiler;
 import de.fosd.jdime.strdump.DumpMode;
+import de.fosd.jdime.util.Tuple;
 import de.fosd.jdime.util.UnorderedTuple;
 
 import static de.fosd.jdime.config.merge.MergeContext.LOOKAHEAD_OFF;
@@ -82,10 +89,17 @@
     private static final Logger LOG = Logger.getLogger(Matcher.class.getCanonicalName());
     private static final String ID = Matcher.class.getSimpleName();
 
+    private static final String MATCH_LABEL = "match";
+    private static final String HASH_LABEL = "hash";
+
+    private static final String LOOKAHEAD_EVENT = "lookahead";
+    private static final String CM_REMATCH_EVENT = "costModelReMatch";
+    private static final String CM_REMATCH_IMPROVED_EVENT = "costModelReMatchImproved";
+
     private UnorderedMatcher<T> unorderedMatcher;
     private UnorderedMatcher<T> unorderedLabelMatcher;
     private OrderedMatcher<T> orderedMatcher;
-    private OrderedMatcher<T> mceSubtreeMatcher;
+    private MCESubtreeMatcher<T> mceSubtreeMatcher;
 
     private IdenticalSubtreeMatcher<T> idSubtreeMatcher;
 
@@ -94,6 +108,14 @@
     private T leftRoot;
     private T rightRoot;
 
+    /**
+     * Flat snapshots of the left and right tree (sharing their labels) used by the lookahead search. They are only
+     * built once a lookahead needs them and are discarded at the start of every run of
+     * {@link #match(MergeContext, Color)}.
+     */
+    private FlatTree<T> leftTree;
+    private FlatTree<T> rightTree;
+
     private Map<T, MatcherCache<T>> caches;
     private MatcherCache<T> leftCache;
     private MatcherCache<T> rightCache;
@@ -166,20 +188,47 @@ public void removeCache(T root) {
      *         color of the matching (for debug output only)
      * @return <code>Matchings</code> of the two nodes
      */
+    @SuppressWarnings("try")
     public Matchings<T> match(MergeContext context, Color color) {
+        Profiler profiler = context.getProfiler();
+        MatcherStatistics stats = context.getMatcherStatistics();
+        int size = leftRoot.getNumChildren() * rightRoot.getNumChildren();
         Matchings<T> matchings;
 
-        if (context.getCMMatcherMode() == CMMode.REPLACEMENT) {
-            matchings = cmMatcher.match(context, leftRoot, rightRoot);
-        } else {
-            leftCache = caches.computeIfAbsent(leftRoot, i -> new MatcherCache<>());
-            rightCache = caches.computeIfAbsent(rightRoot, i -> new MatcherCache<>());
-            idSubtreeMatcher.matchTrees(leftRoot, rightRoot);
+        try (Profiler.Span s = profiler.nested(MATCH_LABEL);
+             Profiler.Span e = FlightRecorderEvents.phase(MATCH_LABEL)) {
+
+            if (context.getCMMatcherMode() == CMMode.REPLACEMENT) {
+                long start = stats.start();
 
-            matchings = match(context, leftRoot, rightRoot);
+                try (Profiler.Span cm = profiler.nested(cmMatcher.getClass())) {
+                    matchings = cmMatcher.match(context, leftRoot, rightRoot);
+                }
+
+                stats.record(cmMatcher.getClass(), size, start);
+            } else {
+                leftCache = caches.computeIfAbsent(leftRoot, i -> new MatcherCache<>());
+                rightCache = caches.computeIfAbsent(rightRoot, i -> new MatcherCache<>());
 
-            if (context.getCMMatcherMode() == CMMode.POST_PROCESSOR && matchings.get(leftRoot, rightRoot).map(m -> !m.hasFullyMatched()).orElse(true)) {
-                matchings = cmMatcher.match(context, leftRoot, rightRoot, matchings);
+                leftTree = null;
+                rightTree = null;
+                mceSubtreeMatcher.clear();
+
+                try (Profiler.Span h = profiler.nested(HASH_LABEL)) {
+                    idSubtreeMatcher.matchTrees(leftRoot, rightRoot);
+                }
+
+                matchings = match(context, leftRoot, rightRoot);
+
+                if (context.getCMMatcherMode() == CMMode.POST_PROCESSOR && matchings.get(leftRoot, rightRoot).map(m -> !m.hasFullyMatched()).orElse(true)) {
+                    long start = stats.start();
+
+                    try (Profiler.Span cm = profiler.nested(cmMatcher.getClass())) {
+                        matchings = cmMatcher.match(context, leftRoot, rightRoot, matchings);
+                    }
+
+                    stats.record(cmMatcher.getClass(), size, start);
+                }
             }
         }
 
@@ -211,6 +260,7 @@ public Matchings<T> match(MergeContext context, Color color) {
     /**
      * @see MatcherInterface#match(MergeContext, Artifact, Artifact)
      */
+    @SuppressWarnings("try")
     private Matchings<T> match(MergeContext context, T left, T right) {
 
         if (left.isConflict()) {
@@ -229,38 +279,66 @@ private Matchings<T> match(MergeContext context, T left, T right) {
                 return String.format("%s encountered a choice node (%s)", name, left.getId());
             });
 
-            Map<Integer, Matchings<T>> variantMatches = new HashMap<>();
+            List<Map.Entry<String, T>> variants = new ArrayList<>(left.getVariants().entrySet());
+            variants.sort(Map.Entry.comparingByKey());
 
-            for (T variant: left.getVariants().values()) {
-                LOG.finest(() -> {
-                    String name = getClass().getSimpleName();
-                    return String.format("%s.match(%s, %s)", name, variant.getId(), right.getId());
-                });
+            Stream<Map.Entry<String, T>> variantStream;
 
-                Matchings<T> cur = match(context, variant, right);
-                Matching<T> highest = cur.get(variant, right).get();
-                variantMatches.put(highest.getScore(), cur);
+            // the cost model matcher is not safe to be used concurrently
+            boolean parallel = context.isParallelVariants() && context.getCMMatcherMode() != CMMode.INTEGRATED;
+
+            if (variants.size() > 1 && parallel) {
+                variantStream = variants.parallelStream();
+            } else {
+                variantStream = variants.stream();
+            }
+
+            Profiler profiler = context.getProfiler();
+            Profiler.Fork fork = profiler.fork();
+
+            List<Matchings<T>> variantMatches = variantStream.map(Map.Entry::getValue).map(variant -> {
+                try (Profiler.Span s = profiler.join(fork)) {
+                    return matchVariant(context, variant, right);
+                }
+            }).collect(Collectors.toList());
+
+            // ties are broken in favor of the variant whose condition comes first
+            Matchings<T> maxMatching = null;
+            int maxScore = Integer.MIN_VALUE;
+
+            for (int i = 0; i < variants.size(); i++) {
+                T variant = variants.get(i).getValue();
+                Matchings<T> cur = variantMatches.get(i);
+                int score = cur.get(variant, right).get().getScore();
+
+                if (score > maxScore) {
+                    maxMatching = cur;
+                    maxScore = score;
+                }
             }
 
-            Matchings<T> maxMatching = variantMatches.get(Collections.max(variantMatches.keySet()));
+            Matchings<T> highestMatching = maxMatching;
 
             LOG.finest(() -> {
                 String name = this.getClass().getSimpleName();
-                return String.format("%s: highest match: %s", name, maxMatching);
+                return String.format("%s: highest match: %s", name, highestMatching);
             });
 
-            return maxMatching;
+            return highestMatching;
         }
 
         /*
          * Before firing up potentially expensive matching algorithms, we check whether the trees are identical.
-         * To avoid redundant calls, we save the matchings reported by EqualityMatcher and perform lookups on
+         * To avoid redundant calls, we save the matchings reported by IdenticalSubtreeMatcher and perform lookups on
          * subsequent runs.
          */
+        MatcherStatistics stats = context.getMatcherStatistics();
+        long start = stats.start();
         Optional<Matchings<T>> trivialMatches = getTrivialMatchings(context, left, right);
 
         if (trivialMatches.isPresent()) {
-            logMatcherUse(EqualityMatcher.class, left, right);
+            logMatcherUse(IdenticalSubtreeMatcher.class, left, right);
+            stats.record(IdenticalSubtreeMatcher.class, left.getNumChildren() * right.getNumChildren(), start);
             return trivialMatches.get();
         }
 
@@ -268,6 +346,8 @@ private Matchings<T> match(MergeContext context, T left, T right) {
             Optional<UnorderedTuple<T, T>> resumeTuple = lookAhead(context, left, right);
 
             if (resumeTuple.isPresent()) {
+                stats.event(LOOKAHEAD_EVENT);
+
                 UnorderedTuple<T, T> toMatch = resumeTuple.get();
 
                 Matchings<T> subMatchings = getMatchings(context, toMatch.getX(), toMatch.getY());
@@ -300,6 +380,26 @@ private Matchings<T> match(MergeContext context, T left, T right) {
         return getMatchings(context, left, right);
     }
 
+    /**
+     * Matches the <code>variant</code> of a choice node with <code>right</code>.
+     *
+     * @param context
+     *         the <code>MergeContext</code>
+     * @param variant
+     *         the variant of the left choice node
+     * @param right
+     *         the right tree
+     * @return the <code>Matchings</code> of <code>variant</code> and <code>right</code>
+     */
+    private Matchings<T> matchVariant(MergeContext context, T variant, T right) {
+        LOG.finest(() -> {
+            String name = getClass().getSimpleName();
+            return String.format("%s.match(%s, %s)", name, variant.getId(), right.getId());
+        });
+
+        return match(context, variant, right);
+    }
+
     /**
      * Returns the trivial Matchings if <code>left</code> and <code>right</code> are exactly equal as determined by
      * the <code>IdenticalSubtreeMatcher</code>.
@@ -332,36 +432,47 @@ private Optional<Matchings<T>> getTrivialMatchings(MergeContext context, T left,
      *         the right tree
      * @return the <code>Matchings</code>
      */
+    @SuppressWarnings("try")
     private Matchings<T> getMatchings(MergeContext context, T left, T right) {
+        MatcherStatistics stats = context.getMatcherStatistics();
         boolean fullyOrderedChildren = false;
 
         if (context.isUseMCESubtreeMatcher()) {
-            boolean leftOrdered = left.getChildren().stream().allMatch(c -> leftCache.fullyOrdered(c));
-            boolean rightOrdered = right.getChildren().stream().allMatch(c -> rightCache.fullyOrdered(c));
+            boolean leftOrdered = left.getChildren().stream().allMatch(c -> leftCache.fullyOrdered(c, stats));
+            boolean rightOrdered = right.getChildren().stream().allMatch(c -> rightCache.fullyOrdered(c, stats));
             fullyOrderedChildren = leftOrdered && rightOrdered;
         }
 
-        boolean onlyOrderedChildren = leftCache.orderedChildren(left) && rightCache.orderedChildren(right);
-        boolean onlyLabeledChildren = leftCache.uniquelyLabeledChildren(left) && rightCache.uniquelyLabeledChildren(right);
+        boolean onlyOrderedChildren = leftCache.orderedChildren(left, stats) && rightCache.orderedChildren(right, stats);
+        boolean onlyLabeledChildren = leftCache.uniquelyLabeledChildren(left, stats)
+                && rightCache.uniquelyLabeledChildren(right, stats);
 
+        MatcherInterface<T> matcher;
         Matchings<T> matchings;
 
         if (fullyOrderedChildren && context.isUseMCESubtreeMatcher()) {
-            logMatcherUse(mceSubtreeMatcher.getClass(), left, right);
-            matchings = mceSubtreeMatcher.match(context, left, right);
+            matcher = mceSubtreeMatcher;
         } else if (onlyOrderedChildren) {
-            logMatcherUse(orderedMatcher.getClass(), left, right);
-            matchings = orderedMatcher.match(context, left, right);
+            matcher = orderedMatcher;
         } else {
             if (onlyLabeledChildren) {
-                logMatcherUse(unorderedLabelMatcher.getClass(), left, right);
-                matchings = unorderedLabelMatcher.match(context, left, right);
+                matcher = unorderedLabelMatcher;
             } else {
-                logMatcherUse(unorderedMatcher.getClass(), left, right);
-                matchings = unorderedMatcher.match(context, left, right);
+                matcher = unorderedMatcher;
             }
         }
 
+        logMatcherUse(matcher.getClass(), left, right);
+
+        int size = left.getNumChildren() * right.getNumChildren();
+        long start = stats.start();
+
+        try (Profiler.Span s = context.getProfiler().nested(matcher.getClass())) {
+            matchings = matcher.match(context, left, right);
+        }
+
+        stats.record(matcher.getClass(), size, start);
+
         if (context.getCMMatcherMode() != CMMode.INTEGRATED) {
             return matchings;
         }
@@ -372,10 +483,20 @@ private Matchings<T> getMatchings(MergeContext context, T left, T right) {
             Matching<T> prevMatch = oMatch.get();
 
             if (prevMatch.getPercentage() > 0 && prevMatch.getPercentage() < context.getCmReMatchBound()) { //TODO we may want to remove the first condition
-                Matchings<T> newMatchings = cmMatcher.match(context, left, right);
+                Matchings<T> newMatchings;
+
+                stats.event(CM_REMATCH_EVENT);
+                start = stats.start();
+
+                try (Profiler.Span s = context.getProfiler().nested(cmMatcher.getClass())) {
+                    newMatchings = cmMatcher.match(context, left, right);
+                }
+
+                stats.record(cmMatcher.getClass(), size, start);
                 oMatch = newMatchings.get(left, right);
 
                 if (oMatch.isPresent() && oMatch.get().getPercentage() > prevMatch.getPercentage()) {
+                    stats.event(CM_REMATCH_IMPROVED_EVENT);
                     matchings = newMatchings;
                 }
             }
@@ -422,16 +543,64 @@ private Optional<UnorderedTuple<T, T>> lookAhead(MergeContext context, T left, T
             assert leftLAH != LOOKAHEAD_OFF && rightLAH != LOOKAHEAD_OFF;
             return Optional.of(UnorderedTuple.of(left, right));
         } else if (lType == TRY) {
-            Optional<T> resume = findMatchingNode(left, right, leftLAH);
+            snapshot();
+            Optional<T> resume = findMatchingNode(leftTree, left, rightTree, right, leftLAH);
             return resume.map(t -> UnorderedTuple.of(t, right));
         } else if (rType == TRY) {
-            Optional<T> resume = findMatchingNode(right, left, rightLAH);
+            snapshot();
+            Optional<T> resume = findMatchingNode(rightTree, right, leftTree, left, rightLAH);
             return resume.map(t -> UnorderedTuple.of(left, t));
         } else {
             return Optional.empty();
         }
     }
 
+    /**
+     * Builds the {@link #leftTree} and {@link #rightTree} snapshots unless they were already built in the current run.
+     * Synchronized because the variants of a choice node may be matched concurrently.
+     */
+    private synchronized void snapshot() {
+
+        if (leftTree != null && rightTree != null) {
+            return;
+        }
+
+        FlatTree.Labels labels = new FlatTree.Labels();
+        leftTree = new FlatTree<>(leftRoot, labels);
+        rightTree = new FlatTree<>(rightRoot, labels);
+    }
+
+    /**
+     * Performs a depth first search of the given <code>tree</code> and returns the first node matching
+     * <code>nodeToFind</code> as per the {@link Artifact#matches(Artifact)} method. If both <code>tree</code> and
+     * <code>nodeToFind</code> are part of the given snapshots, the node is looked up in the label index of
+     * <code>treeSnapshot</code> instead.
+     *
+     * @param treeSnapshot
+     *         the snapshot containing <code>tree</code>
+     * @param tree
+     *         the tree to search in
+     * @param findSnapshot
+     *         the snapshot containing <code>nodeToFind</code>
+     * @param nodeToFind
+     *         the node to find a match for
+     * @param maxDepth
+     *         the maximum depth of nodes to consider (root is a depth 0)
+     * @return optionally a matching node for <code>nodeToFind</code>
+     */
+    private Optional<T> findMatchingNode(FlatTree<T> treeSnapshot, T tree, FlatTree<T> findSnapshot, T nodeToFind,
+                                         int maxDepth) {
+        int root = treeSnapshot.id(tree);
+        int toFind = findSnapshot.id(nodeToFind);
+
+        if (root == FlatTree.NONE || toFind == FlatTree.NONE) {
+            return findMatchingNode(tree, nodeToFind, maxDepth);
+        }
+
+        int match = treeSnapshot.findMatch(root, findSnapshot, toFind, maxDepth);
+        return match == FlatTree.NONE ? Optional.empty() : Optional.of(treeSnapshot.artifact(match));
+    }
+
     /**
      * Performs a depth first search of the given <code>tree</code> and returns the first node matching
      * <code>nodeToFind</code> as per the {@link Artifact#matches(Artifact)} method.
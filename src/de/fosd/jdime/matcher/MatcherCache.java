@@ -23,14 +23,16 @@
  */
 package de.fosd.jdime.matcher;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.stats.MatcherStatistics;
 
 /**
- * Caches various properties of {@link Artifact} trees used by the {@link Matcher}.
+ * Caches various properties of {@link Artifact} trees used by the {@link Matcher}. The cache may be used by multiple
+ * threads concurrently. Every lookup is counted as a hit or miss in the {@link MatcherStatistics} passed to it.
  *
  * @param <T>
  *         the type of the <code>Artifact</code>s
@@ -45,9 +47,9 @@
      * Constructs a new empty {@link MatcherCache}.
      */
     MatcherCache() {
-        this.orderedChildren = new HashMap<>();
-        this.uniquelyLabeledChildren = new HashMap<>();
-        this.fullyOrdered = new HashMap<>();
+        this.orderedChildren = new ConcurrentHashMap<>();
+        this.uniquelyLabeledChildren = new ConcurrentHashMap<>();
+        this.fullyOrdered = new ConcurrentHashMap<>();
     }
 
     /**
@@ -55,12 +57,21 @@
      *
      * @param artifact
      *         the {@link Artifact} to check for uniquely labeled children
+     * @param stats
+     *         the {@link MatcherStatistics} to count the cache access in
      * @return true iff all children of the given {@code artifact} have a unique label
      * @see Artifact#getUniqueLabel()
      */
-    boolean uniquelyLabeledChildren(T artifact) {
-        return uniquelyLabeledChildren.computeIfAbsent(artifact, a ->
-                a.getChildren().stream().map(T::getUniqueLabel).allMatch(Optional::isPresent));
+    boolean uniquelyLabeledChildren(T artifact, MatcherStatistics stats) {
+        Boolean labeled = uniquelyLabeledChildren.get(artifact);
+        stats.cacheAccess(labeled != null);
+
+        if (labeled == null) {
+            labeled = artifact.getChildren().stream().map(T::getUniqueLabel).allMatch(Optional::isPresent);
+            uniquelyLabeledChildren.put(artifact, labeled);
+        }
+
+        return labeled;
     }
 
     /**
@@ -68,12 +79,21 @@ boolean uniquelyLabeledChildren(T artifact) {
      *
      * @param artifact
      *         the {@link Artifact} to check for ordered children
+     * @param stats
+     *         the {@link MatcherStatistics} to count the cache access in
      * @return true iff any child of the given {@code artifact} is ordered
      * @see Artifact#isOrdered()
      */
-    boolean orderedChildren(T artifact) {
-        return orderedChildren.computeIfAbsent(artifact, a ->
-                a.getChildren().stream().anyMatch(T::isOrdered));
+    boolean orderedChildren(T artifact, MatcherStatistics stats) {
+        Boolean ordered = orderedChildren.get(artifact);
+        stats.cacheAccess(ordered != null);
+
+        if (ordered == null) {
+            ordered = artifact.getChildren().stream().anyMatch(T::isOrdered);
+            orderedChildren.put(artifact, ordered);
+        }
+
+        return ordered;
     }
 
     /**
@@ -81,11 +101,21 @@ boolean orderedChildren(T artifact) {
      *
      * @param artifact
      *         the root of the {@link Artifact} tree to check for full ordering
+     * @param stats
+     *         the {@link MatcherStatistics} to count the cache accesses in
      * @return true iff the tree rooted in {@code artifact} is fully ordered
      * @see Artifact#isOrdered()
      */
-    boolean fullyOrdered(T artifact) {
-        return fullyOrdered.computeIfAbsent(artifact, a ->
-                a.isOrdered() && a.getChildren().stream().allMatch(this::fullyOrdered));
+    boolean fullyOrdered(T artifact, MatcherStatistics stats) {
+        Boolean ordered = fullyOrdered.get(artifact);
+        stats.cacheAccess(ordered != null);
+
+        // no computeIfAbsent because the computation recursively modifies the map
+        if (ordered == null) {
+            ordered = artifact.isOrdered() && artifact.getChildren().stream().allMatch(c -> fullyOrdered(c, stats));
+            fullyOrdered.put(artifact, ordered);
+        }
+
+        return ordered;
     }
 }
@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.cost_model;
+
+import java.util.NoSuchElementException;
+
+import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.artifact.FlatTree;
+
+/**
+ * A precomputed index over the tree rooted in an <code>Artifact</code> answering the ancestry and lowest common
+ * ancestor queries of the <code>CostModelMatcher</code> without walking parent chains. Ancestry tests use the
+ * preorder intervals of the subtrees, the lowest common ancestor is found using a sparse table over the Euler tour of
+ * the tree. The index is immutable and may therefore be queried concurrently. It is not updated if the tree is
+ * modified after its construction.
+ *
+ * @param <T>
+ *         the type of the <code>Artifact</code>s
+ */
+final class AncestryIndex<T extends Artifact<T>> {
+
+    /**
+     * The indexed tree. The preorder number of a node is used as its id in all arrays below.
+     */
+    private final FlatTree<T> tree;
+
+    /**
+     * The preorder number of the last node in the subtree rooted in a node.
+     */
+    private final int[] end;
+
+    /**
+     * The index of a node in the list of children of its parent.
+     */
+    private final int[] siblingIndex;
+
+    /**
+     * Whether any node in the sibling group of a node is ordered.
+     */
+    private final boolean[] orderedGroup;
+
+    /**
+     * The children of node <code>v</code> are <code>children[childStart[v]]</code> to
+     * <code>children[childStart[v + 1] - 1]</code> in ascending preorder.
+     */
+    private final int[] childStart;
+    private final int[] children;
+
+    /**
+     * The position of the first occurrence of a node in the Euler tour.
+     */
+    private final int[] first;
+
+    /**
+     * <code>sparse[k][i]</code> is the node of minimal depth in the Euler tour positions [i, i + 2^k).
+     */
+    private final int[][] sparse;
+
+    /**
+     * Constructs a new <code>AncestryIndex</code> for the tree rooted in <code>root</code>.
+     *
+     * @param root
+     *         the root of the tree to index
+     */
+    AncestryIndex(T root) {
+        this(new FlatTree<>(root));
+    }
+
+    /**
+     * Constructs a new <code>AncestryIndex</code> for the given <code>FlatTree</code>.
+     *
+     * @param tree
+     *         the tree to index
+     */
+    AncestryIndex(FlatTree<T> tree) {
+        this.tree = tree;
+
+        int size = tree.size();
+
+        this.end = new int[size];
+        this.siblingIndex = new int[size];
+        this.orderedGroup = new boolean[size];
+        this.childStart = new int[size + 1];
+        this.children = new int[Math.max(0, size - 1)];
+
+        int pos = 0;
+
+        for (int v = 0; v < size; v++) {
+            end[v] = v + tree.subtreeSize(v) - 1;
+            childStart[v] = pos;
+
+            boolean ordered = false;
+            int index = 0;
+
+            for (int c = tree.firstChild(v); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+                ordered |= tree.isOrdered(c);
+                siblingIndex[c] = index++;
+                children[pos++] = c;
+            }
+
+            for (int c = tree.firstChild(v); c != FlatTree.NONE; c = tree.nextSibling(c)) {
+                orderedGroup[c] = ordered;
+            }
+        }
+
+        childStart[size] = pos;
+        orderedGroup[0] = tree.isOrdered(0);
+
+        this.first = new int[size];
+
+        int[] euler = eulerTour();
+        this.sparse = sparseTable(euler);
+    }
+
+    /**
+     * Returns the <code>FlatTree</code> this index was built for.
+     *
+     * @return the indexed <code>FlatTree</code>
+     */
+    FlatTree<T> tree() {
+        return tree;
+    }
+
+    /**
+     * Computes the Euler tour of the indexed tree and fills {@link #first}.
+     *
+     * @return the ids of the nodes in the order they are visited by the Euler tour
+     */
+    private int[] eulerTour() {
+        int size = tree.size();
+        int[] euler = new int[2 * size - 1];
+        int[] next = new int[size];
+        int[] stack = new int[size];
+        int top = 0;
+        int pos = 0;
+
+        stack[top] = 0;
+        first[0] = pos;
+        euler[pos++] = 0;
+
+        while (top >= 0) {
+            int v = stack[top];
+
+            if (childStart[v] + next[v] < childStart[v + 1]) {
+                int child = children[childStart[v] + next[v]++];
+
+                stack[++top] = child;
+                first[child] = pos;
+                euler[pos++] = child;
+            } else if (--top >= 0) {
+                euler[pos++] = stack[top];
+            }
+        }
+
+        return euler;
+    }
+
+    /**
+     * Builds the sparse table for range minimum queries (by depth) over the given Euler tour.
+     *
+     * @param euler
+     *         the Euler tour of the indexed tree
+     * @return the sparse table
+     */
+    private int[][] sparseTable(int[] euler) {
+        int levels = log2(euler.length) + 1;
+        int[][] table = new int[levels][];
+
+        table[0] = euler;
+
+        for (int k = 1; k < levels; k++) {
+            int[] prev = table[k - 1];
+            int[] cur = new int[euler.length - (1 << k) + 1];
+            int half = 1 << (k - 1);
+
+            for (int i = 0; i < cur.length; i++) {
+                int a = prev[i];
+                int b = prev[i + half];
+
+                cur[i] = tree.depth(a) <= tree.depth(b) ? a : b;
+            }
+
+            table[k] = cur;
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the floor of the binary logarithm of <code>n</code>.
+     *
+     * @param n
+     *         a positive integer
+     * @return the floor of log2(n)
+     */
+    private static int log2(int n) {
+        return 31 - Integer.numberOfLeadingZeros(n);
+    }
+
+    /**
+     * Returns the id of the given <code>artifact</code> in this index.
+     *
+     * @param artifact
+     *         the <code>Artifact</code> whose id is to be returned
+     * @return the id
+     * @throws NoSuchElementException
+     *         if <code>artifact</code> is not part of the indexed tree
+     */
+    int id(T artifact) {
+        int id = tree.id(artifact);
+
+        if (id == FlatTree.NONE) {
+            throw new NoSuchElementException(artifact + " is not part of the indexed tree.");
+        }
+
+        return id;
+    }
+
+    /**
+     * Returns the <code>Artifact</code> with the given id.
+     *
+     * @param id
+     *         the id of the <code>Artifact</code>
+     * @return the <code>Artifact</code>
+     */
+    T artifact(int id) {
+        return tree.artifact(id);
+    }
+
+    /**
+     * Returns whether <code>ancestor</code> is an ancestor of (or identical to) <code>descendant</code>.
+     *
+     * @param ancestor
+     *         the id of the potential ancestor
+     * @param descendant
+     *         the id of the potential descendant
+     * @return true iff the subtree rooted in <code>ancestor</code> contains <code>descendant</code>
+     */
+    boolean isAncestor(int ancestor, int descendant) {
+        return ancestor <= descendant && descendant <= end[ancestor];
+    }
+
+    /**
+     * Returns the preorder number (id) of the last node in the subtree rooted in <code>v</code>. The subtree consists of
+     * the nodes with ids from <code>v</code> to the returned id.
+     *
+     * @param v
+     *         the id of the root of the subtree
+     * @return the id of the last node of the subtree in preorder
+     */
+    int subtreeEnd(int v) {
+        return end[v];
+    }
+
+    /**
+     * Returns the lowest common ancestor of the nodes <code>a</code> and <code>b</code>.
+     *
+     * @param a
+     *         the id of the first node
+     * @param b
+     *         the id of the second node
+     * @return the id of the lowest common ancestor
+     */
+    int lca(int a, int b) {
+
+        if (isAncestor(a, b)) {
+            return a;
+        }
+
+        if (isAncestor(b, a)) {
+            return b;
+        }
+
+        int l = Math.min(first[a], first[b]);
+        int r = Math.max(first[a], first[b]);
+        int k = log2(r - l + 1);
+        int x = sparse[k][l];
+        int y = sparse[k][r - (1 << k) + 1];
+
+        return tree.depth(x) <= tree.depth(y) ? x : y;
+    }
+
+    /**
+     * Returns the ancestor of <code>a</code> that is in the same sibling group as an ancestor of <code>b</code>. That
+     * is the child of the lowest common ancestor of <code>a</code> and <code>b</code> on the path to <code>a</code>.
+     * If one of the nodes is an ancestor of the other, the ancestor is returned.
+     *
+     * @param a
+     *         the id of the node whose ancestor is to be returned
+     * @param b
+     *         the id of the other node
+     * @return the id of the ancestor of <code>a</code>
+     */
+    int siblingAncestor(int a, int b) {
+        int lca = lca(a, b);
+
+        if (lca == a || lca == b) {
+            return lca;
+        }
+
+        int lo = childStart[lca];
+        int hi = childStart[lca + 1] - 1;
+
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+
+            if (children[mid] <= a) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        return children[lo];
+    }
+
+    /**
+     * Returns the index of the node in the list of children of its parent. The root has index 0.
+     *
+     * @param v
+     *         the id of the node
+     * @return the index of the node among its siblings
+     */
+    int siblingIndex(int v) {
+        return siblingIndex[v];
+    }
+
+    /**
+     * Returns whether any node in the sibling group of <code>v</code> (including <code>v</code>) is ordered. The root
+     * forms a sibling group of its own.
+     *
+     * @param v
+     *         the id of the node
+     * @return whether the sibling group of the node contains an ordered node
+     * @see Artifact#isOrdered()
+     */
+    boolean orderedGroup(int v) {
+        return orderedGroup[v];
+    }
+
+    /**
+     * Returns the id of the parent of <code>v</code> or -1 for the root of the indexed tree.
+     *
+     * @param v
+     *         the id of the node
+     * @return the id of the parent
+     */
+    int parent(int v) {
+        return tree.parent(v);
+    }
+
+    /**
+     * Returns the number of nodes in the indexed tree.
+     *
+     * @return the size of the tree
+     */
+    int size() {
+        return tree.size();
+    }
+}
@@ -25,9 +25,7 @@
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
 
 import de.fosd.jdime.artifact.Artifact;
@@ -117,17 +115,4 @@ boolean sane() {
 
         return leftTree.isEmpty() && rightTree.isEmpty();
     }
-
-    /**
-     * Returns this list of matchings as a <code>Map</code>. The map will contain matchings (l => r) and (r => l) for
-     * every matching [l, r].
-     *
-     * @return the matchings as a map
-     */
-    Map<T, T> asMap() {
-        return stream().filter(m -> !m.isNoMatch()).collect(HashMap::new, (map, matching) -> {
-            map.put(matching.m, matching.n);
-            map.put(matching.n, matching.m);
-        }, HashMap::putAll);
-    }
 }
@@ -28,8 +28,8 @@
 import java.util.concurrent.ConcurrentMap;
 
 import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.artifact.FlatTree;
 import de.fosd.jdime.config.merge.MergeContext;
-import de.fosd.jdime.util.Tuple;
 import org.apache.commons.math3.distribution.IntegerDistribution;
 import org.apache.commons.math3.distribution.PascalDistribution;
 import org.apache.commons.math3.random.RandomAdaptor;
@@ -112,7 +112,12 @@
      * Caches valid for the entirety of the CostModelMatcher#match(MergeContext, Artifact, Artifact) function.
      */
 
-    ConcurrentMap<Tuple<T, T>, Tuple<T, T>> lcaCache;
+    /**
+     * The <code>AncestryIndex</code>es of the left and right tree being matched.
+     */
+    AncestryIndex<T> leftIndex;
+    AncestryIndex<T> rightIndex;
+
     ConcurrentMap<T, List<T>> siblingCache;
     ConcurrentMap<T, List<T>> otherSiblingsCache;
 
@@ -154,7 +159,6 @@ public CMParameters(MergeContext context) {
         setBeta(30);
         setParallel(context.isCmMatcherParallel());
         setFixRandomPercentage(context.isCmMatcherFixRandomPercentage());
-        lcaCache = new ConcurrentHashMap<>();
         siblingCache = new ConcurrentHashMap<>();
         otherSiblingsCache = new ConcurrentHashMap<>();
         exactContainsCache = new ConcurrentHashMap<>();
@@ -345,6 +349,22 @@ public void setFixRandomPercentage(boolean fixRandomPercentage) {
         this.fixRandomPercentage = fixRandomPercentage;
     }
 
+    /**
+     * Builds the <code>FlatTree</code>s (sharing their <code>Labels</code>) and <code>AncestryIndex</code>es for the
+     * trees rooted in <code>left</code> and <code>right</code>.
+     *
+     * @param left
+     *         the left root
+     * @param right
+     *         the right root
+     */
+    void indexTrees(T left, T right) {
+        FlatTree.Labels labels = new FlatTree.Labels();
+
+        leftIndex = new AncestryIndex<>(new FlatTree<>(left, labels));
+        rightIndex = new AncestryIndex<>(new FlatTree<>(right, labels));
+    }
+
     /**
      * Clears the caches that are only valid for one exact cost calculation.
      */
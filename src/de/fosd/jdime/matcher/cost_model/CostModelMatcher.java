@@ -24,13 +24,12 @@
 package de.fosd.jdime.matcher.cost_model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
@@ -45,11 +44,12 @@
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.artifact.Artifacts;
+import de.fosd.jdime.artifact.FlatTree;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.matcher.MatcherInterface;
 import de.fosd.jdime.matcher.matching.Matching;
 import de.fosd.jdime.matcher.matching.Matchings;
-import de.fosd.jdime.util.Tuple;
+import de.fosd.jdime.stats.FlightRecorderEvents;
 import org.apache.commons.math3.random.RandomGenerator;
 
 import static de.fosd.jdime.matcher.cost_model.Bounds.BY_LOWER_UPPER;
@@ -164,7 +164,10 @@ public float cost(MergeContext context, Matchings<T> matchings, T left, T right)
             cmMatchings.add(new CMMatching<>(null, r));
         }
 
-        return cost(cmMatchings, new CMParameters<>(context));
+        CMParameters<T> parameters = new CMParameters<>(context);
+        parameters.indexTrees(left, right);
+
+        return cost(cmMatchings, parameters);
     }
 
     /**
@@ -242,7 +245,10 @@ private void cost(CMMatching<T> matching, CMMatchings<T> matchings, CMParameters
      * @return the exact renaming cost of the <code>matching</code>
      */
     private float renamingCost(CMMatching<T> matching, CMParameters<T> parameters) {
-        if (matching.m.matches(matching.n)) {
+        FlatTree<T> lTree = parameters.leftIndex.tree();
+        FlatTree<T> rTree = parameters.rightIndex.tree();
+
+        if (lTree.matches(lTree.id(matching.m), rTree, rTree.id(matching.n))) {
             return 0;
         } else {
             return parameters.wr.weigh(matching);
@@ -282,12 +288,9 @@ private float ancestryViolationCost(CMMatching<T> matching, CMMatchings<T> match
      * @return the number of children of <code>m</code> violating ancestry
      */
     private int numAncestryViolatingChildren(T m, T n, CMMatchings<T> matchings, CMParameters<T> parameters) {
-        List<T> mChildren = m.getChildren();
-        List<T> nChildren = n.getChildren();
+        Predicate<T> filter = a -> a != null && a.getParent() != n;
 
-        Predicate<T> filter = a -> a != null && !nChildren.contains(a);
-
-        return (int) mChildren.stream().map(mChild -> image(mChild, matchings, parameters)).filter(filter).count();
+        return (int) m.getChildren().stream().map(mChild -> image(mChild, matchings, parameters)).filter(filter).count();
     }
 
     /**
@@ -409,7 +412,7 @@ private float orderingCost(CMMatching<T> matching, CMMatchings<T> matchings, CMP
         Stream<CMMatching<T>> s = concat(leftSiblings, rightSiblings).map(a -> matching(a, matchings, parameters))
                                                                      .filter(m -> !m.isNoMatch()).distinct();
 
-        if (s.anyMatch(toCheck -> violatesOrdering(toCheck, matching, matchings, parameters))) {
+        if (s.anyMatch(toCheck -> violatesOrdering(toCheck, matching, parameters))) {
             return parameters.wo.weigh(matching);
         } else {
             return 0;
@@ -423,27 +426,31 @@ private float orderingCost(CMMatching<T> matching, CMMatchings<T> matchings, CMP
      *         the matching to check
      * @param matching
      *         the matching introducing an ordering
-     * @param matchings
-     *         all matchings
      * @param parameters
      *         the cost model parameters
      * @return true iff <code>toCheck</code> violates the ordering induced by <code>matching</code>
      */
-    private boolean violatesOrdering(CMMatching<T> toCheck, CMMatching<T> matching, CMMatchings<T> matchings, CMParameters<T> parameters) {
-        Tuple<T, T> leftSides = lca(toCheck.m, matching.m, matchings, parameters);
-        Tuple<T, T> rightSides = lca(toCheck.n, matching.n, matchings, parameters);
-        List<T> leftSiblings = siblings(leftSides.x, matchings, parameters);
-        List<T> rightSiblings = siblings(rightSides.x, matchings, parameters);
+    private boolean violatesOrdering(CMMatching<T> toCheck, CMMatching<T> matching, CMParameters<T> parameters) {
+        AncestryIndex<T> lIndex = parameters.leftIndex;
+        AncestryIndex<T> rIndex = parameters.rightIndex;
 
-        if (concat(leftSiblings.stream(), rightSiblings.stream()).noneMatch(T::isOrdered)) {
+        int leftA = lIndex.id(toCheck.m);
+        int leftB = lIndex.id(matching.m);
+        int rightA = rIndex.id(toCheck.n);
+        int rightB = rIndex.id(matching.n);
+
+        int leftX = lIndex.siblingAncestor(leftA, leftB);
+        int rightX = rIndex.siblingAncestor(rightA, rightB);
+
+        if (!lIndex.orderedGroup(leftX) && !rIndex.orderedGroup(rightX)) {
             return false;
         }
 
-        int leftXi = leftSiblings.indexOf(leftSides.x);
-        int leftYi = leftSiblings.indexOf(leftSides.y);
-        int rightXi = rightSiblings.indexOf(rightSides.x);
-        int rightYi = rightSiblings.indexOf(rightSides.y);
-        
+        int leftXi = lIndex.siblingIndex(leftX);
+        int leftYi = lIndex.siblingIndex(lIndex.siblingAncestor(leftB, leftA));
+        int rightXi = rIndex.siblingIndex(rightX);
+        int rightYi = rIndex.siblingIndex(rIndex.siblingAncestor(rightB, rightA));
+
         if (leftXi < leftYi) {
             return rightXi > rightYi;
         } else if (leftXi > leftYi) {
@@ -453,68 +460,6 @@ private boolean violatesOrdering(CMMatching<T> toCheck, CMMatching<T> matching,
         return false; // TODO weird case, maybe true is better?
     }
 
-    /**
-     * Returns the path from the given <code>artifact</code> to the root node of the tree it is a part of.
-     *
-     * @param artifact
-     *         the <code>Artifact</code> to return the path for
-     * @return the path represented by a list of <code>Artifact</code>s beginning with <code>artifact</code> and ending
-     *          with the root of the tree
-     */
-    private List<T> pathToRoot(T artifact) {
-        List<T> path = new ArrayList<>();
-
-        do {
-            path.add(artifact);
-            artifact = artifact.getParent();
-        } while (artifact != null);
-
-        return path;
-    }
-
-    /**
-     * Finds the lowest pair of (possibly different) ancestors of <code>a</code> and <code>b</code> that are part of the
-     * same sibling group.
-     *
-     * @param a
-     *         the first <code>Artifact</code>
-     * @param b
-     *         the second <code>Artifact</code>
-     * @param matchings
-     *         the current <code>CMMatching</code>
-     * @param parameters
-     *         the <code>CMParameters</code> to use
-     * @return the ancestor of the first <code>Artifact</code> in the first position, that of the second in the second
-     *          position
-     */
-    private Tuple<T, T> lca(T a, T b, CMMatchings<T> matchings, CMParameters<T> parameters) {
-        return parameters.lcaCache.computeIfAbsent(Tuple.of(a, b), ab -> {
-            Tuple<T, T> ba = Tuple.of(b, a);
-
-            if (parameters.lcaCache.containsKey(ba)) {
-                Tuple<T, T> baLCS = parameters.lcaCache.get(ba);
-                return Tuple.of(baLCS.y, baLCS.x);
-            }
-
-            if (siblings(a, matchings, parameters).contains(b)) {
-                return ab;
-            }
-
-            List<T> aPath = pathToRoot(a);
-            List<T> bPath = pathToRoot(b);
-            ListIterator<T> aIt = aPath.listIterator(aPath.size());
-            ListIterator<T> bIt = bPath.listIterator(bPath.size());
-            T l, r;
-
-            do {
-                l = aIt.previous();
-                r = bIt.previous();
-            } while (l == r && (aIt.hasPrevious() && bIt.hasPrevious()));
-
-            return Tuple.of(l, r);
-        });
-    }
-
     /**
      * Finds the (first) <code>CMMatching</code> in <code>matchings</code> containing the given
      * <code>artifact</code>.
@@ -655,14 +600,14 @@ private boolean ancestryIndicator(T child, T n, CMMatchings<T> currentMatchings,
         if (upper) {
             Predicate<CMMatching<T>> indicator = match -> {
                 T partner = match.other(child);
-                return !(partner == null || n.getChildren().contains(partner));
+                return !(partner == null || partner.getParent() == n);
             };
 
             return containing(child, currentMatchings, parameters).stream().anyMatch(indicator);
         } else {
             Predicate<CMMatching<T>> indicator = match -> {
                 T partner = match.other(child);
-                return partner == null || n.getChildren().contains(partner);
+                return partner == null || partner.getParent() == n;
             };
 
             return containing(child, currentMatchings, parameters).stream().noneMatch(indicator);
@@ -833,7 +778,7 @@ private Bounds boundOrderingCost(CMMatching<T> matching, CMMatchings<T> currentM
 
         boolean orderingPossible = siblings.allMatch(sib ->
             containing(sib, currentMatchings, parameters).stream().anyMatch(match ->
-                match.isNoMatch() || !violatesOrdering(match, matching, currentMatchings, parameters)
+                match.isNoMatch() || !violatesOrdering(match, matching, parameters)
             )
         );
 
@@ -847,7 +792,7 @@ private Bounds boundOrderingCost(CMMatching<T> matching, CMMatchings<T> currentM
 
             boolean violationPossible = siblings.anyMatch(sib ->
                 containing(sib, currentMatchings, parameters).stream().anyMatch(match ->
-                    !match.isNoMatch() && violatesOrdering(match, matching, currentMatchings, parameters)
+                    !match.isNoMatch() && violatesOrdering(match, matching, parameters)
                 )
             );
 
@@ -973,6 +918,7 @@ public Matchings<T> match(MergeContext context, T left, T right, Matchings<T> pr
      */
     private Matchings<T> match(MergeContext context, T left, T right, CMMatchings<T> preFixed) {
         CMParameters<T> parameters = new CMParameters<>(context);
+        parameters.indexTrees(left, right);
 
         LOG.fine("Matching " + left + " and " + right + " using the " + getClass().getSimpleName());
 
@@ -983,24 +929,33 @@ private Matchings<T> match(MergeContext context, T left, T right, CMMatchings<T>
         float lowestCost = mObjVal.matchingsCost;
 
         for (int i = 0; i < context.getCostModelIterations(); i++) {
-            CMMatchings<T> mHat = propose(m, preFixed, parameters);
-            AcceptanceProbability mHatAccProb = acceptanceProb(mObjVal.objValue, mHat, parameters);
+            try (FlightRecorderEvents.Event event = FlightRecorderEvents.costModelIteration(i)) {
+                CMMatchings<T> mHat = propose(m, preFixed, parameters);
+                AcceptanceProbability mHatAccProb = acceptanceProb(mObjVal.objValue, mHat, parameters);
+                boolean accepted = chance(parameters.rng, mHatAccProb.acceptanceProbability);
 
-            if (chance(parameters.rng, mHatAccProb.acceptanceProbability)) {
+                if (accepted) {
 
-                log(FINER, mHat, () -> "Accepting the matchings.");
+                    log(FINER, mHat, () -> "Accepting the matchings.");
 
-                m = mHat;
-                mObjVal = mHatAccProb.mHatObjectiveValue;
-            }
+                    m = mHat;
+                    mObjVal = mHatAccProb.mHatObjectiveValue;
+                }
 
-            if (mHatAccProb.mHatObjectiveValue.matchingsCost < lowestCost) {
+                if (mHatAccProb.mHatObjectiveValue.matchingsCost < lowestCost) {
 
-                lowest = mHat;
-                lowestCost = mHatAccProb.mHatObjectiveValue.matchingsCost;
+                    lowest = mHat;
+                    lowestCost = mHatAccProb.mHatObjectiveValue.matchingsCost;
 
-                float finalLowestCost = lowestCost;
-                log(FINER, mHat, () -> "New lowest cost matchings with cost " + finalLowestCost + " found.");
+                    float finalLowestCost = lowestCost;
+                    log(FINER, mHat, () -> "New lowest cost matchings with cost " + finalLowestCost + " found.");
+                }
+
+                if (event.shouldCommit()) {
+                    event.set(FlightRecorderEvents.COST, mHatAccProb.mHatObjectiveValue.matchingsCost)
+                         .set(FlightRecorderEvents.LOWEST_COST, lowestCost)
+                         .set(FlightRecorderEvents.ACCEPTED, accepted);
+                }
             }
 
             LOG.fine("End of iteration " + i);
@@ -1008,7 +963,7 @@ private Matchings<T> match(MergeContext context, T left, T right, CMMatchings<T>
 
         LOG.fine(() -> "Matching ended after " + context.getCostModelIterations() + " iterations.");
 
-        return convert(lowest);
+        return convert(lowest, parameters);
     }
 
     /**
@@ -1030,23 +985,121 @@ boolean chance(RandomGenerator rng, double p) {
      *
      * @param matchings
      *         the <code>CMMatching</code>s to convert
+     * @param parameters
+     *         the cost model parameters
      * @return the resulting <code>Matchings</code>
      */
-    private Matchings<T> convert(CMMatchings<T> matchings) {
-        Map<T, T> mMap = matchings.asMap();
+    private Matchings<T> convert(CMMatchings<T> matchings, CMParameters<T> parameters) {
+        List<CMMatching<T>> matched = matchings.stream().filter(m -> !m.isNoMatch()).collect(toList());
+        int[] scores = scores(matched, parameters.leftIndex, parameters.rightIndex);
+        Matchings<T> result = new Matchings<>();
 
-        Function<CMMatching<T>, Matching<T>> toMatching = m -> {
-            Set<T> ls = new HashSet<>(Artifacts.dfs(m.m));
-            Set<T> rs = new HashSet<>(Artifacts.dfs(m.n));
-            int score = (int) ls.stream().filter(a -> rs.contains(mMap.get(a))).count();
+        for (int i = 0; i < scores.length; i++) {
+            CMMatching<T> m = matched.get(i);
+            Matching<T> matching = new Matching<>(m.m, m.n, scores[i]);
 
-            Matching<T> matching = new Matching<>(m.m, m.n, score);
             matching.setAlgorithm(CostModelMatcher.class.getSimpleName());
-            return matching;
-        };
+            result.add(matching);
+        }
 
-        return matchings.stream().filter(m -> !m.isNoMatch()).map(toMatching)
-                                 .collect(Matchings::new, Matchings::add, Matchings::addAll);
+        return result;
+    }
+
+    /**
+     * Computes the scores of the given <code>matched</code> pairs of artifacts. The score of a pair (m, n) is the
+     * number of artifacts in the tree rooted in m whose matching partner is part of the tree rooted in n. Using the
+     * preorder intervals of the subtrees, every score is the number of points (preorder number of an artifact,
+     * preorder number of its partner) in a rectangle. All scores are computed in one pass over the left tree in
+     * preorder that adds the points to a Fenwick tree over the right preorder numbers.
+     *
+     * @param matched
+     *         the <code>CMMatching</code>s (none of which may be a no-match) whose scores are to be computed
+     * @param lIndex
+     *         the <code>AncestryIndex</code> of the left tree
+     * @param rIndex
+     *         the <code>AncestryIndex</code> of the right tree
+     * @return the scores in the order of <code>matched</code>
+     */
+    static <T extends Artifact<T>> int[] scores(List<CMMatching<T>> matched, AncestryIndex<T> lIndex,
+                                                AncestryIndex<T> rIndex) {
+        int lSize = lIndex.size();
+        int[] image = new int[lSize];
+        int[] queryStart = new int[lSize + 1];
+
+        Arrays.fill(image, -1);
+
+        for (CMMatching<T> m : matched) {
+            int l = lIndex.id(m.m);
+
+            image[l] = rIndex.id(m.n);
+            queryStart[lIndex.subtreeEnd(l) + 1]++;
+
+            if (l > 0) {
+                queryStart[l]++;
+            }
+        }
+
+        for (int i = 0; i < lSize; i++) {
+            queryStart[i + 1] += queryStart[i];
+        }
+
+        /*
+         * A query at left preorder number x counts the points with a left coordinate <= x. It adds to the score of
+         * the matching at the end of the subtree and subtracts from it just before the start of the subtree.
+         */
+        int[] queries = new int[queryStart[lSize]];
+        int[] fill = Arrays.copyOf(queryStart, lSize);
+
+        for (int i = 0; i < matched.size(); i++) {
+            int l = lIndex.id(matched.get(i).m);
+
+            queries[fill[lIndex.subtreeEnd(l)]++] = i + 1;
+
+            if (l > 0) {
+                queries[fill[l - 1]++] = -(i + 1);
+            }
+        }
+
+        int[] fenwick = new int[rIndex.size() + 1];
+        int[] scores = new int[matched.size()];
+
+        for (int x = 0; x < lSize; x++) {
+
+            if (image[x] != -1) {
+                for (int i = image[x] + 1; i < fenwick.length; i += i & -i) {
+                    fenwick[i]++;
+                }
+            }
+
+            for (int q = queryStart[x]; q < queryStart[x + 1]; q++) {
+                int i = Math.abs(queries[q]) - 1;
+                int r = rIndex.id(matched.get(i).n);
+                int count = prefixCount(fenwick, rIndex.subtreeEnd(r)) - prefixCount(fenwick, r - 1);
+
+                scores[i] += queries[q] > 0 ? count : -count;
+            }
+        }
+
+        return scores;
+    }
+
+    /**
+     * Returns the number of points with a right preorder number &lt;= <code>y</code> added to the given Fenwick tree.
+     *
+     * @param fenwick
+     *         the Fenwick tree
+     * @param y
+     *         the maximum preorder number
+     * @return the number of points
+     */
+    private static int prefixCount(int[] fenwick, int y) {
+        int count = 0;
+
+        for (int i = y + 1; i > 0; i -= i & -i) {
+            count += fenwick[i];
+        }
+
+        return count;
     }
 
     /**
@@ -1202,15 +1255,24 @@ private CMMatchings<T> completeBipartiteGraph(T left, T right, CMParameters<T> p
         leftNodes.add(null);
         rightNodes.add(null);
 
+        FlatTree<T> lTree = parameters.leftIndex.tree();
+        FlatTree<T> rTree = parameters.rightIndex.tree();
+        int[] lIds = leftNodes.stream().mapToInt(n -> n == null ? FlatTree.NONE : lTree.id(n)).toArray();
+        int[] rIds = rightNodes.stream().mapToInt(n -> n == null ? FlatTree.NONE : rTree.id(n)).toArray();
+
         CMMatchings<T> bipartiteGraph = new CMMatchings<>(left, right);
 
-        for (T lNode : leftNodes) {
-            for (T rNode : rightNodes) {
+        for (int i = 0; i < lIds.length; i++) {
+            for (int j = 0; j < rIds.length; j++) {
+                int l = lIds[i];
+                int r = rIds[j];
+
+                if (l == FlatTree.NONE && r == FlatTree.NONE) {
+                    continue;
+                }
 
-                if (lNode != null && (rNode == null || lNode.categoryMatches(rNode))) {
-                    bipartiteGraph.add(new CMMatching<>(lNode, rNode));
-                } else if (rNode != null && (lNode == null || rNode.categoryMatches(lNode))) {
-                    bipartiteGraph.add(new CMMatching<>(lNode, rNode));
+                if (l == FlatTree.NONE || r == FlatTree.NONE || lTree.categoryMatches(l, rTree, r)) {
+                    bipartiteGraph.add(new CMMatching<>(leftNodes.get(i), rightNodes.get(j)));
                 }
             }
         }
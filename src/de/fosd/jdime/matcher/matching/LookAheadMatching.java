@@ -89,4 +89,13 @@ public boolean equals(Object o) {
     public int hashCode() {
         return Objects.hash(lookAheadFrom);
     }
+
+    @Override
+    @SuppressWarnings("unchecked") // the warning is inevitable but harmless
+    public LookAheadMatching<T> clone() {
+        LookAheadMatching<T> clone = (LookAheadMatching<T>) super.clone();
+        clone.lookAheadFrom = lookAheadFrom.clone();
+
+        return clone;
+    }
 }
@@ -24,13 +24,10 @@
 package de.fosd.jdime.matcher.ordered.mceSubtree;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.function.Function;
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.util.Tuple;
@@ -42,6 +39,10 @@
  * sequence of a tree is the balanced sequence of its root node. This implementation adds the root node to the
  * balanced sequence (as if by adding a virtual root node with a single child (the root node) and constructing the
  * normal balanced sequence of the tree).
+ * <p>
+ * The sequence is encoded as a range of an <code>int</code> array. Every 0 is stored as the (positive) symbol of the
+ * node it opens (see {@link SymbolTable}), every 1 is stored as {@link #CLOSE}. Heads and tails of a sequence share
+ * the array of the sequence.
  *
  * @param <T>
  *         the type of the <code>Artifact</code> whose balanced sequence is to be constructed
@@ -51,13 +52,75 @@
  */
 public class BalancedSequence<T extends Artifact<T>> {
 
-    @SuppressWarnings("unchecked")
-    private static final BalancedSequence<?> EMPTY_SEQ = new BalancedSequence<>(Collections.EMPTY_LIST);
+    /**
+     * The decomposition of a <code>BalancedSequence</code>. Every balanced sequence in the decomposition is
+     * identified by a code. Codes are ordered by the length of the sequences they identify, code 0 is the empty
+     * sequence and the highest code is the decomposed sequence itself. For every non-empty sequence the codes of its
+     * head, tail and the concatenation of its head and tail are stored.
+     */
+    static final class Decomposition {
+
+        /**
+         * The distinct root symbols of the sequences in the decomposition.
+         */
+        final int[] roots;
 
-    private List<T> seq;
-    private int hashCode;
+        /**
+         * The index into {@link #roots} of the root symbol of a sequence, -1 for the empty sequence.
+         */
+        final int[] root;
+
+        final int[] head;
+        final int[] tail;
+        final int[] rest;
+
+        /**
+         * Constructs a new <code>Decomposition</code>.
+         *
+         * @param roots
+         *         the distinct root symbols
+         * @param root
+         *         the index of the root symbol of every sequence
+         * @param head
+         *         the code of the head of every sequence
+         * @param tail
+         *         the code of the tail of every sequence
+         * @param rest
+         *         the code of the concatenation of head and tail of every sequence
+         */
+        private Decomposition(int[] roots, int[] root, int[] head, int[] tail, int[] rest) {
+            this.roots = roots;
+            this.root = root;
+            this.head = head;
+            this.tail = tail;
+            this.rest = rest;
+        }
 
-    private Map<BalancedSequence<T>, Set<BalancedSequence<T>>> decompositionCache;
+        /**
+         * Returns the number of balanced sequences in this decomposition.
+         *
+         * @return the size of the decomposition
+         */
+        int size() {
+            return root.length;
+        }
+    }
+
+    /**
+     * The encoding of a 1 in the sequence.
+     */
+    private static final int CLOSE = 0;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final SymbolTable<T> symbols;
+
+    private final int[] seq;
+    private final int from;
+    private final int length;
+    private final int hashCode;
+
+    private DecompositionCache<T> decompositionCache;
 
     /**
      * Constructs a new <code>BalancedSequence</code> representing the given <code>tree</code> structure.
@@ -66,8 +129,7 @@
      *         the tree of <code>Artifact</code>s
      */
     public BalancedSequence(T tree) {
-        this.seq = new ArrayList<>(Collections.nCopies(tree.getTreeSize() * 2, null));
-        initSeq(tree, Integer.MAX_VALUE);
+        this(tree, Integer.MAX_VALUE);
     }
 
     /**
@@ -80,19 +142,100 @@ public BalancedSequence(T tree) {
      *         the maximum depth of nodes to consider
      */
     public BalancedSequence(T tree, int maxDepth) {
-        this.seq = new ArrayList<>(Collections.nCopies(getSize(tree, maxDepth) * 2, null));
-        initSeq(tree, maxDepth);
+        this(tree, maxDepth, new SymbolTable<>());
+    }
+
+    /**
+     * Constructs a new <code>BalancedSequence</code> representing the given <code>tree</code> structure.
+     * All nodes with depth <code>maxDepth</code> will be considered leaf nodes.
+     *
+     * @param tree
+     *         the tree of <code>Artifact</code>s
+     * @param maxDepth
+     *         the maximum depth of nodes to consider
+     * @param symbols
+     *         the <code>SymbolTable</code> to encode the nodes with
+     */
+    BalancedSequence(T tree, int maxDepth, SymbolTable<T> symbols) {
+        this(tree, maxDepth, symbols, null);
+    }
+
+    /**
+     * Constructs a new <code>BalancedSequence</code> representing the given <code>tree</code> structure.
+     * All nodes with depth <code>maxDepth</code> will be considered leaf nodes. If <code>subtrees</code> is not
+     * <code>null</code>, the balanced sequences of all encoded subtrees (including the one of <code>tree</code>) are
+     * stored in it. They are ranges of the array of this sequence.
+     *
+     * @param tree
+     *         the tree of <code>Artifact</code>s
+     * @param maxDepth
+     *         the maximum depth of nodes to consider
+     * @param symbols
+     *         the <code>SymbolTable</code> to encode the nodes with
+     * @param subtrees
+     *         the <code>Map</code> to store the sequences of the subtrees in or <code>null</code>
+     */
+    private BalancedSequence(T tree, int maxDepth, SymbolTable<T> symbols, Map<T, BalancedSequence<T>> subtrees) {
+        this.symbols = symbols;
+        this.seq = new int[getSize(tree, maxDepth) * 2];
+        this.from = 0;
+        this.length = seq.length;
+
+        encode(tree, 0, 0, maxDepth, subtrees);
+        this.hashCode = hash(seq, from, length);
+
+        if (subtrees != null) {
+            subtrees.put(tree, this);
+        }
+    }
+
+    /**
+     * Returns the <code>BalancedSequence</code> of the whole <code>tree</code>. The sequences of all its subtrees are
+     * stored in <code>subtrees</code> as ranges of the array of the returned sequence. They (and the returned sequence)
+     * use the given <code>decompositionCache</code>.
+     *
+     * @param tree
+     *         the tree of <code>Artifact</code>s
+     * @param symbols
+     *         the <code>SymbolTable</code> to encode the nodes with
+     * @param decompositionCache
+     *         the decomposition cache to use, may be <code>null</code>
+     * @param subtrees
+     *         the <code>Map</code> to store the sequences of the subtrees in
+     * @param <T>
+     *         the type of the <code>Artifact</code>s
+     * @return the <code>BalancedSequence</code> of <code>tree</code>
+     */
+    static <T extends Artifact<T>> BalancedSequence<T> ofTree(T tree, SymbolTable<T> symbols,
+                                                             DecompositionCache<T> decompositionCache,
+                                                             Map<T, BalancedSequence<T>> subtrees) {
+        Map<T, BalancedSequence<T>> sequences = new HashMap<>();
+        BalancedSequence<T> seq = new BalancedSequence<>(tree, Integer.MAX_VALUE, symbols, sequences);
+
+        sequences.values().forEach(s -> s.setDecompositionCache(decompositionCache));
+        subtrees.putAll(sequences);
+
+        return seq;
     }
 
     /**
-     * Constructs a new <code>BalancedSequence</code> wrapping the given <code>seq</code>.
+     * Constructs a new <code>BalancedSequence</code> wrapping the given range of <code>seq</code>.
      *
+     * @param symbols
+     *         the <code>SymbolTable</code> the sequence was encoded with
      * @param seq
-     *         the sequence to wrap
+     *         the array containing the sequence
+     * @param from
+     *         the index of the first element of the sequence
+     * @param length
+     *         the length of the sequence
      */
-    private BalancedSequence(List<T> seq) {
+    private BalancedSequence(SymbolTable<T> symbols, int[] seq, int from, int length) {
+        this.symbols = symbols;
         this.seq = seq;
-        this.hashCode = seq.hashCode();
+        this.from = from;
+        this.length = length;
+        this.hashCode = hash(seq, from, length);
     }
 
     /**
@@ -120,117 +263,147 @@ private int getSize(T tree, int depth) {
     }
 
     /**
-     * Initializes the <code>seq</code> array to the balanced sequence of the <code>tree</code>.
-     *
-     * @param tree
-     *         the tree whose balanced sequence is to be inserted in the <code>seq</code> array
-     * @param maxDepth
-     *         the maximum depth of nodes to add
-     */
-    private void initSeq(T tree, int maxDepth) {
-        seq.set(0, tree);
-        initSeqRec(tree, 1, 0, maxDepth);
-        hashCode = seq.hashCode();
-    }
-
-    /**
-     * Initializes the <code>seq</code> array to the balanced sequence of the <code>tree</code>.
+     * Writes the balanced sequence of the <code>tree</code> (including its root) to the <code>seq</code> array.
      *
      * @param tree
      *         the tree whose balanced sequence is to be inserted in the <code>seq</code> array
      * @param index
-     *         the index for the 0 before the first child
+     *         the index for the 0 opening <code>tree</code>
      * @param currentDepth
      *         the current depth in the tree
      * @param maxDepth
      *         the maximum depth of nodes to add
+     * @param subtrees
+     *         the <code>Map</code> to store the sequences of the proper subtrees of <code>tree</code> in or
+     *         <code>null</code>
      *
-     * @return the index after the last index written to;
+     * @return the index after the last index written to
      */
-    private int initSeqRec(T tree, int index, int currentDepth, int maxDepth) {
+    private int encode(T tree, int index, int currentDepth, int maxDepth, Map<T, BalancedSequence<T>> subtrees) {
+        seq[index++] = symbols.symbol(tree);
 
         if (currentDepth < maxDepth) {
             for (T t : tree.getChildren()) {
-                seq.set(index++, t);
-                index = initSeqRec(t, index, currentDepth + 1, maxDepth);
-                index++;
+                int start = index;
+
+                index = encode(t, index, currentDepth + 1, maxDepth, subtrees);
+
+                if (subtrees != null) {
+                    subtrees.put(t, new BalancedSequence<>(symbols, seq, start, index - start));
+                }
             }
         }
 
+        seq[index++] = CLOSE;
+
         return index;
     }
 
     /**
-     * Partitions the balanced sequence into its head and tail. The head and tail of a balanced sequence <code>s</code>
-     * are unique balanced sequences such that <code>s = 0 head(s) 1 tail(s)</code>.
+     * Computes the hash of the given range of <code>seq</code>.
      *
-     * @return a <code>Pair</code> of (<code>head(s), tail(s)</code>)
+     * @param seq
+     *         the array
+     * @param from
+     *         the first index of the range
+     * @param length
+     *         the length of the range
+     * @return the hash code
      */
-    public Tuple<BalancedSequence<T>, BalancedSequence<T>> partition() {
+    private static int hash(int[] seq, int from, int length) {
+        int hash = 1;
 
-        if (seq.size() == 0 || seq.size() == 2) {
-            return Tuple.of(emptySeq(), emptySeq());
+        for (int i = from; i < from + length; i++) {
+            hash = 31 * hash + seq[i];
         }
 
-        int numZeros = 0;
-        int index = 0;
+        return hash;
+    }
 
-        do {
-            if (seq.get(index++) == null) {
-                numZeros--;
-            } else {
-                numZeros++;
-            }
-        } while (numZeros > 0);
+    /**
+     * Returns an empty sequence using the same <code>SymbolTable</code> as this one.
+     *
+     * @return an empty <code>BalancedSequence</code>
+     */
+    private BalancedSequence<T> emptySeq() {
+        BalancedSequence<T> empty = new BalancedSequence<>(symbols, EMPTY, 0, 0);
+        empty.setDecompositionCache(decompositionCache);
 
-        BalancedSequence<T> head;
-        BalancedSequence<T> tail;
+        return empty;
+    }
 
-        int headLength = index - 2;
-        int tailLength = seq.size() - index;
+    /**
+     * Returns the sub-sequence of this sequence starting at <code>from</code> with the given <code>length</code>.
+     *
+     * @param from
+     *         the index into {@link #seq}
+     * @param length
+     *         the length of the sub-sequence
+     * @return the sub-sequence
+     */
+    private BalancedSequence<T> subSeq(int from, int length) {
 
-        if (headLength != 0) {
-            head = new BalancedSequence<>(seq.subList(1, 1 + headLength));
-            head.setDecompositionCache(decompositionCache);
-        } else {
-            head = emptySeq();
+        if (length == 0) {
+            return emptySeq();
         }
 
-        if (tailLength != 0) {
-            tail = new BalancedSequence<>(seq.subList(index, index + tailLength));
-            tail.setDecompositionCache(decompositionCache);
-        } else {
-            tail = emptySeq();
-        }
+        BalancedSequence<T> sub = new BalancedSequence<>(symbols, seq, from, length);
+        sub.setDecompositionCache(decompositionCache);
 
-        return Tuple.of(head, tail);
+        return sub;
     }
 
     /**
-     * Returns an empty sequence.
+     * Returns the index (into {@link #seq}) of the 1 closing the first 0 of this (non-empty) sequence.
      *
-     * @param <T>
-     *         the type of the <code>Artifact</code>
-     * @return an empty <code>BalancedSequence</code>
+     * @return the index of the first closing 1
      */
-    @SuppressWarnings("unchecked")
-    private static <T extends Artifact<T>> BalancedSequence<T> emptySeq() {
-        return (BalancedSequence<T>) EMPTY_SEQ;
+    private int firstClose() {
+        int depth = 0;
+        int index = from;
+
+        do {
+            if (seq[index++] == CLOSE) {
+                depth--;
+            } else {
+                depth++;
+            }
+        } while (depth > 0);
+
+        return index - 1;
+    }
+
+    /**
+     * Partitions the balanced sequence into its head and tail. The head and tail of a balanced sequence <code>s</code>
+     * are unique balanced sequences such that <code>s = 0 head(s) 1 tail(s)</code>.
+     *
+     * @return a <code>Pair</code> of (<code>head(s), tail(s)</code>)
+     */
+    public Tuple<BalancedSequence<T>, BalancedSequence<T>> partition() {
+
+        if (length == 0 || length == 2) {
+            return Tuple.of(emptySeq(), emptySeq());
+        }
+
+        int close = firstClose();
+        int end = from + length;
+
+        return Tuple.of(subSeq(from + 1, close - from - 1), subSeq(close + 1, end - close - 1));
     }
 
     /**
      * An expensive part of the algorithm implemented in {@link BalancedSequence#lcs(BalancedSequence, BalancedSequence)}
-     * is the decomposition of one <code>BalancedSequence</code> into a <code>Set</code> of <code>BalancedSequences</code>.
-     * When performing multiple calls to {@link BalancedSequence#lcs(BalancedSequence, BalancedSequence)} for similar
-     * <code>BalancedSequences</code> performance can be improved by using a persistent cache for all of them.
+     * is the decomposition of <code>BalancedSequence</code>s. When performing multiple calls to
+     * {@link BalancedSequence#lcs(BalancedSequence, BalancedSequence)} for similar <code>BalancedSequences</code>
+     * performance can be improved by using a persistent cache for all of them.
      * <p>
      * The given cache will be used and updated in the {@link #decompose()} method. It will also be passed to the
-     * produced <code>BalancedSequences</code> in {@link #decompose()} and {@link #partition()}.
+     * produced <code>BalancedSequences</code> in {@link #partition()}.
      *
      * @param decompositionCache
      *         the decomposition cache
      */
-    public void setDecompositionCache(Map<BalancedSequence<T>, Set<BalancedSequence<T>>> decompositionCache) {
+    void setDecompositionCache(DecompositionCache<T> decompositionCache) {
         this.decompositionCache = decompositionCache;
     }
 
@@ -241,31 +414,128 @@ public void setDecompositionCache(Map<BalancedSequence<T>, Set<BalancedSequence<
      *
      * @return the decomposition of this balanced sequence
      */
-    public Set<BalancedSequence<T>> decompose() {
+    Decomposition decompose() {
 
-        if (isEmpty()) {
-            return Collections.singleton(emptySeq());
+        if (decompositionCache != null) {
+            return decompositionCache.get(this, BalancedSequence::computeDecomposition);
+        } else {
+            return computeDecomposition(this);
         }
+    }
 
-        Function<BalancedSequence<T>, Set<BalancedSequence<T>>> calcDecomp = seq -> {
-            Set<BalancedSequence<T>> decomposition = new HashSet<>(Collections.singleton(seq));
+    /**
+     * Computes the decomposition of the given sequence <code>s</code>.
+     *
+     * @param s
+     *         the sequence to decompose
+     * @param <T>
+     *         the type of the <code>Artifact</code>s
+     * @return the decomposition
+     * @see #decompose()
+     */
+    private static <T extends Artifact<T>> Decomposition computeDecomposition(BalancedSequence<T> s) {
+        Map<BalancedSequence<T>, Integer> codes = new HashMap<>();
+        List<BalancedSequence<T>> seqs = new ArrayList<>();
 
-            Tuple<BalancedSequence<T>, BalancedSequence<T>> partition = partition();
-            BalancedSequence<T> head = partition.getX();
-            BalancedSequence<T> tail = partition.getY();
+        codes.put(s.emptySeq(), 0);
+        seqs.add(s.emptySeq());
 
-            decomposition.addAll(head.decompose());
-            decomposition.addAll(tail.decompose());
-            decomposition.addAll(concatenate(head, tail).decompose());
+        if (!s.isEmpty()) {
+            codes.put(s, 1);
+            seqs.add(s);
+        }
 
-            return decomposition;
-        };
+        int[] head = new int[16];
+        int[] tail = new int[16];
+        int[] rest = new int[16];
 
-        if (decompositionCache != null) {
-            return decompositionCache.computeIfAbsent(this, calcDecomp);
-        } else {
-            return calcDecomp.apply(this);
+        for (int c = 1; c < seqs.size(); c++) {
+            BalancedSequence<T> current = seqs.get(c);
+            Tuple<BalancedSequence<T>, BalancedSequence<T>> partition = current.partition();
+
+            if (c == head.length) {
+                head = Arrays.copyOf(head, 2 * c);
+                tail = Arrays.copyOf(tail, 2 * c);
+                rest = Arrays.copyOf(rest, 2 * c);
+            }
+
+            head[c] = code(partition.x, codes, seqs);
+            tail[c] = code(partition.y, codes, seqs);
+            rest[c] = code(concatenate(partition.x, partition.y), codes, seqs);
         }
+
+        int size = seqs.size();
+
+        /*
+         * Renumber the sequences by their length (counting sort). Every sequence derived from a sequence is shorter
+         * than it, the empty sequence is the only one of length 0 and the decomposed sequence the only one of maximum
+         * length.
+         */
+        int[] count = new int[s.length + 2];
+
+        for (BalancedSequence<T> seq : seqs) {
+            count[seq.length + 1]++;
+        }
+
+        for (int i = 1; i < count.length; i++) {
+            count[i] += count[i - 1];
+        }
+
+        int[] newCode = new int[size];
+
+        for (int c = 0; c < size; c++) {
+            newCode[c] = count[seqs.get(c).length]++;
+        }
+
+        Map<Integer, Integer> rootIndices = new HashMap<>();
+        int[] roots = new int[size];
+        int[] newRoot = new int[size];
+        int[] newHead = new int[size];
+        int[] newTail = new int[size];
+        int[] newRest = new int[size];
+
+        for (int c = 0; c < size; c++) {
+            BalancedSequence<T> seq = seqs.get(c);
+            int n = newCode[c];
+
+            if (seq.isEmpty()) {
+                newRoot[n] = -1;
+                continue;
+            }
+
+            int symbol = seq.seq[seq.from];
+            int index = rootIndices.computeIfAbsent(symbol, sym -> rootIndices.size());
+
+            roots[index] = symbol;
+            newRoot[n] = index;
+            newHead[n] = newCode[head[c]];
+            newTail[n] = newCode[tail[c]];
+            newRest[n] = newCode[rest[c]];
+        }
+
+        return new Decomposition(Arrays.copyOf(roots, rootIndices.size()), newRoot, newHead, newTail, newRest);
+    }
+
+    /**
+     * Returns the code of <code>seq</code>, assigning it the next free one (and appending it to <code>seqs</code>)
+     * if it has none.
+     *
+     * @param seq
+     *         the sequence whose code is to be returned
+     * @param codes
+     *         the codes assigned so far
+     * @param seqs
+     *         the sequences in the order of their codes
+     * @param <T>
+     *         the type of the <code>Artifact</code>s
+     * @return the code
+     */
+    private static <T extends Artifact<T>> int code(BalancedSequence<T> seq, Map<BalancedSequence<T>, Integer> codes,
+                                                    List<BalancedSequence<T>> seqs) {
+        return codes.computeIfAbsent(seq, s -> {
+            seqs.add(s);
+            return seqs.size() - 1;
+        });
     }
 
     /**
@@ -281,23 +551,22 @@ public Set<BalancedSequence<T>> decompose() {
      * @return the concatenation result
      */
     private static <T extends Artifact<T>> BalancedSequence<T> concatenate(BalancedSequence<T> left, BalancedSequence<T> right) {
-        int length = left.seq.size() + right.seq.size();
 
-        if (length == 0) {
-            return emptySeq();
+        if (right.isEmpty()) {
+            return left;
         }
 
-        List<T> result = new ArrayList<>(length);
-        result.addAll(left.seq);
-        result.addAll(right.seq);
+        if (left.isEmpty()) {
+            return right;
+        }
 
-        BalancedSequence<T> res = new BalancedSequence<>(result);
+        int[] result = new int[left.length + right.length];
 
-        if (left.decompositionCache != null) {
-            res.setDecompositionCache(left.decompositionCache);
-        } else if (right.decompositionCache != null) {
-            res.setDecompositionCache(right.decompositionCache);
-        }
+        System.arraycopy(left.seq, left.from, result, 0, left.length);
+        System.arraycopy(right.seq, right.from, result, left.length, right.length);
+
+        BalancedSequence<T> res = new BalancedSequence<>(left.symbols, result, 0, result.length);
+        res.setDecompositionCache(left.decompositionCache != null ? left.decompositionCache : right.decompositionCache);
 
         return res;
     }
@@ -305,6 +574,9 @@ private static <T extends Artifact<T>> BalancedSequence<T> concatenate(BalancedS
     /**
      * Returns the length (being the number of nodes of the tree it represents) of the longest common balanced sequence
      * between the balanced sequences <code>s</code> and <code>t</code>.
+     * <p>
+     * The sub-problems (pairs of sequences from the decompositions of <code>s</code> and <code>t</code>) are solved
+     * bottom up in order of the lengths of the sequences involved.
      *
      * @param s
      *         the first <code>BalancedSequence</code>
@@ -315,144 +587,46 @@ private static <T extends Artifact<T>> BalancedSequence<T> concatenate(BalancedS
      *
      * @return the length of the longest common balanced sequence
      */
-    public static <T extends Artifact<T>> Integer lcs(BalancedSequence<T> s, BalancedSequence<T> t) {
-        Map<Integer, Integer> codes = new HashMap<>();
-        Integer[][] results;
-        int code = 0;
-
-        /*
-         * The decompositions of s and t contain all balanced sequences that will be produced during the recursion
-         * through lcsRec. We assign each balanced sequence an index into the results array.
-         */
-        Set<BalancedSequence<T>> dec = new HashSet<>(s.decompose());
-        dec.addAll(t.decompose());
-
-        for (BalancedSequence<T> seq : dec) {
-            codes.put(seq.hashCode(), code++);
-        }
-
-        /*
-         * We build a triangular array because the lcs problem is symmetric (lcs(s, t) = lcs(t, s)).
-         * The functions lookup and store are then used to correctly address sub-problems (the recursive cases in
-         * lcsRec) using the codes of their balanced sequences.
-         */
-        results = new Integer[codes.size()][];
-
-        for (int i = 0; i < results.length; i++) {
-            results[i] = new Integer[i + 1];
-        }
-
-        return lcsRec(s, t, codes, results);
-    }
-
-    /**
-     * Recursive helper function for {@link BalancedSequence#lcs(BalancedSequence, BalancedSequence)}. Computes
-     * the longest common balanced sequence between the balanced sequences <code>s</code> and <code>t</code> using
-     * the <code>results</code> array to store results of sub-problems. <code>codes</code> must
-     * contain mappings for the hashes of every balanced sequence in the decompositions of <code>s</code> and
-     * <code>t</code> to an index in the array <code>results</code>.
-     *
-     * @param s
-     *         the first <code>BalancedSequence</code>
-     * @param t
-     *         the seconds <code>BalancedSequence</code>
-     * @param codes
-     *         the codes of the <code>BalancedSequence</code>s in the decompositions
-     * @param results
-     *         the array of solutions to sub-problems
-     * @param <T>
-     *         the type of the <code>Artifact</code>s
-     *
-     * @return the length of the longest common balanced sequence
-     */
-    private static <T extends Artifact<T>> Integer lcsRec(BalancedSequence<T> s, BalancedSequence<T> t,
-            Map<Integer, Integer> codes, Integer[][] results) {
+    public static <T extends Artifact<T>> int lcs(BalancedSequence<T> s, BalancedSequence<T> t) {
 
         if (s.isEmpty() || t.isEmpty()) {
             return 0;
         }
 
-        Integer codeS = codes.get(s.hashCode());
-        Integer codeT = codes.get(t.hashCode());
-        Integer result = lookup(codeS, codeT, results);
+        Decomposition sDec = s.decompose();
+        Decomposition tDec = t.decompose();
 
-        if (result != null) {
-            return result;
-        }
-
-        Tuple<BalancedSequence<T>, BalancedSequence<T>> sPart = s.partition();
-        Tuple<BalancedSequence<T>, BalancedSequence<T>> tPart = t.partition();
-        BalancedSequence<T> sHead = sPart.getX();
-        BalancedSequence<T> tHead = tPart.getX();
-        BalancedSequence<T> sTail = sPart.getY();
-        BalancedSequence<T> tTail = tPart.getY();
+        boolean[][] matches = new boolean[sDec.roots.length][tDec.roots.length];
 
-        Integer a = lcsRec(concatenate(sHead, sTail), t, codes, results);
-        Integer b = lcsRec(s, concatenate(tHead, tTail), codes, results);
+        for (int i = 0; i < sDec.roots.length; i++) {
+            T sRoot = s.symbols.artifact(sDec.roots[i]);
 
-        if (s.seq.get(0).matches(t.seq.get(0))) {
-            Integer c = lcsRec(sHead, tHead, codes, results) + lcsRec(sTail, tTail, codes, results) + 1;
-            result = max(a, max(b, c));
-        } else {
-            result = max(a, b);
+            for (int j = 0; j < tDec.roots.length; j++) {
+                matches[i][j] = sRoot.matches(t.symbols.artifact(tDec.roots[j]));
+            }
         }
 
-        store(codeS, codeT, results, result);
+        int[][] results = new int[sDec.size()][tDec.size()];
 
-        return result;
-    }
+        for (int i = 1; i < sDec.size(); i++) {
+            int[] row = results[i];
+            int[] restRow = results[sDec.rest[i]];
+            int[] headRow = results[sDec.head[i]];
+            int[] tailRow = results[sDec.tail[i]];
+            boolean[] rootMatches = matches[sDec.root[i]];
 
-    /**
-     * Looks up the result of the lcs problem for the balanced sequences with the given codes in the
-     * <code>results</code> array.
-     *
-     * @param codeA
-     *         the code of the first balanced sequence
-     * @param codeB
-     *         the code of the second balanced sequence
-     * @param results
-     *         the results array
-     *
-     * @return the solution to the lcs problem or <code>null</code> if <code>results</code> contains none
-     */
-    private static Integer lookup(Integer codeA, Integer codeB, Integer[][] results) {
-        return codeA.compareTo(codeB) > 0 ? results[codeA][codeB] : results[codeB][codeA];
-    }
+            for (int j = 1; j < tDec.size(); j++) {
+                int result = Math.max(restRow[j], row[tDec.rest[j]]);
 
-    /**
-     * Stores the solution to an lcs problem between the balanced sequences with the given codes in the
-     * <code>results</code> array.
-     *
-     * @param codeA
-     *         the code of the first balanced sequence
-     * @param codeB
-     *         the code of the second balanced sequence
-     * @param results
-     *         the results array
-     * @param result
-     *         the result to be stored
-     */
-    private static void store(Integer codeA, Integer codeB, Integer[][] results, Integer result) {
+                if (rootMatches[tDec.root[j]]) {
+                    result = Math.max(result, headRow[tDec.head[j]] + tailRow[tDec.tail[j]] + 1);
+                }
 
-        if (codeA.compareTo(codeB) > 0) {
-            results[codeA][codeB] = result;
-        } else {
-            results[codeB][codeA] = result;
+                row[j] = result;
+            }
         }
-    }
 
-    /**
-     * Returns the maximum of two <code>Integer</code>s.
-     *
-     * @param a
-     *         the first <code>Integer</code>
-     * @param b
-     *         the second <code>Integer</code>
-     *
-     * @return the bigger of both <code>Integer</code>s
-     */
-    private static Integer max(Integer a, Integer b) {
-        return a.compareTo(b) > 0 ? a : b;
+        return results[sDec.size() - 1][tDec.size() - 1];
     }
 
     /**
@@ -461,7 +635,7 @@ private static Integer max(Integer a, Integer b) {
      * @return true iff the <code>BalancedSequence</code> is empty
      */
     public boolean isEmpty() {
-        return seq.isEmpty();
+        return length == 0;
     }
 
     /**
@@ -470,7 +644,7 @@ public boolean isEmpty() {
      * @return the root of the tree
      */
     public T getRoot() {
-        return seq.get(0);
+        return symbols.artifact(seq[from]);
     }
 
     @Override
@@ -486,7 +660,17 @@ public boolean equals(Object o) {
 
         BalancedSequence<?> that = (BalancedSequence<?>) o;
 
-        return seq.equals(that.seq);
+        if (symbols != that.symbols || length != that.length || hashCode != that.hashCode) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (seq[from + i] != that.seq[that.from + i]) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     @Override
@@ -496,6 +680,12 @@ public int hashCode() {
 
     @Override
     public String toString() {
-        return seq.stream().map(bit -> bit == null ? "1" : "0").reduce("", String::concat);
+        StringBuilder builder = new StringBuilder(length);
+
+        for (int i = from; i < from + length; i++) {
+            builder.append(seq[i] == CLOSE ? '1' : '0');
+        }
+
+        return builder.toString();
     }
 }
@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.ordered.mceSubtree;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.matcher.ordered.mceSubtree.BalancedSequence.Decomposition;
+
+/**
+ * A least recently used cache of the decompositions of <code>BalancedSequence</code>s. The size of the cache is
+ * bounded by the total number of balanced sequences contained in the cached decompositions.
+ *
+ * @param <T>
+ *         the type of the <code>Artifact</code>s
+ */
+final class DecompositionCache<T extends Artifact<T>> {
+
+    /**
+     * The default maximum number of balanced sequences in all cached decompositions.
+     */
+    static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final int capacity;
+    private final LinkedHashMap<BalancedSequence<T>, Decomposition> cache;
+    private int weight;
+
+    /**
+     * Constructs a new <code>DecompositionCache</code> with the {@link #DEFAULT_CAPACITY}.
+     */
+    DecompositionCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new <code>DecompositionCache</code>.
+     *
+     * @param capacity
+     *         the maximum number of balanced sequences in all cached decompositions
+     */
+    DecompositionCache(int capacity) {
+        this.capacity = capacity;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true);
+        this.weight = 0;
+    }
+
+    /**
+     * Returns the cached decomposition of <code>seq</code> or computes (and caches) it using <code>decompose</code>.
+     *
+     * @param seq
+     *         the <code>BalancedSequence</code> whose decomposition is to be returned
+     * @param decompose
+     *         the function computing the decomposition
+     * @return the decomposition of <code>seq</code>
+     */
+    Decomposition get(BalancedSequence<T> seq, Function<BalancedSequence<T>, Decomposition> decompose) {
+        Decomposition decomposition;
+
+        synchronized (this) {
+            decomposition = cache.get(seq);
+        }
+
+        if (decomposition != null) {
+            return decomposition;
+        }
+
+        decomposition = decompose.apply(seq);
+
+        synchronized (this) {
+            Decomposition previous = cache.put(seq, decomposition);
+
+            if (previous != null) {
+                weight -= previous.size();
+            }
+
+            weight += decomposition.size();
+            evict();
+        }
+
+        return decomposition;
+    }
+
+    /**
+     * Removes the least recently used decompositions until the cache is within its capacity. The most recently added
+     * decomposition is never removed.
+     */
+    private void evict() {
+        Iterator<Map.Entry<BalancedSequence<T>, Decomposition>> it = cache.entrySet().iterator();
+
+        while (weight > capacity && cache.size() > 1) {
+            weight -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+
+    /**
+     * Returns the number of cached decompositions.
+     *
+     * @return the number of cached decompositions
+     */
+    synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all decompositions from this cache.
+     */
+    synchronized void clear() {
+        cache.clear();
+        weight = 0;
+    }
+}
@@ -23,9 +23,10 @@
  */
 package de.fosd.jdime.matcher.ordered.mceSubtree;
 
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.config.merge.MergeContext;
@@ -46,7 +47,14 @@
 
     private static final String ID = MCESubtreeMatcher.class.getSimpleName();
 
-    private Map<BalancedSequence<T>, Set<BalancedSequence<T>>> decompositionCache;
+    private final SymbolTable<T> symbols;
+    private final DecompositionCache<T> decompositionCache;
+
+    /**
+     * The <code>BalancedSequence</code>s of all subtrees of the trees matched so far. The sequences of all subtrees
+     * of a tree are ranges of the same array.
+     */
+    private final Map<T, BalancedSequence<T>> sequences;
 
     /**
      * Constructs a new <code>OrderedMatcher</code>
@@ -56,19 +64,27 @@
      */
     public MCESubtreeMatcher(MatcherInterface<T> matcher) {
         super(matcher);
-        this.decompositionCache = new HashMap<>();
+        this.symbols = new SymbolTable<>();
+        this.decompositionCache = new DecompositionCache<>();
+        this.sequences = new ConcurrentHashMap<>();
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the longest common balanced sequence of <code>left</code> and <code>right</code> covers both trees and they
+     * are equal as ordered trees, all pairs of corresponding nodes are matched without recursing into the children.
+     */
     @Override
     public Matchings<T> match(MergeContext context, T left, T right) {
-        BalancedSequence<T> lSeq = new BalancedSequence<>(left);
-        BalancedSequence<T> rSeq = new BalancedSequence<>(right);
+        int lcs = BalancedSequence.lcs(sequence(left), sequence(right));
+        Matchings<T> matchings = new Matchings<>();
 
-        lSeq.setDecompositionCache(decompositionCache);
-        rSeq.setDecompositionCache(decompositionCache);
+        if (lcs == left.getTreeSize() && lcs == right.getTreeSize() && addFullMatchings(left, right, matchings)) {
+            return matchings;
+        }
 
-        Matchings<T> matchings = new Matchings<>();
-        Matching<T> matching = new Matching<>(left, right, BalancedSequence.lcs(lSeq, rSeq));
+        Matching<T> matching = new Matching<>(left, right, lcs);
 
         matching.setAlgorithm(ID);
         matchings.add(matching);
@@ -81,4 +97,76 @@ public Matchings<T> match(MergeContext context, T left, T right) {
 
         return matchings;
     }
+
+    /**
+     * Discards the <code>BalancedSequence</code>s of the trees matched so far together with their symbols and cached
+     * decompositions. The trees may change between runs of the <code>Matcher</code>, which would leave the sequences
+     * outdated. Without clearing them, they would also accumulate over all runs.
+     */
+    public void clear() {
+        sequences.clear();
+        decompositionCache.clear();
+        symbols.clear();
+    }
+
+    /**
+     * Returns the <code>BalancedSequence</code> of the subtree rooted in <code>artifact</code>. If there is none yet,
+     * the sequences of the subtree and all its subtrees are constructed.
+     *
+     * @param artifact
+     *         the root of the subtree
+     * @return the <code>BalancedSequence</code> of the subtree
+     */
+    private BalancedSequence<T> sequence(T artifact) {
+        BalancedSequence<T> seq = sequences.get(artifact);
+
+        if (seq == null) {
+            seq = BalancedSequence.ofTree(artifact, symbols, decompositionCache, sequences);
+        }
+
+        return seq;
+    }
+
+    /**
+     * Adds <code>Matching</code>s for all pairs of corresponding nodes of <code>left</code> and <code>right</code> to
+     * <code>matchings</code> if the two trees are equal when interpreted as ordered trees.
+     *
+     * @param left
+     *         the left tree
+     * @param right
+     *         the right tree
+     * @param matchings
+     *         the <code>Matchings</code> to add to
+     * @return whether the trees are equal and the <code>Matching</code>s were added
+     */
+    private boolean addFullMatchings(T left, T right, Matchings<T> matchings) {
+        Deque<T> lWait = new ArrayDeque<>();
+        Deque<T> rWait = new ArrayDeque<>();
+        Matchings<T> full = new Matchings<>();
+
+        lWait.push(left);
+        rWait.push(right);
+
+        while (!lWait.isEmpty()) {
+            T l = lWait.pop();
+            T r = rWait.pop();
+
+            if (l.getNumChildren() != r.getNumChildren() || !l.matches(r)) {
+                return false;
+            }
+
+            Matching<T> matching = new Matching<>(l, r, l.getTreeSize());
+
+            matching.setAlgorithm(ID);
+            full.add(matching);
+
+            for (int i = 0; i < l.getNumChildren(); i++) {
+                lWait.push(l.getChild(i));
+                rWait.push(r.getChild(i));
+            }
+        }
+
+        matchings.addAll(full);
+        return true;
+    }
 }
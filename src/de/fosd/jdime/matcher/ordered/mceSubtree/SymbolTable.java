@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.ordered.mceSubtree;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.fosd.jdime.artifact.Artifact;
+
+/**
+ * Assigns every <code>Artifact</code> occurring in a <code>BalancedSequence</code> a positive integer symbol. Symbols
+ * are stable for the lifetime of the table so that the encodings of the same (sub-)tree are equal.
+ *
+ * @param <T>
+ *         the type of the <code>Artifact</code>s
+ */
+final class SymbolTable<T extends Artifact<T>> {
+
+    private final Map<T, Integer> symbols;
+    private final List<T> artifacts;
+
+    /**
+     * Constructs a new empty <code>SymbolTable</code>.
+     */
+    SymbolTable() {
+        this.symbols = new IdentityHashMap<>();
+        this.artifacts = new ArrayList<>();
+    }
+
+    /**
+     * Returns the symbol of the given <code>artifact</code>, assigning a new one if necessary.
+     *
+     * @param artifact
+     *         the <code>Artifact</code> whose symbol is to be returned
+     * @return the symbol, a positive integer
+     */
+    synchronized int symbol(T artifact) {
+        return symbols.computeIfAbsent(artifact, a -> {
+            artifacts.add(a);
+            return artifacts.size();
+        });
+    }
+
+    /**
+     * Returns the <code>Artifact</code> with the given symbol.
+     *
+     * @param symbol
+     *         the symbol as returned by {@link #symbol(Artifact)}
+     * @return the <code>Artifact</code>
+     */
+    synchronized T artifact(int symbol) {
+        return artifacts.get(symbol - 1);
+    }
+
+    /**
+     * Removes all symbols from this table.
+     */
+    synchronized void clear() {
+        symbols.clear();
+        artifacts.clear();
+    }
+}
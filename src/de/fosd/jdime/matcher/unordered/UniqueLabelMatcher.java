@@ -24,9 +24,9 @@
 package de.fosd.jdime.matcher.unordered;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.config.merge.MergeContext;
@@ -35,7 +35,9 @@
 import de.fosd.jdime.matcher.matching.Matchings;
 
 /**
- * TODO: This needs more explanation.
+ * An <code>UnorderedMatcher</code> for <code>Artifact</code>s whose children all have a unique label (see
+ * {@link Artifact#getUniqueLabel()}). Children are only matched with the children of the other
+ * <code>Artifact</code> having the same label.
  *
  * @param <T>
  *         type of artifact
@@ -45,9 +47,6 @@
 
     private static final String ID = UniqueLabelMatcher.class.getSimpleName();
 
-    // We expect that the Artifacts have a unique label, if they do not an exception is to be expected.
-    private final Comparator<T> comp = Comparator.comparing(o -> o.getUniqueLabel().get().get());
-
     /**
      * Constructs a new <code>UniqueLabelMatcher</code> using the given <code>matcher</code> for recursive calls.
      *
@@ -61,7 +60,8 @@ public UniqueLabelMatcher(MatcherInterface<T> matcher) {
     /**
      * {@inheritDoc}
      * <p>
-     * TODO: this needs explanation, I'll fix it soon.
+     * The children of <code>left</code> and <code>right</code> are joined by their unique labels using a hash table
+     * and every pair of children with equal labels is matched recursively.
      */
     @Override
     public final Matchings<T> match(final MergeContext context, final T left, final T right) {
@@ -75,47 +75,44 @@ public final Matchings<T> match(final MergeContext context, final T left, final
         }
 
         List<Matchings<T>> childrenMatchings = new ArrayList<>();
-        List<T> leftChildren = new ArrayList<>(left.getChildren());
-        List<T> rightChildren = new ArrayList<>(right.getChildren());
-
-        leftChildren.sort(comp);
-        rightChildren.sort(comp);
+        List<T> leftChildren = left.getChildren();
+        List<T> rightChildren = right.getChildren();
+
+        /*
+         * Every label is computed exactly once. The right children are chained by label (in the order they appear
+         * in) and the chain heads are stored in a hash table. Like a sort-merge join using a stable sort, this pairs
+         * the i-th left child of a label with the i-th right child of that label.
+         */
+        int[] next = new int[rightChildren.size()];
+        Map<String, Integer> heads = new HashMap<>();
+
+        for (int i = rightChildren.size() - 1; i >= 0; i--) {
+            Integer head = heads.put(label(rightChildren.get(i)), i);
+            next[i] = head == null ? -1 : head;
+        }
 
-        Iterator<T> leftIt = leftChildren.iterator();
-        Iterator<T> rightIt = rightChildren.iterator();
-        T leftChild = leftIt.next();
-        T rightChild = rightIt.next();
         int sum = 0;
 
-        boolean done = false;
-        while (!done) {
-            int c = comp.compare(leftChild, rightChild);
-            if (c < 0) {
-                if (leftIt.hasNext()) {
-                    leftChild = leftIt.next();
-                } else {
-                    done = true;
-                }
-            } else if (c > 0) {
-                if (rightIt.hasNext()) {
-                    rightChild = rightIt.next();
-                } else {
-                    done = true;
-                }
-            } else if (c == 0) {
-                Matchings<T> childMatching = matcher.match(context, leftChild, rightChild);
-                Matching<T> matching = childMatching.get(leftChild, rightChild).get();
-
-                childrenMatchings.add(childMatching);
-                sum += matching.getScore();
-
-                if (leftIt.hasNext() && rightIt.hasNext()) {
-                    leftChild = leftIt.next();
-                    rightChild = rightIt.next();
-                } else {
-                    done = true;
-                }
+        for (T leftChild : leftChildren) {
+            String label = label(leftChild);
+            Integer head = heads.get(label);
+
+            if (head == null) {
+                continue;
             }
+
+            if (next[head] == -1) {
+                heads.remove(label);
+            } else {
+                heads.put(label, next[head]);
+            }
+
+            T rightChild = rightChildren.get(head);
+            Matchings<T> childMatching = matcher.match(context, leftChild, rightChild);
+            Matching<T> matching = childMatching.get(leftChild, rightChild).get();
+
+            childrenMatchings.add(childMatching);
+            sum += matching.getScore();
         }
 
         Matchings<T> result = Matchings.of(left, right, sum + rootMatching);
@@ -124,4 +121,16 @@ public final Matchings<T> match(final MergeContext context, final T left, final
 
         return result;
     }
+
+    /**
+     * Returns the unique label of the given <code>artifact</code>. We expect that the <code>Artifact</code>s have a
+     * unique label, if they do not an exception is to be expected.
+     *
+     * @param artifact
+     *         the <code>Artifact</code> whose label is to be returned
+     * @return the unique label
+     */
+    private String label(T artifact) {
+        return artifact.getUniqueLabel().get().get();
+    }
 }
@@ -26,6 +26,7 @@
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.stats.Profiler;
 import de.fosd.jdime.stats.Statistics;
 
 import java.util.Objects;
@@ -75,22 +76,24 @@ public AddOperation(T artifact, T target, String condition) {
         }
     }
 
-    @Override
+    @Override @SuppressWarnings("try")
     public void apply(MergeContext context) {
-        LOG.fine(() -> "Applying: " + this);
+        try (Profiler.Span s = context.getProfiler().nested(getClass())) {
+            LOG.fine(() -> "Applying: " + this);
 
-        if (context.isConditionalMerge(artifact) && condition != null) {
-            LOG.fine("Creating a choice node.");
-            target.addChild(target.createChoiceArtifact(condition, artifact));
-        } else {
-            target.addChild(artifact);
-        }
+            if (context.isConditionalMerge(artifact) && condition != null) {
+                LOG.fine("Creating a choice node.");
+                target.addChild(target.createChoiceArtifact(condition, artifact));
+            } else {
+                target.addChild(artifact);
+            }
 
-        if (context.hasStatistics()) {
-            Statistics statistics = context.getStatistics();
-            MergeScenarioStatistics mScenarioStatistics = statistics.getCurrentFileMergeScenarioStatistics();
+            if (context.hasStatistics()) {
+                Statistics statistics = context.getStatistics();
+                MergeScenarioStatistics mScenarioStatistics = statistics.getCurrentFileMergeScenarioStatistics();
 
-            artifact.addOpStatistics(mScenarioStatistics, context);
+                artifact.addOpStatistics(mScenarioStatistics, context);
+            }
         }
     }
 
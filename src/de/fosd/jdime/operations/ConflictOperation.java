@@ -25,6 +25,7 @@
 
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.stats.Profiler;
 
 import java.util.Objects;
 import java.util.logging.Logger;
@@ -82,25 +83,27 @@ public ConflictOperation(T left, T right, T target, String leftCondition, String
         }
     }
 
-    @Override
+    @Override @SuppressWarnings("try")
     public void apply(MergeContext context) {
-        LOG.fine(() -> "Applying: " + this);
+        try (Profiler.Span s = context.getProfiler().nested(getClass())) {
+            LOG.fine(() -> "Applying: " + this);
+
+            if (context.isConditionalMerge(left) && leftCondition != null && rightCondition != null) {
+                LOG.fine("Creating a choice node.");
 
-        if (context.isConditionalMerge(left) && leftCondition != null && rightCondition != null) {
-            LOG.fine("Creating a choice node.");
+                T choice;
+                if (left.isChoice()) {
+                    choice = left;
+                } else {
+                    choice = target.createChoiceArtifact(leftCondition, left);
+                }
 
-            T choice;
-            if (left.isChoice()) {
-                choice = left;
+                choice.addVariant(rightCondition, right);
+                target.addChild(choice);
             } else {
-                choice = target.createChoiceArtifact(leftCondition, left);
+                LOG.fine("Creating a conflict node.");
+                target.addChild(target.createConflictArtifact(left, right));
             }
-
-            choice.addVariant(rightCondition, right);
-            target.addChild(choice);
-        } else {
-            LOG.fine("Creating a conflict node.");
-            target.addChild(target.createConflictArtifact(left, right));
         }
     }
 
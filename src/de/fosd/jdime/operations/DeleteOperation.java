@@ -26,6 +26,7 @@
 import de.fosd.jdime.artifact.Artifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.stats.Profiler;
 import de.fosd.jdime.stats.Statistics;
 
 import java.util.Objects;
@@ -79,34 +80,36 @@ public DeleteOperation(T artifact, T target, String condition) {
         }
     }
 
-    @Override
+    @Override @SuppressWarnings("try")
     public void apply(MergeContext context) {
-        LOG.fine(() -> "Applying: " + this);
-
-        if (context.isConditionalMerge(artifact) && condition != null) {
-            LOG.fine("Creating a choice node.");
-            target.addChild(target.createChoiceArtifact(condition, artifact));
-        } else {
-            // TODO delete anyway.
-
-            // Nothing to do :-)
-            //
-            // Why?
-            // While merging, the target node is created with no children.
-            // Therefore if a deletion of an element is applied during the merge,
-            // nothing has to be done.
-            //
-            // For ASTNodeArtifacts, the important method we rely on here is
-            // StructuredStrategy.merge(), which calls
-            // ASTNodeArtifact.createProgram(ASTNodeArtifact artifact),
-            // which then calls clearChildren() on the created Program.
-        }
-
-        if (context.hasStatistics()) {
-            Statistics statistics = context.getStatistics();
-            MergeScenarioStatistics mScenarioStatistics = statistics.getCurrentFileMergeScenarioStatistics();
-
-            artifact.deleteOpStatistics(mScenarioStatistics, context);
+        try (Profiler.Span s = context.getProfiler().nested(getClass())) {
+            LOG.fine(() -> "Applying: " + this);
+
+            if (context.isConditionalMerge(artifact) && condition != null) {
+                LOG.fine("Creating a choice node.");
+                target.addChild(target.createChoiceArtifact(condition, artifact));
+            } else {
+                // TODO delete anyway.
+
+                // Nothing to do :-)
+                //
+                // Why?
+                // While merging, the target node is created with no children.
+                // Therefore if a deletion of an element is applied during the merge,
+                // nothing has to be done.
+                //
+                // For ASTNodeArtifacts, the important method we rely on here is
+                // StructuredStrategy.merge(), which calls
+                // ASTNodeArtifact.createProgram(ASTNodeArtifact artifact),
+                // which then calls clearChildren() on the created Program.
+            }
+
+            if (context.hasStatistics()) {
+                Statistics statistics = context.getStatistics();
+                MergeScenarioStatistics mScenarioStatistics = statistics.getCurrentFileMergeScenarioStatistics();
+
+                artifact.deleteOpStatistics(mScenarioStatistics, context);
+            }
         }
     }
 
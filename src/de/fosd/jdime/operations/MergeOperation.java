@@ -24,11 +24,13 @@
 package de.fosd.jdime.operations;
 
 import de.fosd.jdime.artifact.Artifact;
+import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.config.merge.MergeType;
 import de.fosd.jdime.execption.AbortException;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.stats.Profiler;
 import de.fosd.jdime.stats.Statistics;
 
 import java.util.List;
@@ -149,35 +151,48 @@ public MergeOperation(MergeScenario<T> mergeScenario, T target) {
         this.target = target;
     }
 
-    @Override
+    @Override @SuppressWarnings("try")
     public void apply(MergeContext context) {
-        if (!context.isConditionalMerge(mergeScenario.getLeft())) {
-            assert (mergeScenario.getLeft().exists()) : "Left artifact does not exist: " + mergeScenario.getLeft();
-            assert (mergeScenario.getRight().exists()) : "Right artifact does not exist: " + mergeScenario.getRight();
-            assert (mergeScenario.getBase().isEmpty() || mergeScenario.getBase().exists()) :
-                    "Base artifact does not exist: " + mergeScenario.getBase();
-        }
+        try (Profiler.Span s = context.getProfiler().nested(getClass())) {
+            if (!context.isConditionalMerge(mergeScenario.getLeft())) {
+                assert (mergeScenario.getLeft().exists()) : "Left artifact does not exist: " + mergeScenario.getLeft();
+                assert (mergeScenario.getRight().exists()) : "Right artifact does not exist: " + mergeScenario.getRight();
+                assert (mergeScenario.getBase().isEmpty() || mergeScenario.getBase().exists()) :
+                        "Base artifact does not exist: " + mergeScenario.getBase();
+            }
+
+            LOG.fine(() -> "Applying: " + this);
 
-        LOG.fine(() -> "Applying: " + this);
+            // FIXME: I think this could be done easier. It's just too fucking ugly.
+            T artifact = mergeScenario.get(0);
+            MergeScenario<FileArtifact> enclosing = null;
 
-        // FIXME: I think this could be done easier. It's just too fucking ugly.
-        T artifact = mergeScenario.get(0);
-        artifact.merge(this, context);
+            if (context.hasStatistics()) {
+                enclosing = context.getStatistics().getCurrentFileMergeScenario();
+            }
 
-        if (context.hasStatistics()) {
-            Statistics statistics = context.getStatistics();
-            MergeScenarioStatistics mScenarioStatistics = statistics.getCurrentFileMergeScenarioStatistics();
+            artifact.merge(this, context);
 
-            boolean files = mergeScenario.getArtifacts().values().stream()
-                    .map(T::getType)
-                    .allMatch(t -> t == FILE || t == DIRECTORY);
+            if (context.hasStatistics()) {
+                Statistics statistics = context.getStatistics();
+                MergeScenarioStatistics mScenarioStatistics = statistics.getCurrentFileMergeScenarioStatistics();
 
-            if (files) {
-                artifact.mergeOpStatistics(mScenarioStatistics, context);
-            } else {
-                mergeScenario.getArtifacts().values().stream()
-                        .filter(a -> !BASE.equals(a.getRevision()))
-                        .forEach(a -> a.mergeOpStatistics(mScenarioStatistics, context));
+                boolean files = mergeScenario.getArtifacts().values().stream()
+                        .map(T::getType)
+                        .allMatch(t -> t == FILE || t == DIRECTORY);
+
+                if (files) {
+                    artifact.mergeOpStatistics(mScenarioStatistics, context);
+                    statistics.complete(mergeScenario);
+
+                    if (enclosing != null) {
+                        statistics.setCurrentFileMergeScenario(enclosing);
+                    }
+                } else {
+                    mergeScenario.getArtifacts().values().stream()
+                            .filter(a -> !BASE.equals(a.getRevision()))
+                            .forEach(a -> a.mergeOpStatistics(mScenarioStatistics, context));
+                }
             }
         }
     }
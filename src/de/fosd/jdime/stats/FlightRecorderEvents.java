@@ -0,0 +1,584 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.strategy.MergeStrategy;
+
+/**
+ * Emits custom Java Flight Recorder events for merge scenarios, the phases of a merge and the iterations of the
+ * <code>CostModelMatcher</code>. The <code>jdk.jfr</code> API is accessed reflectively so that JDime can be built
+ * and run on Java versions without it. The event types are only registered once a recording is running. Until then
+ * (and if the API is not available), every method of this class returns a shared no-op {@link Event} after reading a
+ * single <code>volatile</code> field.
+ * <br><br>
+ * The usual pattern for emitting an event is:
+ * <pre>{@code
+ * try (FlightRecorderEvents.Event event = FlightRecorderEvents.phase("parse")) {
+ *     ...
+ *
+ *     if (event.shouldCommit()) {
+ *         event.set(FIELD, value);
+ *     }
+ * }
+ * }</pre>
+ */
+public final class FlightRecorderEvents {
+
+    private static final Logger LOG = Logger.getLogger(FlightRecorderEvents.class.getCanonicalName());
+
+    /**
+     * The category of all events emitted by JDime.
+     */
+    public static final String CATEGORY = "JDime";
+
+    /**
+     * The field of {@link #phase(String)} events holding the name of the phase.
+     */
+    public static final String PHASE = "phase";
+
+    /*
+     * The fields of scenario(...) events. The outcome is the name of a MergeScenarioStatus.
+     */
+    public static final String LEFT = "left";
+    public static final String BASE = "base";
+    public static final String RIGHT = "right";
+    public static final String STRATEGY = "strategy";
+    public static final String CONFLICTS = "conflicts";
+    public static final String OUTCOME = "outcome";
+
+    /*
+     * The fields of costModelIteration(...) events.
+     */
+    public static final String ITERATION = "iteration";
+    public static final String COST = "cost";
+    public static final String LOWEST_COST = "lowestCost";
+    public static final String ACCEPTED = "accepted";
+
+    private static final Type SCENARIO_TYPE = new Type("de.fosd.jdime.MergeScenario", "Merge Scenario",
+            "The merge of one file.",
+            LEFT, String.class, BASE, String.class, RIGHT, String.class, STRATEGY, String.class,
+            CONFLICTS, int.class, OUTCOME, String.class);
+
+    private static final Type PHASE_TYPE = new Type("de.fosd.jdime.Phase", "Merge Phase",
+            "A phase of the merge of one file.",
+            PHASE, String.class);
+
+    private static final Type ITERATION_TYPE = new Type("de.fosd.jdime.CostModelIteration", "Cost Model Iteration",
+            "One iteration of the Metropolis algorithm used by the CostModelMatcher.",
+            ITERATION, int.class, COST, float.class, LOWEST_COST, float.class, ACCEPTED, boolean.class);
+
+    /**
+     * An event that has begun. Closing it commits the event. Values should only be set if {@link #shouldCommit()}
+     * returns <code>true</code>, in particular if computing them is expensive.
+     */
+    public static final class Event implements Profiler.Span {
+
+        private final Type type;
+        private final Object event;
+
+        /**
+         * Constructs the no-op {@link Event}.
+         */
+        private Event() {
+            this.type = null;
+            this.event = null;
+        }
+
+        /**
+         * Constructs a new {@link Event} and begins its timing.
+         *
+         * @param type
+         *         the type of the event
+         * @param event
+         *         the <code>jdk.jfr.Event</code> to wrap
+         */
+        private Event(Type type, Object event) {
+            this.type = type;
+            this.event = event;
+        }
+
+        /**
+         * Ends the timing of this event and returns whether it will be committed by the running recordings.
+         *
+         * @return whether the event will be committed
+         */
+        public boolean shouldCommit() {
+            return type != null && type.shouldCommit(event);
+        }
+
+        /**
+         * Sets the value of the field with the given name.
+         *
+         * @param field
+         *         the name of the field
+         * @param value
+         *         the value to set
+         * @return <code>this</code>
+         */
+        public Event set(String field, Object value) {
+
+            if (type != null) {
+                type.set(event, field, value);
+            }
+
+            return this;
+        }
+
+        @Override
+        public void close() {
+
+            if (type != null) {
+                type.commit(event);
+            }
+        }
+    }
+
+    /**
+     * The {@link Event} returned if no recording is running.
+     */
+    private static final Event NOOP = new Event();
+
+    /**
+     * The <code>jdk.jfr</code> API. <code>null</code> if it is not available.
+     */
+    private static final Api API = Api.load();
+
+    /**
+     * The currently running recordings.
+     */
+    private static final Set<Object> RUNNING = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Whether a recording is running.
+     */
+    private static volatile boolean recording;
+
+    static {
+        if (API != null) {
+            API.listen();
+        }
+    }
+
+    /**
+     * Utility class.
+     */
+    private FlightRecorderEvents() {}
+
+    /**
+     * Returns whether a recording is running and events are emitted.
+     *
+     * @return whether events are emitted
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Begins an event for the merge of the given <code>scenario</code> using the given <code>strategy</code>. The
+     * {@link #CONFLICTS} and {@link #OUTCOME} are to be set by the caller.
+     *
+     * @param scenario
+     *         the <code>MergeScenario</code> to be merged
+     * @param strategy
+     *         the <code>MergeStrategy</code> used
+     * @return the begun event
+     */
+    public static Event scenario(MergeScenario<FileArtifact> scenario, MergeStrategy<FileArtifact> strategy) {
+
+        if (!recording) {
+            return NOOP;
+        }
+
+        Event event = begin(SCENARIO_TYPE);
+
+        if (event.type != null) {
+            event.set(LEFT, path(scenario.getLeft()))
+                 .set(BASE, path(scenario.getBase()))
+                 .set(RIGHT, path(scenario.getRight()))
+                 .set(STRATEGY, strategy.getClass().getSimpleName());
+        }
+
+        return event;
+    }
+
+    /**
+     * Returns the path of the given <code>artifact</code> or an empty <code>String</code> if it has no file.
+     *
+     * @param artifact
+     *         the <code>FileArtifact</code>
+     * @return the path of the <code>artifact</code>
+     */
+    private static String path(FileArtifact artifact) {
+        return artifact.getFile() == null ? "" : artifact.getFile().getPath();
+    }
+
+    /**
+     * Begins an event for a phase (such as parsing or matching) of a merge.
+     *
+     * @param phase
+     *         the name of the phase
+     * @return the begun event
+     */
+    public static Event phase(String phase) {
+
+        if (!recording) {
+            return NOOP;
+        }
+
+        return begin(PHASE_TYPE).set(PHASE, phase);
+    }
+
+    /**
+     * Begins an event for an iteration of the <code>CostModelMatcher</code>. The {@link #COST},
+     * {@link #LOWEST_COST} and whether the proposed matchings were {@link #ACCEPTED} are to be set by the caller.
+     *
+     * @param iteration
+     *         the number of the iteration
+     * @return the begun event
+     */
+    public static Event costModelIteration(int iteration) {
+
+        if (!recording) {
+            return NOOP;
+        }
+
+        return begin(ITERATION_TYPE).set(ITERATION, iteration);
+    }
+
+    /**
+     * Begins an event of the given type.
+     *
+     * @param type
+     *         the type of the event
+     * @return the begun event or {@link #NOOP} if the API failed
+     */
+    private static Event begin(Type type) {
+        Object event = type.begin();
+        return event == null ? NOOP : new Event(type, event);
+    }
+
+    /**
+     * Records a change of the state of a recording.
+     *
+     * @param rec
+     *         the <code>jdk.jfr.Recording</code>
+     * @param running
+     *         whether the recording is running
+     */
+    private static void recordingStateChanged(Object rec, boolean running) {
+
+        synchronized (RUNNING) {
+
+            if (running) {
+                RUNNING.add(rec);
+            } else {
+                RUNNING.remove(rec);
+            }
+
+            recording = !RUNNING.isEmpty();
+        }
+    }
+
+    /**
+     * Disables all events after the API failed.
+     *
+     * @param e
+     *         the cause of the failure
+     */
+    private static void fail(Throwable e) {
+        LOG.log(Level.WARNING, e, () -> "Java Flight Recorder events are disabled after an error.");
+
+        synchronized (RUNNING) {
+            RUNNING.clear();
+            recording = false;
+        }
+    }
+
+    /**
+     * An event type created using the <code>jdk.jfr.EventFactory</code> when it is first used.
+     */
+    private static final class Type {
+
+        private final String name;
+        private final String label;
+        private final String description;
+        private final String[] fields;
+        private final Class<?>[] fieldTypes;
+
+        private volatile Object factory;
+
+        /**
+         * Constructs a new {@link Type}.
+         *
+         * @param name
+         *         the name of the event type
+         * @param label
+         *         the human readable label of the event type
+         * @param description
+         *         the description of the event type
+         * @param fields
+         *         alternating names and types of the fields
+         */
+        private Type(String name, String label, String description, Object... fields) {
+            this.name = name;
+            this.label = label;
+            this.description = description;
+            this.fields = new String[fields.length / 2];
+            this.fieldTypes = new Class<?>[fields.length / 2];
+
+            for (int i = 0; i < this.fields.length; i++) {
+                this.fields[i] = (String) fields[2 * i];
+                this.fieldTypes[i] = (Class<?>) fields[2 * i + 1];
+            }
+        }
+
+        /**
+         * Creates and begins a new <code>jdk.jfr.Event</code> of this type.
+         *
+         * @return the event or <code>null</code> if the API failed
+         */
+        private Object begin() {
+            try {
+                Object f = factory;
+
+                if (f == null) {
+                    synchronized (this) {
+                        if ((f = factory) == null) {
+                            factory = f = API.createFactory(this);
+                        }
+                    }
+                }
+
+                Object event = (Object) API.newEvent.invokeExact(f);
+                API.begin.invokeExact(event);
+                return event;
+            } catch (Throwable e) {
+                fail(e);
+                return null;
+            }
+        }
+
+        private boolean shouldCommit(Object event) {
+            try {
+                API.end.invokeExact(event);
+                return (boolean) API.shouldCommit.invokeExact(event);
+            } catch (Throwable e) {
+                fail(e);
+                return false;
+            }
+        }
+
+        private void set(Object event, String field, Object value) {
+            int index = Arrays.asList(fields).indexOf(field);
+
+            if (index < 0) {
+                throw new IllegalArgumentException("Event " + name + " has no field " + field);
+            }
+
+            try {
+                API.set.invokeExact(event, index, value);
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void commit(Object event) {
+            try {
+                API.commit.invokeExact(event);
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Method handles for the parts of the <code>jdk.jfr</code> API that are used.
+     */
+    private static final class Api {
+
+        private final Class<?> flightRecorder;
+        private final Class<?> listener;
+
+        private final Constructor<?> newAnnotation;
+        private final Constructor<?> newValueDescriptor;
+
+        private final MethodHandle create;
+        private final MethodHandle newEvent;
+        private final MethodHandle begin;
+        private final MethodHandle end;
+        private final MethodHandle shouldCommit;
+        private final MethodHandle set;
+        private final MethodHandle commit;
+
+        private Api() throws ReflectiveOperationException {
+            flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+            listener = Class.forName("jdk.jfr.FlightRecorderListener");
+
+            Class<?> annotationElement = Class.forName("jdk.jfr.AnnotationElement");
+            newAnnotation = annotationElement.getConstructor(Class.class, Object.class);
+
+            Class<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor");
+            newValueDescriptor = valueDescriptor.getConstructor(Class.class, String.class, List.class);
+
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            MethodType voidType = MethodType.methodType(void.class);
+            MethodType generic = MethodType.methodType(void.class, Object.class);
+
+            create = lookup.findStatic(eventFactory, "create", MethodType.methodType(eventFactory, List.class, List.class))
+                           .asType(MethodType.methodType(Object.class, List.class, List.class));
+            newEvent = lookup.findVirtual(eventFactory, "newEvent", MethodType.methodType(event))
+                             .asType(MethodType.methodType(Object.class, Object.class));
+            begin = lookup.findVirtual(event, "begin", voidType).asType(generic);
+            end = lookup.findVirtual(event, "end", voidType).asType(generic);
+            commit = lookup.findVirtual(event, "commit", voidType).asType(generic);
+            shouldCommit = lookup.findVirtual(event, "shouldCommit", MethodType.methodType(boolean.class))
+                                 .asType(MethodType.methodType(boolean.class, Object.class));
+            set = lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class))
+                        .asType(MethodType.methodType(void.class, Object.class, int.class, Object.class));
+        }
+
+        /**
+         * Loads the API.
+         *
+         * @return the API or <code>null</code> if it is not available
+         */
+        private static Api load() {
+            try {
+                return new Api();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                LOG.fine(() -> "Java Flight Recorder events are not available: " + e);
+                return null;
+            }
+        }
+
+        /**
+         * Registers a <code>jdk.jfr.FlightRecorderListener</code> tracking the running recordings and records the
+         * recordings that were started before.
+         */
+        private void listen() {
+            try {
+                Object proxy = Proxy.newProxyInstance(listener.getClassLoader(), new Class<?>[] {listener}, (p, m, args) -> {
+                    switch (m.getName()) {
+                        case "recordingStateChanged":
+                            recordingStateChanged(args[0], isRunning(args[0]));
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(p);
+                        case "equals":
+                            return p == args[0];
+                        case "toString":
+                            return FlightRecorderEvents.class.getSimpleName();
+                        default:
+                            return null;
+                    }
+                });
+
+                flightRecorder.getMethod("addListener", listener).invoke(null, proxy);
+
+                if ((boolean) flightRecorder.getMethod("isInitialized").invoke(null)) {
+                    Object recorder = flightRecorder.getMethod("getFlightRecorder").invoke(null);
+
+                    for (Object rec : (List<?>) flightRecorder.getMethod("getRecordings").invoke(recorder)) {
+                        recordingStateChanged(rec, isRunning(rec));
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                LOG.log(Level.FINE, e, () -> "Could not listen for Java Flight Recorder recordings.");
+            }
+        }
+
+        /**
+         * Returns whether the given <code>jdk.jfr.Recording</code> is running.
+         *
+         * @param rec
+         *         the recording
+         * @return whether the recording is running
+         * @throws ReflectiveOperationException
+         *         if the state of the recording can not be retrieved
+         */
+        private static boolean isRunning(Object rec) throws ReflectiveOperationException {
+            return "RUNNING".equals(String.valueOf(rec.getClass().getMethod("getState").invoke(rec)));
+        }
+
+        /**
+         * Creates and registers a <code>jdk.jfr.EventFactory</code> for the given <code>type</code>.
+         *
+         * @param type
+         *         the type of the events to create
+         * @return the <code>jdk.jfr.EventFactory</code>
+         * @throws Throwable
+         *         if the API fails
+         */
+        private Object createFactory(Type type) throws Throwable {
+            List<Object> annotations = new ArrayList<>();
+            annotations.add(annotation("Name", type.name));
+            annotations.add(annotation("Label", type.label));
+            annotations.add(annotation("Description", type.description));
+            annotations.add(annotation("Category", new String[] {CATEGORY}));
+            annotations.add(annotation("StackTrace", false));
+
+            List<Object> fields = new ArrayList<>();
+
+            for (int i = 0; i < type.fields.length; i++) {
+                fields.add(newValueDescriptor.newInstance(type.fieldTypes[i], type.fields[i], Collections.emptyList()));
+            }
+
+            return (Object) create.invokeExact((List<?>) annotations, (List<?>) fields);
+        }
+
+        /**
+         * Creates a <code>jdk.jfr.AnnotationElement</code> for the annotation <code>jdk.jfr.[name]</code>.
+         *
+         * @param name
+         *         the simple name of the annotation type
+         * @param value
+         *         the value of the annotation
+         * @return the <code>jdk.jfr.AnnotationElement</code>
+         * @throws ReflectiveOperationException
+         *         if the annotation can not be created
+         */
+        private Object annotation(String name, Object value) throws ReflectiveOperationException {
+            return newAnnotation.newInstance(Class.forName("jdk.jfr." + name), value);
+        }
+    }
+}
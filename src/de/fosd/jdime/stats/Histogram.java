@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * A histogram of non-negative values using buckets of exponentially growing size. Bucket 0 counts the value 0 and
+ * bucket <code>i &gt; 0</code> counts the values in <code>[2^(i-1), 2^i)</code>.
+ */
+public final class Histogram {
+
+    private long[] counts;
+
+    /**
+     * Constructs a new, empty {@link Histogram}.
+     */
+    public Histogram() {
+        this.counts = new long[0];
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param toCopy
+     *         the {@link Histogram} to copy
+     */
+    public Histogram(Histogram toCopy) {
+        this.counts = toCopy.counts.clone();
+    }
+
+    /**
+     * Returns the index of the bucket the given value falls into.
+     *
+     * @param value
+     *         the value
+     * @return the index of the bucket
+     */
+    static int bucket(long value) {
+        return Long.SIZE - Long.numberOfLeadingZeros(Math.max(value, 0));
+    }
+
+    /**
+     * Adds the given value to this {@link Histogram}. Negative values are counted as 0.
+     *
+     * @param value
+     *         the value to add
+     */
+    public void add(long value) {
+        int bucket = bucket(value);
+
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts, bucket + 1);
+        }
+
+        counts[bucket]++;
+    }
+
+    /**
+     * Adds the counts of the given {@link Histogram} to this {@link Histogram}.
+     *
+     * @param other
+     *         the {@link Histogram} to add
+     */
+    public void add(Histogram other) {
+
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+    }
+
+    /**
+     * Returns the number of values in the bucket with the given index.
+     *
+     * @param bucket
+     *         the index of the bucket
+     * @return the number of values in the bucket
+     */
+    public long getCount(int bucket) {
+        return bucket < counts.length ? counts[bucket] : 0;
+    }
+
+    /**
+     * Returns the number of buckets up to the last non-empty one.
+     *
+     * @return the number of buckets
+     */
+    public int getBuckets() {
+        return counts.length;
+    }
+
+    /**
+     * Parses a {@link Histogram} from the format produced by {@link #toString()}.
+     *
+     * @param counts
+     *         the space separated counts of the buckets
+     * @return the {@link Histogram}
+     * @throws NumberFormatException
+     *         if <code>counts</code> contains anything but space separated numbers
+     */
+    public static Histogram valueOf(String counts) {
+        Histogram histogram = new Histogram();
+        String trimmed = counts.trim();
+
+        if (!trimmed.isEmpty()) {
+            histogram.counts = Arrays.stream(trimmed.split(" +")).mapToLong(Long::parseLong).toArray();
+        }
+
+        return histogram;
+    }
+
+    /**
+     * Returns the counts of the buckets separated by spaces.
+     *
+     * @return the <code>String</code> representation of this {@link Histogram}
+     */
+    @Override
+    public String toString() {
+        return LongStream.of(counts).mapToObj(Long::toString).collect(Collectors.joining(" "));
+    }
+}
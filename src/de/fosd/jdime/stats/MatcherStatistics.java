@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counters about the matching phase of a merge. For every matching algorithm, the number of invocations, the total
+ * time spent in it and {@link Histogram Histograms} of the problem sizes and times of the invocations are recorded.
+ * Additionally, the hits and misses of the caches used by the <code>Matcher</code> and the number of certain events
+ * (such as triggered look-aheads) are counted. The counters may be updated by multiple threads concurrently.
+ */
+public final class MatcherStatistics {
+
+    /**
+     * A {@link MatcherStatistics} instance that does not record anything.
+     */
+    public static final MatcherStatistics DISABLED = new MatcherStatistics(false);
+
+    /**
+     * The counters for one matching algorithm.
+     */
+    public static final class AlgorithmStatistics {
+
+        private final String algorithm;
+
+        private long invocations;
+        private long timeNS;
+
+        private final Histogram sizes;
+        private final Histogram times;
+
+        /**
+         * Constructs a new, empty {@link AlgorithmStatistics} instance.
+         *
+         * @param algorithm
+         *         the name of the algorithm
+         */
+        private AlgorithmStatistics(String algorithm) {
+            this.algorithm = algorithm;
+            this.sizes = new Histogram();
+            this.times = new Histogram();
+        }
+
+        /**
+         * Copy constructor.
+         *
+         * @param toCopy
+         *         the {@link AlgorithmStatistics} to copy
+         */
+        private AlgorithmStatistics(AlgorithmStatistics toCopy) {
+            this.algorithm = toCopy.algorithm;
+            this.invocations = toCopy.invocations;
+            this.timeNS = toCopy.timeNS;
+            this.sizes = new Histogram(toCopy.sizes);
+            this.times = new Histogram(toCopy.times);
+        }
+
+        /**
+         * Adds the given {@link AlgorithmStatistics} to this one.
+         *
+         * @param other
+         *         the {@link AlgorithmStatistics} to add
+         */
+        private void add(AlgorithmStatistics other) {
+            invocations += other.invocations;
+            timeNS += other.timeNS;
+            sizes.add(other.sizes);
+            times.add(other.times);
+        }
+
+        /**
+         * Returns the name of the algorithm.
+         *
+         * @return the name of the algorithm
+         */
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * Returns the number of times the algorithm was invoked.
+         *
+         * @return the number of invocations
+         */
+        public long getInvocations() {
+            return invocations;
+        }
+
+        /**
+         * Returns the total time spent in the algorithm. The time of an invocation includes that of the recursive
+         * invocations of any algorithm it made.
+         *
+         * @return the total time in nanoseconds
+         */
+        public long getTimeNS() {
+            return timeNS;
+        }
+
+        /**
+         * Returns the {@link Histogram} of the problem sizes of the invocations. The problem size is the number of
+         * pairs of children of the two matched nodes.
+         *
+         * @return the {@link Histogram} of problem sizes
+         */
+        public Histogram getSizes() {
+            return sizes;
+        }
+
+        /**
+         * Returns the {@link Histogram} of the times (in nanoseconds) of the invocations.
+         *
+         * @return the {@link Histogram} of times
+         */
+        public Histogram getTimes() {
+            return times;
+        }
+    }
+
+    private final transient boolean enabled;
+
+    private final Map<String, AlgorithmStatistics> algorithms;
+    private final Map<String, Long> events;
+
+    private long cacheHits;
+    private long cacheMisses;
+
+    /**
+     * Constructs a new, empty {@link MatcherStatistics} instance.
+     */
+    public MatcherStatistics() {
+        this(true);
+    }
+
+    /**
+     * Constructs a new, empty {@link MatcherStatistics} instance.
+     *
+     * @param enabled
+     *         whether anything is recorded
+     */
+    private MatcherStatistics(boolean enabled) {
+        this.enabled = enabled;
+        this.algorithms = new TreeMap<>();
+        this.events = new TreeMap<>();
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param toCopy
+     *         the {@link MatcherStatistics} to copy
+     */
+    public MatcherStatistics(MatcherStatistics toCopy) {
+        this(true);
+
+        synchronized (toCopy) {
+            toCopy.algorithms.forEach((name, stats) -> algorithms.put(name, new AlgorithmStatistics(stats)));
+            events.putAll(toCopy.events);
+            cacheHits = toCopy.cacheHits;
+            cacheMisses = toCopy.cacheMisses;
+        }
+    }
+
+    /**
+     * Returns whether this {@link MatcherStatistics} records anything.
+     *
+     * @return whether this {@link MatcherStatistics} is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the start time to pass to {@link #record(Class, int, long)} after invoking an algorithm.
+     *
+     * @return the current value of <code>System.nanoTime()</code> or 0 if this {@link MatcherStatistics} is disabled
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records an invocation of the given algorithm that started at <code>startNS</code> and ended now.
+     *
+     * @param algorithm
+     *         the class implementing the algorithm, its simple name is used to identify the algorithm
+     * @param size
+     *         the problem size of the invocation
+     * @param startNS
+     *         the start time of the invocation as returned by {@link #start()}
+     */
+    public void record(Class<?> algorithm, int size, long startNS) {
+
+        if (!enabled) {
+            return;
+        }
+
+        long timeNS = System.nanoTime() - startNS;
+        String name = Profiler.label(algorithm);
+
+        synchronized (this) {
+            AlgorithmStatistics stats = algorithms.computeIfAbsent(name, AlgorithmStatistics::new);
+
+            stats.invocations++;
+            stats.timeNS += timeNS;
+            stats.sizes.add(size);
+            stats.times.add(timeNS);
+        }
+    }
+
+    /**
+     * Counts an occurrence of the given event.
+     *
+     * @param event
+     *         the name of the event
+     */
+    public void event(String event) {
+
+        if (enabled) {
+            synchronized (this) {
+                events.merge(event, 1L, Long::sum);
+            }
+        }
+    }
+
+    /**
+     * Counts a hit or miss of a cache used during matching.
+     *
+     * @param hit
+     *         whether the cache contained the requested value
+     */
+    public void cacheAccess(boolean hit) {
+
+        if (enabled) {
+            synchronized (this) {
+                if (hit) {
+                    cacheHits++;
+                } else {
+                    cacheMisses++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics about the given algorithm.
+     *
+     * @param algorithm
+     *         the simple name of the class implementing the algorithm
+     * @return the {@link AlgorithmStatistics} or <code>null</code> if the algorithm was not invoked
+     */
+    public synchronized AlgorithmStatistics getAlgorithmStatistics(String algorithm) {
+        return algorithms.get(algorithm);
+    }
+
+    /**
+     * Returns how often the given event occurred.
+     *
+     * @param event
+     *         the name of the event
+     * @return the number of occurrences
+     */
+    public synchronized long getEvents(String event) {
+        return events.getOrDefault(event, 0L);
+    }
+
+    /**
+     * Returns the number of cache hits.
+     *
+     * @return the number of cache hits
+     */
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     *
+     * @return the number of cache misses
+     */
+    public synchronized long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * Returns the fraction of cache accesses that were hits.
+     *
+     * @return the cache hit rate or 0 if the caches were not accessed
+     */
+    public synchronized double getCacheHitRate() {
+        long accesses = cacheHits + cacheMisses;
+        return accesses == 0 ? 0 : (double) cacheHits / accesses;
+    }
+
+    /**
+     * Adds the counters of the given {@link MatcherStatistics} to this one.
+     *
+     * @param other
+     *         the {@link MatcherStatistics} to add
+     */
+    public void add(MatcherStatistics other) {
+        MatcherStatistics toAdd = new MatcherStatistics(other);
+
+        synchronized (this) {
+            toAdd.algorithms.forEach((name, stats) ->
+                    algorithms.computeIfAbsent(name, AlgorithmStatistics::new).add(stats));
+            toAdd.events.forEach((event, count) -> events.merge(event, count, Long::sum));
+            cacheHits += toAdd.cacheHits;
+            cacheMisses += toAdd.cacheMisses;
+        }
+    }
+
+    /**
+     * Resets all counters.
+     */
+    public synchronized void reset() {
+        algorithms.clear();
+        events.clear();
+        cacheHits = 0;
+        cacheMisses = 0;
+    }
+
+    /**
+     * Writes a human readable representation of this {@link MatcherStatistics} object to the given
+     * <code>PrintStream</code>. Each line will be prepended by the given <code>indent</code>.
+     *
+     * @param ps
+     *         the <code>PrintStream</code> to write to
+     * @param indent
+     *         the indentation to use
+     */
+    public synchronized void print(PrintStream ps, String indent) {
+        algorithms.values().forEach(stats -> {
+            ps.printf("%s%s: %d invocation(s) in %dns%n", indent, stats.algorithm, stats.invocations, stats.timeNS);
+            ps.printf("%s%sSizes (log2 buckets): %s%n", indent, indent, stats.sizes);
+            ps.printf("%s%sTimes (log2 buckets, ns): %s%n", indent, indent, stats.times);
+        });
+
+        events.forEach((event, count) -> ps.printf("%s%s: %d%n", indent, event, count));
+
+        ps.printf("%sCache hits: %d, misses: %d (hit rate %.3f)%n", indent, cacheHits, cacheMisses,
+                  getCacheHitRate());
+    }
+}
@@ -0,0 +1,304 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import de.fosd.jdime.matcher.matching.Matching;
+
+/**
+ * Aggregated statistics about the <code>Matching</code>s of a merge that are kept instead of the
+ * <code>Matching</code>s themselves. For every matching algorithm, the number of <code>Matching</code>s it found,
+ * how many of them were full matchings and a {@link Histogram} of their scores are recorded. Additionally, a uniform
+ * random sample of at most <code>sampleSize</code> <code>Matching</code>s is kept in their textual representation.
+ * No references to the matched <code>Artifact</code>s are retained.
+ */
+public final class MatchingStatistics {
+
+    /**
+     * The seed of the random number generator used for sampling. A constant seed makes the samples reproducible.
+     */
+    private static final long SEED = 42;
+
+    /**
+     * The name used for <code>Matching</code>s that do not record the algorithm that found them.
+     */
+    private static final String UNKNOWN_ALGORITHM = "unknown";
+
+    /**
+     * The counters for the <code>Matching</code>s found by one matching algorithm.
+     */
+    public static final class AlgorithmMatchings {
+
+        private final String algorithm;
+
+        private long matchings;
+        private long fullyMatched;
+
+        private final Histogram scores;
+
+        /**
+         * Constructs a new, empty {@link AlgorithmMatchings} instance.
+         *
+         * @param algorithm
+         *         the name of the algorithm
+         */
+        private AlgorithmMatchings(String algorithm) {
+            this.algorithm = algorithm;
+            this.scores = new Histogram();
+        }
+
+        /**
+         * Copy constructor.
+         *
+         * @param toCopy
+         *         the {@link AlgorithmMatchings} to copy
+         */
+        private AlgorithmMatchings(AlgorithmMatchings toCopy) {
+            this.algorithm = toCopy.algorithm;
+            this.matchings = toCopy.matchings;
+            this.fullyMatched = toCopy.fullyMatched;
+            this.scores = new Histogram(toCopy.scores);
+        }
+
+        /**
+         * Adds the given {@link AlgorithmMatchings} to this one.
+         *
+         * @param other
+         *         the {@link AlgorithmMatchings} to add
+         */
+        private void add(AlgorithmMatchings other) {
+            matchings += other.matchings;
+            fullyMatched += other.fullyMatched;
+            scores.add(other.scores);
+        }
+
+        /**
+         * Returns the name of the algorithm.
+         *
+         * @return the name of the algorithm
+         */
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        /**
+         * Returns the number of <code>Matching</code>s found by the algorithm.
+         *
+         * @return the number of <code>Matching</code>s
+         */
+        public long getMatchings() {
+            return matchings;
+        }
+
+        /**
+         * Returns the number of <code>Matching</code>s found by the algorithm that matched the two trees completely.
+         *
+         * @return the number of full <code>Matching</code>s
+         */
+        public long getFullyMatched() {
+            return fullyMatched;
+        }
+
+        /**
+         * Returns the {@link Histogram} of the scores of the <code>Matching</code>s found by the algorithm.
+         *
+         * @return the {@link Histogram} of scores
+         */
+        public Histogram getScores() {
+            return scores;
+        }
+    }
+
+    private final transient int sampleSize;
+    private transient Random random;
+
+    private final Map<String, AlgorithmMatchings> algorithms;
+
+    private long sampled;
+    private final List<String> sample;
+
+    /**
+     * Constructs a new, empty {@link MatchingStatistics} instance.
+     *
+     * @param sampleSize
+     *         the maximum number of <code>Matching</code>s to keep a textual representation of
+     */
+    public MatchingStatistics(int sampleSize) {
+        this.sampleSize = Math.max(sampleSize, 0);
+        this.algorithms = new TreeMap<>();
+        this.sample = new ArrayList<>();
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param toCopy
+     *         the {@link MatchingStatistics} to copy
+     */
+    public MatchingStatistics(MatchingStatistics toCopy) {
+        this(toCopy.sampleSize);
+
+        toCopy.algorithms.forEach((name, stats) -> algorithms.put(name, new AlgorithmMatchings(stats)));
+        sampled = toCopy.sampled;
+        sample.addAll(toCopy.sample);
+    }
+
+    /**
+     * Returns the maximum number of <code>Matching</code>s in the sample.
+     *
+     * @return the sample size
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Records the given <code>Matching</code>.
+     *
+     * @param matching
+     *         the <code>Matching</code> to record
+     */
+    public void add(Matching<?> matching) {
+        String name = matching.getAlgorithm() != null ? matching.getAlgorithm() : UNKNOWN_ALGORITHM;
+        AlgorithmMatchings stats = algorithms.computeIfAbsent(name, AlgorithmMatchings::new);
+
+        stats.matchings++;
+        stats.scores.add(matching.getScore());
+
+        if (matching.hasFullyMatched()) {
+            stats.fullyMatched++;
+        }
+
+        if (sampleSize > 0) {
+            offer(String.format("%s: %s", name, matching));
+        }
+    }
+
+    /**
+     * Adds the counters of the given {@link MatchingStatistics} to this one. The sampled <code>Matching</code>s of
+     * <code>other</code> are offered to the sample of this {@link MatchingStatistics} one by one. The resulting sample
+     * is therefore only approximately uniform if <code>other</code> sampled some of its <code>Matching</code>s.
+     *
+     * @param other
+     *         the {@link MatchingStatistics} to add
+     */
+    public void add(MatchingStatistics other) {
+        other.algorithms.forEach((name, stats) -> algorithms.computeIfAbsent(name, AlgorithmMatchings::new).add(stats));
+
+        if (sampleSize > 0) {
+            other.sample.forEach(this::offer);
+        }
+    }
+
+    /**
+     * Offers the given textual representation of a <code>Matching</code> to the sample using reservoir sampling.
+     *
+     * @param matching
+     *         the textual representation of the <code>Matching</code>
+     */
+    private void offer(String matching) {
+        sampled++;
+
+        if (sample.size() < sampleSize) {
+            sample.add(matching);
+        } else {
+
+            if (random == null) {
+                random = new Random(SEED);
+            }
+
+            long index = (long) (random.nextDouble() * sampled);
+
+            if (index < sampleSize) {
+                sample.set((int) index, matching);
+            }
+        }
+    }
+
+    /**
+     * Returns the statistics about the <code>Matching</code>s found by the given algorithm.
+     *
+     * @param algorithm
+     *         the name of the algorithm as returned by {@link Matching#getAlgorithm()}
+     * @return the {@link AlgorithmMatchings} or <code>null</code> if the algorithm found no <code>Matching</code>s
+     */
+    public AlgorithmMatchings getAlgorithmMatchings(String algorithm) {
+        return algorithms.get(algorithm);
+    }
+
+    /**
+     * Returns the total number of recorded <code>Matching</code>s.
+     *
+     * @return the number of <code>Matching</code>s
+     */
+    public long getMatchings() {
+        return algorithms.values().stream().mapToLong(AlgorithmMatchings::getMatchings).sum();
+    }
+
+    /**
+     * Returns the textual representations of the sampled <code>Matching</code>s.
+     *
+     * @return the sampled <code>Matching</code>s
+     */
+    public List<String> getSample() {
+        return sample;
+    }
+
+    /**
+     * Returns whether no <code>Matching</code> was recorded.
+     *
+     * @return true iff no <code>Matching</code> was recorded
+     */
+    public boolean isEmpty() {
+        return algorithms.isEmpty();
+    }
+
+    /**
+     * Writes a human readable representation of this {@link MatchingStatistics} object to the given
+     * <code>PrintStream</code>. Each line will be prepended by the given <code>indent</code>.
+     *
+     * @param ps
+     *         the <code>PrintStream</code> to write to
+     * @param indent
+     *         the indentation to use
+     */
+    public void print(PrintStream ps, String indent) {
+        algorithms.values().forEach(stats -> {
+            ps.printf("%s%s: %d matching(s), %d fully matched%n", indent, stats.algorithm, stats.matchings,
+                      stats.fullyMatched);
+            ps.printf("%s%sScores (log2 buckets): %s%n", indent, indent, stats.scores);
+        });
+
+        if (!sample.isEmpty()) {
+            ps.printf("%sSample (%d of %d):%n", indent, sample.size(), sampled);
+            sample.stream().sorted().forEachOrdered(matching -> ps.printf("%s%s%s%n", indent, indent, matching));
+        }
+    }
+}
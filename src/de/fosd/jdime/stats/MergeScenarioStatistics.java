@@ -27,9 +27,8 @@
 import de.fosd.jdime.config.merge.Revision;
 import de.fosd.jdime.matcher.matching.Matching;
 import de.fosd.jdime.strategy.MergeStrategy;
-import de.fosd.jdime.util.parser.ConflictContent;
-import de.fosd.jdime.util.parser.Content;
-import de.fosd.jdime.util.parser.ParseResult;
+import de.fosd.jdime.util.parser.CodeStatisticsListener;
+import de.fosd.jdime.util.parser.ParseListener;
 import de.fosd.jdime.util.parser.Parser;
 
 import java.io.PrintStream;
@@ -42,12 +41,19 @@
  */
 public class MergeScenarioStatistics {
 
+    /**
+     * The sample size to pass to {@link #MergeScenarioStatistics(MergeScenario, int)} to retain every
+     * <code>Matching</code>.
+     */
+    public static final int ALL_MATCHINGS = -1;
+
     private MergeScenario<?> mergeScenario;
 
     private String strategy;
     private MergeScenarioStatus status;
 
     private Set<Matching<?>> matchings;
+    private MatchingStatistics matchingStatistics;
     private Map<Revision, Map<KeyEnums.Level, ElementStatistics>> levelStatistics;
     private Map<Revision, Map<KeyEnums.Type, ElementStatistics>> typeStatistics;
     private Map<Revision, MergeStatistics> mergeStatistics;
@@ -61,19 +67,38 @@ public class MergeScenarioStatistics {
     private ElementStatistics fileStatistics;
     private ElementStatistics directoryStatistics;
 
+    private MatcherStatistics matcherStatistics;
+
     private Map<String, Runtime> runtimes;
 
     /**
-     * Constructs a new <code>MergeScenarioStatistics</code> object for the given <code>MergeScenario</code>.
+     * Constructs a new <code>MergeScenarioStatistics</code> object for the given <code>MergeScenario</code> that
+     * retains every added <code>Matching</code>.
      *
      * @param mergeScenario
      *         the <code>MergeScenario</code> this <code>MergeScenarioStatistics</code> collects statistics for
      */
     MergeScenarioStatistics(MergeScenario<?> mergeScenario) {
+        this(mergeScenario, ALL_MATCHINGS);
+    }
+
+    /**
+     * Constructs a new <code>MergeScenarioStatistics</code> object for the given <code>MergeScenario</code>. Unless
+     * <code>matchingSampleSize</code> is {@link #ALL_MATCHINGS}, the added <code>Matching</code>s are not retained.
+     * Only {@link MatchingStatistics} about them and a sample of at most <code>matchingSampleSize</code> of them are
+     * kept instead.
+     *
+     * @param mergeScenario
+     *         the <code>MergeScenario</code> this <code>MergeScenarioStatistics</code> collects statistics for
+     * @param matchingSampleSize
+     *         the number of <code>Matching</code>s to sample or {@link #ALL_MATCHINGS}
+     */
+    MergeScenarioStatistics(MergeScenario<?> mergeScenario, int matchingSampleSize) {
         this.mergeScenario = mergeScenario;
         this.strategy = null;
         this.status = OK;
         this.matchings = new HashSet<>();
+        this.matchingStatistics = matchingSampleSize == ALL_MATCHINGS ? null : new MatchingStatistics(matchingSampleSize);
         this.levelStatistics = new HashMap<>();
         this.typeStatistics = new HashMap<>();
         this.mergeStatistics = new HashMap<>();
@@ -84,7 +109,8 @@ public class MergeScenarioStatistics {
         this.lineStatistics = new ElementStatistics();
         this.fileStatistics = new ElementStatistics();
         this.directoryStatistics = new ElementStatistics();
-        this.runtimes = new HashMap<>();
+        this.matcherStatistics = new MatcherStatistics();
+        this.runtimes = new TreeMap<>();
     }
 
     /**
@@ -104,6 +130,10 @@ public class MergeScenarioStatistics {
             this.matchings.add(new Matching<>(matching));
         }
 
+        if (toCopy.matchingStatistics != null) {
+            this.matchingStatistics = new MatchingStatistics(toCopy.matchingStatistics);
+        }
+
         this.levelStatistics = new HashMap<>(toCopy.levelStatistics.size());
 
         for (Map.Entry<Revision, Map<KeyEnums.Level, ElementStatistics>> entry : toCopy.levelStatistics.entrySet()) {
@@ -148,7 +178,8 @@ public class MergeScenarioStatistics {
         this.fileStatistics = new ElementStatistics(toCopy.fileStatistics);
         this.directoryStatistics = new ElementStatistics(toCopy.directoryStatistics);
 
-        this.runtimes = new HashMap<>(toCopy.runtimes.size());
+        this.matcherStatistics = new MatcherStatistics(toCopy.matcherStatistics);
+        this.runtimes = new TreeMap<>();
 
         for (Map.Entry<String, Runtime> entry : toCopy.runtimes.entrySet()) {
             this.runtimes.put(entry.getKey(), new Runtime(entry.getValue()));
@@ -192,13 +223,20 @@ public void setStatus(MergeScenarioStatus status) {
     }
 
     /**
-     * Adds a <code>Matching</code> to this <code>MergeScenarioStatistics</code>.
+     * Adds a <code>Matching</code> to this <code>MergeScenarioStatistics</code>. If this
+     * <code>MergeScenarioStatistics</code> does not retain <code>Matching</code>s, only its
+     * {@link #getMatchingStatistics() MatchingStatistics} are updated.
      *
      * @param matching
      *         the <code>Matching</code> to add
      */
     public void addMatching(Matching<?> matching) {
-        matchings.add(matching);
+
+        if (matchingStatistics == null) {
+            matchings.add(matching);
+        } else {
+            matchingStatistics.add(matching);
+        }
     }
 
     /**
@@ -206,9 +244,25 @@ public void addMatching(Matching<?> matching) {
      *
      * @param matchings
      *         the <code>Matching</code>s to add
+     * @see #addMatching(Matching)
      */
     public void addAllMatchings(Collection<? extends Matching<?>> matchings) {
-        this.matchings.addAll(matchings);
+
+        if (matchingStatistics == null) {
+            this.matchings.addAll(matchings);
+        } else {
+            matchings.forEach(matchingStatistics::add);
+        }
+    }
+
+    /**
+     * Returns the aggregated statistics about the <code>Matching</code>s added to this
+     * <code>MergeScenarioStatistics</code>.
+     *
+     * @return the {@link MatchingStatistics} or <code>null</code> if every <code>Matching</code> is retained
+     */
+    public MatchingStatistics getMatchingStatistics() {
+        return matchingStatistics;
     }
 
     /**
@@ -333,22 +387,25 @@ public ElementStatistics getLineStatistics() {
     }
 
     /**
-     * Parses the given <code>mergeResult</code> using {@link Parser#parse(String)} and sets the resulting statistics
-     * to this <code>MergeScenarioStatistics</code>.
+     * Parses the given <code>mergeResult</code> using {@link Parser#parse(CharSequence, ParseListener)} and sets the
+     * resulting statistics to this <code>MergeScenarioStatistics</code>. The lines of the <code>mergeResult</code> are
+     * not retained.
      *
      * @param mergeResult
      *         the code to parse
-     * @return the <code>ParseResult</code> from {@link Parser#parse(String)}
+     * @return the <code>CodeStatistics</code> of the <code>mergeResult</code>
      */
-    public ParseResult setLineStatistics(String mergeResult) {
-        ParseResult result = Parser.parse(mergeResult);
-        CodeStatistics cs = result.getStats();
+    public CodeStatistics setLineStatistics(String mergeResult) {
+        CodeStatisticsListener listener = new CodeStatisticsListener();
+
+        Parser.parse(mergeResult, listener);
+
+        CodeStatistics cs = listener.getStats();
 
         conflicts = cs.getConflicts();
 
         conflictStatistics.clear();
-        result.stream().filter(Content::isConflict).filter(c -> !((ConflictContent) c).isFiltered())
-                       .forEach(c -> conflictStatistics.put(c.hashCode(), c.getStats()));
+        conflictStatistics.putAll(listener.getConflictStats());
 
         charStatistics.setTotal(cs.getChars());
         charStatistics.setNumOccurInConflict(cs.getConflictingChars());
@@ -357,7 +414,7 @@ public ParseResult setLineStatistics(String mergeResult) {
         lineStatistics.setTotal(cs.getLinesOfCode());
         lineStatistics.setNumOccurInConflict(cs.getConflictingLinesOfCode());
 
-        return result;
+        return cs;
     }
 
     /**
@@ -378,6 +435,15 @@ public ElementStatistics getDirectoryStatistics() {
         return directoryStatistics;
     }
 
+    /**
+     * Returns the statistics about the matching phase of the merge.
+     *
+     * @return the matcher statistics
+     */
+    public MatcherStatistics getMatcherStatistics() {
+        return matcherStatistics;
+    }
+
     /**
      * Returns the number conflicts.
      *
@@ -421,6 +487,15 @@ public void putRuntime(Runtime runtime) {
         runtimes.put(runtime.getLabel(), runtime);
     }
 
+    /**
+     * Returns the {@link Runtime Runtimes} stored in this {@link MergeScenarioStatistics} ordered by their labels.
+     *
+     * @return an unmodifiable view of the {@link Runtime Runtimes}
+     */
+    public Collection<Runtime> getRuntimes() {
+        return Collections.unmodifiableCollection(runtimes.values());
+    }
+
     /**
      * Adds all <code>ElementStatistics</code> in <code>other</code> to the corresponding
      * <code>ElementStatistics</code> added to <code>this</code>. If an <code>ElementStatistics</code> in
@@ -434,6 +509,15 @@ public void add(MergeScenarioStatistics other) {
 
         addAllMatchings(other.matchings);
 
+        if (other.matchingStatistics != null) {
+
+            if (matchingStatistics == null) {
+                matchingStatistics = new MatchingStatistics(other.matchingStatistics);
+            } else {
+                matchingStatistics.add(other.matchingStatistics);
+            }
+        }
+
         for (Map.Entry<Revision, Map<KeyEnums.Level, ElementStatistics>> entry : other.levelStatistics.entrySet()) {
             Revision rev = entry.getKey();
 
@@ -470,6 +554,8 @@ public void add(MergeScenarioStatistics other) {
         fileStatistics.add(other.fileStatistics);
         directoryStatistics.add(other.directoryStatistics);
 
+        matcherStatistics.add(other.matcherStatistics);
+
         for (Map.Entry<String, Runtime> entry : other.runtimes.entrySet()) {
             getRuntime(entry.getKey()).add(entry.getValue());
         }
@@ -496,7 +582,7 @@ public void print(PrintStream os) {
         os.printf("%sConflicts: %s%n", indent, conflicts);
 
         runtimes.forEach((label, runtime) ->
-                os.printf("%sRuntime (%s): %dms%n", indent, label, runtime.getTimeMS())
+                os.printf("%sRuntime (%s): %dns in %d invocation(s)%n", indent, label, runtime.getTimeNS(), runtime.getCount())
         );
 
         conflictStatistics.forEach((hash, cs) -> {
@@ -509,6 +595,11 @@ public void print(PrintStream os) {
             os.printf("%s%s%n", indent, matching)
         );
 
+        if (matchingStatistics != null && !matchingStatistics.isEmpty()) {
+            os.println("Matching Statistics:");
+            matchingStatistics.print(os, indent);
+        }
+
         if (!levelStatistics.isEmpty()) os.println("Level Statistics:");
         levelStatistics.forEach((rev, map) -> map.forEach((level, stats) -> {
             os.printf("%s %s %s %s%n", Revision.class.getSimpleName(), rev, KeyEnums.Level.class.getSimpleName(), level);
@@ -541,5 +632,8 @@ public void print(PrintStream os) {
 
         os.println("Directory Statistics:");
         directoryStatistics.print(os, indent);
+
+        os.println("Matcher Statistics:");
+        matcherStatistics.print(os, indent);
     }
 }
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates the runtimes of nested spans of code. Every span has a label and is identified by its path, the labels of
+ * the spans enclosing it and its own label joined by {@value #SEPARATOR}. The nanosecond runtimes and the number of
+ * invocations of all spans with the same path are summed up into one {@link Runtime} labeled with the path.
+ * <br><br>
+ * Spans are tracked per thread and must be closed in the reverse order they were opened, e.g. by using
+ * <code>try</code>-with-resources. A span whose label is equal to the label of an enclosing span (as happens for
+ * recursive algorithms) does not open a new path but only counts as another invocation of the enclosing span. This
+ * keeps the number of paths bounded and the runtimes free of double counting.
+ * <br><br>
+ * Work handed to other threads (e.g. by a parallel stream) can be recorded under the spans open in the handing
+ * thread by capturing them using {@link #fork()} and opening {@link #join(Fork)} in the other threads.
+ */
+public final class Profiler {
+
+    /**
+     * The separator between the labels of a path.
+     */
+    public static final String SEPARATOR = "/";
+
+    /**
+     * A {@link Profiler} that does not record anything.
+     */
+    public static final Profiler DISABLED = new Profiler(false);
+
+    /**
+     * An open span. Closing it records its runtime.
+     */
+    public interface Span extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * The spans open in one thread as captured by {@link #fork()}.
+     */
+    public static final class Fork {
+
+        private static final Fork EMPTY = new Fork(null, new Node[0], new String[0]);
+
+        private final Object owner;
+        private final Node[] nodes;
+        private final String[] labels;
+
+        private Fork(Object owner, Node[] nodes, String[] labels) {
+            this.owner = owner;
+            this.nodes = nodes;
+            this.labels = labels;
+        }
+    }
+
+    /**
+     * The span returned if nothing is to be recorded.
+     */
+    private static final Span NOOP = () -> {};
+
+    /**
+     * The labels used for spans identified by a class.
+     */
+    private static final ClassValue<String> CLASS_LABELS = new ClassValue<String>() {
+
+        @Override
+        protected String computeValue(Class<?> type) {
+            return type.getSimpleName();
+        }
+    };
+
+    /**
+     * A path of spans and its aggregated {@link Runtime}.
+     */
+    private static final class Node {
+
+        private final String path;
+        private final Runtime runtime;
+        private final Map<String, Node> children;
+
+        private Node(String path) {
+            this.path = path;
+            this.runtime = new Runtime(path);
+            this.children = new ConcurrentHashMap<>();
+        }
+
+        private Node child(String label) {
+            return children.computeIfAbsent(label, l -> new Node(path.isEmpty() ? l : path + SEPARATOR + l));
+        }
+    }
+
+    /**
+     * The spans currently open in one thread. As spans are closed in reverse order, this object is returned as the
+     * {@link Span} for every span it opens.
+     */
+    private final class Stack implements Span {
+
+        private Node[] nodes = new Node[16];
+        private String[] labels = new String[16];
+        private long[] starts = new long[16];
+        private int size;
+
+        private Span push(String label, boolean nested) {
+
+            if (size == 0 && nested) {
+                return NOOP;
+            }
+
+            for (int i = 0; i < size; i++) {
+                if (labels[i].equals(label)) {
+                    nodes[i].runtime.addCount();
+                    return NOOP;
+                }
+            }
+
+            Node parent = size == 0 ? root : nodes[size - 1];
+
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                labels = Arrays.copyOf(labels, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+            }
+
+            nodes[size] = parent.child(label);
+            labels[size] = label;
+            starts[size] = System.nanoTime();
+            size++;
+
+            return this;
+        }
+
+        private Fork fork() {
+            return size == 0 ? Fork.EMPTY : new Fork(this, Arrays.copyOf(nodes, size), Arrays.copyOf(labels, size));
+        }
+
+        private Span join(Fork fork) {
+
+            // the forking thread may run parts of the work itself, its spans are still open
+            if (fork.owner == this || fork.nodes.length == 0) {
+                return NOOP;
+            }
+
+            Node[] oldNodes = nodes;
+            String[] oldLabels = labels;
+            long[] oldStarts = starts;
+            int oldSize = size;
+
+            int capacity = Math.max(16, fork.nodes.length * 2);
+
+            nodes = Arrays.copyOf(fork.nodes, capacity);
+            labels = Arrays.copyOf(fork.labels, capacity);
+            starts = new long[capacity];
+            size = fork.nodes.length;
+
+            // the joined spans are timed by the forking thread and therefore only discarded
+            return () -> {
+                nodes = oldNodes;
+                labels = oldLabels;
+                starts = oldStarts;
+                size = oldSize;
+            };
+        }
+
+        @Override
+        public void close() {
+            size--;
+            nodes[size].runtime.addTimeNS(System.nanoTime() - starts[size]);
+            nodes[size] = null;
+        }
+    }
+
+    private final boolean enabled;
+    private final ThreadLocal<Stack> stacks;
+    private volatile Node root;
+
+    /**
+     * Constructs a new, empty {@link Profiler}.
+     */
+    public Profiler() {
+        this(true);
+    }
+
+    /**
+     * Constructs a new {@link Profiler}.
+     *
+     * @param enabled
+     *         whether the {@link Profiler} records spans
+     */
+    private Profiler(boolean enabled) {
+        this.enabled = enabled;
+        this.stacks = ThreadLocal.withInitial(Stack::new);
+        this.root = new Node("");
+    }
+
+    /**
+     * Opens a span with the given label. If no span is open in the current thread, the span is a top-level one.
+     *
+     * @param label
+     *         the label of the span
+     * @return the open span
+     */
+    public Span time(String label) {
+        return enabled ? stacks.get().push(label, false) : NOOP;
+    }
+
+    /**
+     * Opens a span with the given label if another span is open in the current thread. Otherwise nothing is recorded.
+     * This is intended for code (such as matching or merge operations) that should only be profiled as part of a
+     * phase opened using {@link #time(String)}.
+     *
+     * @param label
+     *         the label of the span
+     * @return the open span
+     */
+    public Span nested(String label) {
+        return enabled ? stacks.get().push(label, true) : NOOP;
+    }
+
+    /**
+     * Opens a span labeled with the simple name of the given class if another span is open in the current thread.
+     *
+     * @param type
+     *         the class whose simple name to use as the label
+     * @return the open span
+     * @see #nested(String)
+     */
+    public Span nested(Class<?> type) {
+        return enabled ? stacks.get().push(label(type), true) : NOOP;
+    }
+
+    /**
+     * Captures the spans open in the current thread so that other threads can {@link #join(Fork) join} them.
+     *
+     * @return the captured spans
+     */
+    public Fork fork() {
+        return enabled ? stacks.get().fork() : Fork.EMPTY;
+    }
+
+    /**
+     * Continues the spans captured by <code>fork</code> in the current thread. Until the returned span is closed,
+     * spans opened in the current thread are recorded as children of the captured spans. This is a no-op in the
+     * thread that created <code>fork</code>.
+     *
+     * @param fork
+     *         the spans to continue as captured by {@link #fork()}
+     * @return the span to close once the work done on behalf of the forking thread is complete
+     */
+    public Span join(Fork fork) {
+        return enabled ? stacks.get().join(fork) : NOOP;
+    }
+
+    /**
+     * Returns the label used for spans identified by the given class.
+     *
+     * @param type
+     *         the class
+     * @return the simple name of the class
+     */
+    static String label(Class<?> type) {
+        return CLASS_LABELS.get(type);
+    }
+
+    /**
+     * Returns whether this {@link Profiler} records spans.
+     *
+     * @return whether this {@link Profiler} is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns copies of the {@link Runtime Runtimes} of all paths recorded since the last {@link #reset()}. Parents
+     * precede their children. Spans that are still open are not included.
+     *
+     * @return the {@link Runtime Runtimes} labeled with their paths
+     */
+    public List<Runtime> getRuntimes() {
+        List<Runtime> runtimes = new ArrayList<>();
+        collect(root, runtimes);
+        return runtimes;
+    }
+
+    /**
+     * Adds copies of the {@link Runtime Runtimes} of all descendants of <code>node</code> to <code>runtimes</code>.
+     *
+     * @param node
+     *         the node whose descendants to collect
+     * @param runtimes
+     *         the list to add the {@link Runtime Runtimes} to
+     */
+    private static void collect(Node node, List<Runtime> runtimes) {
+        for (Node child : node.children.values()) {
+            Runtime runtime = new Runtime(child.path, child.runtime);
+
+            if (runtime.isMeasured() || runtime.getCount() > 0) {
+                runtimes.add(runtime);
+            }
+
+            collect(child, runtimes);
+        }
+    }
+
+    /**
+     * Discards all recorded runtimes. Spans that are open while this method is called are not recorded.
+     */
+    public void reset() {
+
+        if (enabled) {
+            root = new Node("");
+        }
+    }
+}
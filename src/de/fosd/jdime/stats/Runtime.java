@@ -26,7 +26,7 @@
 import java.util.concurrent.TimeUnit;
 
 /**
- * A measured runtime.
+ * A measured runtime. The runtime is stored in nanoseconds together with the number of measurements it is made up of.
  */
 public final class Runtime {
 
@@ -66,7 +66,7 @@ private Measurement(Runtime rt) {
          * @return the measured runtime in milliseconds
          */
         public long stop() {
-            rt.setTimeMS(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNS));
+            rt.setTimeNS(System.nanoTime() - startNS);
             return rt.getTimeMS();
         }
 
@@ -80,7 +80,8 @@ public void close() {
     }
 
     private final String label;
-    private long timeMS;
+    private long timeNS;
+    private long count;
 
     /**
      * Constructs a new {@link Runtime} with the given label.
@@ -89,7 +90,8 @@ public void close() {
      */
     public Runtime(String label) {
         this.label = label;
-        this.timeMS = NO_MEASUREMENT;
+        this.timeNS = NO_MEASUREMENT;
+        this.count = 0;
     }
 
     /**
@@ -98,13 +100,27 @@ public Runtime(String label) {
      * @param toCopy the {@link Runtime} to copy
      */
     public Runtime(Runtime toCopy) {
-        this.label = toCopy.label;
-        this.timeMS = toCopy.timeMS;
+        this(toCopy.label, toCopy);
+    }
+
+    /**
+     * Constructs a new {@link Runtime} with the given label and the runtime and count of {@code toCopy}.
+     *
+     * @param label the label to use
+     * @param toCopy the {@link Runtime} whose measurements to copy
+     */
+    Runtime(String label, Runtime toCopy) {
+        this.label = label;
+
+        synchronized (toCopy) {
+            this.timeNS = toCopy.timeNS;
+            this.count = toCopy.count;
+        }
     }
 
     /**
      * Starts a runtime measurement. Calling {@link Measurement#stop()} or {@link Measurement#close()} on the returned
-     * {@link Measurement} will set the value of this {@link Runtime} to the elapsed time in milliseconds.
+     * {@link Measurement} will set the value of this {@link Runtime} to the elapsed time.
      *
      * @return the new runtime {@link Measurement}
      */
@@ -129,13 +145,37 @@ public void add(Runtime toAdd) {
                     "match the label of this Runtime (" + label + ").");
         }
 
-        if (timeMS != NO_MEASUREMENT || toAdd.timeMS != NO_MEASUREMENT) {
-            long l = timeMS == NO_MEASUREMENT ? 0 : timeMS;
-            long r = toAdd.timeMS == NO_MEASUREMENT ? 0 : toAdd.timeMS;
-            timeMS = l + r;
+        Runtime other = new Runtime(toAdd);
+
+        synchronized (this) {
+            if (timeNS != NO_MEASUREMENT || other.timeNS != NO_MEASUREMENT) {
+                long l = timeNS == NO_MEASUREMENT ? 0 : timeNS;
+                long r = other.timeNS == NO_MEASUREMENT ? 0 : other.timeNS;
+                timeNS = l + r;
+            }
+
+            count += other.count;
         }
     }
 
+    /**
+     * Adds a measurement of the given number of nanoseconds to this {@link Runtime}.
+     *
+     * @param timeNS
+     *         the measured runtime in nanoseconds
+     */
+    synchronized void addTimeNS(long timeNS) {
+        this.timeNS = this.timeNS == NO_MEASUREMENT ? timeNS : this.timeNS + timeNS;
+        this.count += 1;
+    }
+
+    /**
+     * Increments the number of measurements this {@link Runtime} is made up of without adding to its runtime.
+     */
+    synchronized void addCount() {
+        this.count += 1;
+    }
+
     /**
      * Returns the label associated with this {@link Runtime}.
      *
@@ -148,8 +188,9 @@ public String getLabel() {
     /**
      * Resets this {@link Runtime} to {@value NO_MEASUREMENT}.
      */
-    public void reset() {
-        timeMS = NO_MEASUREMENT;
+    public synchronized void reset() {
+        timeNS = NO_MEASUREMENT;
+        count = 0;
     }
 
     /**
@@ -157,34 +198,54 @@ public void reset() {
      *
      * @return whether the contained runtime is not {@value NO_MEASUREMENT}
      */
-    public boolean isMeasured() {
-        return timeMS != NO_MEASUREMENT;
+    public synchronized boolean isMeasured() {
+        return timeNS != NO_MEASUREMENT;
+    }
+
+    /**
+     * Returns the runtime stored in this {@link Runtime} in milliseconds. Returns {@value #NO_MEASUREMENT} if no
+     * measurement has been stored yet.
+     *
+     * @return the stored runtime in milliseconds or {@value #NO_MEASUREMENT}
+     */
+    public synchronized long getTimeMS() {
+        return timeNS == NO_MEASUREMENT ? NO_MEASUREMENT : TimeUnit.NANOSECONDS.toMillis(timeNS);
+    }
+
+    /**
+     * Returns the runtime stored in this {@link Runtime} in nanoseconds. Returns {@value #NO_MEASUREMENT} if no
+     * measurement has been stored yet.
+     *
+     * @return the stored runtime in nanoseconds or {@value #NO_MEASUREMENT}
+     */
+    public synchronized long getTimeNS() {
+        return timeNS;
     }
 
     /**
-     * Returns the last runtime measurement that was stored in this {@link Runtime}. Returns {@value #NO_MEASUREMENT}
-     * if no measurement has been stored yet.
+     * Returns the number of measurements (invocations of the measured code) this {@link Runtime} is made up of.
      *
-     * @return the last stored runtime in milliseconds or {@value #NO_MEASUREMENT}
+     * @return the number of measurements
      */
-    public long getTimeMS() {
-        return timeMS;
+    public synchronized long getCount() {
+        return count;
     }
 
     /**
-     * Sets the stored runtime to the new value in milliseconds.
+     * Sets the stored runtime to a single measurement of the given number of nanoseconds.
      *
-     * @param timeMS
-     *         the new runtime in milliseconds
+     * @param timeNS
+     *         the new runtime in nanoseconds
      * @throws IllegalArgumentException
-     *         if the {@code timeMS} is smaller than 0
+     *         if the {@code timeNS} is smaller than 0
      */
-    private void setTimeMS(long timeMS) {
+    private synchronized void setTimeNS(long timeNS) {
 
-        if (timeMS < 0) {
-            throw new IllegalArgumentException("New runtime (" + timeMS + ") must not be smaller than zero.");
+        if (timeNS < 0) {
+            throw new IllegalArgumentException("New runtime (" + timeNS + ") must not be smaller than zero.");
         }
 
-        this.timeMS = timeMS;
+        this.timeNS = timeNS;
+        this.count = 1;
     }
 }
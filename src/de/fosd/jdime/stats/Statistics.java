@@ -28,7 +28,9 @@
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
@@ -44,6 +46,7 @@
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.SingleValueConverter;
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import com.thoughtworks.xstream.converters.collections.CollectionConverter;
 import com.thoughtworks.xstream.io.HierarchicalStreamReader;
@@ -57,9 +60,16 @@
 import de.fosd.jdime.matcher.matching.LookAheadMatching;
 import de.fosd.jdime.matcher.matching.Matching;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 /**
  * A collection of <code>MergeScenarioStatistics</code> containing collected statistics about
  * <code>MergeScenario</code>s that were merged during a run of JDime.
+ * <br><br>
+ * By default, all <code>MergeScenarioStatistics</code> are kept until they are printed at the end of the run. If
+ * the statistics are streamed (see {@link #streamXML(OutputStream, MergeContext)} and {@link #stream(PrintStream)}),
+ * the <code>MergeScenarioStatistics</code> of every scenario passed to {@link #complete(MergeScenario)} are written
+ * immediately and then released, so that the memory used does not grow with the number of merged scenarios.
  */
 public class Statistics {
 
@@ -68,15 +78,37 @@ public class Statistics {
     private MergeScenario<FileArtifact> currentFileMergeScenario;
     private Map<MergeScenario<?>, MergeScenarioStatistics> scenarioStatistics;
 
+    /**
+     * The conflicts of the <code>MergeScenarioStatistics</code> that were already streamed and released.
+     */
+    private transient IntSummaryStatistics completedConflicts;
+
+    /**
+     * The number of <code>Matching</code>s sampled by new <code>MergeScenarioStatistics</code>.
+     *
+     * @see MergeScenarioStatistics#MergeScenarioStatistics(MergeScenario, int)
+     */
+    private transient int matchingSampleSize;
+
+    /*
+     * The streaming state is transient so that printXML(...) writes the same document as streamXML(...).
+     */
+    private transient PrintStream hrStream;
+    private transient boolean hrStreamEmpty;
+    private transient ObjectOutputStream xmlStream;
+
     /**
      * Constructs a new <code>Statistics</code> object.
      */
     public Statistics() {
         this.scenarioStatistics = new HashMap<>();
+        this.completedConflicts = new IntSummaryStatistics();
+        this.matchingSampleSize = MergeScenarioStatistics.ALL_MATCHINGS;
     }
 
     /**
-     * Copy constructor.
+     * Copy constructor. The copy does not stream its statistics and only contains the
+     * <code>MergeScenarioStatistics</code> that were not yet released by <code>toCopy</code>.
      *
      * @param toCopy
      *         the <code>Statistics</code> to copy
@@ -88,6 +120,8 @@ public Statistics(Statistics toCopy) {
         }
 
         this.scenarioStatistics = new HashMap<>();
+        this.completedConflicts = new IntSummaryStatistics();
+        this.matchingSampleSize = toCopy.matchingSampleSize;
 
         for (Map.Entry<MergeScenario<?>, MergeScenarioStatistics> entry : toCopy.scenarioStatistics.entrySet()) {
             MergeScenario<?> mScenario = new MergeScenario<>(entry.getKey());
@@ -107,6 +141,15 @@ public MergeScenarioStatistics getCurrentFileMergeScenarioStatistics() {
         return getScenarioStatistics(currentFileMergeScenario);
     }
 
+    /**
+     * Returns the currently active <code>MergeScenario</code> for <code>FileArtifacts</code>.
+     *
+     * @return the current <code>MergeScenario</code> for <code>FileArtifacts</code> or <code>null</code>
+     */
+    public MergeScenario<FileArtifact> getCurrentFileMergeScenario() {
+        return currentFileMergeScenario;
+    }
+
     /**
      * Sets the currently active <code>MergeScenario</code> for <code>FileArtifacts</code> to the new value.
      *
@@ -137,7 +180,32 @@ public boolean containsStatistics(MergeScenario<?> mergeScenario) {
      * @return the <code>MergeScenarioStatistics</code> for the given <code>MergeScenario</code>
      */
     public MergeScenarioStatistics getScenarioStatistics(MergeScenario<?> mergeScenario) {
-        return scenarioStatistics.computeIfAbsent(mergeScenario, MergeScenarioStatistics::new);
+        return scenarioStatistics.computeIfAbsent(mergeScenario, s -> new MergeScenarioStatistics(s, matchingSampleSize));
+    }
+
+    /**
+     * Returns the number of <code>Matching</code>s sampled by the <code>MergeScenarioStatistics</code> created by
+     * this <code>Statistics</code> instance.
+     *
+     * @return the sample size or {@link MergeScenarioStatistics#ALL_MATCHINGS} if every <code>Matching</code> is
+     *         retained
+     */
+    public int getMatchingSampleSize() {
+        return matchingSampleSize;
+    }
+
+    /**
+     * Sets the number of <code>Matching</code>s sampled by the <code>MergeScenarioStatistics</code> created by this
+     * <code>Statistics</code> instance from now on. Unless the sample size is
+     * {@link MergeScenarioStatistics#ALL_MATCHINGS}, they only keep {@link MatchingStatistics} about their
+     * <code>Matching</code>s and a sample of at most <code>matchingSampleSize</code> of them instead of the
+     * <code>Matching</code>s themselves. A sample size of 0 keeps only the {@link MatchingStatistics}.
+     *
+     * @param matchingSampleSize
+     *         the sample size or {@link MergeScenarioStatistics#ALL_MATCHINGS}
+     */
+    public void setMatchingSampleSize(int matchingSampleSize) {
+        this.matchingSampleSize = matchingSampleSize;
     }
 
     /**
@@ -172,21 +240,178 @@ public void removeScenarioStatistics(MergeScenario<?> scenario) {
 
     /**
      * Returns an <code>IntSummaryStatistics</code> for the conflict ({@link MergeScenarioStatistics#getConflicts()})
-     * statistics collected in all added <code>MergeScenarioStatistics</code>.
+     * statistics collected in all added <code>MergeScenarioStatistics</code> (including those that were already
+     * streamed and released).
      *
      * @return the <code>IntSummaryStatistics</code> about conflicts that occurred
      */
     public IntSummaryStatistics getConflictStatistics() {
-        return scenarioStatistics.values().stream().collect(Collectors.summarizingInt(MergeScenarioStatistics::getConflicts));
+        IntSummaryStatistics conflicts = scenarioStatistics.values().stream().collect(Collectors.summarizingInt(MergeScenarioStatistics::getConflicts));
+        conflicts.combine(completedConflicts);
+
+        return conflicts;
     }
 
     /**
-     * Returns whether any added <code>MergeScenarioStatistics</code> instance recorded more than 0 conflicts.
+     * Returns whether any added <code>MergeScenarioStatistics</code> instance (including those that were already
+     * streamed and released) recorded more than 0 conflicts.
      *
      * @return true iff any added <code>MergeScenarioStatistics</code> recorded conflicts
      */
     public boolean hasConflicts() {
-        return scenarioStatistics.values().stream().anyMatch(s -> s.getConflicts() > 0);
+        return completedConflicts.getMax() > 0 || scenarioStatistics.values().stream().anyMatch(s -> s.getConflicts() > 0);
+    }
+
+    /**
+     * Starts streaming a human readable representation of the statistics to the given <code>File</code>. The
+     * <code>File</code> will be overwritten if it exists.
+     *
+     * @param file
+     *         the <code>File</code> to write the statistics to
+     * @throws FileNotFoundException
+     *         if an exception occurs accessing the <code>File</code>
+     * @see #complete(MergeScenario)
+     */
+    public void stream(File file) throws FileNotFoundException {
+
+        if (!check(file)) {
+            return;
+        }
+
+        stream(new PrintStream(new BufferedOutputStream(new FileOutputStream(file))));
+    }
+
+    /**
+     * Starts streaming a human readable representation of the statistics to the given <code>PrintStream</code>.
+     *
+     * @param ps
+     *         the <code>PrintStream</code> to write to, it will be closed by {@link #closeStreams()}
+     * @see #complete(MergeScenario)
+     */
+    public void stream(PrintStream ps) {
+        hrStream = ps;
+        hrStreamEmpty = true;
+    }
+
+    /**
+     * Starts streaming the statistics in XML format to the given <code>File</code>. The <code>File</code> will be
+     * overwritten if it exists.
+     *
+     * @param file
+     *         the <code>File</code> to write the statistics to
+     * @param context
+     *         the {@link MergeContext} containing the configuration options to be used
+     * @throws IOException
+     *         if an exception occurs accessing the <code>File</code>
+     * @see #complete(MergeScenario)
+     */
+    public void streamXML(File file, MergeContext context) throws IOException {
+
+        if (!check(file)) {
+            return;
+        }
+
+        streamXML(new BufferedOutputStream(new FileOutputStream(file)), context);
+    }
+
+    /**
+     * Starts streaming the statistics in XML format to the given <code>OutputStream</code>. The document has the same
+     * structure as the one written by {@link #printXML(OutputStream, MergeContext)}. It is completed by
+     * {@link #closeStreams()}.
+     *
+     * @param os
+     *         the <code>OutputStream</code> to write to, it will be closed by {@link #closeStreams()}
+     * @param context
+     *         the {@link MergeContext} containing the configuration options to be used
+     * @throws IOException
+     *         if the beginning of the document can not be written
+     * @see #complete(MergeScenario)
+     */
+    public void streamXML(OutputStream os, MergeContext context) throws IOException {
+        String root = Statistics.class.getSimpleName().toLowerCase();
+        xmlStream = buildSerializer(context).createObjectOutputStream(new OutputStreamWriter(os, UTF_8), root);
+    }
+
+    /**
+     * Returns whether the statistics are streamed.
+     *
+     * @return true iff {@link #stream(PrintStream)} or {@link #streamXML(OutputStream, MergeContext)} were called
+     *         and the streams were not closed since
+     */
+    public boolean isStreaming() {
+        return hrStream != null || xmlStream != null;
+    }
+
+    /**
+     * Signals that no more statistics will be collected for the given <code>scenario</code>. If the statistics are
+     * streamed, its <code>MergeScenarioStatistics</code> are written to the streams and then released. Otherwise
+     * this method does nothing.
+     *
+     * @param scenario
+     *         the completed <code>MergeScenario</code>
+     */
+    public void complete(MergeScenario<?> scenario) {
+
+        if (!isStreaming()) {
+            return;
+        }
+
+        MergeScenarioStatistics stats = scenarioStatistics.remove(scenario);
+
+        if (stats == null) {
+            return;
+        }
+
+        completedConflicts.accept(stats.getConflicts());
+
+        if (hrStream != null) {
+            if (!hrStreamEmpty) {
+                hrStream.println();
+            }
+
+            stats.print(hrStream);
+            hrStream.flush();
+            hrStreamEmpty = false;
+        }
+
+        if (xmlStream != null) {
+            try {
+                xmlStream.writeObject(stats);
+                xmlStream.flush();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, e, () -> "Statistics output failed.");
+            }
+        }
+    }
+
+    /**
+     * Writes all <code>MergeScenarioStatistics</code> that were not yet streamed, completes the XML document and
+     * closes the streams. Does nothing if the statistics are not streamed.
+     */
+    public void closeStreams() {
+
+        if (!isStreaming()) {
+            return;
+        }
+
+        for (MergeScenarioStatistics stats : getScenarioStatistics()) {
+            complete(stats.getMergeScenario());
+        }
+
+        if (hrStream != null) {
+            hrStream.close();
+            hrStream = null;
+        }
+
+        if (xmlStream != null) {
+            try {
+                xmlStream.close();
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, e, () -> "Exception while closing an OutputStream.");
+            }
+
+            xmlStream = null;
+        }
     }
 
     /**
@@ -333,8 +558,6 @@ private XStream buildSerializer(MergeContext context) {
         }
 
         serializer.alias(Runtime.class.getSimpleName().toLowerCase(), Runtime.class);
-        serializer.useAttributeFor(Runtime.class, "label");
-        serializer.useAttributeFor(Runtime.class, "timeMS");
 
         serializer.aliasType(Artifact.class.getSimpleName().toLowerCase(), Artifact.class);
 
@@ -349,6 +572,12 @@ private XStream buildSerializer(MergeContext context) {
         serializer.alias(KeyEnums.Level.class.getSimpleName().toLowerCase(), KeyEnums.Level.class);
 
         serializer.alias(Matching.class.getSimpleName().toLowerCase(), Matching.class);
+        serializer.addImplicitMap(MatchingStatistics.class, "algorithms", MatchingStatistics.AlgorithmMatchings.class, "algorithm");
+        serializer.useAttributeFor(MatchingStatistics.class, "sampled");
+        for (Field field : MatchingStatistics.AlgorithmMatchings.class.getDeclaredFields()) {
+            serializer.useAttributeFor(MatchingStatistics.AlgorithmMatchings.class, field.getName());
+        }
+        serializer.alias(MatchingStatistics.AlgorithmMatchings.class.getSimpleName().toLowerCase(), MatchingStatistics.AlgorithmMatchings.class);
         serializer.alias(Matching.class.getSimpleName().toLowerCase(), LookAheadMatching.class);
         serializer.omitField(Matching.class, "highlightColor");
 
@@ -362,6 +591,32 @@ private XStream buildSerializer(MergeContext context) {
         }
         serializer.alias(MergeStatistics.class.getSimpleName().toLowerCase(), MergeStatistics.class);
 
+        serializer.addImplicitMap(MatcherStatistics.class, "algorithms", MatcherStatistics.AlgorithmStatistics.class, "algorithm");
+        serializer.useAttributeFor(MatcherStatistics.class, "cacheHits");
+        serializer.useAttributeFor(MatcherStatistics.class, "cacheMisses");
+        for (Field field : MatcherStatistics.AlgorithmStatistics.class.getDeclaredFields()) {
+            serializer.useAttributeFor(MatcherStatistics.AlgorithmStatistics.class, field.getName());
+        }
+        serializer.alias("algorithm", MatcherStatistics.AlgorithmStatistics.class);
+
+        serializer.registerConverter(new SingleValueConverter() {
+
+            @Override
+            public String toString(Object obj) {
+                return obj.toString();
+            }
+
+            @Override
+            public Object fromString(String str) {
+                return Histogram.valueOf(str);
+            }
+
+            @Override
+            public boolean canConvert(@SuppressWarnings("rawtypes") Class type) {
+                return Histogram.class.equals(type);
+            }
+        });
+
         serializer.registerConverter(new Converter() {
 
             private static final String TYPE_ATTR = "type";
@@ -399,6 +654,38 @@ public boolean canConvert(@SuppressWarnings("rawtypes") Class type) {
             }
         });
 
+        serializer.registerConverter(new Converter() {
+
+            private static final String LABEL_ATTR = "label";
+            private static final String TIME_MS_ATTR = "timeMS";
+            private static final String TIME_NS_ATTR = "timeNS";
+            private static final String COUNT_ATTR = "count";
+
+            @Override
+            public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+                Runtime runtime = new Runtime((Runtime) source);
+
+                // timeMS is derived from timeNS but kept for existing consumers of the XML
+                writer.addAttribute(LABEL_ATTR, runtime.getLabel());
+                writer.addAttribute(TIME_MS_ATTR, String.valueOf(runtime.getTimeMS()));
+                writer.addAttribute(TIME_NS_ATTR, String.valueOf(runtime.getTimeNS()));
+                writer.addAttribute(COUNT_ATTR, String.valueOf(runtime.getCount()));
+            }
+
+            @Override
+            public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+                String name = XStream.class.getSimpleName();
+                String name2 = Statistics.class.getSimpleName();
+                String msg = String.format("The %s in the %s class can not be used for deserialization.", name, name2);
+                throw new RuntimeException(msg);
+            }
+
+            @Override
+            public boolean canConvert(@SuppressWarnings("rawtypes") Class type) {
+                return type.equals(Runtime.class);
+            }
+        });
+
         serializer.registerConverter(new Converter() {
 
             private static final String SUBCLASS_ATTR = "subclass";
@@ -157,7 +157,11 @@ static MergeScenarioStatistics getASTStatistics(Artifact<?> artifact, Revision o
             if (otherRev != null) {
                 Matching<?> matching = current.getMatching(otherRev);
 
-                if (matching != null) {
+                /*
+                 * The Matching is shared by both matched artifacts. Only adding it for its left artifact ensures it is
+                 * counted once when the statistics for the trees of both revisions are added up.
+                 */
+                if (matching != null && matching.getLeft() == current) {
                     statistics.addMatching(matching);
                 }
             }
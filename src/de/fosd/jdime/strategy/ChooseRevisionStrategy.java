@@ -6,10 +6,10 @@
 import de.fosd.jdime.config.merge.Revision;
 import de.fosd.jdime.execption.AbortException;
 import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.stats.CodeStatistics;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
 import de.fosd.jdime.stats.Runtime;
 import de.fosd.jdime.stats.Statistics;
-import de.fosd.jdime.util.parser.ParseResult;
 
 import java.util.Map;
 import java.util.logging.Logger;
@@ -35,6 +35,11 @@ public ChooseRevisionStrategy(Revision revToChoose) {
         this.revToChoose = revToChoose;
     }
 
+    @Override
+    public String getSignature() {
+        return super.getSignature() + "(" + revToChoose.getName() + ")";
+    }
+
     @Override @SuppressWarnings("try")
     public void merge(MergeOperation<FileArtifact> operation, MergeContext context) {
         LOG.fine(() -> "Instead of merging, JDime is configure to choose revision " + revToChoose);
@@ -70,9 +75,9 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
             MergeScenarioStatistics scenarioStatistics = statistics.getScenarioStatistics(operation.getMergeScenario());
             scenarioStatistics.setStrategy(getClass());
 
-            ParseResult res = scenarioStatistics.setLineStatistics(mergeResult);
+            CodeStatistics lineStatistics = scenarioStatistics.setLineStatistics(mergeResult);
 
-            if (res.getStats().getConflicts() > 0) {
+            if (lineStatistics.getConflicts() > 0) {
                 scenarioStatistics.getFileStatistics().incrementNumOccurInConflict();
             }
 
@@ -27,6 +27,7 @@
 import java.util.List;
 import java.util.Objects;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
@@ -60,6 +61,13 @@ public CombinedStrategy(List<MergeStrategy<FileArtifact>> strategies) {
         this.strategies = strategies;
     }
 
+    @Override
+    public String getSignature() {
+        return strategies.stream()
+                         .map(MergeStrategy::getSignature)
+                         .collect(Collectors.joining(",", toString() + "(", ")"));
+    }
+
     /**
      * TODO: high-level documentation
      * @param operation the <code>MergeOperation</code> to perform
@@ -27,11 +27,11 @@
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.stats.CodeStatistics;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
 import de.fosd.jdime.stats.Runtime;
 import de.fosd.jdime.stats.Statistics;
 import de.fosd.jdime.util.parser.ConflictContent;
-import de.fosd.jdime.util.parser.ParseResult;
 import de.uni_passau.fim.seibt.GitMergeFileInput;
 import de.uni_passau.fim.seibt.GitMergeFileOptions;
 import de.uni_passau.fim.seibt.GitMergeFileResult;
@@ -101,9 +101,9 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
             MergeScenarioStatistics scenarioStatistics = statistics.getScenarioStatistics(operation.getMergeScenario());
             scenarioStatistics.setStrategy(getClass());
 
-            ParseResult res = scenarioStatistics.setLineStatistics(mergeResult);
+            CodeStatistics lineStatistics = scenarioStatistics.setLineStatistics(mergeResult);
 
-            if (res.getStats().getConflicts() > 0) {
+            if (lineStatistics.getConflicts() > 0) {
                 scenarioStatistics.getFileStatistics().incrementNumOccurInConflict();
             }
 
@@ -0,0 +1,386 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.matcher.cost_model.CMMode;
+import de.fosd.jdime.operations.MergeOperation;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.extendj.ast.ASTNode;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.regex.Pattern.MULTILINE;
+
+/**
+ * A size bounded cache of merge results stored in a directory. Results are keyed by the hash of the contents of the
+ * merged files, the {@link MergeStrategy#getSignature() strategy} and the
+ * {@link MergeContext#getOptionsSignature() options} used. Running the same merge scenario again (for example when
+ * repeating a rebase or re-running an evaluation) then only requires reading the stored result.
+ * <p>
+ * Results are stored in a subdirectory named after the JDime version and the hash of the ExtendJ jar so that other
+ * versions never read them. When the cache grows larger than its capacity, the least recently used results (of
+ * all versions) are deleted first. The sizes of the stored results are indexed in memory when the first result is
+ * stored so that the cache directory is only listed once per <code>MergeResultCache</code>.
+ */
+public final class MergeResultCache {
+
+    private static final Logger LOG = Logger.getLogger(MergeResultCache.class.getCanonicalName());
+
+    /**
+     * Matches the lines of conflict markers (as produced by <code>git merge-file</code>) that carry a label.
+     */
+    private static final Pattern MARKER_LABEL = Pattern.compile("^(<{7}|\\|{7}|>{7}) (.+)$", MULTILINE);
+
+    /**
+     * Prefixes the names of the revisions that replace the paths of the input files in stored conflict markers.
+     */
+    private static final char REVISION_LABEL = '\0';
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path root;
+    private final Path directory;
+    private final long capacity;
+
+    /**
+     * The sizes of the stored results in least recently used order and their sum. <code>null</code> until the first
+     * result is stored.
+     */
+    private Map<Path, Long> index;
+    private long size;
+
+    /**
+     * Constructs a new <code>MergeResultCache</code> storing at most <code>capacity</code> bytes of merge results in
+     * the given directory.
+     *
+     * @param root
+     *         the directory to store the results in, it is created if necessary
+     * @param capacity
+     *         the maximum size of the stored results in bytes
+     */
+    public MergeResultCache(File root, long capacity) {
+        this.root = root.toPath();
+        this.directory = this.root.resolve(Version.ID);
+        this.capacity = capacity;
+    }
+
+    /**
+     * Lazily computes the identifier of the JDime version and ExtendJ jar.
+     */
+    private static final class Version {
+
+        private static final String ID = DigestUtils.sha256Hex(Main.VERSION + extendJHash());
+
+        /**
+         * Returns the hash of the ExtendJ jar on the classpath.
+         *
+         * @return the hash or the location of the ExtendJ classes if it is not a jar
+         */
+        private static String extendJHash() {
+            try {
+                URL location = ASTNode.class.getProtectionDomain().getCodeSource().getLocation();
+                Path path = Paths.get(location.toURI());
+
+                if (!Files.isRegularFile(path)) {
+                    return path.toString();
+                }
+
+                try (InputStream in = Files.newInputStream(path)) {
+                    return DigestUtils.sha256Hex(in);
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, e, () -> "Could not hash the ExtendJ jar.");
+                return ASTNode.class.getName();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the result of the given <code>operation</code> may be taken from or stored in this cache. This
+     * is not the case if the <code>context</code> requires side effects of the merge such as collected statistics or
+     * if the merge is not deterministic.
+     *
+     * @param operation
+     *         the <code>MergeOperation</code> to be applied
+     * @param context
+     *         the <code>MergeContext</code> it is applied in
+     * @return true iff the cache is applicable
+     */
+    public boolean isApplicable(MergeOperation<FileArtifact> operation, MergeContext context) {
+        boolean deterministic = context.getCMMatcherMode() == CMMode.OFF || context.getSeed().isPresent();
+
+        return capacity > 0 && deterministic && !context.hasStatistics() && !context.isDiffOnly() && !context.isInspect()
+                && operation.getMergeScenario().getArtifacts().values().stream().noneMatch(FileArtifact::isDirectory);
+    }
+
+    /**
+     * Returns the stored result of the given <code>operation</code>.
+     *
+     * @param operation
+     *         the <code>MergeOperation</code> to be applied
+     * @param context
+     *         the <code>MergeContext</code> it is applied in
+     * @return optionally the content of the merged file
+     */
+    public synchronized Optional<String> get(MergeOperation<FileArtifact> operation, MergeContext context) {
+        Path file = directory.resolve(key(operation, context));
+
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+
+        try {
+            String content = new String(Files.readAllBytes(file), UTF_8);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+
+            if (index != null) {
+                index.get(file);
+            }
+
+            LOG.fine(() -> "Using the cached merge result " + file);
+            return Optional.of(relabel(content, labels(operation.getMergeScenario(), true)));
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Could not read the cached merge result " + file);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the result of the given <code>operation</code> and evicts the least recently used results if the cache
+     * grows larger than its capacity.
+     *
+     * @param operation
+     *         the applied <code>MergeOperation</code>
+     * @param context
+     *         the <code>MergeContext</code> it was applied in
+     * @param content
+     *         the content of the merged file
+     */
+    public synchronized void put(MergeOperation<FileArtifact> operation, MergeContext context, String content) {
+        Path file = directory.resolve(key(operation, context));
+        byte[] bytes = relabel(content, labels(operation.getMergeScenario(), false)).getBytes(UTF_8);
+
+        if (bytes.length > capacity) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(directory);
+
+            Path tmp = Files.createTempFile(directory, file.getFileName().toString(), TMP_SUFFIX);
+
+            try {
+                Files.write(tmp, bytes);
+
+                try {
+                    Files.move(tmp, file, ATOMIC_MOVE);
+                } catch (IOException e) {
+                    Files.move(tmp, file, REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Could not cache the merge result " + file);
+            return;
+        }
+
+        if (index == null) {
+            loadIndex();
+        } else {
+            Long old = index.put(file, (long) bytes.length);
+            size += bytes.length - (old == null ? 0 : old);
+        }
+
+        evict();
+    }
+
+    /**
+     * Indexes the results (of all versions) currently stored in the {@link #root} directory.
+     */
+    private void loadIndex() {
+        List<Path> files;
+
+        try (Stream<Path> paths = Files.walk(root, 2)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, e, () -> "Could not list the merge results cached in " + root);
+            files = new ArrayList<>();
+        }
+
+        files.sort(Comparator.comparingLong(MergeResultCache::lastModified));
+
+        index = new LinkedHashMap<>(16, 0.75f, true);
+        size = 0;
+
+        for (Path file : files) {
+            long fileSize = size(file);
+
+            index.put(file, fileSize);
+            size += fileSize;
+        }
+    }
+
+    /**
+     * Deletes the least recently used results until at most {@link #capacity} bytes are stored.
+     */
+    private void evict() {
+
+        for (Iterator<Map.Entry<Path, Long>> it = index.entrySet().iterator(); size > capacity && it.hasNext(); ) {
+            Map.Entry<Path, Long> entry = it.next();
+            Path file = entry.getKey();
+
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, e, () -> "Could not evict the cached merge result " + file);
+                continue;
+            }
+
+            it.remove();
+            size -= entry.getValue();
+        }
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Returns the key of the given <code>operation</code>.
+     *
+     * @param operation
+     *         the <code>MergeOperation</code>
+     * @param context
+     *         the <code>MergeContext</code> it is applied in
+     * @return the key
+     */
+    private static String key(MergeOperation<FileArtifact> operation, MergeContext context) {
+        MergeScenario<FileArtifact> scenario = operation.getMergeScenario();
+        StringBuilder key = new StringBuilder();
+
+        key.append(context.getMergeStrategy().getSignature()).append('\n');
+        key.append(context.getOptionsSignature()).append('\n');
+        key.append(scenario.getMergeType()).append('\n');
+
+        Map<String, FileArtifact> artifacts = new TreeMap<>();
+        scenario.getArtifacts().forEach((rev, artifact) -> artifacts.put(rev.getName(), artifact));
+
+        artifacts.forEach((name, artifact) -> {
+            String hash = artifact.exists() ? DigestUtils.sha256Hex(artifact.getContent()) : "-";
+            key.append(name).append(':').append(hash).append('\n');
+        });
+
+        return DigestUtils.sha256Hex(key.toString());
+    }
+
+    /**
+     * Returns a mapping between the paths of the files in the given <code>scenario</code> (which are used as labels
+     * of conflict markers) and the names of their revisions.
+     *
+     * @param scenario
+     *         the <code>MergeScenario</code>
+     * @param toPaths
+     *         whether to map from revision names to paths (instead of from paths to revision names)
+     * @return the mapping of labels
+     */
+    private static Map<String, String> labels(MergeScenario<FileArtifact> scenario, boolean toPaths) {
+        Map<String, String> labels = new TreeMap<>();
+
+        scenario.getArtifacts().forEach((rev, artifact) -> {
+            String path = artifact.getFile().getPath();
+            String name = REVISION_LABEL + rev.getName();
+
+            if (toPaths) {
+                labels.put(name, path);
+            } else {
+                labels.putIfAbsent(path, name);
+            }
+        });
+
+        return labels;
+    }
+
+    /**
+     * Replaces the labels of the conflict markers in <code>content</code> according to the given mapping.
+     *
+     * @param content
+     *         the content of a merged file
+     * @param labels
+     *         the mapping of labels
+     * @return the relabeled content
+     */
+    private static String relabel(String content, Map<String, String> labels) {
+        Matcher m = MARKER_LABEL.matcher(content);
+        StringBuffer relabeled = new StringBuffer(content.length());
+
+        while (m.find()) {
+            String label = labels.getOrDefault(m.group(2), m.group(2));
+            m.appendReplacement(relabeled, Matcher.quoteReplacement(m.group(1) + " " + label));
+        }
+
+        m.appendTail(relabeled);
+        return relabeled.toString();
+    }
+}
@@ -145,6 +145,16 @@ public static Optional<MergeStrategy<FileArtifact>> parse(String name) {
         return Optional.ofNullable(strategy);
     }
 
+    /**
+     * Returns a description of this <code>MergeStrategy</code> and its configuration. Strategies with equal
+     * signatures produce equal results for equal inputs.
+     *
+     * @return the signature of this <code>MergeStrategy</code>
+     */
+    public String getSignature() {
+        return toString();
+    }
+
     @Override
     public final String toString() {
         return getClass().getSimpleName();
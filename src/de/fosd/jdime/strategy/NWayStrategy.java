@@ -30,14 +30,21 @@
 import java.util.logging.Logger;
 
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifactCache;
+import de.fosd.jdime.artifact.ast.LabelTable;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.config.merge.MergeType;
 import de.fosd.jdime.config.merge.Revision;
 import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.stats.MergeScenarioStatistics;
+import de.fosd.jdime.stats.Profiler;
 
 import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.stats.Runtime.MERGE_LABEL;
+import static de.fosd.jdime.strategy.StructuredStrategy.PARSE_LABEL;
+import static de.fosd.jdime.strategy.StructuredStrategy.PRETTY_PRINT_LABEL;
 import static de.fosd.jdime.strdump.DumpMode.GRAPHVIZ_TREE;
 import static de.fosd.jdime.strdump.DumpMode.PLAINTEXT_TREE;
 
@@ -61,7 +68,7 @@ public class NWayStrategy extends MergeStrategy<FileArtifact> {
      * <p>
      * TODO: more high-level documentation.
      */
-    @Override
+    @Override @SuppressWarnings("try")
     public void merge(MergeOperation<FileArtifact> operation, MergeContext context) {
         MergeScenario<FileArtifact> scenario = operation.getMergeScenario();
         Map<Revision, FileArtifact> variants = scenario.getArtifacts();
@@ -82,12 +89,23 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
             }
         }
 
+        Profiler profiler = context.getProfiler();
+        profiler.reset();
+
         Iterator<Revision> it = variants.keySet().iterator();
-        targetNode = new ASTNodeArtifact(variants.get(it.next()));
+        LabelTable labels = new LabelTable();
+        ASTNodeArtifactCache cache = context.getASTCache();
+
+        try (Profiler.Span s = profiler.time(PARSE_LABEL)) {
+            targetNode = cache.parse(variants.get(it.next()), labels);
+        }
 
         while (it.hasNext()) {
             merged = targetNode;
-            next = new ASTNodeArtifact(variants.get(it.next()));
+
+            try (Profiler.Span s = profiler.time(PARSE_LABEL)) {
+                next = cache.parse(variants.get(it.next()), labels);
+            }
 
             try {
                 long cmdStart = System.currentTimeMillis();
@@ -106,12 +124,18 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
                     LOG.finest("ASTMOperation.apply(context)");
                 }
 
-                astMergeOp.apply(mergeContext);
+                try (Profiler.Span s = profiler.time(MERGE_LABEL)) {
+                    astMergeOp.apply(mergeContext);
+                }
+
                 long runtime = System.currentTimeMillis() - cmdStart;
                 LOG.fine(() -> String.format("%s merge time was %d ms.", getClass().getSimpleName(), runtime));
 
                 if (!context.isDiffOnly()) {
-                    operation.getTarget().setContent(targetNode.prettyPrint());
+
+                    try (Profiler.Span s = profiler.time(PRETTY_PRINT_LABEL)) {
+                        operation.getTarget().setContent(targetNode::prettyPrint, context);
+                    }
                 }
 
                 if (LOG.isLoggable(Level.FINEST)) {
@@ -150,5 +174,13 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
                 }
             }
         }
+
+        if (context.hasStatistics()) {
+            MergeScenarioStatistics scenarioStatistics = context.getStatistics().getScenarioStatistics(scenario);
+            scenarioStatistics.setStrategy(getClass());
+
+            profiler.getRuntimes().forEach(scenarioStatistics::putRuntime);
+            profiler.reset();
+        }
     }
 }
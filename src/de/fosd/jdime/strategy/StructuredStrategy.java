@@ -24,19 +24,24 @@
 package de.fosd.jdime.strategy;
 
 import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifactCache;
+import de.fosd.jdime.artifact.ast.LabelTable;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.merge.MergeContext;
 import de.fosd.jdime.config.merge.MergeScenario;
 import de.fosd.jdime.operations.MergeOperation;
+import de.fosd.jdime.stats.CodeStatistics;
+import de.fosd.jdime.stats.FlightRecorderEvents;
 import de.fosd.jdime.stats.MergeScenarioStatistics;
-import de.fosd.jdime.stats.Runtime;
+import de.fosd.jdime.stats.Profiler;
 import de.fosd.jdime.stats.Statistics;
 import de.fosd.jdime.stats.StatisticsInterface;
-import de.fosd.jdime.util.parser.ParseResult;
-import de.fosd.jdime.util.parser.Parser;
+import de.fosd.jdime.util.parser.SubsequentConflictsWriter;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.stream.Stream;
 
 import static de.fosd.jdime.stats.Runtime.MERGE_LABEL;
 import static de.fosd.jdime.strdump.DumpMode.PLAINTEXT_TREE;
@@ -50,8 +55,10 @@ public class StructuredStrategy extends MergeStrategy<FileArtifact> {
 
     private static final Logger LOG = Logger.getLogger(StructuredStrategy.class.getCanonicalName());
 
-    private static final String PARSE_LABEL = "parse";
+    static final String PARSE_LABEL = "parse";
     private static final String SEMISTRUCTURE_LABEL = "semistructure";
+    static final String PRETTY_PRINT_LABEL = "prettyprint";
+    private static final String STATISTICS_LABEL = "statistics";
 
     /**
      * The source <code>FileArtifacts</code> are extracted from the
@@ -87,22 +94,33 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
 
         LOG.fine(() -> String.format("Merging:%nLeft: %s%nBase: %s%nRight: %s", lPath, bPath, rPath));
 
-        Runtime parse = new Runtime(PARSE_LABEL);
-        Runtime semistructure = new Runtime(SEMISTRUCTURE_LABEL);
-        Runtime merge = new Runtime(MERGE_LABEL);
+        Profiler profiler = context.getProfiler();
+        profiler.reset();
+        context.getMatcherStatistics().reset();
 
         ASTNodeArtifact left;
         ASTNodeArtifact base;
         ASTNodeArtifact right;
 
-        try (Runtime.Measurement m = parse.time()) {
-            left = new ASTNodeArtifact(leftFile);
-            base = new ASTNodeArtifact(baseFile);
-            right = new ASTNodeArtifact(rightFile);
+        try (Profiler.Span s = profiler.time(PARSE_LABEL);
+             Profiler.Span e = FlightRecorderEvents.phase(PARSE_LABEL)) {
+            LabelTable labels = new LabelTable();
+            ASTNodeArtifactCache cache = context.getASTCache();
+
+            left = cache.parse(leftFile, labels);
+            base = cache.parse(baseFile, labels);
+            right = cache.parse(rightFile, labels);
+
+            if (context.isPreserveSource()) {
+                left.setOriginalSource(leftFile);
+                base.setOriginalSource(baseFile);
+                right.setOriginalSource(rightFile);
+            }
         }
 
         if (context.isSemiStructured()) {
-            try (Runtime.Measurement m = semistructure.time()) {
+            try (Profiler.Span s = profiler.time(SEMISTRUCTURE_LABEL);
+                 Profiler.Span e = FlightRecorderEvents.phase(SEMISTRUCTURE_LABEL)) {
                 left = SemiStructuredStrategy.makeSemiStructured(left, context.getSemiStructuredLevel(), leftFile);
                 base = SemiStructuredStrategy.makeSemiStructured(base, context.getSemiStructuredLevel(), baseFile);
                 right = SemiStructuredStrategy.makeSemiStructured(right, context.getSemiStructuredLevel(), rightFile);
@@ -116,22 +134,39 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
 
         LOG.finest("Applying an ASTNodeArtifact MergeOperation.");
 
-        try (Runtime.Measurement m = merge.time()) {
+        long mergeStart = System.nanoTime();
+
+        try (Profiler.Span s = profiler.time(MERGE_LABEL);
+             Profiler.Span e = FlightRecorderEvents.phase(MERGE_LABEL)) {
             astMergeOp.apply(context);
         }
 
+        long mergeTimeMS = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mergeStart);
+
         // TODO: find clusters of microconflicts and restructure them to larger conflicts
         targetNode.collapseConflicts();
 
         targetNode.setRevision(MergeScenario.TARGET, true); // TODO do this somewhere else?
 
         if (!context.isDiffOnly()) {
-            String content = targetNode.prettyPrint();
-            target.setContent(context.isOptimizeMultiConflicts() ? Parser.mergeSubsequentConflicts(content) : content);
+
+            try (Profiler.Span s = profiler.time(PRETTY_PRINT_LABEL);
+                 Profiler.Span e = FlightRecorderEvents.phase(PRETTY_PRINT_LABEL)) {
+
+                target.setContent(content -> {
+                    boolean optimize = context.isOptimizeMultiConflicts();
+
+                    try (Writer out = optimize ? new SubsequentConflictsWriter(content) : content) {
+                        targetNode.prettyPrint(out, context.isPreserveSource());
+                    }
+                }, context);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not print the merge result to " + target + ".", e);
+            }
         }
 
         LOG.fine("Structured merge finished.");
-        LOG.fine(() -> String.format("%s merge time was %d ms.", getClass().getSimpleName(), merge.getTimeMS()));
+        LOG.fine(() -> String.format("%s merge time was %d ms.", getClass().getSimpleName(), mergeTimeMS));
 
         if (!context.isDiffOnly()) {
             LOG.fine(() -> String.format("Tree dump of target node:%n%s", targetNode.dump(PLAINTEXT_TREE)));
@@ -151,18 +186,26 @@ public void merge(MergeOperation<FileArtifact> operation, MergeContext context)
             MergeScenarioStatistics scenarioStatistics = statistics.getScenarioStatistics(triple);
             scenarioStatistics.setStrategy(getClass());
 
-            if (!context.isDiffOnly()) {
-                ParseResult parseResult = scenarioStatistics.setLineStatistics(target.getContent());
+            try (Profiler.Span s = profiler.time(STATISTICS_LABEL)) {
 
-                if (parseResult.getStats().getConflicts() > 0) {
-                    scenarioStatistics.getFileStatistics().incrementNumOccurInConflict();
+                if (!context.isDiffOnly()) {
+                    CodeStatistics lineStatistics = scenarioStatistics.setLineStatistics(target.getContent());
+
+                    if (lineStatistics.getConflicts() > 0) {
+                        scenarioStatistics.getFileStatistics().incrementNumOccurInConflict();
+                    }
                 }
+
+                scenarioStatistics.add(StatisticsInterface.getASTStatistics(left, right.getRevision()));
+                scenarioStatistics.add(StatisticsInterface.getASTStatistics(right, left.getRevision()));
+                scenarioStatistics.add(StatisticsInterface.getASTStatistics(targetNode, null));
             }
 
-            scenarioStatistics.add(StatisticsInterface.getASTStatistics(left, right.getRevision()));
-            scenarioStatistics.add(StatisticsInterface.getASTStatistics(right, left.getRevision()));
-            scenarioStatistics.add(StatisticsInterface.getASTStatistics(targetNode, null));
-            Stream.of(parse, semistructure, merge).filter(Runtime::isMeasured).forEach(scenarioStatistics::putRuntime);
+            profiler.getRuntimes().forEach(scenarioStatistics::putRuntime);
+            profiler.reset();
+
+            scenarioStatistics.getMatcherStatistics().add(context.getMatcherStatistics());
+            context.getMatcherStatistics().reset();
         }
     }
 }
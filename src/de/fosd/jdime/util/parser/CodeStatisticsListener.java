@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.util.parser;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.fosd.jdime.stats.CodeStatistics;
+
+/**
+ * A {@link ParseListener} that accumulates the {@link CodeStatistics} of the parsed code without retaining its lines.
+ * The statistics are equal to those of the {@link ParseResult} produced by {@link Parser#parse(String)} for the same
+ * code. Only the lines counted towards the tokens of the current {@link Content} piece (or the current side of a
+ * conflict) are buffered.
+ */
+public final class CodeStatisticsListener implements ParseListener {
+
+    private final CodeStatistics stats;
+    private final Map<Integer, CodeStatistics> conflictStats;
+
+    private boolean inContent;
+    private boolean inConflict;
+
+    /**
+     * The lines that are neither empty nor comments of the current merged content or the left side of the current
+     * conflict, joined by <code>'\n'</code>.
+     */
+    private final StringBuilder leftCode;
+
+    /**
+     * The lines that are neither empty nor comments of the right side of the current conflict, joined by
+     * <code>'\n'</code>.
+     */
+    private final StringBuilder rightCode;
+
+    private int linesOfCode;
+    private int chars;
+
+    /**
+     * The hashes of the left and right lines of the current conflict. These are computed like the hash of the
+     * <code>List</code> of {@link LineOfCode LinesOfCode} so that {@link #getConflictStats()} uses the same keys as
+     * {@link ConflictContent#hashCode()}.
+     */
+    private int leftHash;
+    private int rightHash;
+
+    /**
+     * Constructs a new {@link CodeStatisticsListener}.
+     */
+    public CodeStatisticsListener() {
+        this.stats = new CodeStatistics();
+        this.conflictStats = new HashMap<>();
+        this.leftCode = new StringBuilder();
+        this.rightCode = new StringBuilder();
+    }
+
+    @Override
+    public void mergedLine(CharSequence line, boolean comment) {
+        line(line, false, true, comment);
+    }
+
+    @Override
+    public void conflictingLine(CharSequence line, boolean left, boolean comment) {
+        line(line, true, left, comment);
+    }
+
+    /**
+     * Accumulates the statistics for the given line.
+     *
+     * @param line
+     *         the line
+     * @param conflict
+     *         whether the line is part of a conflict
+     * @param left
+     *         whether the line is part of a merged content or the left side of a conflict
+     * @param comment
+     *         whether the line is part of a comment
+     */
+    private void line(CharSequence line, boolean conflict, boolean left, boolean comment) {
+
+        if (!inContent || inConflict != conflict) {
+            finishContent();
+
+            inContent = true;
+            inConflict = conflict;
+        }
+
+        if (conflict) {
+            int hash = 31 * hash(line) + (comment ? 1 : 0);
+
+            if (left) {
+                leftHash = 31 * leftHash + hash;
+            } else {
+                rightHash = 31 * rightHash + hash;
+            }
+        }
+
+        int charCount = Parser.getCharCount(line);
+
+        if (comment || charCount == 0) {
+            return;
+        }
+
+        StringBuilder code = left ? leftCode : rightCode;
+
+        if (code.length() > 0) {
+            code.append('\n');
+        }
+
+        code.append(line);
+
+        linesOfCode += 1;
+        chars += charCount;
+    }
+
+    /**
+     * Adds the statistics of the current piece of content to the totals and resets the state for the next one.
+     * A conflict that consists only of empty lines or comments does not count as a conflict (see
+     * {@link ConflictContent#isFiltered()}).
+     */
+    private void finishContent() {
+
+        if (inContent) {
+            CodeStatistics cs = new CodeStatistics();
+            int tokens = Parser.getTokenCount(leftCode) + Parser.getTokenCount(rightCode);
+
+            cs.setLinesOfCode(linesOfCode);
+            cs.setChars(chars);
+            cs.setTokens(tokens);
+
+            if (inConflict) {
+                boolean filtered = linesOfCode == 0;
+
+                cs.setConflicts(filtered ? 0 : 1);
+                cs.setConflictingLinesOfCode(linesOfCode);
+                cs.setConflictingChars(chars);
+                cs.setConflictingTokens(tokens);
+
+                if (!filtered) {
+                    conflictStats.put(31 * (31 * leftHash + rightHash), cs);
+                }
+            }
+
+            stats.add(cs, stats);
+        }
+
+        inContent = false;
+        leftCode.setLength(0);
+        rightCode.setLength(0);
+        linesOfCode = 0;
+        chars = 0;
+        leftHash = 1;
+        rightHash = 1;
+    }
+
+    /**
+     * Computes the same hash as <code>String#hashCode()</code> for the given <code>CharSequence</code>.
+     *
+     * @param line
+     *         the line to hash
+     * @return the hash
+     */
+    private static int hash(CharSequence line) {
+
+        if (line instanceof String) {
+            return line.hashCode();
+        }
+
+        int hash = 0;
+
+        for (int i = 0; i < line.length(); i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+
+        return hash;
+    }
+
+    /**
+     * Returns the statistics accumulated over all lines passed to this listener. This should be called once
+     * parsing is complete.
+     *
+     * @return the {@link CodeStatistics}
+     */
+    public CodeStatistics getStats() {
+        finishContent();
+        return stats;
+    }
+
+    /**
+     * Returns the statistics of every conflict that was not filtered, keyed by the hash its {@link ConflictContent}
+     * would have. This should be called once parsing is complete.
+     *
+     * @return the statistics of the conflicts
+     */
+    public Map<Integer, CodeStatistics> getConflictStats() {
+        finishContent();
+        return Collections.unmodifiableMap(conflictStats);
+    }
+}
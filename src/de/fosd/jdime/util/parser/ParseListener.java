@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.util.parser;
+
+import java.io.Reader;
+
+/**
+ * Receives the lines of a piece of code (possibly containing conflict markers) while it is being read by
+ * {@link Parser#parse(Reader, ParseListener)}. The conflict markers themselves are not passed on. Subsequent lines of
+ * the same kind (merged or conflicting) make up one piece of {@link Content} as produced by
+ * {@link Parser#parse(String)}.
+ * <br><br>
+ * The <code>CharSequence</code> passed for a line is only valid for the duration of the call. Implementations that
+ * need to retain the line must copy it.
+ */
+public interface ParseListener {
+
+    /**
+     * Called for every conflict start marker that carries a label.
+     *
+     * @param label
+     *         the label of the left side of the conflict
+     */
+    default void setLeftLabel(String label) {}
+
+    /**
+     * Called for every conflict end marker that carries a label.
+     *
+     * @param label
+     *         the label of the right side of the conflict
+     */
+    default void setRightLabel(String label) {}
+
+    /**
+     * Called for a line that is not part of a conflict.
+     *
+     * @param line
+     *         the line
+     * @param comment
+     *         whether the line is part of a comment
+     */
+    void mergedLine(CharSequence line, boolean comment);
+
+    /**
+     * Called for a line that is part of a conflict.
+     *
+     * @param line
+     *         the line
+     * @param left
+     *         true iff the line is part of the left side of the conflict (otherwise it is part of the right side)
+     * @param comment
+     *         whether the line is part of a comment
+     */
+    void conflictingLine(CharSequence line, boolean left, boolean comment);
+}
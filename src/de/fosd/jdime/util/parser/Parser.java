@@ -31,6 +31,7 @@
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -46,7 +47,6 @@ public final class Parser {
     private static final Logger LOG = Logger.getLogger(Parser.class.getCanonicalName());
 
     static final Pattern emptyLine = Pattern.compile("\\s*");
-    static final Pattern whitespace = Pattern.compile("\\s+");
 
     static final Pattern conflictStartPattern = Pattern.compile("^" + CONFLICT_START + "(?: .*$|$)");
     static final Pattern conflictSepPattern = Pattern.compile("^" + CONFLICT_DELIM + "$");
@@ -70,17 +70,150 @@ private Parser() {}
      * @return the parse result
      */
     public static ParseResult parse(String code) {
-        Scanner s = new Scanner(code);
         ParseResult res = new ParseResult();
 
-        boolean inConflict = false; // Whether we are in a conflict
-        boolean inLeftBlockComment = false; // Whether we were in a comment when the left part of the conflict started
-        boolean inLeft = true; // Whether we are parsing the left side of a conflict (or the right)
-        boolean inBlockComment = false; // Whether we are in a block comment
+        parse(code, new ParseListener() {
 
-        while (s.hasNextLine()) {
-            String line = s.nextLine();
+            @Override
+            public void setLeftLabel(String label) {
+                res.setLeftLabel(label);
+            }
+
+            @Override
+            public void setRightLabel(String label) {
+                res.setRightLabel(label);
+            }
+
+            @Override
+            public void mergedLine(CharSequence line, boolean comment) {
+                res.addMergedLine(line.toString(), comment);
+            }
+
+            @Override
+            public void conflictingLine(CharSequence line, boolean left, boolean comment) {
+                res.addConflictingLine(line.toString(), left, comment);
+            }
+        });
+
+        return res;
+    }
+
+    /**
+     * Parses the given code and passes its lines to the <code>listener</code>. No lines are retained.
+     *
+     * @param code
+     *         the piece of code to be parsed
+     * @param listener
+     *         the <code>ParseListener</code> to pass the lines to
+     */
+    public static void parse(CharSequence code, ParseListener listener) {
+        LineParser parser = new LineParser(listener);
 
+        for (int i = 0; i < code.length(); i++) {
+            parser.accept(code.charAt(i));
+        }
+
+        parser.finish();
+    }
+
+    /**
+     * Parses the code read from the given <code>Reader</code> and passes its lines to the <code>listener</code>.
+     * No lines are retained.
+     *
+     * @param code
+     *         the <code>Reader</code> to read the code from
+     * @param listener
+     *         the <code>ParseListener</code> to pass the lines to
+     * @throws IOException
+     *         if reading from <code>code</code> fails
+     */
+    public static void parse(Reader code, ParseListener listener) throws IOException {
+        LineParser parser = new LineParser(listener);
+        char[] buf = new char[8192];
+        int n;
+
+        while ((n = code.read(buf)) != -1) {
+            for (int i = 0; i < n; i++) {
+                parser.accept(buf[i]);
+            }
+        }
+
+        parser.finish();
+    }
+
+    /**
+     * Calculates the {@link CodeStatistics} for the given code without constructing a {@link ParseResult}.
+     * The result is equal to <code>parse(code).getStats()</code>.
+     *
+     * @param code
+     *         the piece of code to calculate the statistics for
+     * @return the statistics
+     */
+    public static CodeStatistics calcStats(CharSequence code) {
+        CodeStatisticsListener listener = new CodeStatisticsListener();
+
+        parse(code, listener);
+        return listener.getStats();
+    }
+
+    /**
+     * Splits the code it is given character by character into lines (using the same line separators as
+     * <code>java.util.Scanner#nextLine()</code>) and classifies them as merged, conflicting or conflict markers.
+     */
+    private static final class LineParser {
+
+        private final ParseListener listener;
+        private final StringBuilder line;
+
+        private boolean afterCR; // Whether the last character was a '\r'
+
+        private boolean inConflict = false; // Whether we are in a conflict
+        private boolean inLeftBlockComment = false; // Whether we were in a comment when the left part of the conflict started
+        private boolean inLeft = true; // Whether we are parsing the left side of a conflict (or the right)
+        private boolean inBlockComment = false; // Whether we are in a block comment
+
+        LineParser(ParseListener listener) {
+            this.listener = listener;
+            this.line = new StringBuilder();
+        }
+
+        /**
+         * Accepts the next character of the code.
+         *
+         * @param c
+         *         the character
+         */
+        void accept(char c) {
+            boolean cr = afterCR;
+            afterCR = c == '\r';
+
+            if (cr && c == '\n') {
+                return;
+            }
+
+            if (c == '\r' || c == '\n' || c == '\u2028' || c == '\u2029' || c == '\u0085') {
+                line();
+                line.setLength(0);
+            } else {
+                line.append(c);
+            }
+        }
+
+        /**
+         * Processes the last line of the code if it is not terminated by a line separator.
+         */
+        void finish() {
+
+            if (line.length() > 0) {
+                line();
+                line.setLength(0);
+            }
+        }
+
+        /**
+         * Processes the current line.
+         */
+        private void line() {
             boolean wasLineComment = inBlockComment; // Whether the line is commented out
             boolean wasConflictMarker = false; // Whether the line  is a conflict marker
 
@@ -107,9 +240,9 @@ public static ParseResult parse(String code) {
                     inLeftBlockComment = inBlockComment;
                     inLeft = true;
 
-                    String[] startAndLabel = line.split(" ");
+                    String[] startAndLabel = line.toString().split(" ");
                     if (startAndLabel.length == 2) {
-                        res.setLeftLabel(startAndLabel[1]);
+                        listener.setLeftLabel(startAndLabel[1]);
                     }
                 } else if (matches(conflictSepPattern, line)) {
 
@@ -121,26 +254,24 @@ public static ParseResult parse(String code) {
                     wasConflictMarker = true;
                     inConflict = false;
 
-                    String[] endAndLabel = line.split(" ");
+                    String[] endAndLabel = line.toString().split(" ");
                     if (endAndLabel.length == 2) {
-                        res.setRightLabel(endAndLabel[1]);
+                        listener.setRightLabel(endAndLabel[1]);
                     }
                 }
             }
 
             if (!wasConflictMarker) {
                 if (inConflict) {
-                    res.addConflictingLine(line, inLeft, wasLineComment);
+                    listener.conflictingLine(line, inLeft, wasLineComment);
                 } else {
-                    res.addMergedLine(line, wasLineComment);
+                    listener.mergedLine(line, wasLineComment);
                 }
             }
         }
-
-        return res;
     }
 
-    private static class ZeroReader extends Reader {
+    static class ZeroReader extends Reader {
 
         private Reader reader;
 
@@ -177,110 +308,125 @@ public void close() throws IOException {
     }
 
     /**
-     * Counts the number of tokens in the given line using {@link JavaScanner}.
+     * Counts the number of tokens in the given code using {@link JavaScanner}.
      *
-     * @param line
-     *         the line whose tokens to count
-     * @return the number of tokens in the line
+     * @param code
+     *         the code whose tokens to count
+     * @return the number of tokens in the code
      */
-    private static int getTokenCount(String line) throws beaver.Scanner.Exception {
+    private static int getTokenCount(String code) throws beaver.Scanner.Exception {
         int tokenCount = 0;
 
         try {
-            JavaScanner scanner = new JavaScanner(new ZeroReader(new Unicode(new StringReader(line))));
+            JavaScanner scanner = new JavaScanner(new ZeroReader(new Unicode(new StringReader(code))));
 
             while (scanner.nextToken().getId() != JavaParser.Terminals.EOF) {
                 tokenCount++;
             }
         } catch (IOException e) {
-            throw new RuntimeException("JavaScanner threw an IOException while parsing '" + line + "'", e);
+            throw new RuntimeException("JavaScanner threw an IOException while parsing '" + code + "'", e);
         }
 
         return tokenCount;
     }
 
     /**
-     * Calculates the {@link CodeStatistics} for the given {@link Content} instance.
-     * <br><br>
-     * If the given {@link Content} is a {@link ConflictContent}, the number of conflicts returned will be zero
-     * if it is {@link ConflictContent#isFiltered() filtered} and one otherwise. Whether the {@link Content} is a
-     * filtered {@link ConflictContent} is irrelevant for (both conflicting and regular) line, char and token counts.
-     * <br><br>
-     * For the line, char and token counts, empty lines and those consisting of only whitespace characters are filtered
-     * out. Additionally, for character counts, we only count those which are not whitespace.
+     * Counts the number of tokens in the given lines joined by <code>'\n'</code>. The lines are scanned as one piece of
+     * code using a single {@link JavaScanner}. Only if that fails (because a token such as a string literal is not
+     * closed within the lines) or if the lines contain a block comment (which may span lines and hide tokens that
+     * would be counted when scanning the lines separately) the lines are scanned separately. Lines that can not be
+     * scanned on their own count as having no tokens.
+     *
+     * @param lines
+     *         the lines whose tokens to count
+     * @return the number of tokens in the lines
      */
-    static CodeStatistics calcStats(Content content) {
-        int conflicts = 0;
-
-        int linesOfCode = 0;
-        int conflictingLinesOfCode = 0;
-
-        int chars = 0;
-        int conflictingChars = 0;
-
-        int tokens = 0;
-        int conflictingTokens = 0;
-
-        List<LineOfCode> lines = new ArrayList<>();
-
-        if (content.isConflict()) {
-            ConflictContent conflict = (ConflictContent) content;
-
-            if (!conflict.isFiltered()) {
-                conflicts += 1;
-            }
-
-            lines.addAll(conflict.getLeftLines());
-            lines.addAll(conflict.getRightLines());
-        } else {
-            MergedContent merged = (MergedContent) content;
+    static int getTokenCount(CharSequence lines) {
 
-            lines.addAll(merged.getLines());
+        if (lines.length() == 0) {
+            return 0;
         }
 
-        for (LineOfCode line : lines) {
+        String code = lines.toString();
 
-            if (line.empty || line.comment) {
-                continue;
+        if (!code.contains("/*")) {
+            try {
+                return getTokenCount(code);
+            } catch (beaver.Scanner.Exception ignored) {
+                // Fall back to scanning the lines separately.
             }
+        }
 
-            // We only count non-whitespace characters to normalize the results over linebased / structured.
-            int dChars = whitespace.matcher(line.line).replaceAll("").length();
-
-            int dTokens = 0;
+        int tokenCount = 0;
 
+        for (String line : code.split("\n")) {
             try {
-                dTokens = getTokenCount(line.line);
+                tokenCount += getTokenCount(line);
             } catch (beaver.Scanner.Exception e) {
                 LOG.log(Level.WARNING, e, () -> "Exception while parsing line '" + line + "' " +
                         "to count its tokens. ParseResult will record 0 tokens for the line.");
             }
+        }
 
-            linesOfCode += 1;
-            chars += dChars;
-            tokens += dTokens;
+        return tokenCount;
+    }
 
-            if (content.isConflict()) {
-                conflictingLinesOfCode += 1;
-                conflictingChars += dChars;
-                conflictingTokens += dTokens;
+    /**
+     * Counts the characters in the given line that are not whitespace as matched by <code>\s</code>.
+     *
+     * @param line
+     *         the line whose characters to count
+     * @return the number of non-whitespace characters
+     */
+    static int getCharCount(CharSequence line) {
+        int charCount = 0;
+
+        for (int i = 0; i < line.length(); i++) {
+
+            switch (line.charAt(i)) {
+                case ' ':
+                case '\t':
+                case '\n':
+                case '\u000B':
+                case '\f':
+                case '\r':
+                    break;
+                default:
+                    charCount++;
             }
         }
 
-        CodeStatistics cs = new CodeStatistics();
+        return charCount;
+    }
 
-        cs.setConflicts(conflicts);
+    /**
+     * Calculates the {@link CodeStatistics} for the given {@link Content} instance.
+     * <br><br>
+     * If the given {@link Content} is a {@link ConflictContent}, the number of conflicts returned will be zero
+     * if it is {@link ConflictContent#isFiltered() filtered} and one otherwise. Whether the {@link Content} is a
+     * filtered {@link ConflictContent} is irrelevant for (both conflicting and regular) line, char and token counts.
+     * <br><br>
+     * For the line, char and token counts, empty lines and those consisting of only whitespace characters are filtered
+     * out. Additionally, for character counts, we only count those which are not whitespace.
+     * <br><br>
+     * The lines are passed to a {@link CodeStatisticsListener} so that the result matches that of
+     * {@link #calcStats(CharSequence)}.
+     */
+    static CodeStatistics calcStats(Content content) {
+        CodeStatisticsListener listener = new CodeStatisticsListener();
 
-        cs.setLinesOfCode(linesOfCode);
-        cs.setConflictingLinesOfCode(conflictingLinesOfCode);
+        if (content.isConflict()) {
+            ConflictContent conflict = (ConflictContent) content;
 
-        cs.setChars(chars);
-        cs.setConflictingChars(conflictingChars);
+            conflict.getLeftLines().forEach(l -> listener.conflictingLine(l.line, true, l.comment));
+            conflict.getRightLines().forEach(l -> listener.conflictingLine(l.line, false, l.comment));
+        } else {
+            MergedContent merged = (MergedContent) content;
 
-        cs.setTokens(tokens);
-        cs.setConflictingTokens(conflictingTokens);
+            merged.getLines().forEach(l -> listener.mergedLine(l.line, l.comment));
+        }
 
-        return cs;
+        return listener.getStats();
     }
 
     /**
@@ -292,7 +438,7 @@ static CodeStatistics calcStats(Content content) {
      *         the line to match against the pattern
      * @return true iff the <code>Pattern</code> matched
      */
-    private static boolean matches(Pattern p, String line) {
+    static boolean matches(Pattern p, CharSequence line) {
         return p.matcher(line).matches();
     }
 
@@ -301,66 +447,17 @@ private static boolean matches(Pattern p, String line) {
      *
      * @param in merge result that should be optimized w.r.t. conflicts
      * @return optimized merge result
+     * @see SubsequentConflictsWriter
      */
-    @SuppressWarnings("fallthrough")
     public static String mergeSubsequentConflicts(String in) {
-        Scanner s = new Scanner(in);
-        ParseResult out = new ParseResult();
-
-        Position pos = Position.NO_CONFLICT;
-        Queue<String> queue = new LinkedList<>();
+        StringWriter out = new StringWriter(in.length());
 
-        while (s.hasNextLine()) {
-            String line = s.nextLine();
-
-            if (matches(conflictStartPattern, line)) {
-                String[] startAndLabel = line.split(" ");
-                if (startAndLabel.length == 2) {
-                    out.setLeftLabel(startAndLabel[1]);
-                }
-                if (pos == Position.AFTER_CONFLICT) {
-                    while (!queue.isEmpty()) {
-                        String queuedLine = queue.remove();
-                        out.addConflictingLine(queuedLine, true, false);
-                        out.addConflictingLine(queuedLine, false, false);
-                    }
-                }
-                pos = Position.LEFT_SIDE;
-            } else if (matches(conflictSepPattern, line)) {
-                pos = Position.RIGHT_SIDE;
-            } else if (matches(conflictEndPattern, line)) {
-                String[] endAndLabel = line.split(" ");
-                if (endAndLabel.length == 2) {
-                    out.setRightLabel(endAndLabel[1]);
-                }
-                pos = Position.AFTER_CONFLICT;
-            } else {
-                switch (pos) {
-                    case LEFT_SIDE:
-                        out.addConflictingLine(line, true, false);
-                        break;
-                    case RIGHT_SIDE:
-                        out.addConflictingLine(line, false, false);
-                        break;
-                    case AFTER_CONFLICT:
-                        // lines containing only whitespaces are queued
-                        // and later appended to either both sides or the common output
-                        if (matches(emptyLine, line)) { queue.add(line); break; }
-                        pos = Position.NO_CONFLICT;
-                        // intentional fallthrough because the current line has to be appended
-                        // if it's clear that we are done with the conflict
-                    case NO_CONFLICT:
-                        while (!queue.isEmpty()) { out.addMergedLine(queue.remove(), false); }
-                        out.addMergedLine(line, false);
-                        break;
-                }
-            }
+        try (SubsequentConflictsWriter writer = new SubsequentConflictsWriter(out)) {
+            writer.write(in);
+        } catch (IOException e) {
+            throw new RuntimeException("StringWriter threw an IOException while merging conflicts.", e);
         }
 
         return out.toString();
     }
-
-    private enum Position {
-        NO_CONFLICT, LEFT_SIDE, RIGHT_SIDE, AFTER_CONFLICT
-    }
 }
@@ -0,0 +1,338 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.util.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static de.fosd.jdime.util.parser.ConflictContent.CONFLICT_DELIM;
+import static de.fosd.jdime.util.parser.ConflictContent.CONFLICT_END;
+import static de.fosd.jdime.util.parser.ConflictContent.CONFLICT_START;
+import static de.fosd.jdime.util.parser.ConflictContent.DEFAULT_LABEL;
+import static de.fosd.jdime.util.parser.Parser.conflictEndPattern;
+import static de.fosd.jdime.util.parser.Parser.conflictSepPattern;
+import static de.fosd.jdime.util.parser.Parser.conflictStartPattern;
+import static de.fosd.jdime.util.parser.Parser.emptyLine;
+
+/**
+ * A <code>Writer</code> that merges subsequent conflicts (separated only by lines consisting of whitespace) in the
+ * code written to it and passes the result on to an <code>Appendable</code>. Lines that are not part of a conflict
+ * are passed on as soon as they are complete, only the lines of the current conflict are buffered. The remaining
+ * output is produced when the <code>Writer</code> is closed.
+ * <p>
+ * Lines are separated as by {@link java.util.Scanner#nextLine()} and joined using the system line separator.
+ * Conflicts are labeled using the last labels encountered before they were passed on.
+ *
+ * @see Parser#mergeSubsequentConflicts(String)
+ */
+public class SubsequentConflictsWriter extends Writer {
+
+    private enum Position {
+        NO_CONFLICT, LEFT_SIDE, RIGHT_SIDE, AFTER_CONFLICT
+    }
+
+    private final Appendable out;
+
+    private final StringBuilder line;
+    private boolean afterCR;
+    private boolean firstLine;
+    private boolean closed;
+
+    private Position pos;
+
+    /**
+     * The lines consisting of whitespace after the end of a conflict. They are added to both sides of the conflict if
+     * another one follows or passed on otherwise.
+     */
+    private final List<String> queue;
+
+    /**
+     * The sides of the current conflict or <code>null</code> if the last piece of content was not a conflict.
+     */
+    private List<String> leftLines;
+    private List<String> rightLines;
+
+    private String leftLabel;
+    private String rightLabel;
+
+    /**
+     * Constructs a new <code>SubsequentConflictsWriter</code> passing its output on to <code>out</code>.
+     *
+     * @param out
+     *         the <code>Appendable</code> to write to
+     */
+    public SubsequentConflictsWriter(Appendable out) {
+        this.out = out;
+        this.line = new StringBuilder();
+        this.afterCR = false;
+        this.firstLine = true;
+        this.closed = false;
+        this.pos = Position.NO_CONFLICT;
+        this.queue = new ArrayList<>();
+        this.leftLabel = DEFAULT_LABEL;
+        this.rightLabel = DEFAULT_LABEL;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+
+        for (int i = off; i < off + len; i++) {
+            write(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+
+        for (int i = off; i < off + len; i++) {
+            write(str.charAt(i));
+        }
+    }
+
+    /**
+     * Appends <code>c</code> to the current line or, if <code>c</code> is a line terminator, processes the current
+     * line.
+     *
+     * @param c
+     *         the character to write
+     * @throws IOException
+     *         if the underlying <code>Appendable</code> throws an <code>IOException</code>
+     */
+    @SuppressWarnings("fallthrough")
+    private void write(char c) throws IOException {
+        boolean wasCR = afterCR;
+        afterCR = c == '\r';
+
+        switch (c) {
+            case '\n':
+                if (wasCR) {
+                    break;
+                }
+            case '\r':
+            case '\u2028':
+            case '\u2029':
+            case '\u0085':
+                processLine(line.toString());
+                line.setLength(0);
+                break;
+            default:
+                line.append(c);
+        }
+    }
+
+    /**
+     * Processes a complete line of input.
+     *
+     * @param line
+     *         the line without its terminator
+     * @throws IOException
+     *         if the underlying <code>Appendable</code> throws an <code>IOException</code>
+     */
+    @SuppressWarnings("fallthrough")
+    private void processLine(String line) throws IOException {
+
+        if (Parser.matches(conflictStartPattern, line)) {
+            String[] startAndLabel = line.split(" ");
+            if (startAndLabel.length == 2) {
+                leftLabel = startAndLabel[1];
+            }
+            if (pos == Position.AFTER_CONFLICT) {
+                for (String queuedLine : queue) {
+                    addConflictingLine(queuedLine, true);
+                    addConflictingLine(queuedLine, false);
+                }
+                queue.clear();
+            }
+            pos = Position.LEFT_SIDE;
+        } else if (Parser.matches(conflictSepPattern, line)) {
+            pos = Position.RIGHT_SIDE;
+        } else if (Parser.matches(conflictEndPattern, line)) {
+            String[] endAndLabel = line.split(" ");
+            if (endAndLabel.length == 2) {
+                rightLabel = endAndLabel[1];
+            }
+            pos = Position.AFTER_CONFLICT;
+        } else {
+            switch (pos) {
+                case LEFT_SIDE:
+                    addConflictingLine(line, true);
+                    break;
+                case RIGHT_SIDE:
+                    addConflictingLine(line, false);
+                    break;
+                case AFTER_CONFLICT:
+                    // lines containing only whitespaces are queued
+                    // and later appended to either both sides or the common output
+                    if (Parser.matches(emptyLine, line)) { queue.add(line); break; }
+                    pos = Position.NO_CONFLICT;
+                    // intentional fallthrough because the current line has to be appended
+                    // if it's clear that we are done with the conflict
+                case NO_CONFLICT:
+                    for (String queuedLine : queue) { addMergedLine(queuedLine); }
+                    queue.clear();
+                    addMergedLine(line);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Adds a line to one side of the current conflict. Starts a new conflict if there is none.
+     *
+     * @param line
+     *         the line to add
+     * @param left
+     *         whether to add the line to the left side
+     */
+    private void addConflictingLine(String line, boolean left) {
+
+        if (leftLines == null) {
+            leftLines = new ArrayList<>();
+            rightLines = new ArrayList<>();
+        }
+
+        (left ? leftLines : rightLines).add(line);
+    }
+
+    /**
+     * Passes on the current conflict (if there is one) and then the given <code>line</code>.
+     *
+     * @param line
+     *         the line to pass on
+     * @throws IOException
+     *         if the underlying <code>Appendable</code> throws an <code>IOException</code>
+     */
+    private void addMergedLine(String line) throws IOException {
+        writeConflict();
+        writeLine(line);
+    }
+
+    /**
+     * Passes on the current conflict if there is one.
+     *
+     * @throws IOException
+     *         if the underlying <code>Appendable</code> throws an <code>IOException</code>
+     * @see ConflictContent#toString(String, String)
+     */
+    private void writeConflict() throws IOException {
+
+        if (leftLines == null) {
+            return;
+        }
+
+        writeLine(CONFLICT_START + " " + leftLabel);
+        for (String l : leftLines) {
+            writeLine(l);
+        }
+
+        writeLine(CONFLICT_DELIM);
+        for (String l : rightLines) {
+            writeLine(l);
+        }
+
+        writeLine(CONFLICT_END + " " + rightLabel);
+
+        leftLines = null;
+        rightLines = null;
+    }
+
+    /**
+     * Passes on a line preceded by a line separator unless it is the first one.
+     *
+     * @param line
+     *         the line to pass on
+     * @throws IOException
+     *         if the underlying <code>Appendable</code> throws an <code>IOException</code>
+     */
+    private void writeLine(String line) throws IOException {
+
+        if (firstLine) {
+            firstLine = false;
+        } else {
+            out.append(System.lineSeparator());
+        }
+
+        out.append(line);
+    }
+
+    /**
+     * Throws an <code>IOException</code> if this <code>Writer</code> was closed.
+     *
+     * @throws IOException
+     *         if this <code>Writer</code> was closed
+     */
+    private void ensureOpen() throws IOException {
+
+        if (closed) {
+            throw new IOException("The SubsequentConflictsWriter was closed.");
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only flushes the underlying <code>Appendable</code>, the lines of an unfinished conflict are only passed on
+     * once it is known that no further conflict follows it.
+     */
+    @Override
+    public void flush() throws IOException {
+
+        if (out instanceof Writer) {
+            ((Writer) out).flush();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Processes the last line, passes on the current conflict and closes the underlying <code>Appendable</code> if it
+     * is <code>Closeable</code>. As in {@link Parser#mergeSubsequentConflicts(String)}, lines consisting of
+     * whitespace after the last conflict at the end of the input are dropped.
+     */
+    @Override
+    public void close() throws IOException {
+
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        if (line.length() > 0) {
+            processLine(line.toString());
+            line.setLength(0);
+        }
+
+        writeConflict();
+
+        if (out instanceof Closeable) {
+            ((Closeable) out).close();
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.stats.KeyEnums;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlatTreeTest {
+
+    private TestArtifact ta;
+    private TestArtifact tb;
+    private TestArtifact tc;
+    private TestArtifact td;
+    private TestArtifact te;
+    private TestArtifact tf;
+    private TestArtifact tg;
+
+    @Before
+    public void setUp() throws Exception {
+        ta = new TestArtifact("a", KeyEnums.Type.NODE);
+        tb = new TestArtifact("b", KeyEnums.Type.NODE);
+        tc = new TestArtifact("c", KeyEnums.Type.NODE);
+        td = new TestArtifact("d", KeyEnums.Type.METHOD);
+        te = new TestArtifact("e", KeyEnums.Type.NODE);
+        tf = new TestArtifact("f", KeyEnums.Type.NODE);
+        tg = new TestArtifact("g", KeyEnums.Type.NODE);
+
+        ta.addChild(tb);
+        ta.addChild(tc);
+        ta.addChild(td);
+
+        tb.addChild(te);
+        tb.addChild(tf);
+
+        td.addChild(tg);
+    }
+
+    @Test
+    public void structure() throws Exception {
+        FlatTree<TestArtifact> tree = new FlatTree<>(ta);
+        List<TestArtifact> preorder = Arrays.asList(ta, tb, te, tf, tc, td, tg);
+
+        assertEquals(preorder.size(), tree.size());
+
+        for (int v = 0; v < tree.size(); v++) {
+            TestArtifact artifact = preorder.get(v);
+
+            assertEquals(artifact, tree.artifact(v));
+            assertEquals(v, tree.id(artifact));
+            assertEquals(artifact.getTreeSize(), tree.subtreeSize(v));
+            assertEquals(artifact.isOrdered(), tree.isOrdered(v));
+
+            if (artifact.getParent() == null) {
+                assertEquals(FlatTree.NONE, tree.parent(v));
+                assertEquals(0, tree.depth(v));
+            } else {
+                assertEquals(tree.id(artifact.getParent()), tree.parent(v));
+                assertEquals(tree.depth(tree.parent(v)) + 1, tree.depth(v));
+            }
+
+            int c = tree.firstChild(v);
+
+            for (TestArtifact child : artifact.getChildren()) {
+                assertEquals(child, tree.artifact(c));
+                c = tree.nextSibling(c);
+            }
+
+            assertEquals(FlatTree.NONE, c);
+        }
+
+        assertEquals(FlatTree.NONE, tree.id(new TestArtifact("a", KeyEnums.Type.NODE)));
+    }
+
+    @Test
+    public void labels() throws Exception {
+        TestArtifact other = new TestArtifact("x", KeyEnums.Type.NODE);
+
+        other.addChild(new TestArtifact("f", KeyEnums.Type.NODE));
+        other.addChild(new TestArtifact("d", KeyEnums.Type.NODE));
+        other.addChild(new TestArtifact("d", KeyEnums.Type.METHOD));
+
+        FlatTree.Labels labels = new FlatTree.Labels();
+        FlatTree<TestArtifact> left = new FlatTree<>(ta, labels);
+        FlatTree<TestArtifact> right = new FlatTree<>(other, labels);
+
+        for (int v = 0; v < left.size(); v++) {
+            for (int w = 0; w < right.size(); w++) {
+                TestArtifact l = left.artifact(v);
+                TestArtifact r = right.artifact(w);
+
+                assertEquals(l.matches(r), left.matches(v, right, w));
+                assertEquals(l.categoryMatches(r), left.categoryMatches(v, right, w));
+            }
+        }
+
+        assertTrue(left.matches(left.id(tf), right, 1));
+        assertFalse(left.matches(left.id(td), right, 2));
+        assertTrue(left.matches(left.id(td), right, 3));
+    }
+
+    @Test
+    public void fileArtifactKeys() throws Exception {
+        File dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+
+        try {
+            File left = new File(dir, "x");
+            File right = new File(dir, "y");
+
+            // the right root contains a directory named like the left root and a file named like a directory
+            FileUtils.writeStringToFile(new File(left, "a/A.java"), "class A {}", UTF_8);
+            FileUtils.writeStringToFile(new File(right, "x/A.java"), "class A {}", UTF_8);
+            FileUtils.writeStringToFile(new File(right, "a"), "", UTF_8);
+
+            FlatTree.Labels labels = new FlatTree.Labels();
+            FlatTree<FileArtifact> lTree = new FlatTree<>(new FileArtifact(MergeScenario.LEFT, left), labels);
+            FlatTree<FileArtifact> rTree = new FlatTree<>(new FileArtifact(MergeScenario.RIGHT, right), labels);
+
+            for (int v = 0; v < lTree.size(); v++) {
+                for (int w = 0; w < rTree.size(); w++) {
+                    FileArtifact l = lTree.artifact(v);
+                    FileArtifact r = rTree.artifact(w);
+                    String pair = l + " / " + r;
+
+                    assertEquals(pair, l.matches(r), l.getMatchingKey().equals(r.getMatchingKey()));
+                    assertEquals(pair, r.matches(l), l.matches(r));
+                    assertEquals(pair, l.categoryMatches(r), l.getCategoryKey().equals(r.getCategoryKey()));
+                    assertEquals(pair, l.matches(r), lTree.matches(v, rTree, w));
+                    assertEquals(pair, l.categoryMatches(r), lTree.categoryMatches(v, rTree, w));
+                }
+            }
+
+            assertTrue(lTree.matches(0, rTree, 0));
+            assertFalse(rTree.artifact(0).getChildren().stream().anyMatch(c -> c.matches(lTree.artifact(0))));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void findMatch() throws Exception {
+        TestArtifact other = new TestArtifact("x", KeyEnums.Type.NODE);
+        TestArtifact lostF = new TestArtifact("f", KeyEnums.Type.NODE);
+        TestArtifact lostG = new TestArtifact("g", KeyEnums.Type.NODE);
+
+        other.addChild(lostF);
+        other.addChild(lostG);
+
+        FlatTree.Labels labels = new FlatTree.Labels();
+        FlatTree<TestArtifact> left = new FlatTree<>(ta, labels);
+        FlatTree<TestArtifact> right = new FlatTree<>(other, labels);
+        int f = right.id(lostF);
+        int g = right.id(lostG);
+        int x = right.id(other);
+
+        assertEquals(left.id(tf), left.findMatch(left.id(ta), right, f, Integer.MAX_VALUE));
+        assertEquals(left.id(tf), left.findMatch(left.id(tb), right, f, 1));
+        assertEquals(FlatTree.NONE, left.findMatch(left.id(ta), right, f, 1));
+        assertEquals(FlatTree.NONE, left.findMatch(left.id(tc), right, f, Integer.MAX_VALUE));
+        assertEquals(left.id(tg), left.findMatch(left.id(td), right, g, 1));
+        assertEquals(FlatTree.NONE, left.findMatch(left.id(td), right, g, -1));
+        assertEquals(FlatTree.NONE, left.findMatch(left.id(ta), right, x, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void foreignLabels() throws Exception {
+        FlatTree<TestArtifact> left = new FlatTree<>(ta);
+        FlatTree<TestArtifact> right = new FlatTree<>(tb);
+
+        left.matches(0, right, 0);
+    }
+}
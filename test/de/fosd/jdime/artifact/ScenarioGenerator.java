@@ -0,0 +1,588 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.stats.KeyEnums;
+import de.fosd.jdime.util.Tuple;
+
+import static de.fosd.jdime.artifact.Artifacts.root;
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Generates reproducible, synthetic three-way merge scenarios of controllable size and shape. A scenario consists of a
+ * base class with a number of fields and methods and a left and right revision derived from it by renaming, moving
+ * and editing members. Members may also be edited in both revisions in conflicting ways. Every scenario is available
+ * as Java source code (that may be written to <code>left</code>, <code>base</code> and <code>right</code> directories)
+ * and as <code>TestArtifact</code> trees. The generated classes do not reference any other types.
+ * <br><br>
+ * All random decisions are made using the seed given on construction. Successive calls of {@link #generate()} return
+ * different scenarios. A new generator with the same seed and configuration returns the same sequence of scenarios.
+ */
+public final class ScenarioGenerator {
+
+    /**
+     * The kinds of statements in method bodies.
+     */
+    private enum Kind {
+        SIMPLE,
+        IF,
+        FOR,
+        WHILE,
+        TRY
+    }
+
+    /**
+     * A statement in a method body. Compound statements contain a nested list of statements.
+     */
+    private static final class Statement {
+
+        private final Kind kind;
+        private final int depth;
+        private String text;
+        private final List<Statement> body;
+
+        private Statement(Kind kind, int depth, String text) {
+            this.kind = kind;
+            this.depth = depth;
+            this.text = text;
+            this.body = new ArrayList<>();
+        }
+
+        private Statement copy() {
+            Statement copy = new Statement(kind, depth, text);
+            body.forEach(s -> copy.body.add(s.copy()));
+            return copy;
+        }
+    }
+
+    /**
+     * A field or method of the generated class.
+     */
+    private static final class Member {
+
+        private final int id;
+        private final boolean method;
+        private String name;
+        private String initializer;
+        private final List<Statement> body;
+
+        private Member(int id, boolean method, String name, String initializer) {
+            this.id = id;
+            this.method = method;
+            this.name = name;
+            this.initializer = initializer;
+            this.body = new ArrayList<>();
+        }
+
+        private Member copy() {
+            Member copy = new Member(id, method, name, initializer);
+            body.forEach(s -> copy.body.add(s.copy()));
+            return copy;
+        }
+    }
+
+    /**
+     * A generated merge scenario.
+     */
+    public static final class Scenario {
+
+        private final String name;
+        private final Map<Revision, List<Member>> revisions;
+
+        private Scenario(String name, Map<Revision, List<Member>> revisions) {
+            this.name = name;
+            this.revisions = revisions;
+        }
+
+        /**
+         * Returns the name of the generated class.
+         *
+         * @return the class name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the name of the file containing the generated class.
+         *
+         * @return the file name
+         */
+        public String getFileName() {
+            return name + ".java";
+        }
+
+        /**
+         * Returns the Java source code of the given <code>revision</code>.
+         *
+         * @param revision
+         *         one of <code>LEFT</code>, <code>BASE</code> or <code>RIGHT</code>
+         * @return the source code
+         */
+        public String source(Revision revision) {
+            StringBuilder b = new StringBuilder();
+
+            b.append("public class ").append(name).append(" {\n");
+
+            for (Member member : members(revision)) {
+                b.append('\n');
+
+                if (member.method) {
+                    b.append("    public int ").append(member.name).append("(int p) {\n");
+                    b.append("        int v = p;\n");
+                    member.body.forEach(s -> source(s, 2, b));
+                    b.append("        return v;\n");
+                    b.append("    }\n");
+                } else {
+                    b.append("    private int ").append(member.name).append(" = ").append(member.initializer).append(";\n");
+                }
+            }
+
+            return b.append("}\n").toString();
+        }
+
+        private static void source(Statement statement, int indent, StringBuilder b) {
+            String pad = String.join("", Collections.nCopies(indent, "    "));
+
+            if (statement.kind == Kind.SIMPLE) {
+                b.append(pad).append(statement.text).append('\n');
+                return;
+            }
+
+            b.append(pad).append(statement.text).append(" {\n");
+            statement.body.forEach(s -> source(s, indent + 1, b));
+            b.append(pad).append('}');
+
+            if (statement.kind == Kind.TRY) {
+                b.append(" finally {\n").append(pad).append("    v--;\n").append(pad).append('}');
+            }
+
+            b.append('\n');
+        }
+
+        /**
+         * Writes the source code of the three revisions to files named {@link #getFileName()} in the
+         * <code>left</code>, <code>base</code> and <code>right</code> subdirectories of <code>dir</code>.
+         *
+         * @param dir
+         *         the directory to write to
+         * @return the left, base and right file
+         * @throws IOException
+         *         if the files can not be written
+         */
+        public List<File> write(File dir) throws IOException {
+            List<File> files = new ArrayList<>();
+
+            for (Revision revision : new Revision[] {LEFT, BASE, RIGHT}) {
+                File file = new File(new File(dir, revision.getName()), getFileName());
+
+                Files.createDirectories(file.getParentFile().toPath());
+                Files.write(file.toPath(), source(revision).getBytes(UTF_8));
+                files.add(file);
+            }
+
+            return files;
+        }
+
+        /**
+         * Returns the tree of the given <code>revision</code>. The class is a {@link KeyEnums.Type#CLASS} node whose
+         * children are the fields (as {@link KeyEnums.Type#NODE}s) and methods (as {@link KeyEnums.Type#METHOD}s).
+         * Statements are {@link KeyEnums.Type#NODE}s, except for try statements which are
+         * {@link KeyEnums.Type#TRY}s.
+         *
+         * @param revision
+         *         one of <code>LEFT</code>, <code>BASE</code> or <code>RIGHT</code>
+         * @return the tree
+         */
+        public TestArtifact tree(Revision revision) {
+            TestArtifact cls = new TestArtifact(revision, name, KeyEnums.Type.CLASS);
+
+            for (Member member : members(revision)) {
+                TestArtifact m;
+
+                if (member.method) {
+                    m = new TestArtifact(revision, member.name, KeyEnums.Type.METHOD);
+                    member.body.forEach(s -> m.addChild(tree(s, revision)));
+                } else {
+                    m = new TestArtifact(revision, member.name + " = " + member.initializer, KeyEnums.Type.NODE);
+                }
+
+                cls.addChild(m);
+            }
+
+            root(cls).renumber();
+            return cls;
+        }
+
+        private static TestArtifact tree(Statement statement, Revision revision) {
+            KeyEnums.Type type = statement.kind == Kind.TRY ? KeyEnums.Type.TRY : KeyEnums.Type.NODE;
+            TestArtifact node = new TestArtifact(revision, statement.text, type);
+
+            statement.body.forEach(s -> node.addChild(tree(s, revision)));
+            return node;
+        }
+
+        /**
+         * Returns the left and right tree.
+         *
+         * @return the trees
+         * @see #tree(Revision)
+         */
+        public Tuple<TestArtifact, TestArtifact> trees() {
+            return Tuple.of(tree(LEFT), tree(RIGHT));
+        }
+
+        private List<Member> members(Revision revision) {
+            List<Member> members = revisions.get(revision);
+
+            if (members == null) {
+                throw new IllegalArgumentException("Unknown revision " + revision);
+            }
+
+            return members;
+        }
+    }
+
+    private static final String[] TEMPLATES = {
+            "v = v + %d;", "v = v * %d - p;", "v += p %% %d;", "v = v > %d ? v : p;", "v ^= %d << 2;"
+    };
+
+    private final Random random;
+    private int scenarios;
+
+    private int members = 20;
+    private int methodLength = 10;
+    private int nestingDepth = 2;
+    private int renamed = 1;
+    private int moved = 1;
+    private int edited = 2;
+    private double conflictDensity = 0;
+
+    /**
+     * Constructs a new <code>ScenarioGenerator</code> making its random decisions using the given <code>seed</code>.
+     *
+     * @param seed
+     *         the seed to use
+     */
+    public ScenarioGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Sets the number of members of the generated class. Three in four members are methods. Defaults to 20.
+     *
+     * @param members
+     *         the number of members
+     * @return <code>this</code>
+     */
+    public ScenarioGenerator members(int members) {
+        this.members = members;
+        return this;
+    }
+
+    /**
+     * Sets the number of statements (including nested ones) of every method. Defaults to 10.
+     *
+     * @param methodLength
+     *         the number of statements
+     * @return <code>this</code>
+     */
+    public ScenarioGenerator methodLength(int methodLength) {
+        this.methodLength = methodLength;
+        return this;
+    }
+
+    /**
+     * Sets the maximum depth to which compound statements (if, for, while and try) are nested in method bodies.
+     * Defaults to 2.
+     *
+     * @param nestingDepth
+     *         the maximum nesting depth, 0 for methods consisting only of simple statements
+     * @return <code>this</code>
+     */
+    public ScenarioGenerator nestingDepth(int nestingDepth) {
+        this.nestingDepth = nestingDepth;
+        return this;
+    }
+
+    /**
+     * Sets the number of members renamed in each of the left and right revision. Defaults to 1.
+     *
+     * @param renamed
+     *         the number of renamed members
+     * @return <code>this</code>
+     */
+    public ScenarioGenerator renamed(int renamed) {
+        this.renamed = renamed;
+        return this;
+    }
+
+    /**
+     * Sets the number of members moved to another position in each of the left and right revision. Defaults to 1.
+     *
+     * @param moved
+     *         the number of moved members
+     * @return <code>this</code>
+     */
+    public ScenarioGenerator moved(int moved) {
+        this.moved = moved;
+        return this;
+    }
+
+    /**
+     * Sets the number of members edited (without conflicts) in each of the left and right revision. In a method one
+     * statement is changed and one is inserted, the initial value of a field is changed. Defaults to 2.
+     *
+     * @param edited
+     *         the number of edited members
+     * @return <code>this</code>
+     */
+    public ScenarioGenerator edited(int edited) {
+        this.edited = edited;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of members that are changed differently in the left and right revision, producing a conflict.
+     * Defaults to 0.
+     *
+     * @param conflictDensity
+     *         the fraction of conflicting members between 0 and 1
+     * @return <code>this</code>
+     */
+    public ScenarioGenerator conflictDensity(double conflictDensity) {
+        if (conflictDensity < 0 || conflictDensity > 1) {
+            throw new IllegalArgumentException("The conflict density must be between 0 and 1.");
+        }
+
+        this.conflictDensity = conflictDensity;
+        return this;
+    }
+
+    /**
+     * Generates the next scenario. Members chosen for the different changes are disjoint. If there are not enough
+     * members for all of them, the later ones (in the order conflicts, renames, moves, edits) are applied to fewer
+     * members.
+     *
+     * @return the generated scenario
+     */
+    public Scenario generate() {
+        String name = "Synthetic" + scenarios++;
+        List<Member> base = new ArrayList<>();
+
+        for (int i = 0; i < members; i++) {
+            boolean method = random.nextInt(4) != 0;
+            Member member = new Member(i, method, (method ? "m" : "f") + i, Integer.toString(random.nextInt(1000)));
+
+            if (method) {
+                statements(member.body, methodLength, 0);
+            }
+
+            base.add(member);
+        }
+
+        List<Integer> order = new ArrayList<>();
+
+        for (int i = 0; i < members; i++) {
+            order.add(i);
+        }
+
+        Collections.shuffle(order, random);
+
+        Iterator<Integer> ids = order.iterator();
+        List<Integer> conflicting = take(ids, (int) Math.round(members * conflictDensity));
+
+        Map<Revision, List<Member>> revisions = new HashMap<>();
+        revisions.put(BASE, base);
+
+        List<Member> left = copy(base);
+        List<Member> right = copy(base);
+
+        for (int id : conflicting) {
+            int template = random.nextInt(TEMPLATES.length);
+            int constant = random.nextInt(1000);
+            Member l = left.get(id);
+            Member r = right.get(id);
+
+            if (l.method && !simple(l.body).isEmpty()) {
+                int statement = random.nextInt(simple(l.body).size());
+
+                simple(l.body).get(statement).text = String.format(TEMPLATES[template], constant);
+                simple(r.body).get(statement).text = String.format(TEMPLATES[template], constant + 1);
+            } else {
+                l.initializer = Integer.toString(constant);
+                r.initializer = Integer.toString(constant + 1);
+            }
+        }
+
+        for (List<Member> revision : Arrays.asList(left, right)) {
+            List<Integer> renames = take(ids, renamed);
+            List<Integer> moves = take(ids, moved);
+            List<Integer> edits = take(ids, edited);
+
+            edits.forEach(id -> edit(revision.get(id)));
+            renames.forEach(id -> revision.get(id).name += revision == left ? "Left" : "Right");
+
+            for (int id : moves) {
+                Member member = revision.stream().filter(m -> m.id == id).findFirst().get();
+
+                revision.remove(member);
+                revision.add(random.nextInt(revision.size() + 1), member);
+            }
+        }
+
+        revisions.put(LEFT, left);
+        revisions.put(RIGHT, right);
+
+        return new Scenario(name, revisions);
+    }
+
+    /**
+     * Adds statements to <code>body</code> until <code>count</code> statements (including nested ones) were added.
+     *
+     * @param body
+     *         the list to add to
+     * @param count
+     *         the number of statements to add
+     * @param depth
+     *         the nesting depth of <code>body</code>
+     */
+    private void statements(List<Statement> body, int count, int depth) {
+
+        while (count > 0) {
+            count--;
+
+            if (depth < nestingDepth && count > 0 && random.nextInt(4) == 0) {
+                Kind kind = Kind.values()[1 + random.nextInt(Kind.values().length - 1)];
+                Statement compound = new Statement(kind, depth, head(kind, depth));
+                int nested = 1 + random.nextInt(count);
+
+                statements(compound.body, nested, depth + 1);
+                body.add(compound);
+                count -= nested;
+            } else {
+                body.add(simple(depth));
+            }
+        }
+    }
+
+    private String head(Kind kind, int depth) {
+        int constant = random.nextInt(100);
+
+        switch (kind) {
+            case IF:
+                return String.format("if (v > %d)", constant);
+            case FOR:
+                return String.format("for (int i%1$d = 0; i%1$d < %2$d; i%1$d++)", depth, constant);
+            case WHILE:
+                return String.format("while (v < %d)", constant);
+            case TRY:
+                return "try";
+            default:
+                throw new IllegalArgumentException(kind.name());
+        }
+    }
+
+    private Statement simple(int depth) {
+        String template = TEMPLATES[random.nextInt(TEMPLATES.length)];
+        return new Statement(Kind.SIMPLE, depth, String.format(template, random.nextInt(1000)));
+    }
+
+    /**
+     * Edits the given <code>member</code> without renaming it. In a method one statement is changed and one is
+     * inserted, the initial value of a field is changed.
+     *
+     * @param member
+     *         the member to edit
+     */
+    private void edit(Member member) {
+
+        if (!member.method) {
+            member.initializer = Integer.toString(1000 + random.nextInt(1000));
+            return;
+        }
+
+        List<Statement> simple = simple(member.body);
+
+        if (!simple.isEmpty()) {
+            Statement statement = simple.get(random.nextInt(simple.size()));
+            statement.text = simple(statement.depth).text;
+        }
+
+        member.body.add(random.nextInt(member.body.size() + 1), simple(0));
+    }
+
+    /**
+     * Returns the simple statements in <code>body</code> and the bodies of the compound statements in it in pre-order.
+     *
+     * @param body
+     *         the statements to search
+     * @return the simple statements
+     */
+    private static List<Statement> simple(List<Statement> body) {
+        List<Statement> simple = new ArrayList<>();
+
+        for (Statement statement : body) {
+            if (statement.kind == Kind.SIMPLE) {
+                simple.add(statement);
+            } else {
+                simple.addAll(simple(statement.body));
+            }
+        }
+
+        return simple;
+    }
+
+    private static List<Integer> take(Iterator<Integer> ids, int count) {
+        List<Integer> taken = new ArrayList<>(count);
+
+        while (taken.size() < count && ids.hasNext()) {
+            taken.add(ids.next());
+        }
+
+        return taken;
+    }
+
+    private static List<Member> copy(List<Member> members) {
+        List<Member> copy = new ArrayList<>(members.size());
+        members.forEach(m -> copy.add(m.copy()));
+        return copy;
+    }
+}
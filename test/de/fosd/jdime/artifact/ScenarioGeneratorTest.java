@@ -0,0 +1,149 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.artifact;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.strategy.MergeStrategy;
+import de.fosd.jdime.util.parser.Parser;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.artifact.file.FileArtifact.FileType.FILE;
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the <code>ScenarioGenerator</code>.
+ */
+public class ScenarioGeneratorTest {
+
+    private File tmp;
+
+    @BeforeClass
+    public static void init() {
+        JDimeConfig.setLogLevel("WARNING");
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        tmp = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(tmp);
+    }
+
+    @Test
+    public void reproducible() {
+        ScenarioGenerator a = new ScenarioGenerator(42).members(30).conflictDensity(0.1);
+        ScenarioGenerator b = new ScenarioGenerator(42).members(30).conflictDensity(0.1);
+
+        for (int i = 0; i < 3; i++) {
+            ScenarioGenerator.Scenario sa = a.generate();
+            ScenarioGenerator.Scenario sb = b.generate();
+
+            assertEquals(sa.getName(), sb.getName());
+            assertEquals(sa.source(LEFT), sb.source(LEFT));
+            assertEquals(sa.source(BASE), sb.source(BASE));
+            assertEquals(sa.source(RIGHT), sb.source(RIGHT));
+        }
+
+        assertNotEquals(new ScenarioGenerator(1).generate().source(BASE),
+                        new ScenarioGenerator(2).generate().source(BASE));
+    }
+
+    @Test
+    public void trees() {
+        ScenarioGenerator.Scenario scenario = new ScenarioGenerator(42).members(50).methodLength(8).generate();
+        TestArtifact base = scenario.tree(BASE);
+        TestArtifact left = scenario.tree(LEFT);
+
+        assertEquals(50, base.getNumChildren());
+        assertEquals(50, left.getNumChildren());
+        assertTrue(base.getTreeSize() > 50 * 2);
+        assertNotEquals(scenario.source(BASE), scenario.source(LEFT));
+        assertNotEquals(scenario.source(LEFT), scenario.source(RIGHT));
+    }
+
+    @Test
+    public void parses() throws Exception {
+        ScenarioGenerator.Scenario scenario = new ScenarioGenerator(42).members(10).nestingDepth(3).generate();
+        List<File> files = scenario.write(tmp);
+
+        for (File file : files) {
+            new ASTNodeArtifact(new FileArtifact(LEFT, file));
+        }
+    }
+
+    @Test
+    public void conflicts() throws Exception {
+        assertEquals(0, conflicts(new ScenarioGenerator(42).members(10).conflictDensity(0)));
+        assertTrue(conflicts(new ScenarioGenerator(42).members(10).conflictDensity(0.5)) > 0);
+    }
+
+    /**
+     * Merges a scenario generated by <code>generator</code> using the structured strategy and returns the number of
+     * conflicts in the result.
+     *
+     * @param generator
+     *         the generator to use
+     * @return the number of conflicts
+     */
+    private int conflicts(ScenarioGenerator generator) throws Exception {
+        List<File> files = generator.renamed(0).moved(0).generate().write(Files.createTempDirectory(tmp.toPath(), null).toFile());
+        MergeContext context = new MergeContext();
+        ArtifactList<FileArtifact> inputs = new ArtifactList<>();
+
+        inputs.add(new FileArtifact(LEFT, files.get(0)));
+        inputs.add(new FileArtifact(BASE, files.get(1)));
+        inputs.add(new FileArtifact(RIGHT, files.get(2)));
+
+        context.setMergeStrategy(MergeStrategy.parse(MergeStrategy.STRUCTURED).get());
+        context.setInputFiles(inputs);
+        context.setOutputFile(new FileArtifact(MERGE, FILE));
+
+        Main.merge(context);
+
+        assertTrue(context.getCrashes().isEmpty());
+        return Parser.calcStats(context.getOutputFile().getContent()).getConflicts();
+    }
+}
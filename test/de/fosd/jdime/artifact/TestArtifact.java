@@ -32,6 +32,7 @@
 import de.fosd.jdime.execption.NotYetImplementedException;
 import de.fosd.jdime.operations.MergeOperation;
 import de.fosd.jdime.stats.KeyEnums;
+import de.fosd.jdime.util.Tuple;
 
 /**
  * A simple <code>Artifact</code> to test the functionality of <code>MCESubtreeMatcher</code>. Not all all methods
@@ -74,7 +75,10 @@ public TestArtifact createConflictArtifact(TestArtifact left, TestArtifact right
 
     @Override
     public TestArtifact createChoiceArtifact(String condition, TestArtifact artifact) {
-        return null;
+        TestArtifact choice = new TestArtifact(MergeScenario.CHOICE, "Choice", KeyEnums.Type.NODE);
+        choice.setChoice(condition, artifact);
+
+        return choice;
     }
 
     public TestArtifact createEmptyArtifact(Revision revision) {
@@ -126,6 +130,16 @@ public boolean categoryMatches(TestArtifact other) {
         return this.type == other.type;
     }
 
+    @Override
+    public Object getMatchingKey() {
+        return Tuple.of(type, label);
+    }
+
+    @Override
+    public Object getCategoryKey() {
+        return type;
+    }
+
     @Override
     public void merge(MergeOperation<TestArtifact> operation, MergeContext context) {
 
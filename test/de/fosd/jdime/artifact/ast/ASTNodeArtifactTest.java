@@ -24,15 +24,31 @@
 package de.fosd.jdime.artifact.ast;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.Artifacts;
 import de.fosd.jdime.artifact.file.FileArtifact;
 import de.fosd.jdime.config.JDimeConfig;
 import de.fosd.jdime.config.merge.Revision;
+import org.apache.commons.io.FileUtils;
+import org.extendj.ast.ASTNode;
+import org.extendj.ast.BodyDecl;
+import org.extendj.ast.CompilationUnit;
+import org.extendj.ast.ImportDecl;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -81,4 +97,151 @@ public void testPrettyPrint() {
             fail(e.toString());
         }
     }
+
+    @Test
+    public void testLabelFollowsChildren() throws Exception {
+        File dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+
+        try {
+            LabelTable labels = new LabelTable();
+            ASTNodeArtifact list = parse(dir, "import java.util.List;\nclass A {}\n", labels);
+            ASTNodeArtifact map = parse(dir, "import java.util.Map;\nclass A {}\n", labels);
+
+            ASTNodeArtifact listImport = importDecl(list);
+            ASTNodeArtifact mapImport = importDecl(map);
+
+            assertFalse(listImport.matches(mapImport));
+
+            // the label of an ImportDecl is made up of its child, the imported type
+            listImport.setChild(mapImport.getChild(0).copy(), 0);
+            list.prettyPrint();
+
+            assertTrue(listImport.matches(mapImport));
+            assertEquals(mapImport.getMatchingKey(), listImport.getMatchingKey());
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testCopiesDoNotShareASTNodes() throws Exception {
+        ASTNodeArtifact artifact = new ASTNodeArtifact(new FileArtifact(testRevision, testFile));
+        String expected = artifact.prettyPrint();
+
+        ASTNodeArtifact copy = Artifacts.copyTree(artifact);
+
+        assertDisjoint(artifact, copy);
+
+        // printing the copy rebuilds its AST, which must not take over the ASTNodes of the original
+        removeFirstMember(copy);
+        assertFalse(expected.equals(copy.prettyPrint()));
+
+        assertParentsIntact(artifact);
+        assertEquals(expected, artifact.prettyPrint());
+    }
+
+    @Test
+    public void testCopyTree() throws Exception {
+        ASTNodeArtifact artifact = new ASTNodeArtifact(new FileArtifact(testRevision, testFile));
+        String expected = artifact.prettyPrint();
+
+        Revision revision = new Revision("COPY");
+        LabelTable labels = new LabelTable();
+        File copyFile = file(rightDir, "SimpleTests", "Bag", "Bag2.java");
+        ASTNodeArtifact copy = artifact.copyTree(new FileArtifact(revision, copyFile), labels);
+
+        assertDisjoint(artifact, copy);
+        assertParentsIntact(copy);
+        assertEquals(artifact.getTreeSize(), copy.getTreeSize());
+
+        Artifacts.dfsStream(copy).forEach(c -> {
+            assertEquals(revision, c.getRevision());
+            assertSame(labels, c.getLabelTable());
+        });
+
+        Artifacts.dfsStream(copy).map(ASTNodeArtifact::getASTNode).filter(CompilationUnit.class::isInstance)
+                 .forEach(cu -> assertEquals(copyFile.getPath(), ((CompilationUnit) cu).pathName()));
+
+        assertEquals(expected, copy.prettyPrint());
+
+        removeFirstMember(copy);
+        assertFalse(expected.equals(copy.prettyPrint()));
+
+        assertParentsIntact(artifact);
+        assertEquals(expected, artifact.prettyPrint());
+    }
+
+    /**
+     * Removes the first member of the first class in the given tree.
+     *
+     * @param root
+     *         the root of the tree
+     */
+    private static void removeFirstMember(ASTNodeArtifact root) {
+        ASTNodeArtifact members = Artifacts.dfsStream(root)
+                                           .filter(a -> a.getNumChildren() > 0)
+                                           .filter(a -> a.getChild(0).getASTNode() instanceof BodyDecl)
+                                           .findFirst().get();
+
+        members.setChildren(new ArtifactList<>(members.getChildren().subList(1, members.getNumChildren())));
+    }
+
+    /**
+     * Asserts that the given trees encapsulate no common <code>ASTNode</code>.
+     *
+     * @param left
+     *         the root of the first tree
+     * @param right
+     *         the root of the second tree
+     */
+    private static void assertDisjoint(ASTNodeArtifact left, ASTNodeArtifact right) {
+        Set<ASTNode<?>> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Artifacts.dfsStream(left).forEach(a -> nodes.add(a.getASTNode()));
+        Artifacts.dfsStream(right).forEach(a -> assertFalse(nodes.contains(a.getASTNode())));
+    }
+
+    /**
+     * Asserts that the parent of every <code>ASTNode</code> in the given tree is the <code>ASTNode</code> of the
+     * parent <code>ASTNodeArtifact</code>.
+     *
+     * @param root
+     *         the root of the tree
+     */
+    private static void assertParentsIntact(ASTNodeArtifact root) {
+        Artifacts.dfsStream(root).filter(a -> a.getParent() != null)
+                 .forEach(a -> assertSame(a.getParent().getASTNode(), a.getASTNode().getParent()));
+    }
+
+    /**
+     * Parses the given code.
+     *
+     * @param dir
+     *         the directory to write the code to
+     * @param code
+     *         the code to parse
+     * @param labels
+     *         the <code>LabelTable</code> to intern the labels in
+     * @return the root of the parsed tree
+     * @throws IOException
+     *         if the code can not be written
+     */
+    private static ASTNodeArtifact parse(File dir, String code, LabelTable labels) throws IOException {
+        File file = new File(dir, "A" + labels.hashCode() + code.hashCode() + ".java");
+
+        FileUtils.writeStringToFile(file, code, UTF_8);
+
+        return new ASTNodeArtifact(new FileArtifact(testRevision, file), labels);
+    }
+
+    /**
+     * Returns the first <code>ASTNodeArtifact</code> encapsulating an <code>ImportDecl</code> in the given tree.
+     *
+     * @param root
+     *         the root of the tree
+     * @return the <code>ASTNodeArtifact</code> of the import
+     */
+    private static ASTNodeArtifact importDecl(ASTNodeArtifact root) {
+        return Artifacts.dfsStream(root).filter(a -> a.getASTNode() instanceof ImportDecl).findFirst().get();
+    }
 }
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher;
+
+import java.util.Random;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.matcher.matching.Color;
+import de.fosd.jdime.matcher.matching.Matching;
+import de.fosd.jdime.matcher.matching.Matchings;
+import org.junit.Before;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.stats.KeyEnums.Type.METHOD;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for <code>Matcher</code>.
+ */
+public class MatcherTest extends JDimeTest {
+
+    private MergeContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        context = new MergeContext();
+    }
+
+    /**
+     * Returns the score of the <code>Matching</code> of the given roots.
+     *
+     * @param matchings
+     *         the <code>Matchings</code> containing the <code>Matching</code>
+     * @param left
+     *         the left root
+     * @param right
+     *         the right root
+     * @return the score
+     */
+    private static int score(Matchings<TestArtifact> matchings, TestArtifact left, TestArtifact right) {
+        return matchings.getScore(left, right).orElseThrow(AssertionError::new);
+    }
+
+    /**
+     * Returns a random tree of at most the given depth whose nodes carry one of three labels and are ordered or
+     * unordered.
+     *
+     * @param random
+     *         the source of randomness
+     * @param revision
+     *         the <code>Revision</code> of the nodes
+     * @param depth
+     *         the maximum depth of the tree
+     * @return the root of the tree
+     */
+    private static TestArtifact randomTree(Random random, Revision revision, int depth) {
+        String label = String.valueOf((char) ('A' + random.nextInt(3)));
+        TestArtifact node = new TestArtifact(revision, label, random.nextBoolean() ? NODE : METHOD);
+
+        for (int i = depth > 0 ? random.nextInt(4) : 0; i > 0; i--) {
+            node.addChild(randomTree(random, revision, depth - 1));
+        }
+
+        return node;
+    }
+
+    @Test
+    public void parallelVariantsMatchLikeSequential() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50; i++) {
+            TestArtifact left = new TestArtifact(LEFT, "R", NODE);
+            TestArtifact right = new TestArtifact(RIGHT, "R", NODE);
+
+            for (int c = 0; c < 4; c++) {
+                TestArtifact variant = randomTree(random, LEFT, 3);
+                TestArtifact choice = variant.createChoiceArtifact("F0", variant);
+
+                for (int v = 1; v < 2 + random.nextInt(3); v++) {
+                    choice.addVariant("F" + v, randomTree(random, LEFT, 3));
+                }
+
+                left.addChild(choice);
+                left.addChild(randomTree(random, LEFT, 2));
+                right.addChild(randomTree(random, RIGHT, 3));
+            }
+
+            context.setParallelVariants(false);
+            Matchings<TestArtifact> sequential = new Matcher<>(left, right).match(context, Color.GREEN);
+
+            context.setParallelVariants(true);
+            Matchings<TestArtifact> parallel = new Matcher<>(left, right).match(context, Color.GREEN);
+
+            assertEquals(sequential.size(), parallel.size());
+
+            for (Matching<TestArtifact> matching : sequential) {
+                TestArtifact l = matching.getLeft();
+                TestArtifact r = matching.getRight();
+
+                assertTrue(parallel.get(l, r).isPresent());
+                assertEquals(matching.getScore(), score(parallel, l, r));
+            }
+        }
+    }
+
+    @Test
+    public void variantsAreRematched() throws Exception {
+        TestArtifact left = new TestArtifact(LEFT, "A", NODE);
+        TestArtifact leftVariant = new TestArtifact(LEFT, "B", NODE);
+        TestArtifact choice = leftVariant.createChoiceArtifact("FEATURE", leftVariant);
+
+        choice.addVariant("!FEATURE", new TestArtifact(LEFT, "C", NODE));
+        left.addChild(choice);
+
+        TestArtifact right = new TestArtifact(RIGHT, "A", NODE);
+        TestArtifact rightChild = new TestArtifact(RIGHT, "B", NODE);
+
+        right.addChild(rightChild);
+
+        Matcher<TestArtifact> matcher = new Matcher<>(left, right);
+
+        assertEquals(2, score(matcher.match(context, Color.GREEN), left, right));
+
+        leftVariant.addChild(new TestArtifact(LEFT, "D", NODE));
+        rightChild.addChild(new TestArtifact(RIGHT, "D", NODE));
+        matcher.removeCache(left);
+        matcher.removeCache(right);
+
+        assertEquals(3, score(matcher.match(context, Color.GREEN), left, right));
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.cost_model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.fosd.jdime.artifact.Artifacts;
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.artifact.TestTrees;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AncestryIndexTest {
+
+    private static TestArtifact root;
+    private static List<TestArtifact> nodes;
+    private static AncestryIndex<TestArtifact> index;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        root = TestTrees.paperTree();
+        nodes = Artifacts.dfs(root);
+        index = new AncestryIndex<>(root);
+    }
+
+    /**
+     * Returns the path from <code>artifact</code> to the root of the tree beginning with the root.
+     */
+    private static List<TestArtifact> pathFromRoot(TestArtifact artifact) {
+        List<TestArtifact> path = new ArrayList<>();
+
+        for (TestArtifact a = artifact; a != null; a = a.getParent()) {
+            path.add(0, a);
+        }
+
+        return path;
+    }
+
+    @Test
+    public void preorder() throws Exception {
+        assertEquals(nodes.size(), index.size());
+
+        for (int i = 0; i < nodes.size(); i++) {
+            assertTrue(nodes.get(i) == index.artifact(i));
+            assertEquals(i, index.id(nodes.get(i)));
+        }
+    }
+
+    @Test
+    public void lca() throws Exception {
+        for (TestArtifact a : nodes) {
+            for (TestArtifact b : nodes) {
+                List<TestArtifact> aPath = pathFromRoot(a);
+                List<TestArtifact> bPath = pathFromRoot(b);
+                int i = 0;
+
+                while (i + 1 < aPath.size() && i + 1 < bPath.size() && aPath.get(i + 1) == bPath.get(i + 1)) {
+                    i++;
+                }
+
+                TestArtifact lca = aPath.get(i);
+                TestArtifact aSib = i + 1 < aPath.size() && i + 1 < bPath.size() ? aPath.get(i + 1) : lca;
+
+                int aId = index.id(a);
+                int bId = index.id(b);
+
+                assertTrue(lca == index.artifact(index.lca(aId, bId)));
+                assertTrue(aSib == index.artifact(index.siblingAncestor(aId, bId)));
+                assertEquals(aPath.contains(b), index.isAncestor(bId, aId));
+            }
+        }
+    }
+
+    @Test
+    public void siblingIndex() throws Exception {
+        for (TestArtifact a : nodes) {
+            int expected = a == root ? 0 : a.getParent().indexOf(a);
+            assertEquals(expected, index.siblingIndex(index.id(a)));
+        }
+    }
+}
@@ -23,13 +23,24 @@
  */
 package de.fosd.jdime.matcher.cost_model;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
 
 import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.artifact.Artifacts;
 import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.artifact.TestTrees;
 import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.Revision;
 import de.fosd.jdime.matcher.matching.Matching;
 import de.fosd.jdime.matcher.matching.Matchings;
+import de.fosd.jdime.util.Tuple;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -103,6 +114,136 @@ public void setUp() throws Exception {
         root(right).renumber();
     }
 
+    /**
+     * Returns a random tree of the given size whose nodes carry one of three labels.
+     *
+     * @param random
+     *         the source of randomness
+     * @param revision
+     *         the <code>Revision</code> of the nodes
+     * @param size
+     *         the number of nodes
+     * @return the root of the tree
+     */
+    private static TestArtifact randomTree(Random random, Revision revision, int size) {
+        List<TestArtifact> nodes = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            TestArtifact node = new TestArtifact(revision, String.valueOf((char) ('A' + random.nextInt(3))), NODE);
+
+            if (i > 0) {
+                nodes.get(random.nextInt(i)).addChild(node);
+            }
+
+            nodes.add(node);
+        }
+
+        return nodes.get(0);
+    }
+
+    /**
+     * Returns a random one-to-one matching between some of the artifacts of the given trees.
+     *
+     * @param random
+     *         the source of randomness
+     * @param left
+     *         the left tree
+     * @param right
+     *         the right tree
+     * @return the matched pairs
+     */
+    private static List<CMMatching<TestArtifact>> randomMatching(Random random, TestArtifact left, TestArtifact right) {
+        List<TestArtifact> partners = Artifacts.dfs(right);
+        List<CMMatching<TestArtifact>> matched = new ArrayList<>();
+
+        Collections.shuffle(partners, random);
+
+        for (TestArtifact artifact : Artifacts.dfs(left)) {
+
+            if (!partners.isEmpty() && random.nextInt(4) > 0) {
+                matched.add(new CMMatching<>(artifact, partners.remove(partners.size() - 1)));
+            }
+        }
+
+        Collections.shuffle(matched, random);
+        return matched;
+    }
+
+    /**
+     * Asserts that {@link CostModelMatcher#scores(List, AncestryIndex, AncestryIndex)} computes the score of every
+     * matched pair (m, n) as the number of artifacts in the tree rooted in m whose partner is part of the tree rooted
+     * in n.
+     *
+     * @param left
+     *         the left tree
+     * @param right
+     *         the right tree
+     * @param matched
+     *         the matched pairs
+     */
+    private static void assertScores(TestArtifact left, TestArtifact right, List<CMMatching<TestArtifact>> matched) {
+        Map<TestArtifact, TestArtifact> partners = new IdentityHashMap<>();
+        matched.forEach(m -> partners.put(m.m, m.n));
+
+        int[] scores = CostModelMatcher.scores(matched, new AncestryIndex<>(left), new AncestryIndex<>(right));
+
+        assertEquals(matched.size(), scores.length);
+
+        for (int i = 0; i < scores.length; i++) {
+            CMMatching<TestArtifact> matching = matched.get(i);
+            Set<TestArtifact> rightTree = Collections.newSetFromMap(new IdentityHashMap<>());
+            rightTree.addAll(Artifacts.dfs(matching.n));
+
+            long expected = Artifacts.dfs(matching.m).stream().filter(a -> rightTree.contains(partners.get(a))).count();
+
+            assertEquals(expected, scores[i]);
+        }
+    }
+
+    @Test
+    public void scoresOfTestTrees() throws Exception {
+        Random random = new Random(42);
+        List<Tuple<TestArtifact, TestArtifact>> trees = new ArrayList<>();
+
+        trees.add(Tuple.of(left, right));
+        trees.add(TestTrees.simpleTree());
+        trees.add(TestTrees.tryTree());
+        trees.add(Tuple.of(TestTrees.paperTree(), TestTrees.paperTree()));
+
+        for (Tuple<TestArtifact, TestArtifact> tree : trees) {
+            TestArtifact l = tree.getX();
+            TestArtifact r = tree.getY();
+
+            List<CMMatching<TestArtifact>> byLabel = new ArrayList<>();
+            List<TestArtifact> unmatched = Artifacts.dfs(r);
+
+            for (TestArtifact artifact : Artifacts.dfs(l)) {
+                unmatched.stream().filter(artifact::matches).findFirst().ifPresent(partner -> {
+                    unmatched.remove(partner);
+                    byLabel.add(new CMMatching<>(artifact, partner));
+                });
+            }
+
+            assertScores(l, r, byLabel);
+
+            for (int i = 0; i < 20; i++) {
+                assertScores(l, r, randomMatching(random, l, r));
+            }
+        }
+    }
+
+    @Test
+    public void scoresOfRandomMatchings() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200; i++) {
+            TestArtifact l = randomTree(random, LEFT, 1 + random.nextInt(30));
+            TestArtifact r = randomTree(random, RIGHT, 1 + random.nextInt(30));
+
+            assertScores(l, r, randomMatching(random, l, r));
+        }
+    }
+
     @Test
     @Ignore // This test expects the CostModelMatcher to produce exactly the results presented in the paper. Unlikely to happen.
     public void paperA() throws Exception {
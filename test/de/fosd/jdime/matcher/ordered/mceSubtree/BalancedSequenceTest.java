@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.ordered.mceSubtree;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.util.Tuple;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for <code>BalancedSequence</code> and the <code>DecompositionCache</code>. The results are compared to a
+ * direct implementation of the recursive definitions working on lists of trees.
+ */
+public class BalancedSequenceTest {
+
+    @Test
+    public void encoding() throws Exception {
+        TestArtifact a = new TestArtifact("A", NODE);
+        TestArtifact b = new TestArtifact("B", NODE);
+
+        a.addChild(b);
+        a.addChild(new TestArtifact("D", NODE));
+        b.addChild(new TestArtifact("C", NODE));
+
+        BalancedSequence<TestArtifact> seq = new BalancedSequence<>(a);
+        Tuple<BalancedSequence<TestArtifact>, BalancedSequence<TestArtifact>> partition = seq.partition();
+
+        assertEquals("00011011", seq.toString());
+        assertEquals("001101", partition.x.toString());
+        assertEquals("", partition.y.toString());
+        assertSame(a, seq.getRoot());
+
+        partition = partition.x.partition();
+
+        assertEquals("01", partition.x.toString());
+        assertEquals("01", partition.y.toString());
+
+        assertEquals("001011", new BalancedSequence<>(a, 1).toString());
+        assertEquals("01", new BalancedSequence<>(a, 0).toString());
+    }
+
+    @Test
+    public void lcsEqualsDefinition() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 300; i++) {
+            TestArtifact left = randomTree(random, LEFT, 1 + random.nextInt(12), false);
+            TestArtifact right = randomTree(random, RIGHT, 1 + random.nextInt(12), false);
+
+            int expected = lcs(forest(left), forest(right), new HashMap<>());
+
+            assertEquals(expected, BalancedSequence.lcs(new BalancedSequence<>(left), new BalancedSequence<>(right)));
+        }
+    }
+
+    @Test
+    public void decompositionEqualsDefinition() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100; i++) {
+            TestArtifact tree = randomTree(random, LEFT, 1 + random.nextInt(10), true);
+            BalancedSequence.Decomposition decomposition = new BalancedSequence<>(tree).decompose();
+
+            Set<String> expected = new HashSet<>();
+            decompose(forest(tree), expected);
+
+            assertEquals(expected.size(), decomposition.size());
+            assertEquals(-1, decomposition.root[0]);
+
+            for (int c = 1; c < decomposition.size(); c++) {
+                assertTrue(decomposition.head[c] < c);
+                assertTrue(decomposition.tail[c] < c);
+                assertTrue(decomposition.rest[c] < c);
+            }
+        }
+    }
+
+    @Test
+    public void decompositionsAreCached() throws Exception {
+        Random random = new Random(42);
+        TestArtifact left = randomTree(random, LEFT, 12, false);
+        TestArtifact right = randomTree(random, RIGHT, 12, false);
+
+        SymbolTable<TestArtifact> symbols = new SymbolTable<>();
+        DecompositionCache<TestArtifact> cache = new DecompositionCache<>();
+        BalancedSequence<TestArtifact> lSeq = sequence(left, symbols, cache);
+        BalancedSequence<TestArtifact> rSeq = sequence(right, symbols, cache);
+
+        int expected = BalancedSequence.lcs(new BalancedSequence<>(left), new BalancedSequence<>(right));
+
+        assertEquals(expected, BalancedSequence.lcs(lSeq, rSeq));
+        assertEquals(2, cache.size());
+        assertSame(lSeq.decompose(), lSeq.decompose());
+        assertEquals(expected, BalancedSequence.lcs(lSeq, rSeq));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void cacheIsBounded() throws Exception {
+        Random random = new Random(42);
+        SymbolTable<TestArtifact> symbols = new SymbolTable<>();
+        DecompositionCache<TestArtifact> cache = new DecompositionCache<>(1);
+
+        for (int i = 0; i < 20; i++) {
+            TestArtifact left = randomTree(random, LEFT, 1 + random.nextInt(12), false);
+            TestArtifact right = randomTree(random, RIGHT, 1 + random.nextInt(12), false);
+
+            BalancedSequence<TestArtifact> lSeq = sequence(left, symbols, cache);
+            BalancedSequence<TestArtifact> rSeq = sequence(right, symbols, cache);
+
+            int expected = BalancedSequence.lcs(new BalancedSequence<>(left), new BalancedSequence<>(right));
+
+            assertEquals(expected, BalancedSequence.lcs(lSeq, rSeq));
+            assertEquals(1, cache.size());
+        }
+    }
+
+    @Test
+    public void subtreeSequencesEqualTheirEncodings() throws Exception {
+        Random random = new Random(42);
+        TestArtifact tree = randomTree(random, LEFT, 30, false);
+
+        SymbolTable<TestArtifact> symbols = new SymbolTable<>();
+        Map<TestArtifact, BalancedSequence<TestArtifact>> subtrees = new HashMap<>();
+        BalancedSequence<TestArtifact> seq = BalancedSequence.ofTree(tree, symbols, null, subtrees);
+
+        assertEquals(30, subtrees.size());
+        assertSame(seq, subtrees.get(tree));
+
+        for (Map.Entry<TestArtifact, BalancedSequence<TestArtifact>> e : subtrees.entrySet()) {
+            BalancedSequence<TestArtifact> expected = new BalancedSequence<>(e.getKey(), Integer.MAX_VALUE, symbols);
+
+            assertEquals(expected, e.getValue());
+            assertEquals(expected.hashCode(), e.getValue().hashCode());
+            assertEquals(expected.toString(), e.getValue().toString());
+        }
+    }
+
+    /**
+     * Returns a random tree of the given size. The labels are either unique or taken from a small alphabet.
+     *
+     * @param random
+     *         the source of randomness
+     * @param rev
+     *         the <code>Revision</code> of the nodes
+     * @param size
+     *         the number of nodes
+     * @param unique
+     *         whether every node gets a unique label
+     * @return the root of the tree
+     */
+    static TestArtifact randomTree(Random random, Revision rev, int size, boolean unique) {
+        List<TestArtifact> nodes = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            String label = unique ? String.valueOf(i) : String.valueOf((char) ('a' + random.nextInt(3)));
+            TestArtifact node = new TestArtifact(rev, label, NODE);
+
+            if (!nodes.isEmpty()) {
+                nodes.get(random.nextInt(nodes.size())).addChild(node);
+            }
+
+            nodes.add(node);
+        }
+
+        return nodes.get(0);
+    }
+
+    /**
+     * Returns the <code>BalancedSequence</code> of the given <code>tree</code> using the given decomposition cache.
+     *
+     * @param tree
+     *         the tree of <code>Artifact</code>s
+     * @param symbols
+     *         the <code>SymbolTable</code> to encode the nodes with
+     * @param cache
+     *         the decomposition cache to use
+     * @return the <code>BalancedSequence</code>
+     */
+    private static BalancedSequence<TestArtifact> sequence(TestArtifact tree, SymbolTable<TestArtifact> symbols,
+                                                           DecompositionCache<TestArtifact> cache) {
+        BalancedSequence<TestArtifact> seq = new BalancedSequence<>(tree, Integer.MAX_VALUE, symbols);
+        seq.setDecompositionCache(cache);
+
+        return seq;
+    }
+
+    private static List<TestArtifact> forest(TestArtifact tree) {
+        List<TestArtifact> forest = new ArrayList<>();
+        forest.add(tree);
+
+        return forest;
+    }
+
+    private static List<TestArtifact> head(List<TestArtifact> forest) {
+        return forest.get(0).getChildren();
+    }
+
+    private static List<TestArtifact> tail(List<TestArtifact> forest) {
+        return forest.subList(1, forest.size());
+    }
+
+    private static List<TestArtifact> rest(List<TestArtifact> forest) {
+        List<TestArtifact> rest = new ArrayList<>(head(forest));
+        rest.addAll(tail(forest));
+
+        return rest;
+    }
+
+    /**
+     * Returns a <code>String</code> uniquely identifying the (labeled) structure of the given list of trees.
+     *
+     * @param forest
+     *         the trees
+     * @return the key
+     */
+    private static String key(List<TestArtifact> forest) {
+        StringBuilder key = new StringBuilder();
+
+        for (TestArtifact tree : forest) {
+            key.append('(').append(tree.getId()).append(key(tree.getChildren())).append(')');
+        }
+
+        return key.toString();
+    }
+
+    /**
+     * Computes the longest common balanced sequence of two lists of trees as defined in the paper.
+     *
+     * @param s
+     *         the first trees
+     * @param t
+     *         the second trees
+     * @param memo
+     *         the results computed so far
+     * @return the length of the longest common balanced sequence
+     */
+    private static int lcs(List<TestArtifact> s, List<TestArtifact> t, Map<String, Integer> memo) {
+
+        if (s.isEmpty() || t.isEmpty()) {
+            return 0;
+        }
+
+        String key = key(s) + "|" + key(t);
+        Integer memoized = memo.get(key);
+
+        if (memoized != null) {
+            return memoized;
+        }
+
+        int result = Math.max(lcs(rest(s), t, memo), lcs(s, rest(t), memo));
+
+        if (s.get(0).matches(t.get(0))) {
+            result = Math.max(result, lcs(head(s), head(t), memo) + lcs(tail(s), tail(t), memo) + 1);
+        }
+
+        memo.put(key, result);
+        return result;
+    }
+
+    /**
+     * Adds the keys of all lists of trees in the decomposition of <code>s</code> to <code>decomposition</code>.
+     *
+     * @param s
+     *         the trees to decompose
+     * @param decomposition
+     *         the keys of the decomposition
+     */
+    private static void decompose(List<TestArtifact> s, Set<String> decomposition) {
+
+        if (!decomposition.add(key(s)) || s.isEmpty()) {
+            return;
+        }
+
+        decompose(head(s), decomposition);
+        decompose(tail(s), decomposition);
+        decompose(rest(s), decomposition);
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.ordered.mceSubtree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.matcher.MatcherInterface;
+import de.fosd.jdime.matcher.matching.Matching;
+import de.fosd.jdime.matcher.matching.Matchings;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.matcher.ordered.mceSubtree.BalancedSequenceTest.randomTree;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for <code>MCESubtreeMatcher</code>.
+ */
+public class MCESubtreeMatcherTest {
+
+    /**
+     * Passes recursive calls back to the <code>MCESubtreeMatcher</code> and counts them.
+     */
+    private static final class Recursion implements MatcherInterface<TestArtifact> {
+
+        private MCESubtreeMatcher<TestArtifact> matcher;
+        private int calls;
+
+        @Override
+        public Matchings<TestArtifact> match(MergeContext context, TestArtifact left, TestArtifact right) {
+            calls++;
+            return matcher.match(context, left, right);
+        }
+    }
+
+    private final MergeContext context = new MergeContext();
+
+    @Test
+    public void scoresEqualLcsOfTheSubtrees() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100; i++) {
+            TestArtifact left = randomTree(random, LEFT, 1 + random.nextInt(12), false);
+            TestArtifact right = randomTree(random, RIGHT, 1 + random.nextInt(12), false);
+
+            Matchings<TestArtifact> matchings = newMatcher().match(context, left, right);
+
+            assertTrue(matchings.get(left, right).isPresent());
+
+            for (Matching<TestArtifact> matching : matchings) {
+                BalancedSequence<TestArtifact> lSeq = new BalancedSequence<>(matching.getLeft());
+                BalancedSequence<TestArtifact> rSeq = new BalancedSequence<>(matching.getRight());
+
+                assertEquals(BalancedSequence.lcs(lSeq, rSeq), matching.getScore());
+            }
+        }
+    }
+
+    @Test
+    public void equalTreesAreMatchedWithoutRecursion() throws Exception {
+        TestArtifact left = randomTree(new Random(42), LEFT, 30, false);
+        TestArtifact right = randomTree(new Random(42), RIGHT, 30, false);
+
+        Recursion recursion = new Recursion();
+        Matchings<TestArtifact> matchings = newMatcher(recursion).match(context, left, right);
+
+        assertEquals(0, recursion.calls);
+        assertEquals(30, matchings.size());
+
+        Deque<TestArtifact> lWait = new ArrayDeque<>();
+        Deque<TestArtifact> rWait = new ArrayDeque<>();
+
+        lWait.push(left);
+        rWait.push(right);
+
+        while (!lWait.isEmpty()) {
+            TestArtifact l = lWait.pop();
+            TestArtifact r = rWait.pop();
+
+            assertEquals(l.getTreeSize(), (int) matchings.getScore(l, r).orElseThrow(AssertionError::new));
+
+            for (int i = 0; i < l.getNumChildren(); i++) {
+                lWait.push(l.getChild(i));
+                rWait.push(r.getChild(i));
+            }
+        }
+    }
+
+    @Test
+    public void unequalTreesAreMatchedRecursively() throws Exception {
+        Random random = new Random(42);
+        TestArtifact left = randomTree(random, LEFT, 20, false);
+        TestArtifact right = randomTree(random, RIGHT, 20, false);
+
+        Recursion recursion = new Recursion();
+        newMatcher(recursion).match(context, left, right);
+
+        assertTrue(recursion.calls >= left.getNumChildren() * right.getNumChildren());
+    }
+
+    @Test
+    public void changedTreesAreRematchedAfterClear() throws Exception {
+        TestArtifact left = randomTree(new Random(42), LEFT, 10, false);
+        TestArtifact right = randomTree(new Random(42), RIGHT, 10, false);
+        MCESubtreeMatcher<TestArtifact> matcher = newMatcher();
+
+        assertEquals(10, score(matcher.match(context, left, right), left, right));
+
+        left.addChild(new TestArtifact(LEFT, "x", NODE));
+        right.addChild(new TestArtifact(RIGHT, "x", NODE));
+        matcher.clear();
+
+        assertEquals(11, score(matcher.match(context, left, right), left, right));
+    }
+
+    private static int score(Matchings<TestArtifact> matchings, TestArtifact left, TestArtifact right) {
+        return matchings.getScore(left, right).orElseThrow(AssertionError::new);
+    }
+
+    private static MCESubtreeMatcher<TestArtifact> newMatcher() {
+        return newMatcher(new Recursion());
+    }
+
+    private static MCESubtreeMatcher<TestArtifact> newMatcher(Recursion recursion) {
+        recursion.matcher = new MCESubtreeMatcher<>(recursion);
+        return recursion.matcher;
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.matcher.unordered;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import de.fosd.jdime.artifact.TestArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.Revision;
+import de.fosd.jdime.matcher.MatcherInterface;
+import de.fosd.jdime.matcher.matching.Matching;
+import de.fosd.jdime.matcher.matching.Matchings;
+import org.junit.Test;
+
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.stats.KeyEnums.Type.NODE;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for <code>UniqueLabelMatcher</code>.
+ */
+public class UniqueLabelMatcherTest {
+
+    /**
+     * A <code>TestArtifact</code> with a unique label. Its own label is the unique label followed by its position
+     * so that the children can be told apart in the <code>Matchings</code>.
+     */
+    private static final class LabeledArtifact extends TestArtifact {
+
+        private final String uniqueLabel;
+
+        private LabeledArtifact(Revision rev, String uniqueLabel, int position) {
+            super(rev, uniqueLabel + "#" + position, NODE);
+            this.uniqueLabel = uniqueLabel;
+        }
+
+        @Override
+        public Optional<Supplier<String>> getUniqueLabel() {
+            return Optional.of(() -> uniqueLabel);
+        }
+    }
+
+    /**
+     * Matches the roots of the given <code>Artifact</code>s only.
+     */
+    private static final MatcherInterface<TestArtifact> ROOTS =
+            (context, left, right) -> Matchings.of(left, right, left.matches(right) ? 1 : 0);
+
+    private final MergeContext context = new MergeContext();
+
+    @Test
+    public void duplicateLabelsArePairedInOrder() throws Exception {
+        TestArtifact left = tree(LEFT, "a", "b", "a", "c", "a");
+        TestArtifact right = tree(RIGHT, "a", "c", "a", "d");
+
+        Set<String> expected = new HashSet<>(Arrays.asList(
+                pair(left, 0, right, 0), pair(left, 2, right, 2), pair(left, 3, right, 1)));
+
+        Matchings<TestArtifact> matchings = match(left, right);
+
+        assertEquals(expected, pairs(matchings, left));
+        assertEquals(3, (int) matchings.getScore(left, right).orElseThrow(AssertionError::new));
+    }
+
+    @Test
+    public void joinEqualsSortMergeJoin() throws Exception {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 500; i++) {
+            TestArtifact left = randomTree(random, LEFT);
+            TestArtifact right = randomTree(random, RIGHT);
+
+            assertEquals(sortMergeJoin(left, right), pairs(match(left, right), left));
+        }
+    }
+
+    /**
+     * Matches the given trees using a <code>UniqueLabelMatcher</code>.
+     *
+     * @param left
+     *         the left tree
+     * @param right
+     *         the right tree
+     * @return the resulting <code>Matchings</code>
+     */
+    private Matchings<TestArtifact> match(TestArtifact left, TestArtifact right) {
+        return new UniqueLabelMatcher<>(ROOTS).match(context, left, right);
+    }
+
+    /**
+     * Returns a tree consisting of a root and children with the given unique labels.
+     *
+     * @param rev
+     *         the <code>Revision</code> of the tree
+     * @param labels
+     *         the unique labels of the children
+     * @return the tree
+     */
+    private static TestArtifact tree(Revision rev, String... labels) {
+        TestArtifact root = new TestArtifact(rev, "root", NODE);
+
+        for (int i = 0; i < labels.length; i++) {
+            root.addChild(new LabeledArtifact(rev, labels[i], i));
+        }
+
+        return root;
+    }
+
+    /**
+     * Returns a tree with up to 20 children having a few (often duplicated) unique labels.
+     *
+     * @param random
+     *         the source of randomness
+     * @param rev
+     *         the <code>Revision</code> of the tree
+     * @return the tree
+     */
+    private static TestArtifact randomTree(Random random, Revision rev) {
+        String[] labels = new String[random.nextInt(20)];
+
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = String.valueOf((char) ('a' + random.nextInt(8)));
+        }
+
+        return tree(rev, labels);
+    }
+
+    /**
+     * Returns the pairs of children of the given roots matched in <code>matchings</code>.
+     *
+     * @param matchings
+     *         the <code>Matchings</code> to search
+     * @param left
+     *         the left root
+     * @return the matched pairs of children
+     */
+    private static Set<String> pairs(Matchings<TestArtifact> matchings, TestArtifact left) {
+        Set<String> pairs = new HashSet<>();
+
+        for (Matching<TestArtifact> matching : matchings) {
+
+            if (matching.getLeft() != left) {
+                pairs.add(pair(matching.getLeft(), matching.getRight()));
+            }
+        }
+
+        return pairs;
+    }
+
+    private static String pair(TestArtifact left, int leftIndex, TestArtifact right, int rightIndex) {
+        return pair(left.getChild(leftIndex), right.getChild(rightIndex));
+    }
+
+    private static String pair(TestArtifact left, TestArtifact right) {
+        return left.getId() + " - " + right.getId();
+    }
+
+    /**
+     * The join performed by <code>UniqueLabelMatcher</code> before it used a hash table. Both child lists are sorted
+     * by their unique labels and merged.
+     *
+     * @param left
+     *         the left root
+     * @param right
+     *         the right root
+     * @return the matched pairs of children
+     */
+    private static Set<String> sortMergeJoin(TestArtifact left, TestArtifact right) {
+        Set<String> pairs = new HashSet<>();
+
+        if (left.getNumChildren() == 0 || right.getNumChildren() == 0) {
+            return pairs;
+        }
+
+        Comparator<TestArtifact> comp = Comparator.comparing(o -> o.getUniqueLabel().get().get());
+        List<TestArtifact> leftChildren = new ArrayList<>(left.getChildren());
+        List<TestArtifact> rightChildren = new ArrayList<>(right.getChildren());
+
+        leftChildren.sort(comp);
+        rightChildren.sort(comp);
+
+        Iterator<TestArtifact> leftIt = leftChildren.iterator();
+        Iterator<TestArtifact> rightIt = rightChildren.iterator();
+        TestArtifact leftChild = leftIt.next();
+        TestArtifact rightChild = rightIt.next();
+
+        while (true) {
+            int c = comp.compare(leftChild, rightChild);
+
+            if (c < 0) {
+                if (!leftIt.hasNext()) {
+                    break;
+                }
+
+                leftChild = leftIt.next();
+            } else if (c > 0) {
+                if (!rightIt.hasNext()) {
+                    break;
+                }
+
+                rightChild = rightIt.next();
+            } else {
+                pairs.add(pair(leftChild, rightChild));
+
+                if (!leftIt.hasNext() || !rightIt.hasNext()) {
+                    break;
+                }
+
+                leftChild = leftIt.next();
+                rightChild = rightIt.next();
+            }
+        }
+
+        return pairs;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.MergeScenario;
+import de.fosd.jdime.strategy.MergeStrategy;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.artifact.file.FileArtifact.FileType.FILE;
+import static de.fosd.jdime.stats.MergeScenarioStatus.OK;
+import static de.fosd.jdime.strategy.MergeStrategy.STRUCTURED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for <code>FlightRecorderEvents</code>.
+ */
+public class FlightRecorderEventsTest extends JDimeTest {
+
+    private static final String SCENARIO = "de.fosd.jdime.MergeScenario";
+    private static final String PHASE = "de.fosd.jdime.Phase";
+
+    /**
+     * The JDime event types registered after a merge without a running recording. The event types stay registered
+     * once a recording was started, so this is determined before any of the tests run.
+     */
+    private static Set<String> registeredWithoutRecording;
+
+    @BeforeClass
+    public static void mergeWithoutRecording() throws Exception {
+        assertFalse(FlightRecorderEvents.isRecording());
+
+        merge("SimpleTests/Bag/Bag.java");
+
+        registeredWithoutRecording = FlightRecorder.getFlightRecorder().getEventTypes().stream()
+                                                   .map(EventType::getName)
+                                                   .filter(n -> n.startsWith("de.fosd.jdime."))
+                                                   .collect(Collectors.toSet());
+    }
+
+    @Test
+    public void noEventTypesWithoutRecording() {
+        assertTrue("Event types were registered without a recording: " + registeredWithoutRecording,
+                registeredWithoutRecording.isEmpty());
+    }
+
+    @Test
+    public void recordingReceivesEvents() throws Exception {
+        String filePath = "SimpleTests/Bag/Bag.java";
+        Path dump = Files.createTempFile("jdime", ".jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable(SCENARIO).withoutThreshold();
+            recording.enable(PHASE).withoutThreshold();
+            recording.start();
+
+            assertTrue(FlightRecorderEvents.isRecording());
+
+            merge(filePath);
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        assertFalse(FlightRecorderEvents.isRecording());
+
+        try {
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+            List<RecordedEvent> scenarios = events.stream()
+                                                  .filter(e -> SCENARIO.equals(e.getEventType().getName()))
+                                                  .collect(Collectors.toList());
+
+            assertEquals(1, scenarios.size());
+
+            RecordedEvent scenario = scenarios.get(0);
+            assertEquals(file(leftDir, filePath).getPath(), scenario.getString(FlightRecorderEvents.LEFT));
+            assertEquals(file(baseDir, filePath).getPath(), scenario.getString(FlightRecorderEvents.BASE));
+            assertEquals(file(rightDir, filePath).getPath(), scenario.getString(FlightRecorderEvents.RIGHT));
+            assertEquals(OK.name(), scenario.getString(FlightRecorderEvents.OUTCOME));
+            assertEquals(0, scenario.getInt(FlightRecorderEvents.CONFLICTS));
+
+            Set<String> phases = events.stream()
+                                       .filter(e -> PHASE.equals(e.getEventType().getName()))
+                                       .map(e -> e.getString(FlightRecorderEvents.PHASE))
+                                       .collect(Collectors.toSet());
+
+            for (String phase : new String[] {"parse", "match", "merge", "prettyprint"}) {
+                assertTrue("Missing the " + phase + " phase in " + phases, phases.contains(phase));
+            }
+        } finally {
+            Files.delete(dump);
+        }
+    }
+
+    /**
+     * Merges the left, base and right versions of the file at the given path using the structured strategy.
+     *
+     * @param filePath
+     *         the path of the file relative to the left, base and right directories
+     * @throws Exception
+     *         if the merge fails
+     */
+    private static void merge(String filePath) throws Exception {
+        MergeContext context = new MergeContext();
+        context.setQuiet(true);
+        context.setPretend(true);
+
+        List<FileArtifact> inputArtifacts = new ArtifactList<>();
+        inputArtifacts.add(new FileArtifact(MergeScenario.LEFT, file(leftDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.BASE, file(baseDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.RIGHT, file(rightDir, filePath)));
+
+        context.setMergeStrategy(MergeStrategy.parse(STRUCTURED).get());
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MergeScenario.MERGE, FILE));
+
+        Main.merge(context);
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import de.fosd.jdime.JDimeTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for <code>MatcherStatistics</code>.
+ */
+public class MatcherStatisticsTest extends JDimeTest {
+
+    @Test
+    public void testHistogram() throws Exception {
+        Histogram histogram = new Histogram();
+
+        for (long value : new long[] {0, 1, 2, 3, 4, 1000}) {
+            histogram.add(value);
+        }
+
+        assertEquals("1 1 2 1 0 0 0 0 0 0 1", histogram.toString());
+        assertEquals(histogram.toString(), Histogram.valueOf(histogram.toString()).toString());
+    }
+
+    @Test
+    public void testAdd() throws Exception {
+        MatcherStatistics stats = new MatcherStatistics();
+
+        stats.record(String.class, 4, stats.start());
+        stats.event("lookahead");
+        stats.cacheAccess(true);
+        stats.cacheAccess(false);
+
+        MatcherStatistics sum = new MatcherStatistics(stats);
+        sum.add(stats);
+
+        assertEquals(2, sum.getAlgorithmStatistics("String").getInvocations());
+        assertEquals(2, sum.getAlgorithmStatistics("String").getSizes().getCount(Histogram.bucket(4)));
+        assertEquals(2, sum.getEvents("lookahead"));
+        assertEquals(0.5, sum.getCacheHitRate(), 0);
+
+        MatcherStatistics.DISABLED.record(String.class, 4, MatcherStatistics.DISABLED.start());
+        assertEquals(null, MatcherStatistics.DISABLED.getAlgorithmStatistics("String"));
+    }
+}
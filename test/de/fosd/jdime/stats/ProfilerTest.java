@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.stats;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import de.fosd.jdime.JDimeTest;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for <code>Profiler</code>.
+ */
+public class ProfilerTest extends JDimeTest {
+
+    @Test
+    @SuppressWarnings("try")
+    public void testSpans() throws Exception {
+        Profiler profiler = new Profiler();
+
+        try (Profiler.Span s = profiler.nested("ignored")) {
+            assertTrue(profiler.getRuntimes().isEmpty());
+        }
+
+        try (Profiler.Span merge = profiler.time("merge")) {
+            for (int i = 0; i < 2; i++) {
+                try (Profiler.Span match = profiler.nested("match")) {
+                    try (Profiler.Span recursive = profiler.nested("match")) {
+                        Thread.sleep(1);
+                    }
+                }
+            }
+        }
+
+        List<Runtime> runtimes = profiler.getRuntimes();
+
+        assertEquals(asList("merge", "merge/match"), runtimes.stream().map(Runtime::getLabel).collect(Collectors.toList()));
+        assertEquals(1, runtimes.get(0).getCount());
+        assertEquals(4, runtimes.get(1).getCount());
+        assertTrue(runtimes.get(0).getTimeNS() >= runtimes.get(1).getTimeNS());
+        assertTrue(runtimes.get(1).getTimeNS() >= 2_000_000);
+
+        profiler.reset();
+        assertTrue(profiler.getRuntimes().isEmpty());
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    public void testJoin() throws Exception {
+        Profiler profiler = new Profiler();
+        Thread worker;
+
+        try (Profiler.Span merge = profiler.time("merge")) {
+            try (Profiler.Span match = profiler.nested("match")) {
+                Profiler.Fork fork = profiler.fork();
+
+                worker = new Thread(() -> {
+                    try (Profiler.Span unjoined = profiler.nested("ignored")) {
+                        // no span is open in this thread
+                    }
+
+                    try (Profiler.Span joined = profiler.join(fork)) {
+                        try (Profiler.Span variant = profiler.nested("variant")) {
+                            sleep();
+                        }
+
+                        try (Profiler.Span recursive = profiler.nested("match")) {
+                            sleep();
+                        }
+                    }
+
+                    try (Profiler.Span closed = profiler.nested("ignored")) {
+                        // the joined spans are closed again
+                    }
+                });
+
+                worker.start();
+                worker.join();
+
+                try (Profiler.Span same = profiler.join(fork)) {
+                    try (Profiler.Span variant = profiler.nested("variant")) {
+                        sleep();
+                    }
+                }
+            }
+        }
+
+        List<Runtime> runtimes = profiler.getRuntimes();
+
+        assertEquals(asList("merge", "merge/match", "merge/match/variant"), runtimes.stream().map(Runtime::getLabel).collect(Collectors.toList()));
+        assertEquals(2, runtimes.get(1).getCount());
+        assertEquals(2, runtimes.get(2).getCount());
+        assertTrue(runtimes.get(2).getTimeNS() >= 2_000_000);
+    }
+
+    /**
+     * Sleeps for one millisecond.
+     */
+    private static void sleep() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -23,6 +23,10 @@
  */
 package de.fosd.jdime.stats;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
 import java.util.Arrays;
 import java.util.List;
 
@@ -35,12 +39,16 @@
 import de.fosd.jdime.config.merge.MergeType;
 import de.fosd.jdime.config.merge.Revision;
 import de.fosd.jdime.strategy.MergeStrategy;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import static de.fosd.jdime.artifact.file.FileArtifact.FileType.DIR;
 import static de.fosd.jdime.artifact.file.FileArtifact.FileType.FILE;
 import static de.fosd.jdime.strategy.MergeStrategy.STRUCTURED;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -345,4 +353,177 @@ public void collectStatistics() throws Exception {
             assertEquals(0, dirStats.getNumOccurInConflict());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamStatistics() throws Exception {
+        List<FileArtifact> inputArtifacts = new ArtifactList<>();
+        String filePath = "SimpleTests/Bag/Bag.java";
+
+        inputArtifacts.add(new FileArtifact(MergeScenario.LEFT, file(leftDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.BASE, file(baseDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.RIGHT, file(rightDir, filePath)));
+
+        context.setMergeStrategy(MergeStrategy.parse(STRUCTURED).get());
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MergeScenario.MERGE, FILE));
+
+        Statistics statistics = context.getStatistics();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        statistics.stream(new PrintStream(out, true, UTF_8.name()));
+        assertTrue(statistics.isStreaming());
+
+        Main.merge(context);
+
+        String streamed = out.toString(UTF_8.name());
+
+        assertTrue(streamed.startsWith(MergeScenarioStatistics.class.getSimpleName()));
+        assertTrue(statistics.getScenarioStatistics().isEmpty());
+        assertEquals(1, statistics.getConflictStatistics().getCount());
+
+        statistics.closeStreams();
+
+        assertFalse(statistics.isStreaming());
+        assertEquals(streamed, out.toString(UTF_8.name()));
+    }
+
+    @Test
+    public void streamXMLMatchesPrintXML() throws Exception {
+        List<FileArtifact> inputArtifacts = new ArtifactList<>();
+        String filePath = "SimpleTests/Bag/Bag.java";
+
+        inputArtifacts.add(new FileArtifact(MergeScenario.LEFT, file(leftDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.BASE, file(baseDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.RIGHT, file(rightDir, filePath)));
+
+        context.setMergeStrategy(MergeStrategy.parse(STRUCTURED).get());
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MergeScenario.MERGE, FILE));
+
+        Main.merge(context);
+
+        Statistics statistics = context.getStatistics();
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+
+        statistics.printXML(printed, context);
+
+        statistics.streamXML(streamed, context);
+        statistics.closeStreams();
+
+        assertEquals(stripWhitespace(printed.toString(UTF_8.name())), stripWhitespace(streamed.toString(UTF_8.name())));
+    }
+
+    /**
+     * Removes the whitespace between XML elements.
+     *
+     * @param xml
+     *         the XML to strip
+     * @return the XML without whitespace between elements
+     */
+    private static String stripWhitespace(String xml) {
+        return xml.replaceAll(">\\s+<", "><").trim();
+    }
+
+    @Test
+    public void fileOperationASTStatistics() throws Exception {
+        File dir = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+
+        try {
+            String existing = "class A {\n    void a() {}\n}\n";
+            String added = "class B {\n    void b() {}\n    void c() {}\n}\n";
+
+            for (String rev : Arrays.asList("left", "base", "right")) {
+                FileUtils.writeStringToFile(new File(dir, rev + "/A.java"), existing, UTF_8);
+            }
+
+            FileUtils.writeStringToFile(new File(dir, "left/B.java"), added, UTF_8);
+
+            // only the files are counted unless AST statistics are requested
+            MergeScenarioStatistics defaults = mergeDirectories(dir);
+
+            assertEquals(1, defaults.getFileStatistics().getNumAdded());
+            assertEquals(0, defaults.getTypeStatistics(MergeScenario.LEFT, KeyEnums.Type.METHOD).getNumAdded());
+
+            for (boolean parse : Arrays.asList(true, false)) {
+                setUp();
+                context.setFileOperationASTStatistics(parse);
+
+                MergeScenarioStatistics stats = mergeDirectories(dir);
+
+                assertEquals(1, stats.getFileStatistics().getNumAdded());
+                assertEquals(parse ? 2 : 0, stats.getTypeStatistics(MergeScenario.LEFT, KeyEnums.Type.METHOD).getNumAdded());
+            }
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    /**
+     * Merges the left, base and right directories in <code>dir</code> and returns the statistics of the merge of
+     * the directories.
+     *
+     * @param dir
+     *         the directory containing the revisions
+     * @return the statistics of the directory merge
+     */
+    private MergeScenarioStatistics mergeDirectories(File dir) {
+        List<FileArtifact> inputArtifacts = new ArtifactList<>();
+
+        inputArtifacts.add(new FileArtifact(MergeScenario.LEFT, new File(dir, "left")));
+        inputArtifacts.add(new FileArtifact(MergeScenario.BASE, new File(dir, "base")));
+        inputArtifacts.add(new FileArtifact(MergeScenario.RIGHT, new File(dir, "right")));
+
+        context.setMergeStrategy(MergeStrategy.parse(STRUCTURED).get());
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MergeScenario.MERGE, DIR));
+
+        Main.merge(context);
+
+        for (MergeScenarioStatistics s : context.getStatistics().getScenarioStatistics()) {
+            FileArtifact left = (FileArtifact) s.getMergeScenario().getLeft();
+
+            if (left.isDirectory()) {
+                return s;
+            }
+        }
+
+        throw new AssertionError("Could not find the MergeScenarioStatistics of the directory merge.");
+    }
+
+    @Test
+    public void aggregateMatchings() throws Exception {
+        List<FileArtifact> inputArtifacts = new ArtifactList<>();
+        String filePath = "SimpleTests/Bag/Bag.java";
+
+        inputArtifacts.add(new FileArtifact(MergeScenario.LEFT, file(leftDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.BASE, file(baseDir, filePath)));
+        inputArtifacts.add(new FileArtifact(MergeScenario.RIGHT, file(rightDir, filePath)));
+
+        context.setMergeStrategy(MergeStrategy.parse(STRUCTURED).get());
+        context.setInputFiles(inputArtifacts);
+        context.setOutputFile(new FileArtifact(MergeScenario.MERGE, FILE));
+        context.getStatistics().setMatchingSampleSize(2);
+
+        Main.merge(context);
+
+        MergeScenarioStatistics fileMergeStats = context.getStatistics().getScenarioStatistics().stream()
+                .filter(s -> s.getMergeScenario().asList().stream().allMatch(a -> a instanceof FileArtifact))
+                .findFirst().orElse(null);
+
+        assertNotNull(fileMergeStats);
+
+        MatchingStatistics matchingStats = fileMergeStats.getMatchingStatistics();
+
+        assertNotNull(matchingStats);
+        assertTrue(matchingStats.getMatchings() > 2);
+        assertEquals(2, matchingStats.getSample().size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fileMergeStats.print(new PrintStream(out, true, UTF_8.name()));
+        String printed = out.toString(UTF_8.name());
+
+        assertFalse(printed.contains("Matchings:"));
+        assertTrue(printed.contains("Matching Statistics:"));
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.artifact.file.FileArtifact.FileType.FILE;
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.strategy.MergeStrategy.STRUCTURED;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>MergeResultCache</code>.
+ */
+public class MergeResultCacheTest extends JDimeTest {
+
+    private static final String CONFLICTING = "SimpleTests/Bag/Bag3.java";
+    private static final String CONFLICT_FREE = "SimpleTests/Bag/Bag.java";
+
+    private MergeContext context;
+    private File tmp;
+    private File cacheDir;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("WARNING");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        context = new MergeContext();
+        context.setMergeStrategy(MergeStrategy.parse(STRUCTURED).get());
+        context.setQuiet(true);
+        context.setPretend(true);
+
+        tmp = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+        cacheDir = new File(tmp, "cache");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(tmp);
+    }
+
+    @Test
+    public void hitRelabelsConflictMarkers() throws Exception {
+        File[] first = copy(CONFLICTING, "first");
+        File[] second = copy(CONFLICTING, "second");
+
+        String uncached = merge(second);
+
+        context.setMergeResultCache(new MergeResultCache(cacheDir, Long.MAX_VALUE));
+        merge(first);
+
+        List<Path> stored = stored();
+        assertEquals(1, stored.size());
+
+        // results read from the cache are recognizable by this marker
+        String content = new String(Files.readAllBytes(stored.get(0)), UTF_8);
+        Files.write(stored.get(0), ("// cached\n" + content).getBytes(UTF_8));
+
+        String cached = merge(second);
+
+        assertTrue(cached.startsWith("// cached\n"));
+        assertEquals(uncached, cached.substring("// cached\n".length()));
+        assertTrue(cached.contains("<<<<<<< " + second[0].getPath()));
+        assertTrue(cached.contains(">>>>>>> " + second[2].getPath()));
+        assertFalse(cached.contains(first[0].getPath()));
+    }
+
+    @Test
+    public void keyDependsOnOptions() throws Exception {
+        File[] scenario = copy(CONFLICT_FREE, "scenario");
+
+        context.setMergeResultCache(new MergeResultCache(cacheDir, Long.MAX_VALUE));
+
+        merge(scenario);
+        merge(scenario);
+        assertEquals(1, stored().size());
+
+        context.setPreserveSource(true);
+        merge(scenario);
+        assertEquals(2, stored().size());
+    }
+
+    @Test
+    public void resultsAreStoredPerVersion() throws Exception {
+        File[] scenario = copy(CONFLICT_FREE, "scenario");
+        File otherVersion = new File(cacheDir, "other");
+        File otherResult = new File(otherVersion, "result");
+
+        FileUtils.writeStringToFile(otherResult, "other", UTF_8);
+
+        context.setMergeResultCache(new MergeResultCache(cacheDir, Long.MAX_VALUE));
+        merge(scenario);
+
+        File[] versions = cacheDir.listFiles(File::isDirectory);
+
+        assertEquals(2, versions.length);
+
+        for (File version : versions) {
+            if (!version.equals(otherVersion)) {
+                assertTrue(version.getName().matches("[0-9a-f]{64}"));
+                assertEquals(1, version.listFiles().length);
+            }
+        }
+
+        assertTrue(otherResult.exists());
+    }
+
+    @Test
+    public void leastRecentlyUsedResultsAreEvicted() throws Exception {
+        File[] conflicting = copy(CONFLICTING, "conflicting");
+        File[] conflictFree = copy(CONFLICT_FREE, "conflictFree");
+        File otherResult = new File(new File(cacheDir, "other"), "result");
+
+        long capacity = Math.max(merge(conflicting).length(), merge(conflictFree).length()) + 10;
+
+        // an old result of another version that does not leave room for another one
+        FileUtils.writeStringToFile(otherResult, new String(new char[(int) capacity]).replace('\0', 'x'), UTF_8);
+        Files.setLastModifiedTime(otherResult.toPath(), FileTime.fromMillis(0));
+
+        context.setMergeResultCache(new MergeResultCache(cacheDir, capacity));
+
+        merge(conflicting);
+
+        List<Path> stored = stored();
+        assertFalse(otherResult.exists());
+        assertEquals(1, stored.size());
+
+        merge(conflictFree);
+        assertEquals(1, stored().size());
+        assertFalse(Files.exists(stored.get(0)));
+
+        merge(conflicting);
+        assertEquals(stored, stored());
+    }
+
+    /**
+     * Copies the three revisions of the file at <code>path</code> to a new scenario directory.
+     *
+     * @param path
+     *         the path of the file relative to the revision directories
+     * @param scenario
+     *         the name of the scenario directory
+     * @return the left, base and right revision of the copied file
+     * @throws IOException
+     *         if the files can not be copied
+     */
+    private File[] copy(String path, String scenario) throws IOException {
+        File[] revisions = { file(leftDir, path), file(baseDir, path), file(rightDir, path) };
+        File[] copies = new File[revisions.length];
+
+        for (int i = 0; i < revisions.length; i++) {
+            copies[i] = new File(new File(new File(tmp, scenario), String.valueOf(i)), revisions[i].getName());
+            FileUtils.copyFile(revisions[i], copies[i]);
+        }
+
+        return copies;
+    }
+
+    /**
+     * Merges the given revisions using the current {@link #context}.
+     *
+     * @param revisions
+     *         the left, base and right revision
+     * @return the merge result
+     */
+    private String merge(File[] revisions) {
+        List<FileArtifact> inputs = new ArtifactList<>();
+
+        inputs.add(new FileArtifact(LEFT, revisions[0]));
+        inputs.add(new FileArtifact(BASE, revisions[1]));
+        inputs.add(new FileArtifact(RIGHT, revisions[2]));
+
+        context.setInputFiles(inputs);
+        context.setOutputFile(new FileArtifact(MERGE, FILE));
+
+        Main.merge(context);
+
+        return context.getOutputFile().getContent();
+    }
+
+    /**
+     * Returns the results stored in the cache directory (of all versions).
+     *
+     * @return the stored results
+     * @throws IOException
+     *         if the directory can not be listed
+     */
+    private List<Path> stored() throws IOException {
+
+        if (!cacheDir.exists()) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> paths = Files.walk(cacheDir.toPath())) {
+            return paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+}
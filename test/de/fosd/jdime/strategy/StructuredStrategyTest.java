@@ -0,0 +1,274 @@
+/**
+ * Copyright (C) 2013-2014 Olaf Lessenich
+ * Copyright (C) 2014-2018 University of Passau, Germany
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA 02110-1301  USA
+ *
+ * Contributors:
+ *     Olaf Lessenich <lessenic@fim.uni-passau.de>
+ *     Georg Seibt <seibt@fim.uni-passau.de>
+ */
+package de.fosd.jdime.strategy;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import de.fosd.jdime.JDimeTest;
+import de.fosd.jdime.Main;
+import de.fosd.jdime.artifact.ArtifactList;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifact;
+import de.fosd.jdime.artifact.ast.ASTNodeArtifactCache;
+import de.fosd.jdime.artifact.file.FileArtifact;
+import de.fosd.jdime.config.JDimeConfig;
+import de.fosd.jdime.config.merge.MergeContext;
+import de.fosd.jdime.config.merge.Revision;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static de.fosd.jdime.artifact.file.FileArtifact.FileType.FILE;
+import static de.fosd.jdime.config.merge.MergeScenario.BASE;
+import static de.fosd.jdime.config.merge.MergeScenario.LEFT;
+import static de.fosd.jdime.config.merge.MergeScenario.MERGE;
+import static de.fosd.jdime.config.merge.MergeScenario.RIGHT;
+import static de.fosd.jdime.strategy.MergeStrategy.STRUCTURED;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the <code>StructuredStrategy</code>.
+ */
+public class StructuredStrategyTest extends JDimeTest {
+
+    /**
+     * Three-way scenarios whose structured merge does not conflict.
+     */
+    private static final String[] CONFLICT_FREE = {
+            "SimpleTests/Bag/Bag.java", "SimpleTests/Duplicate.java", "SimpleTests/MethodLevelFormatting.java",
+            "SimpleTests/RenamedMethod.java", "SimpleTests/ShiftedCode.java", "SimpleTests/SurroundWithTry.java"
+    };
+
+    private MergeContext context;
+    private File tmp;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        JDimeConfig.setLogLevel("WARNING");
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        context = new MergeContext();
+        context.setMergeStrategy(MergeStrategy.parse(STRUCTURED).get());
+        context.setQuiet(true);
+        context.setPretend(true);
+        context.setExitOnError(true);
+
+        tmp = Files.createTempDirectory(getClass().getSimpleName()).toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(tmp);
+    }
+
+    /**
+     * Merges the three revisions of the file at <code>path</code> using the current {@link #context}.
+     *
+     * @param path
+     *         the path of the file relative to the revision directories
+     * @return the merge result
+     */
+    private String merge(String path) {
+        return merge(file(leftDir, path), file(baseDir, path), file(rightDir, path));
+    }
+
+    /**
+     * Merges the given three revisions of a file using the current {@link #context}.
+     *
+     * @param left
+     *         the left revision
+     * @param base
+     *         the base revision
+     * @param right
+     *         the right revision
+     * @return the merge result
+     */
+    private String merge(File left, File base, File right) {
+        List<FileArtifact> inputs = new ArtifactList<>();
+
+        inputs.add(new FileArtifact(LEFT, left));
+        inputs.add(new FileArtifact(BASE, base));
+        inputs.add(new FileArtifact(RIGHT, right));
+
+        context.setInputFiles(inputs);
+        context.setOutputFile(new FileArtifact(MERGE, FILE));
+
+        Main.merge(context);
+
+        return context.getOutputFile().getContent();
+    }
+
+    /**
+     * Parses the given code and pretty prints the resulting AST.
+     *
+     * @param code
+     *         the code to parse
+     * @return the pretty printed AST
+     * @throws IOException
+     *         if the code can not be written to a temporary file
+     */
+    private String reparse(String code) throws IOException {
+        File file = new File(tmp, "Reparsed.java");
+
+        FileUtils.writeStringToFile(file, code, UTF_8);
+
+        return new ASTNodeArtifact(new FileArtifact(new Revision("reparsed"), file)).prettyPrint();
+    }
+
+    /**
+     * Asserts that every conflict in <code>merged</code> names the left and right file of <code>path</code> in its
+     * markers and that there is at least one conflict.
+     *
+     * @param path
+     *         the path of the merged file relative to the revision directories
+     * @param merged
+     *         the merge result
+     */
+    private static void assertConflictMarkers(String path, String merged) {
+        String leftMarker = "<<<<<<< " + new File(leftDir, path).getPath();
+        String rightMarker = ">>>>>>> " + new File(rightDir, path).getPath();
+        int conflicts = 0;
+
+        for (String line : merged.split("\\R")) {
+
+            if (line.startsWith("<<<<<<<")) {
+                assertEquals(leftMarker, line);
+                conflicts++;
+            } else if (line.startsWith(">>>>>>>")) {
+                assertEquals(rightMarker, line);
+            }
+        }
+
+        assertTrue("Expected a conflict in the merge of " + path, conflicts > 0);
+    }
+
+    @Test
+    public void conflictMarkersNameTheirFiles() throws Exception {
+        String path = "SimpleTests/Bag/Bag3.java";
+
+        assertConflictMarkers(path, merge(path));
+    }
+
+    @Test
+    public void mergeResultIsPrintedIntoTheOutputFile() throws Exception {
+        String path = "SimpleTests/Bag/Bag3.java";
+
+        for (boolean optimize : new boolean[] {false, true}) {
+            context.setOptimizeMultiConflicts(optimize);
+            String expected = merge(path);
+
+            File out = new File(tmp, "merged" + optimize + ".java");
+            List<FileArtifact> inputs = new ArtifactList<>();
+
+            inputs.add(new FileArtifact(LEFT, file(leftDir, path)));
+            inputs.add(new FileArtifact(BASE, file(baseDir, path)));
+            inputs.add(new FileArtifact(RIGHT, file(rightDir, path)));
+
+            context.setPretend(false);
+            context.setInputFiles(inputs);
+            context.setOutputFile(new FileArtifact(MERGE, out, FILE));
+
+            Main.merge(context);
+            context.setPretend(true);
+
+            // the result is written while merging, not when the output is written by Main
+            assertEquals(expected, FileUtils.readFileToString(out, UTF_8));
+            assertEquals(expected, context.getOutputFile().getContent());
+        }
+    }
+
+    @Test
+    public void astCacheKeepsScenariosApart() throws Exception {
+        String first = "SimpleTests/VariableDeclaration.java";
+        String second = "SimpleTests/ChangedMethod2.java";
+
+        String firstExpected = merge(first);
+        String secondExpected = merge(second);
+
+        context.setASTCache(new ASTNodeArtifactCache(Integer.MAX_VALUE));
+
+        // the right revisions of both files and their base revisions have equal content
+        assertEquals(firstExpected, merge(first));
+        assertEquals(secondExpected, merge(second));
+        assertEquals(firstExpected, merge(first));
+    }
+
+    @Test
+    public void preserveSourceKeepsTheAST() throws Exception {
+
+        for (String path : CONFLICT_FREE) {
+            context.setPreserveSource(false);
+            String printed = merge(path);
+
+            context.setPreserveSource(true);
+            String preserved = merge(path);
+
+            assertEquals(path, reparse(printed), reparse(preserved));
+        }
+    }
+
+    @Test
+    public void preserveSourceKeepsUnchangedBodies() throws Exception {
+        String unchanged = "int get() {\n" +
+                           "        // the value   is not copied\n" +
+                           "        return   value;\n" +
+                           "    }";
+        String changed = "void set(int v) {\n" +
+                         "        value = v;\n" +
+                         "    }";
+        String constructor = "Value() {\n" +
+                             "        value  =  1;\n" +
+                             "    }";
+
+        String base = String.format("class Value {%n    int value;%n    %s%n    %s%n    %s%n}%n", constructor, unchanged, changed);
+        String left = base.replace("value = v;", "value = v + 1;");
+        String right = base.replace("int value;", "int value;\n    int other;");
+
+        File[] revisions = new File[3];
+        String[] contents = {left, base, right};
+
+        for (int i = 0; i < revisions.length; i++) {
+            File dir = new File(tmp, String.valueOf(i));
+            revisions[i] = new File(dir, "Value.java");
+            FileUtils.writeStringToFile(revisions[i], contents[i], UTF_8);
+        }
+
+        context.setPreserveSource(true);
+        String preserved = merge(revisions[0], revisions[1], revisions[2]);
+
+        assertTrue(preserved, preserved.contains(unchanged.substring(unchanged.indexOf('{'))));
+        assertFalse(preserved, preserved.contains("value  =  1;"));
+        assertTrue(preserved, preserved.contains("value = v + 1;"));
+        assertTrue(preserved, preserved.contains("int other;"));
+    }
+}
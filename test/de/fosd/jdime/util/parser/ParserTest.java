@@ -24,10 +24,19 @@
 package de.fosd.jdime.util.parser;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 import de.fosd.jdime.JDimeTest;
 import de.fosd.jdime.stats.CodeStatistics;
 import org.apache.commons.io.FileUtils;
+import org.extendj.parser.JavaParser;
+import org.extendj.scanner.JavaScanner;
+import org.extendj.scanner.Unicode;
 import org.junit.Test;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -90,4 +99,136 @@ public void testParse() throws Exception {
         assertEquals(0, cs.getConflictingLinesOfCode());
         assertEquals(normalize(code), normalize(result.toString()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCalcStats() throws Exception {
+        File[] files = {
+                file(resultsDir, "linebased", "SimpleTests", "Bag", "Bag2.java"),
+                file(resultsDir, "linebased", "ParserTest", "CommentsConflict.java"),
+                file(resultsDir, "linebased", "ParserTest", "FilteredConflicts.java")
+        };
+
+        for (File file : files) {
+            String code = FileUtils.readFileToString(file, UTF_8);
+            CodeStatistics expected = Parser.parse(code).getStats();
+
+            assertEquals(expected, Parser.calcStats(code));
+
+            CodeStatisticsListener listener = new CodeStatisticsListener();
+            Parser.parse(new StringReader(code.replace("\n", "\r\n")), listener);
+
+            assertEquals(expected, listener.getStats());
+        }
+    }
+
+    @Test
+    public void testMergeSubsequentConflicts() throws Exception {
+        String ls = System.lineSeparator();
+        String code = String.join("\n",
+                "class A {",
+                "<<<<<<< left", "int a;", "=======", "int b;", ">>>>>>> right",
+                "  ",
+                "<<<<<<< left", "int c;", "=======", ">>>>>>> right",
+                "}", "");
+        String expected = String.join(ls,
+                "class A {",
+                "<<<<<<< left", "int a;", "  ", "int c;", "=======", "int b;", "  ", ">>>>>>> right",
+                "}");
+
+        assertEquals(expected, Parser.mergeSubsequentConflicts(code));
+
+        StringWriter out = new StringWriter();
+
+        try (SubsequentConflictsWriter writer = new SubsequentConflictsWriter(out)) {
+            for (char c : code.replace("\n", "\r\n").toCharArray()) {
+                writer.write(c);
+            }
+        }
+
+        assertEquals(expected, out.toString());
+    }
+
+    @Test
+    public void testTokenCounts() throws Exception {
+        List<String> codes = new ArrayList<>();
+
+        for (File file : FileUtils.listFiles(file("."), new String[] {"java"}, true)) {
+            codes.add(FileUtils.readFileToString(file, UTF_8));
+        }
+
+        codes.add(String.join("\n",
+                "class A {",
+                "  int a; /* a comment opened after code",
+                "  closed after code */ int b;",
+                "<<<<<<< left",
+                "  String s = \"unclosed;",
+                "  int c; /*",
+                "=======",
+                "  /* int d;",
+                "  */ int e;",
+                ">>>>>>> right",
+                "}"));
+
+        for (String code : codes) {
+            ParseResult result = Parser.parse(code);
+
+            for (Content content : result) {
+                CodeStatistics stats = Parser.calcStats(content);
+                int[] expected = countPerLine(content);
+
+                assertEquals(code, expected[0], stats.getTokens());
+                assertEquals(code, expected[1], stats.getChars());
+            }
+
+            CodeStatisticsListener listener = new CodeStatisticsListener();
+            Parser.parse(new StringReader(code), listener);
+
+            assertEquals(code, result.getStats(), listener.getStats());
+        }
+    }
+
+    /**
+     * Counts the tokens and non-whitespace characters of the given <code>content</code> line by line, as
+     * <code>Parser</code> did before it scanned all lines of a <code>Content</code> at once.
+     *
+     * @param content
+     *         the <code>Content</code> to count
+     * @return the number of tokens and the number of characters
+     */
+    private static int[] countPerLine(Content content) {
+        Collection<LineOfCode> lines = new ArrayList<>();
+
+        if (content.isConflict()) {
+            lines.addAll(((ConflictContent) content).getLeftLines());
+            lines.addAll(((ConflictContent) content).getRightLines());
+        } else {
+            lines.addAll(((MergedContent) content).getLines());
+        }
+
+        int tokens = 0;
+        int chars = 0;
+
+        for (LineOfCode line : lines) {
+
+            if (line.empty || line.comment) {
+                continue;
+            }
+
+            chars += line.line.replaceAll("\\s+", "").length();
+
+            try {
+                JavaScanner scanner = new JavaScanner(new Parser.ZeroReader(new Unicode(new StringReader(line.line))));
+
+                while (scanner.nextToken().getId() != JavaParser.Terminals.EOF) {
+                    tokens++;
+                }
+            } catch (beaver.Scanner.Exception ignored) {
+                // The old implementation counted no tokens for lines that could not be scanned.
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        return new int[] {tokens, chars};
+    }
+}